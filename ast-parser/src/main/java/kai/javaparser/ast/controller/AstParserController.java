@@ -1,18 +1,36 @@
 package kai.javaparser.ast.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -22,17 +40,37 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import kai.javaparser.ast.model.BatchTraceRequest;
+import kai.javaparser.ast.model.BatchTraceSummary;
+import kai.javaparser.ast.model.DiagramCacheStats;
+import kai.javaparser.ast.model.ExtractionCacheStats;
 import kai.javaparser.ast.model.ProcessRequest;
+import kai.javaparser.ast.model.ReverseTraceResult;
 import kai.javaparser.ast.service.AstParserService;
+import kai.javaparser.ast.service.BatchTraceService;
 import kai.javaparser.ast.service.CodeExtractorService;
+import kai.javaparser.ast.service.CommitAstService;
 import kai.javaparser.ast.service.ProjectBuildService;
+import kai.javaparser.ast.service.ReverseTraceService;
 import kai.javaparser.ast.service.TaskManagementService;
 import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionRequest;
 import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionResult;
 import kai.javaparser.ast.service.TaskManagementService.TaskInfo;
 import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.DiagramCache;
+import kai.javaparser.diagram.DiagramFormat;
 import kai.javaparser.diagram.DiagramService;
+import kai.javaparser.diagram.dependency.DependencyGranularity;
+import kai.javaparser.diagram.dependency.DependencyGraph;
+import kai.javaparser.diagram.dependency.DependencyGraphFormat;
+import kai.javaparser.diagram.dependency.DependencyGraphService;
+import kai.javaparser.diagram.dependency.DependencyKind;
+import kai.javaparser.diagram.diff.DiagramDiffService;
+import kai.javaparser.diagram.diff.DiffResult;
+import kai.javaparser.diagram.page.CallTreePageService;
 import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy;
 import kai.javaparser.util.TempDirectoryUtil;
 
 /**
@@ -51,18 +89,36 @@ public class AstParserController {
     private final AstParserService astParserService;
     private final TaskManagementService taskManagementService;
     private final ProjectBuildService projectBuildService;
+    private final ReverseTraceService reverseTraceService;
+    private final BatchTraceService batchTraceService;
+    private final CommitAstService commitAstService;
+    private final DiagramDiffService diagramDiffService;
+    private final CallTreePageService callTreePageService;
+    private final DependencyGraphService dependencyGraphService;
+
+    // NDJSON 每筆結果需為單行，不使用全域（縮排輸出）的 ObjectMapper
+    private final ObjectMapper ndjsonMapper = new ObjectMapper();
 
     @Autowired
     public AstParserController(AppConfig appConfig, DiagramService diagramService,
             CodeExtractorService codeExtractorService,
             AstParserService astParserService, TaskManagementService taskManagementService,
-            ProjectBuildService projectBuildService) {
+            ProjectBuildService projectBuildService, ReverseTraceService reverseTraceService,
+            BatchTraceService batchTraceService, CommitAstService commitAstService,
+            DiagramDiffService diagramDiffService, CallTreePageService callTreePageService,
+            DependencyGraphService dependencyGraphService) {
         this.appConfig = appConfig;
         this.diagramService = diagramService;
         this.codeExtractorService = codeExtractorService;
         this.astParserService = astParserService;
         this.taskManagementService = taskManagementService;
         this.projectBuildService = projectBuildService;
+        this.reverseTraceService = reverseTraceService;
+        this.batchTraceService = batchTraceService;
+        this.commitAstService = commitAstService;
+        this.diagramDiffService = diagramDiffService;
+        this.callTreePageService = callTreePageService;
+        this.dependencyGraphService = dependencyGraphService;
     }
 
     /**
@@ -153,35 +209,319 @@ public class AstParserController {
     /**
      * 生成序列圖
      */
-    @Operation(summary = "生成序列圖", description = "根據指定的入口方法生成Mermaid序列圖")
+    @Operation(summary = "生成序列圖", description = "根據指定的入口方法生成序列圖，format 可選 MERMAID（預設）、PLANTUML 或 JSON 呼叫樹")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "序列圖生成成功", content = @Content(mediaType = "text/plain", examples = @ExampleObject(value = "sequenceDiagram\n    participant A\n    participant B\n    A->>B: Hello"))),
+            @ApiResponse(responseCode = "304", description = "圖表沒有變動（If-None-Match 與 ETag 相符）"),
             @ApiResponse(responseCode = "500", description = "序列圖生成失敗", content = @Content(mediaType = "text/plain", examples = @ExampleObject(value = "圖表生成失敗: 錯誤訊息")))
     })
-    @PostMapping("/generate-diagram")
-    public ResponseEntity<String> generateDiagram(
-            @Parameter(description = "圖表生成請求參數，包含入口方法、基礎包名和深度設定", required = true, example = "{\"entryPointMethodFqn\": \"com.example.MyClass.myMethod\", \"basePackage\": \"com.example\", \"depth\": 5}") @RequestBody DiagramRequest request) {
-        try {
-            logger.info("收到圖表生成請求: {}", request);
+    @PostMapping(value = "/generate-diagram", produces = { MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_JSON_VALUE })
+    public void generateDiagram(
+            @Parameter(description = "圖表生成請求參數，包含入口方法、基礎包名和深度設定", required = true, example = "{\"entryPointMethodFqn\": \"com.example.MyClass.myMethod\", \"basePackage\": \"com.example\", \"depth\": 5}") @RequestBody DiagramRequest request,
+            @Parameter(description = "上次回應的 ETag，圖表沒有變動時回應 304") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletResponse response) throws IOException {
+        logger.info("收到圖表生成請求: {}", request);
+        writeDiagramResponse(request, ifNoneMatch, response);
+    }
 
-            // 創建配置
-            SequenceOutputConfig config = SequenceOutputConfig.builder()
-                    .basePackages(request.getBasePackages())
-                    .depth(request.getDepth())
-                    .build();
+    /**
+     * 生成序列圖（GET），參數以查詢字串傳入，方便瀏覽器與 HTTP 快取以 If-None-Match 重新驗證
+     */
+    @Operation(summary = "生成序列圖（GET）", description = "與 POST 相同，參數改以查詢字串傳入；回應帶有 ETag，If-None-Match 相符時回應 304")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "序列圖生成成功", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "304", description = "圖表沒有變動"),
+            @ApiResponse(responseCode = "500", description = "序列圖生成失敗", content = @Content(mediaType = "text/plain"))
+    })
+    @GetMapping(value = "/generate-diagram", produces = { MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_JSON_VALUE })
+    public void generateDiagramByQuery(
+            @ModelAttribute DiagramRequest request,
+            @Parameter(description = "上次回應的 ETag，圖表沒有變動時回應 304") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletResponse response) throws IOException {
+        logger.info("收到圖表生成請求（GET）: {}", request);
+        writeDiagramResponse(request, ifNoneMatch, response);
+    }
 
-            // 生成圖表
-            String diagram = diagramService.generateDiagram(request.getEntryPointMethodFqn(), config);
+    /**
+     * 啟用快取時回應帶 ETag 的完整圖表，If-None-Match 相符時回應 304；
+     * 快取命中且涉及的類別沒有重新解析時不需要追蹤。超過快取上限的圖表與未啟用快取時一樣邊渲染邊寫入回應，
+     * 不組出整份字串，也沒有 ETag
+     */
+    private void writeDiagramResponse(DiagramRequest request, String ifNoneMatch, HttpServletResponse response)
+            throws IOException {
+        SequenceOutputConfig config = toConfig(request);
+        DiagramFormat format = request.getFormat();
+
+        if (diagramService.isCacheEnabled()) {
+            DiagramCache.RenderedDiagram diagram;
+            try {
+                diagram = diagramService.writeCachedDiagram(request.getEntryPointMethodFqn(), config, format,
+                        () -> openDiagramWriter(response, format));
+            } catch (Exception e) {
+                logger.error("圖表生成失敗", e);
+                if (response.isCommitted()) {
+                    throw e;
+                }
+                response.resetBuffer();
+                writeDiagramError(response, e);
+                return;
+            }
+            if (diagram == null) {
+                // 超過快取上限，已直接寫入回應
+                response.getWriter().flush();
+                logger.info("圖表生成完成，格式: {}", format.getDisplayName());
+                return;
+            }
+
+            response.setHeader(HttpHeaders.ETAG, diagram.getEtag());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            if (etagMatches(ifNoneMatch, diagram.getEtag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType(format.getContentType());
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(diagram.getContent());
+            logger.info("圖表生成完成，格式: {}", format.getDisplayName());
+            return;
+        }
 
-            logger.info("圖表生成完成，格式: {}, 長度: {} 字元",
-                    diagramService.getFormatName(), diagram.length());
+        // 圖表邊渲染邊寫入回應，不組出整份字串
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer writer = response.getWriter();
+        try {
+            diagramService.writeDiagram(request.getEntryPointMethodFqn(), config, format, writer);
+            writer.flush();
 
-            return ResponseEntity.ok(diagram);
+            logger.info("圖表生成完成，格式: {}", format.getDisplayName());
 
         } catch (Exception e) {
             logger.error("圖表生成失敗", e);
-            return ResponseEntity.internalServerError()
-                    .body("圖表生成失敗: " + e.getMessage());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            // 尚未送出任何內容，改為回應錯誤
+            response.resetBuffer();
+            writeDiagramError(response, e);
+        }
+    }
+
+    private static Writer openDiagramWriter(HttpServletResponse response, DiagramFormat format) {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try {
+            return response.getWriter();
+        } catch (IOException e) {
+            throw new UncheckedIOException("圖表輸出失敗", e);
+        }
+    }
+
+    private static SequenceOutputConfig toConfig(DiagramRequest request) {
+        return SequenceOutputConfig.builder()
+                .basePackages(request.getBasePackages())
+                .depth(request.getDepth())
+                .parallel(request.isParallel())
+                .dispatchStrategy(new DefaultDispatchStrategy(request.getDispatchMode()))
+                .foldRepeatedCalls(request.isFoldRepeatedCalls())
+                .foldPrivateHelpers(request.isFoldPrivateHelpers())
+                .maxFanOut(request.getMaxFanOut())
+                .build();
+    }
+
+    private void writeDiagramError(HttpServletResponse response, Exception e) throws IOException {
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("圖表生成失敗: " + e.getMessage());
+    }
+
+    /**
+     * If-None-Match 可列出多個 ETag 或為 *，比對時忽略弱 ETag 的 W/ 前綴
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成版本比較序列圖
+     */
+    @Operation(summary = "生成版本比較序列圖", description = "依序載入兩個版本並追蹤同一個進入點，比較呼叫樹後輸出一張圖表："
+            + "新增、移除與變更的呼叫在 Mermaid 中以綠、紅、黃色背景標示，PlantUML 以 group 標示，JSON 以 diff 欄位標示；"
+            + "兩個版本各自以獨立的索引追蹤，目前載入的 AST 不變")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "比較完成，X-Diagram-Diff 標頭為差異數量", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "500", description = "比較失敗", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/generate-diagram-diff", produces = { MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_JSON_VALUE })
+    public void generateDiagramDiff(
+            @Parameter(description = "版本比較請求參數，包含儲存庫路徑、兩個版本與圖表設定", required = true, example = "{\"repositoryPath\": \"/path/to/repo\", \"baseRevision\": \"v1.2.0\", \"headRevision\": \"main\", \"entryPointMethodFqn\": \"com.example.MyClass.myMethod\"}") @RequestBody DiagramDiffRequest request,
+            HttpServletResponse response) throws IOException {
+        logger.info("收到版本比較請求: {}", request);
+        DiagramFormat format = request.getFormat();
+
+        DiagramDiffService.DiffDiagram diagram;
+        try {
+            diagram = diagramDiffService.generateDiffDiagram(request.getRepositoryPath(), request.getBaseRevision(),
+                    request.getHeadRepositoryPath(), request.getHeadRevision(), request.getClasspath(),
+                    request.getJavaComplianceLevel(), request.getEntryPointMethodFqn(), toConfig(request), format);
+        } catch (Exception e) {
+            logger.error("版本比較失敗", e);
+            writeDiagramError(response, e);
+            return;
+        }
+
+        DiffResult diffResult = diagram.getDiffResult();
+        response.setHeader("X-Diagram-Diff", String.format("added=%d, removed=%d, changed=%d",
+                diffResult.getAdded(), diffResult.getRemoved(), diffResult.getChanged()));
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(diagram.getContent());
+    }
+
+    /**
+     * 分頁瀏覽呼叫樹：開啟工作階段
+     */
+    @Operation(summary = "分頁瀏覽呼叫樹", description = "只追蹤並返回進入點下的前 levels 層 JSON 呼叫樹，"
+            + "還有子樹的呼叫帶有 expand 代號，可再以展開端點按需載入；回應為 {\"session\": \"...\", \"tree\": {...}}，不套用折疊配置")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "第一頁", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "500", description = "追蹤失敗")
+    })
+    @PostMapping(value = "/call-tree", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> openCallTree(
+            @Parameter(description = "呼叫樹分頁請求參數，包含入口方法、層數與追蹤設定", required = true, example = "{\"entryPointMethodFqn\": \"com.example.MyClass.myMethod\", \"depth\": 20, \"levels\": 3}") @RequestBody CallTreePageRequest request) {
+        try {
+            logger.info("收到呼叫樹分頁請求: {}", request);
+            CallTreePageService.Page page = callTreePageService.open(request.getEntryPointMethodFqn(),
+                    toConfig(request), request.getLevels());
+            return ResponseEntity.ok(page.toJson());
+        } catch (Exception e) {
+            logger.error("呼叫樹分頁失敗", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 分頁瀏覽呼叫樹：展開收合的呼叫
+     */
+    @Operation(summary = "展開呼叫樹節點", description = "以開啟工作階段時的配置追蹤收合呼叫下的 levels 層，返回以該呼叫為根的 JSON 呼叫樹；"
+            + "id 只在同一份回應中有效，跨請求以 expand 代號識別節點")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "展開成功", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "工作階段不存在、已過期、AST 已重新載入或代號不存在"),
+            @ApiResponse(responseCode = "500", description = "追蹤失敗")
+    })
+    @GetMapping(value = "/call-tree/{sessionId}/nodes/{handle}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> expandCallTree(
+            @Parameter(description = "工作階段代號", required = true) @PathVariable("sessionId") String sessionId,
+            @Parameter(description = "收合呼叫的 expand 代號", required = true) @PathVariable("handle") int handle,
+            @Parameter(description = "返回的層數") @RequestParam(value = "levels", defaultValue = "3") int levels) {
+        try {
+            CallTreePageService.Page page = callTreePageService.expand(sessionId, handle, levels);
+            if (page == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(page.toJson());
+        } catch (Exception e) {
+            logger.error("呼叫樹展開失敗", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 分頁瀏覽呼叫樹：關閉工作階段
+     */
+    @Operation(summary = "關閉呼叫樹工作階段", description = "釋放工作階段的追蹤快取；未關閉的工作階段在閒置一段時間後自動過期")
+    @DeleteMapping("/call-tree/{sessionId}")
+    public ResponseEntity<Void> closeCallTree(
+            @Parameter(description = "工作階段代號", required = true) @PathVariable("sessionId") String sessionId) {
+        callTreePageService.close(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 串流生成序列圖
+     */
+    @Operation(summary = "串流生成序列圖", description = "與生成序列圖相同，但邊追蹤邊輸出，不在記憶體中建立完整的呼叫樹，適合非常大的追蹤")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "序列圖開始串流", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/generate-diagram/stream", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDiagram(
+            @Parameter(description = "圖表生成請求參數，包含入口方法、基礎包名和深度設定", required = true, example = "{\"entryPointMethodFqn\": \"com.example.MyClass.myMethod\", \"basePackage\": \"com.example\", \"depth\": 5}") @RequestBody DiagramRequest request) {
+        logger.info("收到串流圖表生成請求: {}", request);
+
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .basePackages(request.getBasePackages())
+                .depth(request.getDepth())
+                .dispatchStrategy(new DefaultDispatchStrategy(request.getDispatchMode()))
+                .build();
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            diagramService.streamDiagram(request.getEntryPointMethodFqn(), config, writer);
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    /**
+     * 批次追蹤
+     */
+    @Operation(summary = "批次追蹤", description = "一次處理多個進入點（直接列出或以包名/註解選擇），共用索引與子樹記憶，"
+            + "每個進入點完成後立即以 NDJSON 串流回傳一行結果，最後一行為 {\"summary\": {...}}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "批次追蹤開始串流", content = @Content(mediaType = "application/x-ndjson")),
+            @ApiResponse(responseCode = "400", description = "沒有指定任何進入點或選擇器")
+    })
+    @PostMapping(value = "/batch-trace", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> batchTrace(
+            @Parameter(description = "批次追蹤請求參數", required = true, example = "{\"selectorClassAnnotation\": \"RestController\", \"selectorMethodAnnotation\": \"PostMapping\", \"basePackages\": [\"com.example\"], \"depth\": 5}") @RequestBody BatchTraceRequest request) {
+        logger.info("收到批次追蹤請求: {}", request);
+
+        boolean hasEntryPoints = request.getEntryPointMethodFqns() != null
+                && !request.getEntryPointMethodFqns().isEmpty();
+        if (!hasEntryPoints && !request.hasSelector()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            BatchTraceSummary summary = batchTraceService.traceAll(request,
+                    item -> writeNdjsonLine(outputStream, item));
+            writeNdjsonLine(outputStream, Map.of("summary", summary));
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private void writeNdjsonLine(OutputStream outputStream, Object value) {
+        try {
+            outputStream.write(ndjsonMapper.writeValueAsBytes(value));
+            outputStream.write("\n".getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException("批次追蹤結果輸出失敗", e);
         }
     }
 
@@ -221,6 +561,242 @@ public class AstParserController {
         }
     }
 
+    /**
+     * 串流提取代碼
+     */
+    @Operation(summary = "串流提取代碼", description = "與提取代碼相同，但每個類別編織完成後立即以 Markdown 寫出，"
+            + "總類別數與總行數在結尾的統計段落輸出，適合非常大的提取結果")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "提取結果開始串流", content = @Content(mediaType = "text/markdown"))
+    })
+    @PostMapping(value = "/extract-code/stream", produces = "text/markdown")
+    public ResponseEntity<StreamingResponseBody> streamExtractCode(
+            @Parameter(description = "代碼提取請求參數，指定要提取的入口方法和相關設定", required = true, example = "{\"entryPointMethodFqn\": \"com.example.MyClass.myMethod\", \"basePackages\": [\"com.example\"], \"maxDepth\": 5}") @RequestBody CodeExtractionRequest request) {
+        logger.info("收到串流代碼提取請求: {}", request);
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            CodeExtractionResult result = codeExtractorService.streamExtraction(request, writer);
+            writer.flush();
+            logger.info("串流代碼提取完成，涉及類別數: {}, 總行數: {}",
+                    result.getTotalClasses(), result.getTotalLines());
+        };
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "markdown", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    /**
+     * 代碼提取結果快取的統計資訊
+     */
+    @Operation(summary = "代碼提取快取統計", description = "返回代碼提取結果快取的命中率、失效與淘汰次數及記憶體用量")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "取得統計成功", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExtractionCacheStats.class)))
+    })
+    @GetMapping("/extract-code/cache-stats")
+    public ResponseEntity<ExtractionCacheStats> getExtractionCacheStats() {
+        return ResponseEntity.ok(codeExtractorService.getCacheStats());
+    }
+
+    /**
+     * 序列圖快取的統計資訊
+     */
+    @Operation(summary = "序列圖快取統計", description = "返回序列圖渲染結果快取的命中率，以及註解查詢表已整理的類別數與讀取 AST 失敗的次數")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "取得統計成功", content = @Content(mediaType = "application/json", schema = @Schema(implementation = DiagramCacheStats.class)))
+    })
+    @GetMapping("/generate-diagram/cache-stats")
+    public ResponseEntity<DiagramCacheStats> getDiagramCacheStats() {
+        return ResponseEntity.ok(diagramService.getCacheStats());
+    }
+
+    /**
+     * 依 git commit 解析並載入 AST
+     */
+    @Operation(summary = "解析指定版本", description = "不需要 checkout，直接從 git 物件資料庫解析指定 commit 的 AST 並載入，之後的序列圖與代碼提取都以該版本為準；內容沒有變動的檔案沿用先前的解析結果")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "解析完成", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "500", description = "解析失敗")
+    })
+    @PostMapping("/parse-commit")
+    public ResponseEntity<String> parseCommit(
+            @Parameter(description = "版本解析請求參數，包含儲存庫路徑與版本", required = true, example = "{\"repositoryPath\": \"/path/to/repo\", \"revision\": \"v1.2.0\"}") @RequestBody CommitParseRequest request) {
+        try {
+            logger.info("收到版本解析請求: {}", request);
+            String result = commitAstService.parseCommit(request.getRepositoryPath(), request.getRevision(),
+                    request.getClasspath(), request.getJavaComplianceLevel());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("版本解析失敗", e);
+            return ResponseEntity.internalServerError().body("版本解析失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 反向追蹤呼叫者
+     */
+    @Operation(summary = "反向追蹤呼叫者", description = "找出 N 層內所有會呼叫到指定方法的方法與入口點，並計算路徑數，用於影響範圍分析")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "反向追蹤成功", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ReverseTraceResult.class))),
+            @ApiResponse(responseCode = "500", description = "反向追蹤失敗")
+    })
+    @PostMapping("/callers")
+    public ResponseEntity<ReverseTraceResult> findCallers(
+            @Parameter(description = "反向追蹤請求參數，包含目標方法、層數與基礎包名", required = true, example = "{\"methodFqn\": \"com.example.UserDao.findById(long)\", \"depth\": 5}") @RequestBody CallerRequest request) {
+        try {
+            logger.info("收到反向追蹤請求: {}", request);
+
+            ReverseTraceResult result = reverseTraceService.traceCallers(
+                    request.getMethodFqn(), request.getDepth(), request.getBasePackages());
+
+            logger.info("反向追蹤完成，呼叫者數量: {}, 入口點數量: {}",
+                    result.getCallers().size(), result.getEntryPoints().size());
+
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            logger.error("反向追蹤失敗", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 生成類別 / 包依賴圖
+     */
+    @Operation(summary = "生成依賴圖", description = "由 import、繼承、實現、引用型別與方法呼叫建立整個程式碼庫的依賴圖，"
+            + "以 Tarjan 演算法找出循環依賴；granularity 為 PACKAGE（預設）時同一個包的類別合併為一個節點，"
+            + "format 可選 MERMAID（預設）或 DOT")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "依賴圖生成成功，X-Dependency-Cycles 標頭為循環數量", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "500", description = "依賴圖生成失敗", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/dependency-graph", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> generateDependencyGraph(
+            @Parameter(description = "依賴圖請求參數，包含基礎包名、粒度、依賴來源與輸出格式", required = true, example = "{\"basePackages\": [\"com.example\"], \"granularity\": \"PACKAGE\", \"format\": \"MERMAID\"}") @RequestBody DependencyGraphRequest request) {
+        try {
+            logger.info("收到依賴圖請求: {}", request);
+            DependencyGraph graph = dependencyGraphService.buildGraph(request.getGranularity(),
+                    request.getBasePackages(), request.getKinds());
+            String content = dependencyGraphService.render(graph, request.getFormat(), request.getMinWeight());
+            logger.info("依賴圖生成完成，{}，格式: {}", graph, request.getFormat().getDisplayName());
+            return ResponseEntity.ok()
+                    .header("X-Dependency-Cycles", String.valueOf(graph.getCycles().size()))
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(content);
+        } catch (Exception e) {
+            logger.error("依賴圖生成失敗", e);
+            return ResponseEntity.internalServerError().body("依賴圖生成失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 版本解析請求DTO
+     */
+    @Schema(description = "版本解析請求參數")
+    public static class CommitParseRequest {
+        @Schema(description = "本地 git 儲存庫路徑", example = "/path/to/repo", required = true)
+        private String repositoryPath;
+
+        @Schema(description = "版本，可為 commit ID、分支或標籤", example = "v1.2.0", required = true)
+        private String revision;
+
+        @Schema(description = "類路徑（逗號分隔）", example = "", defaultValue = "")
+        private String classpath = "";
+
+        @Schema(description = "Java 合規性等級", example = "17", defaultValue = "17")
+        private String javaComplianceLevel = "17";
+
+        public CommitParseRequest() {
+        }
+
+        public String getRepositoryPath() {
+            return repositoryPath;
+        }
+
+        public void setRepositoryPath(String repositoryPath) {
+            this.repositoryPath = repositoryPath;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public void setRevision(String revision) {
+            this.revision = revision;
+        }
+
+        public String getClasspath() {
+            return classpath;
+        }
+
+        public void setClasspath(String classpath) {
+            this.classpath = classpath != null ? classpath : "";
+        }
+
+        public String getJavaComplianceLevel() {
+            return javaComplianceLevel;
+        }
+
+        public void setJavaComplianceLevel(String javaComplianceLevel) {
+            this.javaComplianceLevel = javaComplianceLevel != null ? javaComplianceLevel : "17";
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CommitParseRequest{repositoryPath='%s', revision='%s', javaComplianceLevel=%s}",
+                    repositoryPath, revision, javaComplianceLevel);
+        }
+    }
+
+    /**
+     * 反向追蹤請求DTO
+     */
+    @Schema(description = "反向追蹤請求參數")
+    public static class CallerRequest {
+        @Schema(description = "目標方法的完全限定名", example = "com.example.UserDao.findById(long)", required = true)
+        private String methodFqn;
+
+        @Schema(description = "基礎包名列表，只保留此包下的呼叫者", example = "[\"com.example\"]", defaultValue = "[]")
+        private Set<String> basePackages = new HashSet<>();
+
+        @Schema(description = "往上追蹤的層數", example = "5", defaultValue = "5", minimum = "1")
+        private int depth = 5;
+
+        public CallerRequest() {
+        }
+
+        public String getMethodFqn() {
+            return methodFqn;
+        }
+
+        public void setMethodFqn(String methodFqn) {
+            this.methodFqn = methodFqn;
+        }
+
+        public Set<String> getBasePackages() {
+            return basePackages;
+        }
+
+        public void setBasePackages(Set<String> basePackages) {
+            this.basePackages = basePackages != null ? basePackages : new HashSet<>();
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CallerRequest{methodFqn='%s', basePackages=%s, depth=%d}",
+                    methodFqn, basePackages, depth);
+        }
+    }
+
     /**
      * 圖表生成請求DTO
      */
@@ -235,6 +811,24 @@ public class AstParserController {
         @Schema(description = "序列圖的遞歸深度，控制方法調用的層級深度", example = "5", defaultValue = "5", minimum = "1", maximum = "10")
         private int depth = 5;
 
+        @Schema(description = "是否以 fork/join 平行展開呼叫子樹，輸出與循序模式相同", example = "false", defaultValue = "false")
+        private boolean parallel = false;
+
+        @Schema(description = "被呼叫者為介面或抽象類別時的多型分派模式", example = "SINGLE_IMPLEMENTATION", defaultValue = "NONE")
+        private DefaultDispatchStrategy.Mode dispatchMode = DefaultDispatchStrategy.Mode.NONE;
+
+        @Schema(description = "輸出格式：MERMAID、PLANTUML 或 JSON（帶版本的呼叫樹）", example = "PLANTUML", defaultValue = "MERMAID")
+        private DiagramFormat format = DiagramFormat.MERMAID;
+
+        @Schema(description = "是否將連續重複的相同呼叫折疊為一次並標示 xN", example = "true", defaultValue = "false")
+        private boolean foldRepeatedCalls = false;
+
+        @Schema(description = "是否將同類別的 private 輔助方法鏈折疊為一個註解", example = "true", defaultValue = "false")
+        private boolean foldPrivateHelpers = false;
+
+        @Schema(description = "每個呼叫最多顯示的子節點數，超過的部分以「…N more calls」表示，0 代表不限制", example = "50", defaultValue = "0", minimum = "0")
+        private int maxFanOut = 0;
+
         // Constructors
         public DiagramRequest() {
         }
@@ -270,10 +864,237 @@ public class AstParserController {
             this.depth = depth;
         }
 
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public void setParallel(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        public DefaultDispatchStrategy.Mode getDispatchMode() {
+            return dispatchMode;
+        }
+
+        public void setDispatchMode(DefaultDispatchStrategy.Mode dispatchMode) {
+            this.dispatchMode = dispatchMode != null ? dispatchMode : DefaultDispatchStrategy.Mode.NONE;
+        }
+
+        public DiagramFormat getFormat() {
+            return format;
+        }
+
+        public void setFormat(DiagramFormat format) {
+            this.format = format != null ? format : DiagramFormat.MERMAID;
+        }
+
+        public boolean isFoldRepeatedCalls() {
+            return foldRepeatedCalls;
+        }
+
+        public void setFoldRepeatedCalls(boolean foldRepeatedCalls) {
+            this.foldRepeatedCalls = foldRepeatedCalls;
+        }
+
+        public boolean isFoldPrivateHelpers() {
+            return foldPrivateHelpers;
+        }
+
+        public void setFoldPrivateHelpers(boolean foldPrivateHelpers) {
+            this.foldPrivateHelpers = foldPrivateHelpers;
+        }
+
+        public int getMaxFanOut() {
+            return maxFanOut;
+        }
+
+        public void setMaxFanOut(int maxFanOut) {
+            this.maxFanOut = Math.max(maxFanOut, 0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "DiagramRequest{entryPointMethodFqn='%s', basePackages=%s, depth=%d, parallel=%s, dispatchMode=%s, format=%s, foldRepeatedCalls=%s, foldPrivateHelpers=%s, maxFanOut=%d}",
+                    entryPointMethodFqn, basePackages, depth, parallel, dispatchMode, format, foldRepeatedCalls,
+                    foldPrivateHelpers, maxFanOut);
+        }
+    }
+
+    /**
+     * 版本比較請求DTO，圖表設定與圖表生成請求相同
+     */
+    @Schema(description = "版本比較請求參數")
+    public static class DiagramDiffRequest extends DiagramRequest {
+        @Schema(description = "本地 git 儲存庫路徑", example = "/path/to/repo", required = true)
+        private String repositoryPath;
+
+        @Schema(description = "舊版本，可為 commit ID、分支或標籤", example = "v1.2.0", required = true)
+        private String baseRevision;
+
+        @Schema(description = "新版本所在的 git 儲存庫路徑，未指定時與 repositoryPath 相同", example = "/path/to/fork")
+        private String headRepositoryPath;
+
+        @Schema(description = "新版本，可為 commit ID、分支或標籤", example = "main", required = true)
+        private String headRevision;
+
+        @Schema(description = "類路徑（逗號分隔）", example = "", defaultValue = "")
+        private String classpath = "";
+
+        @Schema(description = "Java 合規性等級", example = "17", defaultValue = "17")
+        private String javaComplianceLevel = "17";
+
+        public DiagramDiffRequest() {
+        }
+
+        public String getRepositoryPath() {
+            return repositoryPath;
+        }
+
+        public void setRepositoryPath(String repositoryPath) {
+            this.repositoryPath = repositoryPath;
+        }
+
+        public String getBaseRevision() {
+            return baseRevision;
+        }
+
+        public void setBaseRevision(String baseRevision) {
+            this.baseRevision = baseRevision;
+        }
+
+        public String getHeadRepositoryPath() {
+            return headRepositoryPath;
+        }
+
+        public void setHeadRepositoryPath(String headRepositoryPath) {
+            this.headRepositoryPath = headRepositoryPath;
+        }
+
+        public String getHeadRevision() {
+            return headRevision;
+        }
+
+        public void setHeadRevision(String headRevision) {
+            this.headRevision = headRevision;
+        }
+
+        public String getClasspath() {
+            return classpath;
+        }
+
+        public void setClasspath(String classpath) {
+            this.classpath = classpath != null ? classpath : "";
+        }
+
+        public String getJavaComplianceLevel() {
+            return javaComplianceLevel;
+        }
+
+        public void setJavaComplianceLevel(String javaComplianceLevel) {
+            this.javaComplianceLevel = javaComplianceLevel != null ? javaComplianceLevel : "17";
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "DiagramDiffRequest{repositoryPath='%s', baseRevision='%s', headRepositoryPath='%s', headRevision='%s', %s}",
+                    repositoryPath, baseRevision, headRepositoryPath, headRevision, super.toString());
+        }
+    }
+
+    /**
+     * 呼叫樹分頁請求DTO，追蹤設定與圖表生成請求相同
+     */
+    @Schema(description = "呼叫樹分頁請求參數")
+    public static class CallTreePageRequest extends DiagramRequest {
+        @Schema(description = "每頁返回的層數，更深的子樹收合後按需展開", example = "3", defaultValue = "3", minimum = "1", maximum = "10")
+        private int levels = 3;
+
+        public CallTreePageRequest() {
+        }
+
+        public int getLevels() {
+            return levels;
+        }
+
+        public void setLevels(int levels) {
+            this.levels = levels;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CallTreePageRequest{levels=%d, %s}", levels, super.toString());
+        }
+    }
+
+    /**
+     * 依賴圖請求DTO
+     */
+    @Schema(description = "依賴圖請求參數")
+    public static class DependencyGraphRequest {
+        @Schema(description = "基礎包名列表，只保留此包下的類別", example = "[\"com.example\"]", defaultValue = "[]")
+        private Set<String> basePackages = new HashSet<>();
+
+        @Schema(description = "節點粒度：CLASS 或 PACKAGE", example = "PACKAGE", defaultValue = "PACKAGE")
+        private DependencyGranularity granularity = DependencyGranularity.PACKAGE;
+
+        @Schema(description = "要計入的依賴來源：IMPORT、EXTENDS、IMPLEMENTS、REFERENCE、CALL，為空時計入全部", example = "[\"EXTENDS\", \"IMPLEMENTS\", \"CALL\"]", defaultValue = "[]")
+        private Set<DependencyKind> kinds = EnumSet.noneOf(DependencyKind.class);
+
+        @Schema(description = "輸出格式：MERMAID 或 DOT", example = "MERMAID", defaultValue = "MERMAID")
+        private DependencyGraphFormat format = DependencyGraphFormat.MERMAID;
+
+        @Schema(description = "邊的最小權重，較輕的邊不輸出（循環內的邊一律輸出）", example = "1", defaultValue = "1", minimum = "1")
+        private int minWeight = 1;
+
+        public DependencyGraphRequest() {
+        }
+
+        public Set<String> getBasePackages() {
+            return basePackages;
+        }
+
+        public void setBasePackages(Set<String> basePackages) {
+            this.basePackages = basePackages != null ? basePackages : new HashSet<>();
+        }
+
+        public DependencyGranularity getGranularity() {
+            return granularity;
+        }
+
+        public void setGranularity(DependencyGranularity granularity) {
+            this.granularity = granularity != null ? granularity : DependencyGranularity.PACKAGE;
+        }
+
+        public Set<DependencyKind> getKinds() {
+            return kinds;
+        }
+
+        public void setKinds(Set<DependencyKind> kinds) {
+            this.kinds = kinds != null ? kinds : EnumSet.noneOf(DependencyKind.class);
+        }
+
+        public DependencyGraphFormat getFormat() {
+            return format;
+        }
+
+        public void setFormat(DependencyGraphFormat format) {
+            this.format = format != null ? format : DependencyGraphFormat.MERMAID;
+        }
+
+        public int getMinWeight() {
+            return minWeight;
+        }
+
+        public void setMinWeight(int minWeight) {
+            this.minWeight = minWeight;
+        }
+
         @Override
         public String toString() {
-            return String.format("DiagramRequest{entryPointMethodFqn='%s', basePackages=%s, depth=%d}",
-                    entryPointMethodFqn, basePackages, depth);
+            return String.format("DependencyGraphRequest{basePackages=%s, granularity=%s, kinds=%s, format=%s, minWeight=%d}",
+                    basePackages, granularity, kinds, format, minWeight);
         }
     }
 
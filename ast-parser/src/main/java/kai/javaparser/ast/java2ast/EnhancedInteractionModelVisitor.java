@@ -4,15 +4,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.RecordDeclaration;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
@@ -41,6 +45,8 @@ public class EnhancedInteractionModelVisitor extends ASTVisitor {
     private final HandlerContext context;
     private final ControlFlowHandler controlFlowHandler;
     private final InvocationHandler invocationHandler;
+    // 進入巢狀型別前的類名，離開時還原
+    private final List<String> enclosingClassNames = new ArrayList<>();
 
     public EnhancedInteractionModelVisitor(SequenceDiagramData sequenceData, CompilationUnit compilationUnit) {
         this.context = new HandlerContext(sequenceData, compilationUnit);
@@ -50,18 +56,48 @@ public class EnhancedInteractionModelVisitor extends ASTVisitor {
 
     @Override
     public boolean visit(TypeDeclaration node) {
+        return enterType(node);
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+        exitType();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+        return enterType(node);
+    }
+
+    @Override
+    public void endVisit(EnumDeclaration node) {
+        exitType();
+    }
+
+    @Override
+    public boolean visit(RecordDeclaration node) {
+        return enterType(node);
+    }
+
+    @Override
+    public void endVisit(RecordDeclaration node) {
+        exitType();
+    }
+
+    private boolean enterType(AbstractTypeDeclaration node) {
         // 記錄當前類名 (包含包名)
         String packageName = context.getCompilationUnit().getPackage() != null
                 ? context.getCompilationUnit().getPackage().getName().getFullyQualifiedName()
                 : "";
+        enclosingClassNames.add(context.getCurrentClassName());
         context.setCurrentClassName(packageName.isEmpty() ? node.getName().getIdentifier()
                 : packageName + "." + node.getName().getIdentifier());
         return true;
     }
 
-    @Override
-    public void endVisit(TypeDeclaration node) {
-        context.setCurrentClassName(null); // 離開類別範圍
+    private void exitType() {
+        // 離開類別範圍，回到外層類別（頂層型別時為 null）
+        context.setCurrentClassName(enclosingClassNames.remove(enclosingClassNames.size() - 1));
     }
 
     @Override
@@ -86,6 +122,9 @@ public class EnhancedInteractionModelVisitor extends ASTVisitor {
         currentMethodGroup.setFullMethodName(className + "." +
                 (isConstructor ? simpleClassName : methodName));
         currentMethodGroup.setStartLineNumber(context.getCompilationUnit().getLineNumber(node.getStartPosition()));
+        currentMethodGroup.setStartPosition(node.getStartPosition());
+        currentMethodGroup.setLength(node.getLength());
+        currentMethodGroup.setPrivateMethod(Modifier.isPrivate(node.getModifiers()));
 
         // 提取方法簽名
         StringBuilder signature = new StringBuilder();
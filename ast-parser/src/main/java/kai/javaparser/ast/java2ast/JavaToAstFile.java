@@ -3,6 +3,7 @@ package kai.javaparser.ast.java2ast;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -11,23 +12,50 @@ import java.util.stream.Collectors;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.RecordDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import kai.javaparser.ast.model.AnnotationInfo;
 import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.MethodGroup;
 import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.model.SourceRange;
 import kai.javaparser.util.AnnotationExtractor;
+import kai.javaparser.util.TextCompressor;
 
 public class JavaToAstFile {
 
     private static final Logger logger = LoggerFactory.getLogger(JavaToAstFile.class);
 
+    // 是否保存各成員的壓縮原始碼
+    private final boolean storeCompressedSource;
+
+    public JavaToAstFile() {
+        this(false);
+    }
+
+    /**
+     * @param storeCompressedSource 是否保存 import 區段、型別宣告、欄位與方法的壓縮原始碼，
+     *                              讓只提取使用的方法時不必讀取整個原始檔
+     */
+    public JavaToAstFile(boolean storeCompressedSource) {
+        this.storeCompressedSource = storeCompressedSource;
+    }
+
     /**
      * Parses a single Java file and extracts its AST data.
      *
@@ -43,6 +71,8 @@ public class JavaToAstFile {
     public FileAstData parseJavaFile(Path sourceFilePath, String[] projectSources, String[] projectClasspath,
             String complianceLevel) {
         try {
+            // 先取得檔案屬性再讀取內容，讀取期間檔案被修改時記錄的屬性會較舊，提取時會判定為已變動
+            BasicFileAttributes attributes = Files.readAttributes(sourceFilePath, BasicFileAttributes.class);
             String fileContent = Files.readString(sourceFilePath);
             char[] fileContentChars = fileContent.toCharArray();
 
@@ -85,14 +115,26 @@ public class JavaToAstFile {
             // 提取類別級別的註解
             extractClassAnnotations(cu, sequenceData);
 
+            // 記錄宣告的字元範圍，供編織器直接依位置切割原始碼
+            extractSourceRanges(cu, fileContent, sequenceData);
+
+            // 記錄欄位、方法參數與回傳值引用的型別，供依賴閉包提取使用
+            extractTypeReferences(cu, sequenceData);
+
             // 使用自定義訪問者提取互動
             cu.accept(new EnhancedInteractionModelVisitor(sequenceData, cu));
 
+            if (storeCompressedSource) {
+                storeCompressedSource(fileContent, sequenceData);
+            }
+
             FileAstData fileAstData = new FileAstData();
             fileAstData.setPackageName(cu.getPackage().getName().getFullyQualifiedName());
             fileAstData.setFileContent(fileContentChars);
             fileAstData.setRelativePath(sourceFilePath.getFileName().toString());
             fileAstData.setAbsolutePath(sourceFilePath.toAbsolutePath().toString());
+            fileAstData.setSourceLastModified(attributes.lastModifiedTime().toMillis());
+            fileAstData.setSourceSize(attributes.size());
             fileAstData.setSequenceDiagramData(sequenceData);
             @SuppressWarnings("unchecked")
             List<String> imports = ((List<ImportDeclaration>) cu.imports()).stream()
@@ -118,8 +160,8 @@ public class JavaToAstFile {
         String packageName = cu.getPackage() != null ? cu.getPackage().getName().getFullyQualifiedName() : "";
 
         for (Object typeDecl : cu.types()) {
-            if (typeDecl instanceof TypeDeclaration) {
-                TypeDeclaration type = (TypeDeclaration) typeDecl;
+            if (typeDecl instanceof AbstractTypeDeclaration) {
+                AbstractTypeDeclaration type = (AbstractTypeDeclaration) typeDecl;
                 String className = type.getName().getIdentifier();
                 return packageName + "." + className;
             }
@@ -135,12 +177,12 @@ public class JavaToAstFile {
      */
     private String detectClassType(CompilationUnit cu) {
         for (Object typeDecl : cu.types()) {
-            if (typeDecl instanceof TypeDeclaration) {
-                TypeDeclaration type = (TypeDeclaration) typeDecl;
+            if (typeDecl instanceof AbstractTypeDeclaration) {
+                AbstractTypeDeclaration type = (AbstractTypeDeclaration) typeDecl;
                 String className = type.getName().getIdentifier();
 
-                // 檢查是否為介面
-                if (type.isInterface()) {
+                // 檢查是否為介面（列舉與 record 視為一般類別）
+                if (type instanceof TypeDeclaration && ((TypeDeclaration) type).isInterface()) {
                     logger.debug("檢測到介面: {}", className);
                     return "Interface";
                 }
@@ -172,8 +214,8 @@ public class JavaToAstFile {
      */
     private void extractClassAnnotations(CompilationUnit cu, SequenceDiagramData sequenceData) {
         for (Object typeDecl : cu.types()) {
-            if (typeDecl instanceof TypeDeclaration) {
-                TypeDeclaration type = (TypeDeclaration) typeDecl;
+            if (typeDecl instanceof AbstractTypeDeclaration) {
+                AbstractTypeDeclaration type = (AbstractTypeDeclaration) typeDecl;
 
                 // 提取類別上的註解
                 List<AnnotationInfo> classAnnotations = AnnotationExtractor.extractAnnotations(
@@ -192,25 +234,27 @@ public class JavaToAstFile {
      */
     private void extractInheritanceInfo(CompilationUnit cu, SequenceDiagramData sequenceData) {
         for (Object typeDecl : cu.types()) {
-            if (typeDecl instanceof TypeDeclaration) {
-                TypeDeclaration type = (TypeDeclaration) typeDecl;
-
-                // 提取父類別 (extends)
-                if (type.getSuperclassType() != null) {
-                    ITypeBinding binding = type.getSuperclassType().resolveBinding();
+            if (typeDecl instanceof AbstractTypeDeclaration) {
+                AbstractTypeDeclaration type = (AbstractTypeDeclaration) typeDecl;
+
+                // 提取父類別 (extends)，只有類別宣告可以指定
+                org.eclipse.jdt.core.dom.Type superclassType = type instanceof TypeDeclaration
+                        ? ((TypeDeclaration) type).getSuperclassType()
+                        : null;
+                if (superclassType != null) {
+                    ITypeBinding binding = superclassType.resolveBinding();
                     if (binding != null) {
                         sequenceData.setExtendsClassFqn(binding.getQualifiedName());
                         logger.debug("提取父類別: {}", binding.getQualifiedName());
                     } else {
                         // 如果 binding 為 null，使用 toString (可能不準確，但聊勝於無)
-                        sequenceData.setExtendsClassFqn(type.getSuperclassType().toString());
-                        logger.warn("無法解析父類別 binding，使用 toString: {}", type.getSuperclassType().toString());
+                        sequenceData.setExtendsClassFqn(superclassType.toString());
+                        logger.warn("無法解析父類別 binding，使用 toString: {}", superclassType.toString());
                     }
                 }
 
                 // 提取實現介面 (implements)
-                @SuppressWarnings("unchecked")
-                List<org.eclipse.jdt.core.dom.Type> interfaces = type.superInterfaceTypes();
+                List<org.eclipse.jdt.core.dom.Type> interfaces = superInterfaceTypes(type);
                 List<String> interfaceFqns = new ArrayList<>();
                 for (org.eclipse.jdt.core.dom.Type interfaceType : interfaces) {
                     ITypeBinding binding = interfaceType.resolveBinding();
@@ -227,4 +271,242 @@ public class JavaToAstFile {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 記錄 package / import 區段、主要型別、型別本體開頭、欄位宣告與所有註解的字元範圍。
+     * 列舉常數與巢狀型別也記錄在欄位範圍中，編織時與欄位一樣完整輸出
+     */
+    private void extractSourceRanges(CompilationUnit cu, String fileContent, SequenceDiagramData sequenceData) {
+        // 註解表由 scanner 產生並依位置排序，行尾與行內註解也在其中
+        List<SourceRange> commentRanges = new ArrayList<>();
+        for (Object node : cu.getCommentList()) {
+            Comment comment = (Comment) node;
+            commentRanges.add(new SourceRange(comment.getStartPosition(), comment.getLength()));
+        }
+        sequenceData.setCommentRanges(commentRanges);
+
+        @SuppressWarnings("unchecked")
+        List<ImportDeclaration> imports = cu.imports();
+        ASTNode headerStart = cu.getPackage() != null ? cu.getPackage()
+                : (imports.isEmpty() ? null : imports.get(0));
+        if (headerStart != null) {
+            ASTNode headerEnd = imports.isEmpty() ? headerStart : imports.get(imports.size() - 1);
+            sequenceData.setHeaderStartPosition(headerStart.getStartPosition());
+            sequenceData.setHeaderLength(
+                    headerEnd.getStartPosition() + headerEnd.getLength() - headerStart.getStartPosition());
+        }
+
+        for (Object typeDecl : cu.types()) {
+            if (typeDecl instanceof AbstractTypeDeclaration) {
+                AbstractTypeDeclaration type = (AbstractTypeDeclaration) typeDecl;
+                int bodyStart = findTypeBodyStart(type, fileContent);
+                if (bodyStart < 0) {
+                    logger.debug("找不到型別本體的開始位置: {}", type.getName().getIdentifier());
+                    return;
+                }
+
+                sequenceData.setTypeStartPosition(type.getStartPosition());
+                sequenceData.setTypeLength(type.getLength());
+                sequenceData.setTypeBodyStartPosition(bodyStart);
+                if (type instanceof EnumDeclaration) {
+                    addEnumConstantsRange((EnumDeclaration) type, fileContent, sequenceData);
+                }
+                for (Object member : type.bodyDeclarations()) {
+                    if (member instanceof FieldDeclaration || member instanceof AbstractTypeDeclaration) {
+                        ASTNode node = (ASTNode) member;
+                        sequenceData.addFieldRange(new SourceRange(node.getStartPosition(), node.getLength()));
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 記錄列舉常數的範圍，包含最後一個常數之後的逗號與分號
+     */
+    private void addEnumConstantsRange(EnumDeclaration type, String fileContent, SequenceDiagramData sequenceData) {
+        @SuppressWarnings("unchecked")
+        List<EnumConstantDeclaration> constants = type.enumConstants();
+        if (constants.isEmpty()) {
+            return;
+        }
+        int start = constants.get(0).getStartPosition();
+        int end = endOf(constants.get(constants.size() - 1));
+        int typeEnd = endOf(type);
+        int position = end;
+        while (position < typeEnd) {
+            char c = fileContent.charAt(position);
+            if (c == ',' || Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '/' && position + 1 < typeEnd && fileContent.charAt(position + 1) == '/') {
+                int lineEnd = fileContent.indexOf('\n', position);
+                position = lineEnd < 0 ? typeEnd : lineEnd + 1;
+            } else if (c == '/' && position + 1 < typeEnd && fileContent.charAt(position + 1) == '*') {
+                int commentEnd = fileContent.indexOf("*/", position + 2);
+                position = commentEnd < 0 ? typeEnd : commentEnd + 2;
+            } else {
+                if (c == ';') {
+                    end = position + 1;
+                }
+                break;
+            }
+        }
+        sequenceData.addFieldRange(new SourceRange(start, end - start));
+    }
+
+    /**
+     * 型別宣告的 extends / implements 介面，類別、介面、列舉與 record 各自宣告
+     */
+    @SuppressWarnings("unchecked")
+    private List<org.eclipse.jdt.core.dom.Type> superInterfaceTypes(AbstractTypeDeclaration type) {
+        if (type instanceof TypeDeclaration) {
+            return ((TypeDeclaration) type).superInterfaceTypes();
+        }
+        if (type instanceof EnumDeclaration) {
+            return ((EnumDeclaration) type).superInterfaceTypes();
+        }
+        if (type instanceof RecordDeclaration) {
+            return ((RecordDeclaration) type).superInterfaceTypes();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * 記錄編譯單元中所有型別（含巢狀型別、列舉與 record）的欄位型別、record 元件、方法參數與回傳型別。
+     * 泛型參數（例如 List&lt;OrderDto&gt; 中的 OrderDto）與陣列元素型別也一併記錄，基本型別、型別變數與 JDK 型別略過
+     */
+    private void extractTypeReferences(CompilationUnit cu, SequenceDiagramData sequenceData) {
+        for (Object typeDecl : cu.types()) {
+            extractTypeReferences((AbstractTypeDeclaration) typeDecl, sequenceData);
+        }
+    }
+
+    private void extractTypeReferences(AbstractTypeDeclaration type, SequenceDiagramData sequenceData) {
+        if (type instanceof RecordDeclaration) {
+            for (Object component : ((RecordDeclaration) type).recordComponents()) {
+                addTypeReference(((SingleVariableDeclaration) component).getType().resolveBinding(), sequenceData);
+            }
+        }
+        for (Object member : type.bodyDeclarations()) {
+            if (member instanceof FieldDeclaration) {
+                addTypeReference(((FieldDeclaration) member).getType().resolveBinding(), sequenceData);
+            } else if (member instanceof MethodDeclaration) {
+                MethodDeclaration method = (MethodDeclaration) member;
+                if (method.getReturnType2() != null) {
+                    addTypeReference(method.getReturnType2().resolveBinding(), sequenceData);
+                }
+                for (Object param : method.parameters()) {
+                    addTypeReference(((SingleVariableDeclaration) param).getType().resolveBinding(),
+                            sequenceData);
+                }
+            } else if (member instanceof AbstractTypeDeclaration) {
+                extractTypeReferences((AbstractTypeDeclaration) member, sequenceData);
+            }
+        }
+    }
+
+    private void addTypeReference(ITypeBinding binding, SequenceDiagramData sequenceData) {
+        if (binding == null || binding.isPrimitive() || binding.isTypeVariable() || binding.isNullType()) {
+            return;
+        }
+        if (binding.isArray()) {
+            addTypeReference(binding.getElementType(), sequenceData);
+            return;
+        }
+        if (binding.isWildcardType()) {
+            addTypeReference(binding.getBound(), sequenceData);
+            return;
+        }
+        for (ITypeBinding typeArgument : binding.getTypeArguments()) {
+            addTypeReference(typeArgument, sequenceData);
+        }
+        String qualifiedName = binding.getErasure().getQualifiedName();
+        if (!qualifiedName.isEmpty() && !qualifiedName.startsWith("java.")) {
+            sequenceData.addReferencedTypeFqn(qualifiedName);
+        }
+    }
+
+    /**
+     * 依已記錄的字元範圍保存壓縮原始碼，每個區段從所在行的開頭開始以保留縮排
+     */
+    private void storeCompressedSource(String fileContent, SequenceDiagramData sequenceData) {
+        if (!sequenceData.hasSourceRanges()) {
+            return;
+        }
+
+        if (sequenceData.getHeaderLength() > 0) {
+            sequenceData.setCompressedHeaderSource(TextCompressor.compress(fileContent.substring(
+                    sequenceData.getHeaderStartPosition(),
+                    sequenceData.getHeaderStartPosition() + sequenceData.getHeaderLength())));
+        }
+        for (SourceRange field : sequenceData.getFieldRanges()) {
+            field.setCompressedSource(TextCompressor.compress(fileContent.substring(
+                    lineStart(fileContent, field.getStartPosition()), field.getEndPosition())));
+        }
+        for (MethodGroup methodGroup : sequenceData.getMethodGroups()) {
+            if (methodGroup.getLength() > 0) {
+                methodGroup.setCompressedSource(TextCompressor.compress(fileContent.substring(
+                        lineStart(fileContent, methodGroup.getStartPosition()),
+                        methodGroup.getStartPosition() + methodGroup.getLength())));
+            }
+        }
+        // 最後設定，作為其他區段都已保存的標記
+        sequenceData.setCompressedTypeHeadSource(TextCompressor.compress(fileContent.substring(
+                lineStart(fileContent, sequenceData.getTypeStartPosition()),
+                sequenceData.getTypeBodyStartPosition() + 1)));
+    }
+
+    private int lineStart(String fileContent, int position) {
+        int lineBegin = position;
+        while (lineBegin > 0 && (fileContent.charAt(lineBegin - 1) == ' ' || fileContent.charAt(lineBegin - 1) == '\t')) {
+            lineBegin--;
+        }
+        return lineBegin;
+    }
+
+    /**
+     * 從型別宣告標頭的最後一個節點往後找本體的左大括號，略過其間的註解
+     */
+    private int findTypeBodyStart(AbstractTypeDeclaration type, String fileContent) {
+        int position = endOf(type.getName());
+        List<Object> headerNodes = new ArrayList<>(superInterfaceTypes(type));
+        if (type instanceof TypeDeclaration) {
+            TypeDeclaration typeDeclaration = (TypeDeclaration) type;
+            headerNodes.addAll(typeDeclaration.typeParameters());
+            headerNodes.add(typeDeclaration.getSuperclassType());
+            headerNodes.addAll(typeDeclaration.permittedTypes());
+        } else if (type instanceof RecordDeclaration) {
+            RecordDeclaration record = (RecordDeclaration) type;
+            headerNodes.addAll(record.typeParameters());
+            headerNodes.addAll(record.recordComponents());
+        }
+        for (Object node : headerNodes) {
+            if (node != null) {
+                position = Math.max(position, endOf((ASTNode) node));
+            }
+        }
+
+        int typeEnd = endOf(type);
+        while (position < typeEnd) {
+            char c = fileContent.charAt(position);
+            if (c == '{') {
+                return position;
+            }
+            if (c == '/' && position + 1 < typeEnd && fileContent.charAt(position + 1) == '/') {
+                int lineEnd = fileContent.indexOf('\n', position);
+                position = lineEnd < 0 ? typeEnd : lineEnd + 1;
+            } else if (c == '/' && position + 1 < typeEnd && fileContent.charAt(position + 1) == '*') {
+                int commentEnd = fileContent.indexOf("*/", position + 2);
+                position = commentEnd < 0 ? typeEnd : commentEnd + 2;
+            } else {
+                position++;
+            }
+        }
+        return -1;
+    }
+
+    private int endOf(ASTNode node) {
+        return node.getStartPosition() + node.getLength();
+    }
+
+}
@@ -0,0 +1,19 @@
+package kai.javaparser.ast.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+/**
+ * 批次追蹤中單一進入點的結果，完成後立即串流回傳
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class BatchTraceItem {
+    private String entryPointMethodFqn; // 進入點
+    private boolean success; // 是否成功
+    private String output; // Mermaid 圖表或合併後的原始碼
+    private Integer totalClasses; // 涉及的類別數（僅 EXTRACTED_CODE）
+    private long durationMillis; // 處理耗時
+    private String errorMessage; // 錯誤訊息（如果有）
+}
@@ -0,0 +1,45 @@
+package kai.javaparser.ast.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy;
+import lombok.Data;
+
+/**
+ * 批次追蹤請求
+ * 
+ * 進入點可以直接列出，也可以用選擇器（包名前綴、類別註解、方法註解）從 AST 索引中挑選，
+ * 兩者會合併去重。所有進入點共用同一份追蹤配置與子樹記憶。
+ */
+@Data
+public class BatchTraceRequest {
+    private List<String> entryPointMethodFqns = new ArrayList<>(); // 直接指定的進入點
+
+    private Set<String> selectorPackages = new HashSet<>(); // 選擇器：類別所在的包名前綴
+    private String selectorClassAnnotation; // 選擇器：類別上的註解，例如 "RestController"
+    private String selectorMethodAnnotation; // 選擇器：方法上的註解，例如 "GetMapping"
+
+    private OutputType outputType = OutputType.MERMAID; // 每個進入點的輸出類型
+    private Set<String> basePackages = new HashSet<>(); // 追蹤範圍的基礎包名
+    private int depth = 5; // 追蹤深度
+    private DefaultDispatchStrategy.Mode dispatchMode = DefaultDispatchStrategy.Mode.NONE; // 多型分派模式（僅 MERMAID）
+    private int parallelism = 4; // 同時處理的進入點數量，上限為 app.max-concurrent-tasks
+
+    // 以下僅用於 EXTRACTED_CODE
+    private boolean includeImports = true;
+    private boolean includeComments = true;
+    private boolean extractOnlyUsedMethods = true;
+    private boolean includeConstructors = false;
+
+    /**
+     * 是否有設定任何選擇器
+     */
+    public boolean hasSelector() {
+        return (selectorPackages != null && !selectorPackages.isEmpty())
+                || selectorClassAnnotation != null
+                || selectorMethodAnnotation != null;
+    }
+}
@@ -0,0 +1,17 @@
+package kai.javaparser.ast.model;
+
+import lombok.Data;
+
+/**
+ * 批次追蹤的統計資訊，於所有進入點完成後回傳
+ */
+@Data
+public class BatchTraceSummary {
+    private int totalEntryPoints; // 進入點總數
+    private int succeeded; // 成功數
+    private int failed; // 失敗數
+    private long memoHits; // 子樹記憶命中次數
+    private long memoMisses; // 子樹記憶未命中次數
+    private int memoEntries; // 子樹記憶的記錄數
+    private long elapsedMillis; // 總耗時
+}
@@ -29,6 +29,7 @@ public class ControlFlowFragment implements DiagramNode {
     private String contextPath; // 完整的上下文路徑
     private int startLineNumber; // 控制流程開始的行號
     private int endLineNumber; // 控制流程結束的行號
+    private DiffStatus diffStatus; // 版本比較的差異狀態，null 代表沒有差異
 
     public ControlFlowFragment() {
         this.conditionInteractions = new ArrayList<>();
@@ -96,6 +97,39 @@ public class ControlFlowFragment implements DiagramNode {
         return desc.toString();
     }
 
+    /**
+     * 複製控制流程片段供追蹤使用
+     * 片段內的互動與 alternatives 皆遞迴複製，避免修改 AST 快取中共用的物件。
+     */
+    public ControlFlowFragment copyForTrace() {
+        ControlFlowFragment copy = new ControlFlowFragment();
+        copy.sequenceId = this.sequenceId;
+        copy.type = this.type;
+        copy.condition = this.condition;
+        copy.callerClass = this.callerClass;
+        copy.callerMethod = this.callerMethod;
+        copy.contextPath = this.contextPath;
+        copy.startLineNumber = this.startLineNumber;
+        copy.endLineNumber = this.endLineNumber;
+        copy.diffStatus = this.diffStatus;
+        if (this.conditionInteractions != null) {
+            for (InteractionModel interaction : this.conditionInteractions) {
+                copy.conditionInteractions.add(interaction.copyForTrace());
+            }
+        }
+        if (this.contentInteractions != null) {
+            for (InteractionModel interaction : this.contentInteractions) {
+                copy.contentInteractions.add(interaction.copyForTrace());
+            }
+        }
+        if (this.alternatives != null) {
+            for (ControlFlowFragment alternative : this.alternatives) {
+                copy.alternatives.add(alternative.copyForTrace());
+            }
+        }
+        return copy;
+    }
+
     @Override
     public int getStartLineNumber() {
         return this.startLineNumber;
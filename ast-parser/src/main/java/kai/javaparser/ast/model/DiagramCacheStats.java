@@ -0,0 +1,16 @@
+package kai.javaparser.ast.model;
+
+import lombok.Data;
+
+/**
+ * 序列圖渲染結果快取與註解查詢表的統計資訊
+ */
+@Data
+public class DiagramCacheStats {
+    private boolean enabled; // 渲染結果快取是否啟用
+    private long hits; // 命中次數
+    private long misses; // 未命中次數
+    private double hitRate; // 命中率，0 ~ 1
+    private long annotationClasses; // 註解查詢表已整理的類別數（自 AST 上次重新載入起）
+    private long annotationFailures; // 整理註解時讀取 AST 失敗的次數（累計），失敗的類別不顯示註解
+}
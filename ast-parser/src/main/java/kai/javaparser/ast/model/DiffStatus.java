@@ -0,0 +1,20 @@
+package kai.javaparser.ast.model;
+
+/**
+ * 比較兩個版本的呼叫樹時，節點的差異狀態
+ */
+public enum DiffStatus {
+    ADDED("added"), // 只出現在新版本
+    REMOVED("removed"), // 只出現在舊版本
+    CHANGED("changed"); // 兩邊都有，但參數、回傳值或條件不同
+
+    private final String label;
+
+    DiffStatus(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,20 @@
+package kai.javaparser.ast.model;
+
+import lombok.Data;
+
+/**
+ * 代碼提取結果快取的統計資訊
+ */
+@Data
+public class ExtractionCacheStats {
+    private boolean enabled; // 是否啟用
+    private long hits; // 命中次數（含從磁碟讀回）
+    private long misses; // 未命中次數
+    private double hitRate; // 命中率，0 ~ 1
+    private long spillHits; // 從磁碟讀回的命中次數
+    private long invalidations; // 因類別重新解析或原始碼變動而失效的次數
+    private long evictions; // 因記憶體上限被淘汰的次數
+    private int memoryEntries; // 記憶體中的記錄數
+    private long memoryBytes; // 記憶體中記錄的估算大小
+    private int spilledEntries; // 寫到磁碟的記錄數
+}
@@ -8,7 +8,7 @@ import java.util.Optional;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
-import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.MethodRef;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -30,6 +30,8 @@ public class FileAstData implements Serializable {
     private String absolutePath;
     private String packageName;
     private List<String> imports;
+    private long sourceLastModified; // 解析時原始檔的修改時間（毫秒）
+    private long sourceSize; // 解析時原始檔的大小（位元組）
     private SequenceDiagramData sequenceDiagramData; // 檔案 AST 的根節點
 
     public FileAstData() {
@@ -61,9 +63,16 @@ public class FileAstData implements Serializable {
      * @return 包含方法 AST 節點的 Optional，如果找不到則為空。
      */
     public Optional<SequenceDiagramData> findMethodNode(String methodFqn) {
-        String methodSignature = AstClassUtil.getMethodSignature(methodFqn);
-        String simpleMethodName = methodSignature.split("\\(")[0];
+        return findMethodNodeByName(MethodRef.of(methodFqn).getMethodName());
+    }
 
+    /**
+     * 根據不含參數的方法名稱尋找對應的方法宣告節點。
+     *
+     * @param simpleMethodName 方法名稱，例如 "myMethod"
+     * @return 包含方法 AST 節點的 Optional，如果找不到則為空。
+     */
+    public Optional<SequenceDiagramData> findMethodNodeByName(String simpleMethodName) {
         if (sequenceDiagramData != null && sequenceDiagramData.getMethodGroups() != null) {
             for (MethodGroup group : sequenceDiagramData.getMethodGroups()) {
                 if (simpleMethodName.equals(group.getMethodName())) {
@@ -31,6 +31,10 @@ public class InteractionModel implements DiagramNode {
     private String returnValue; // 回傳值類型
     private int lineNumber; // 行號
     private String assignedToVariable; // 被賦值的變數名稱
+    private Integer repeatCount; // 折疊後連續重複的次數，null 代表沒有折疊
+    private DiffStatus diffStatus; // 版本比較的差異狀態，null 代表沒有差異
+    private Integer expandHandle; // 分頁瀏覽時收合的子樹代號，null 代表已展開或沒有子樹
+    private Boolean dispatchTarget; // 多型分派展開的實作呼叫（宣告型別 -> 實作類別），不佔追蹤深度；null 代表一般呼叫
 
     // 重新設計的欄位，語義明確
     private InteractionModel nextChainedCall; // 鏈式呼叫的下一個環節
@@ -91,6 +95,35 @@ public class InteractionModel implements DiagramNode {
         return callee;
     }
 
+    /**
+     * 複製互動節點供追蹤使用
+     * 不複製 internalCalls，鏈式呼叫的後續環節會一併複製；
+     * 追蹤結果掛在副本上，避免修改 AST 快取中共用的物件。
+     */
+    public InteractionModel copyForTrace() {
+        InteractionModel copy = new InteractionModel();
+        copy.sequenceId = this.sequenceId;
+        copy.caller = this.caller;
+        copy.callee = this.callee;
+        copy.callerVariable = this.callerVariable;
+        copy.calleeVariable = this.calleeVariable;
+        copy.callerInstanceId = this.callerInstanceId;
+        copy.calleeInstanceId = this.calleeInstanceId;
+        copy.methodName = this.methodName;
+        copy.arguments = this.arguments;
+        copy.returnValue = this.returnValue;
+        copy.lineNumber = this.lineNumber;
+        copy.assignedToVariable = this.assignedToVariable;
+        copy.repeatCount = this.repeatCount;
+        copy.diffStatus = this.diffStatus;
+        copy.expandHandle = this.expandHandle;
+        copy.dispatchTarget = this.dispatchTarget;
+        if (this.nextChainedCall != null) {
+            copy.nextChainedCall = this.nextChainedCall.copyForTrace();
+        }
+        return copy;
+    }
+
     @Override
     public int getStartLineNumber() {
         return this.lineNumber;
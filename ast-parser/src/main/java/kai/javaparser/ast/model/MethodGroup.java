@@ -20,10 +20,14 @@ public class MethodGroup {
     private String fullMethodName; // 完整方法名（類名.方法名）
     private int startLineNumber; // 方法開始行號
     private int endLineNumber; // 方法結束行號
+    private int startPosition; // 方法宣告開始的字元位置（含 Javadoc 與註解）
+    private int length; // 方法宣告的字元長度，0 代表沒有記錄
+    private String compressedSource; // 解析時保存的方法原始碼（從所在行開頭起算），見 TextCompressor；未保存時為 null
     private List<InteractionModel> interactions; // 該方法內的互動
     private List<ControlFlowFragment> controlFlowFragments; // 該方法內的控制流程片段
     private List<String> thrownExceptions; // 該方法內的拋出異常
     private List<AnnotationInfo> annotations; // 方法上的註解
+    private boolean privateMethod; // 是否為 private 方法，舊版 AST 沒有記錄時為 false
 
     public MethodGroup() {
         this.annotations = new ArrayList<>();
@@ -0,0 +1,21 @@
+package kai.javaparser.ast.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+/**
+ * 附在呼叫者上的說明節點，只由 DiagramFolder 產生，
+ * 例如折疊後的 private 輔助方法鏈，或超過分支上限而省略的呼叫
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class NoteNode implements DiagramNode {
+    private final String text;
+    private final int lineNumber;
+
+    @Override
+    public int getStartLineNumber() {
+        return lineNumber;
+    }
+}
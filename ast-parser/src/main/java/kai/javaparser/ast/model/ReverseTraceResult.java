@@ -0,0 +1,47 @@
+package kai.javaparser.ast.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+/**
+ * 反向追蹤（誰呼叫了這個方法）的結果
+ * 
+ * 呼叫者以去重後的 DAG 表示：每個方法只出現一次，記錄它與目標方法的最短距離、
+ * 經由下一層到達目標方法的最短路徑數，以及它呼叫的下一層方法。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class ReverseTraceResult {
+    private String targetMethod; // 目標方法鍵 (classFqn.methodName)
+    private int maxDepth; // 最大追蹤層數
+    private List<CallerNode> callers; // 所有呼叫者節點，依層級排序
+    private List<String> entryPoints; // 沒有任何呼叫者的方法（入口點）
+    private long totalPaths; // 所有入口點到目標方法的最短路徑總數
+
+    public ReverseTraceResult() {
+        this.callers = new ArrayList<>();
+        this.entryPoints = new ArrayList<>();
+    }
+
+    /**
+     * 代表一個呼叫者方法
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Data
+    public static class CallerNode {
+        private String methodKey; // 方法鍵 (classFqn.methodName)
+        private int level; // 與目標方法的最短距離，直接呼叫者為 1
+        private long pathCount; // 由此方法到目標方法的最短路徑數
+        private List<String> callees; // 下一層（level - 1）被此方法呼叫的方法
+        private boolean entryPoint; // 是否沒有任何呼叫者
+        private boolean truncated; // 是否因達到最大層數而未繼續往上追蹤
+
+        public CallerNode() {
+            this.callees = new ArrayList<>();
+        }
+    }
+}
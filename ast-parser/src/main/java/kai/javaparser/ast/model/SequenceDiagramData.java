@@ -21,11 +21,27 @@ public class SequenceDiagramData {
     private List<String> implementsInterfaceFqns; // 實現的介面 FQN 列表 (例如: ["java.io.Serializable"])
     private List<MethodGroup> methodGroups; // 按方法分組的互動列表
     private List<AnnotationInfo> classAnnotations; // 類別上的註解
+    private List<String> referencedTypeFqns; // 欄位、方法參數與回傳值引用的型別 FQN（不含泛型、陣列與基本型別）
+
+    // 原始碼字元範圍，供編織器直接複製區段；length 為 0 代表沒有記錄（舊版 AST）
+    private int headerStartPosition; // package 與 import 宣告的開始位置
+    private int headerLength; // package 與 import 宣告的長度
+    private int typeStartPosition; // 主要型別宣告的開始位置（含 Javadoc 與註解）
+    private int typeLength; // 主要型別宣告的長度
+    private int typeBodyStartPosition; // 型別本體左大括號的位置
+    private List<SourceRange> fieldRanges; // 欄位宣告、列舉常數與巢狀型別的範圍，依位置排序
+    private List<SourceRange> commentRanges; // 所有註解（含 Javadoc）的範圍，依位置排序；null 代表沒有記錄（舊版 AST）
+
+    // 解析時保存的壓縮原始碼，只提取使用的方法時不必讀取整個檔案；未保存時為 null
+    private String compressedHeaderSource; // package 與 import 宣告
+    private String compressedTypeHeadSource; // 型別宣告從所在行開頭到本體左大括號
 
     public SequenceDiagramData() {
         this.methodGroups = new ArrayList<>();
         this.classAnnotations = new ArrayList<>();
         this.implementsInterfaceFqns = new ArrayList<>();
+        this.fieldRanges = new ArrayList<>();
+        this.referencedTypeFqns = new ArrayList<>();
     }
 
     public void addMethodGroup(MethodGroup methodGroup) {
@@ -35,6 +51,43 @@ public class SequenceDiagramData {
         this.methodGroups.add(methodGroup);
     }
 
+    public void addFieldRange(SourceRange range) {
+        if (this.fieldRanges == null) {
+            this.fieldRanges = new ArrayList<>();
+        }
+        this.fieldRanges.add(range);
+    }
+
+    public void addReferencedTypeFqn(String typeFqn) {
+        if (this.referencedTypeFqns == null) {
+            this.referencedTypeFqns = new ArrayList<>();
+        }
+        if (!this.referencedTypeFqns.contains(typeFqn)) {
+            this.referencedTypeFqns.add(typeFqn);
+        }
+    }
+
+    /**
+     * 是否有記錄型別的原始碼字元範圍
+     */
+    public boolean hasSourceRanges() {
+        return typeLength > 0;
+    }
+
+    /**
+     * 是否有記錄註解的字元範圍
+     */
+    public boolean hasCommentRanges() {
+        return commentRanges != null;
+    }
+
+    /**
+     * 是否在解析時保存了各成員的壓縮原始碼
+     */
+    public boolean hasCompressedSource() {
+        return hasSourceRanges() && compressedTypeHeadSource != null;
+    }
+
     public void addClassAnnotation(AnnotationInfo annotation) {
         if (this.classAnnotations == null) {
             this.classAnnotations = new ArrayList<>();
@@ -56,6 +109,21 @@ public class SequenceDiagramData {
         return null;
     }
 
+    /**
+     * 根據方法名查找所有多載的方法分組
+     */
+    public List<MethodGroup> findMethodGroups(String methodName) {
+        List<MethodGroup> groups = new ArrayList<>();
+        if (methodGroups != null) {
+            for (MethodGroup group : methodGroups) {
+                if (methodName.equals(group.getMethodName())) {
+                    groups.add(group);
+                }
+            }
+        }
+        return groups;
+    }
+
     /**
      * 根據行號查找所在的方法分組
      */
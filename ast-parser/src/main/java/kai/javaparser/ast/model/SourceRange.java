@@ -0,0 +1,26 @@
+package kai.javaparser.ast.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 原始碼中的字元範圍（與 JDT ASTNode 的 startPosition / length 相同定義）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceRange {
+    private int startPosition; // 開始的字元位置
+    private int length; // 字元長度
+    private String compressedSource; // 解析時保存的區段原始碼（從所在行開頭起算），見 TextCompressor；未保存時為 null
+
+    public SourceRange(int startPosition, int length) {
+        this.startPosition = startPosition;
+        this.length = length;
+    }
+
+    public int getEndPosition() {
+        return startPosition + length;
+    }
+}
@@ -0,0 +1,73 @@
+package kai.javaparser.ast.model;
+
+import lombok.Getter;
+
+/**
+ * 串流追蹤事件
+ *
+ * 串流模式下 SequenceTraceService 以深度優先、依渲染順序發出事件，不建立完整的呼叫樹：
+ * ENTER / EXIT 包住整個進入點；每個 CALL 都有對應的 RETURN，
+ * 兩者之間依序是被呼叫方法內部的事件，以及鏈式呼叫的下一個環節（chained 為 true 的 CALL）；
+ * FRAGMENT_START / FRAGMENT_END 包住控制流程片段，內部依序為條件互動、內容互動與 alternatives。
+ *
+ * 事件中的 InteractionModel 不會掛載 internalCalls，nextChainedCall 只用來判斷是否有下一個環節。
+ */
+@Getter
+public class TraceEvent {
+
+    public enum Type {
+        ENTER, // 進入點方法開始
+        CALL, // 方法呼叫
+        RETURN, // 方法呼叫結束
+        FRAGMENT_START, // 控制流程片段開始
+        FRAGMENT_END, // 控制流程片段結束
+        EXIT // 進入點方法結束
+    }
+
+    private final Type type;
+    private final String methodFqn; // ENTER / EXIT 的進入點方法
+    private final InteractionModel interaction; // CALL / RETURN 的互動
+    private final ControlFlowFragment fragment; // FRAGMENT_START / FRAGMENT_END 的片段
+    private final boolean conditionEvaluation; // CALL 是否為條件評估
+    private final boolean chained; // CALL 是否為鏈式呼叫的後續環節
+    private final boolean hasInternalCalls; // CALL 的被呼叫方法內部是否有事件
+    private final boolean firstAlternative; // FRAGMENT_START 是否為區塊中的第一個分支
+
+    private TraceEvent(Type type, String methodFqn, InteractionModel interaction, ControlFlowFragment fragment,
+            boolean conditionEvaluation, boolean chained, boolean hasInternalCalls, boolean firstAlternative) {
+        this.type = type;
+        this.methodFqn = methodFqn;
+        this.interaction = interaction;
+        this.fragment = fragment;
+        this.conditionEvaluation = conditionEvaluation;
+        this.chained = chained;
+        this.hasInternalCalls = hasInternalCalls;
+        this.firstAlternative = firstAlternative;
+    }
+
+    public static TraceEvent enter(String entryPointMethodFqn) {
+        return new TraceEvent(Type.ENTER, entryPointMethodFqn, null, null, false, false, false, false);
+    }
+
+    public static TraceEvent exit(String entryPointMethodFqn) {
+        return new TraceEvent(Type.EXIT, entryPointMethodFqn, null, null, false, false, false, false);
+    }
+
+    public static TraceEvent call(InteractionModel interaction, boolean conditionEvaluation, boolean chained,
+            boolean hasInternalCalls) {
+        return new TraceEvent(Type.CALL, null, interaction, null, conditionEvaluation, chained, hasInternalCalls,
+                false);
+    }
+
+    public static TraceEvent returnFrom(InteractionModel interaction) {
+        return new TraceEvent(Type.RETURN, null, interaction, null, false, false, false, false);
+    }
+
+    public static TraceEvent fragmentStart(ControlFlowFragment fragment, boolean firstAlternative) {
+        return new TraceEvent(Type.FRAGMENT_START, null, null, fragment, false, false, false, firstAlternative);
+    }
+
+    public static TraceEvent fragmentEnd(ControlFlowFragment fragment) {
+        return new TraceEvent(Type.FRAGMENT_END, null, null, fragment, false, false, false, false);
+    }
+}
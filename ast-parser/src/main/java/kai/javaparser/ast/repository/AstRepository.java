@@ -54,4 +54,36 @@ public interface AstRepository {
      * @return 如果存在則返回 true，否則返回 false
      */
     boolean exists(String classFqn);
+
+    /**
+     * 獲取儲存內容的版本號
+     * 
+     * 每次初始化、儲存或重建索引時遞增，供衍生索引判斷是否需要重建。
+     * 
+     * @return 目前的版本號
+     */
+    long getVersion();
+
+    /**
+     * 獲取單一類別 AST 的版本號
+     * 
+     * 類別重新解析（重新儲存）時改變，其他類別的變動不影響。預設以整體版本號代替。
+     * 
+     * @param classFqn 類別的完整限定名
+     * @return 類別的版本號，類別不存在時返回 -1
+     */
+    default long getClassVersion(String classFqn) {
+        return exists(classFqn) ? getVersion() : -1;
+    }
+
+    /**
+     * 獲取索引成員的版本號
+     * 
+     * 類別加入索引或重新初始化時遞增，既有類別重新解析時不變。預設以整體版本號代替。
+     * 
+     * @return 索引成員的版本號
+     */
+    default long getIndexVersion() {
+        return getVersion();
+    }
 }
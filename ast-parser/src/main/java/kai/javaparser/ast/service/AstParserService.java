@@ -21,6 +21,7 @@ import org.springframework.stereotype.Service;
 
 import kai.javaparser.ast.java2ast.JavaToAstFile;
 import kai.javaparser.ast.repository.AstRepository;
+import kai.javaparser.configuration.AppConfig;
 import kai.javaparser.repository.FileSystemAstRepository;
 
 /**
@@ -33,10 +34,17 @@ public class AstParserService {
     private static final Logger logger = LoggerFactory.getLogger(AstParserService.class);
 
     private final AstRepository astRepository;
+    private final boolean storeCompressedSource;
 
-    @Autowired
     public AstParserService(AstRepository astRepository) {
         this.astRepository = astRepository;
+        this.storeCompressedSource = true;
+    }
+
+    @Autowired
+    public AstParserService(AstRepository astRepository, AppConfig appConfig) {
+        this.astRepository = astRepository;
+        this.storeCompressedSource = appConfig.isStoreCompressedSource();
     }
 
     /**
@@ -84,7 +92,7 @@ public class AstParserService {
         logger.info("Java compliance level: {}", javaComplianceLevel);
         logger.info("Output directory: {}", outputBaseDir0.toAbsolutePath());
 
-        JavaToAstFile astExtractor = new JavaToAstFile();
+        JavaToAstFile astExtractor = new JavaToAstFile(storeCompressedSource);
 
         try {
             Files.createDirectories(outputBaseDir0);
@@ -0,0 +1,255 @@
+package kai.javaparser.ast.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import kai.javaparser.ast.model.AnnotationInfo;
+import kai.javaparser.ast.model.BatchTraceItem;
+import kai.javaparser.ast.model.BatchTraceRequest;
+import kai.javaparser.ast.model.BatchTraceSummary;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.OutputType;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionRequest;
+import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionResult;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.DiagramService;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 批次追蹤服務：
+ * 一次處理大量進入點（例如所有 Controller 端點），產生圖表或提取代碼。
+ *
+ * 1. 索引只在批次開始時載入一次
+ * 2. 所有進入點共用同一個 TraceMemo，共用的下層方法只展開一次
+ * 3. 以固定大小的執行緒池處理，結果依完成順序交給呼叫端，可直接串流輸出
+ */
+@Service
+public class BatchTraceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchTraceService.class);
+
+    private final SequenceTraceService sequenceTraceService;
+    private final DiagramService diagramService;
+    private final CodeExtractorService codeExtractorService;
+    private final AstIndex astIndex;
+    private final AppConfig appConfig;
+
+    @Autowired
+    public BatchTraceService(SequenceTraceService sequenceTraceService, DiagramService diagramService,
+            CodeExtractorService codeExtractorService, AstIndex astIndex, AppConfig appConfig) {
+        this.sequenceTraceService = sequenceTraceService;
+        this.diagramService = diagramService;
+        this.codeExtractorService = codeExtractorService;
+        this.astIndex = astIndex;
+        this.appConfig = appConfig;
+    }
+
+    /**
+     * 執行批次追蹤
+     *
+     * @param request  批次請求
+     * @param consumer 接收每個進入點的結果，依完成順序在呼叫執行緒上逐一呼叫
+     * @return 批次統計
+     */
+    public BatchTraceSummary traceAll(BatchTraceRequest request, Consumer<BatchTraceItem> consumer) {
+        long start = System.currentTimeMillis();
+        List<String> entryPoints = resolveEntryPoints(request);
+        int parallelism = Math.max(1, Math.min(request.getParallelism(), appConfig.getMaxConcurrentTasks()));
+        logger.info("開始批次追蹤，進入點數量: {}, 輸出類型: {}, 執行緒數: {}",
+                entryPoints.size(), request.getOutputType(), parallelism);
+
+        SequenceOutputConfig config = createTraceConfig(request);
+        sequenceTraceService.prepare(config);
+        TraceMemo memo = new TraceMemo();
+
+        BatchTraceSummary summary = new BatchTraceSummary();
+        summary.setTotalEntryPoints(entryPoints.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            CompletionService<BatchTraceItem> completionService = new ExecutorCompletionService<>(executor);
+            for (String entryPoint : entryPoints) {
+                completionService.submit(() -> traceOne(entryPoint, request, config, memo));
+            }
+
+            for (int i = 0; i < entryPoints.size(); i++) {
+                BatchTraceItem item = completionService.take().get();
+                if (item.isSuccess()) {
+                    summary.setSucceeded(summary.getSucceeded() + 1);
+                } else {
+                    summary.setFailed(summary.getFailed() + 1);
+                }
+                consumer.accept(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批次追蹤被中斷", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("批次追蹤失敗: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        summary.setMemoHits(memo.getHitCount());
+        summary.setMemoMisses(memo.getMissCount());
+        summary.setMemoEntries(memo.size());
+        summary.setElapsedMillis(System.currentTimeMillis() - start);
+        logger.info("批次追蹤完成，成功: {}, 失敗: {}, 記憶命中: {}, 耗時: {} ms",
+                summary.getSucceeded(), summary.getFailed(), summary.getMemoHits(), summary.getElapsedMillis());
+        return summary;
+    }
+
+    /**
+     * 解析批次請求的進入點：直接指定的進入點在前，選擇器挑出的依類別名稱排序在後，重複的只保留一次
+     *
+     * @param request 批次請求
+     * @return 進入點方法 FQN 列表
+     */
+    public List<String> resolveEntryPoints(BatchTraceRequest request) {
+        Set<String> entryPoints = new LinkedHashSet<>();
+        if (request.getEntryPointMethodFqns() != null) {
+            entryPoints.addAll(request.getEntryPointMethodFqns());
+        }
+        if (!request.hasSelector()) {
+            return new ArrayList<>(entryPoints);
+        }
+
+        try {
+            astIndex.loadOrBuild();
+        } catch (Exception e) {
+            logger.error("載入 AST 索引失敗", e);
+            throw new RuntimeException("載入 AST 索引失敗: " + e.getMessage(), e);
+        }
+
+        List<String> classFqns = new ArrayList<>(astIndex.getAllClassFqns());
+        classFqns.sort(null);
+        for (String classFqn : classFqns) {
+            if (!matchesPackages(classFqn, request.getSelectorPackages())) {
+                continue;
+            }
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData == null || astData.getSequenceDiagramData() == null) {
+                continue;
+            }
+            SequenceDiagramData data = astData.getSequenceDiagramData();
+            if (request.getSelectorClassAnnotation() != null
+                    && !hasAnnotation(data.getClassAnnotations(), request.getSelectorClassAnnotation())) {
+                continue;
+            }
+            if (data.getMethodGroups() == null) {
+                continue;
+            }
+
+            String simpleClassName = AstClassUtil.getSimpleClassName(classFqn);
+            for (MethodGroup group : data.getMethodGroups()) {
+                if (simpleClassName.equals(group.getMethodName())) {
+                    continue; // 構造函數不作為進入點
+                }
+                if (request.getSelectorMethodAnnotation() != null
+                        && !hasAnnotation(group.getAnnotations(), request.getSelectorMethodAnnotation())) {
+                    continue;
+                }
+                String signature = group.getMethodSignature() != null ? group.getMethodSignature() : "";
+                entryPoints.add(classFqn + "." + group.getMethodName() + "(" + signature + ")");
+            }
+        }
+
+        return new ArrayList<>(entryPoints);
+    }
+
+    private BatchTraceItem traceOne(String entryPoint, BatchTraceRequest request, SequenceOutputConfig config,
+            TraceMemo memo) {
+        long start = System.currentTimeMillis();
+        BatchTraceItem item = new BatchTraceItem();
+        item.setEntryPointMethodFqn(entryPoint);
+
+        try {
+            if (request.getOutputType() == OutputType.EXTRACTED_CODE) {
+                CodeExtractionResult result = codeExtractorService.extractCode(
+                        createExtractionRequest(entryPoint, request), memo);
+                item.setSuccess(result.getErrorMessage() == null);
+                item.setOutput(result.getMergedSourceCode());
+                item.setTotalClasses(result.getTotalClasses());
+                item.setErrorMessage(result.getErrorMessage());
+            } else {
+                item.setOutput(diagramService.generateDiagram(entryPoint, config, memo));
+                item.setSuccess(true);
+            }
+        } catch (Exception e) {
+            logger.error("批次追蹤中的進入點處理失敗: {}", entryPoint, e);
+            item.setSuccess(false);
+            item.setErrorMessage(e.getMessage());
+        }
+
+        item.setDurationMillis(System.currentTimeMillis() - start);
+        return item;
+    }
+
+    /**
+     * 建立整個批次共用的追蹤配置；提取代碼時與 CodeExtractorService 使用的配置一致，
+     * 讓同一個 TraceMemo 的記錄可以重用
+     */
+    private SequenceOutputConfig createTraceConfig(BatchTraceRequest request) {
+        if (request.getOutputType() == OutputType.EXTRACTED_CODE) {
+            return codeExtractorService.createTraceConfig(createExtractionRequest(null, request));
+        }
+        return SequenceOutputConfig.builder()
+                .basePackages(request.getBasePackages())
+                .depth(request.getDepth())
+                .dispatchStrategy(new DefaultDispatchStrategy(request.getDispatchMode()))
+                .build();
+    }
+
+    private CodeExtractionRequest createExtractionRequest(String entryPoint, BatchTraceRequest request) {
+        return CodeExtractionRequest.builder()
+                .entryPointMethodFqn(entryPoint)
+                .basePackages(request.getBasePackages())
+                .maxDepth(request.getDepth())
+                .includeImports(request.isIncludeImports())
+                .includeComments(request.isIncludeComments())
+                .extractOnlyUsedMethods(request.isExtractOnlyUsedMethods())
+                .includeConstructors(request.isIncludeConstructors())
+                .build();
+    }
+
+    private boolean matchesPackages(String classFqn, Set<String> packages) {
+        if (packages == null || packages.isEmpty()) {
+            return true;
+        }
+        return packages.stream().anyMatch(classFqn::startsWith);
+    }
+
+    /**
+     * 註解可用簡單名稱或完整限定名比對
+     */
+    private boolean hasAnnotation(List<AnnotationInfo> annotations, String annotation) {
+        if (annotations == null) {
+            return false;
+        }
+        String name = annotation.startsWith("@") ? annotation.substring(1) : annotation;
+        for (AnnotationInfo info : annotations) {
+            if (name.equals(info.getSimpleName()) || name.equals(info.getAnnotationName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
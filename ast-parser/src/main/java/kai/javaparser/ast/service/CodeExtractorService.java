@@ -1,26 +1,45 @@
 package kai.javaparser.ast.service;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
+import kai.javaparser.ast.model.ExtractionCacheStats;
 import kai.javaparser.ast.model.FileAstData;
 import kai.javaparser.ast.model.InteractionModel;
 import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.TraceEvent;
 import kai.javaparser.ast.model.TraceResult;
 import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.MethodRef;
 import kai.javaparser.diagram.SequenceOutputConfig;
 import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.idx.TypeReferenceIndex;
 import kai.javaparser.service.SourceCodeWeaver;
 import kai.javaparser.service.SourceProvider;
+import kai.javaparser.util.TokenEstimator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -43,18 +62,33 @@ public class CodeExtractorService {
 
     private static final Logger logger = LoggerFactory.getLogger(CodeExtractorService.class);
 
+    // 依型別引用補充的類別數上限預設值
+    public static final int DEFAULT_MAX_CLOSURE_CLASSES = 20;
+
+    // 預算模式輸出超出預算時，縮小預算重新規劃的次數上限，最後一次以 0 規劃（只剩標題）
+    private static final int MAX_BUDGET_REPLANS = 8;
+
     private final SequenceTraceService sequenceTraceService;
     private final AstIndex astIndex;
     private final SourceProvider sourceProvider;
     private final SourceCodeWeaver sourceCodeWeaver;
+    private final ExtractionResultCache extractionResultCache;
+    private final TypeReferenceIndex typeReferenceIndex;
+
+    // 各類別平行編織使用的執行緒池
+    private final ExecutorService weavingExecutor = Executors
+            .newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
 
     @Autowired
     public CodeExtractorService(SequenceTraceService sequenceTraceService, AstIndex astIndex,
-            SourceProvider sourceProvider, SourceCodeWeaver sourceCodeWeaver) {
+            SourceProvider sourceProvider, SourceCodeWeaver sourceCodeWeaver,
+            ExtractionResultCache extractionResultCache, TypeReferenceIndex typeReferenceIndex) {
         this.sequenceTraceService = sequenceTraceService;
         this.astIndex = astIndex;
         this.sourceProvider = sourceProvider;
         this.sourceCodeWeaver = sourceCodeWeaver;
+        this.extractionResultCache = extractionResultCache;
+        this.typeReferenceIndex = typeReferenceIndex;
     }
 
     /**
@@ -80,12 +114,27 @@ public class CodeExtractorService {
         private boolean extractOnlyUsedMethods; // 是否只提取實際使用的方法（但包含所有屬性）
 
         private boolean includeConstructors; // 是否包含構造函數
+
+        private int maxTokens; // token 預算上限（本地估算），0 代表不限制
+
+        private int maxChars; // 字元預算上限，maxTokens 為 0 時使用，0 代表不限制
+
+        private int typeClosureDepth; // 沿型別引用補充上下文類別的展開層數，0 代表不補充
+
+        private int maxClosureClasses; // 沿型別引用補充的類別數上限，0 時使用預設值
+
+        /**
+         * 是否啟用預算模式
+         */
+        public boolean hasBudget() {
+            return maxTokens > 0 || maxChars > 0;
+        }
     }
 
     /**
      * 代碼提取結果
      */
-    @Builder
+    @Builder(toBuilder = true)
     @Getter
     @NoArgsConstructor
     @AllArgsConstructor
@@ -100,6 +149,14 @@ public class CodeExtractorService {
 
         private int totalLines; // 總行數
 
+        private int estimatedTokens; // 合併後原始碼的估算 token 數
+
+        private List<String> stubbedMembers; // 預算模式下只輸出簽名的方法（類別FQN.方法名稱）
+
+        // 預算模式下省略的方法（類別FQN.方法名稱）；無法逐一切割方法的類別與沒有方法的補充類別
+        // 以整個類別為單位，省略時為類別FQN。所有方法都被省略的類別不另外記錄類別FQN
+        private List<String> elidedMembers;
+
         private String errorMessage; // 錯誤訊息（如果有）
     }
 
@@ -110,21 +167,67 @@ public class CodeExtractorService {
      * @return 提取結果
      */
     public CodeExtractionResult extractCode(CodeExtractionRequest request) {
+        if (!extractionResultCache.isEnabled()) {
+            return extractCode(request, null);
+        }
+
+        // 相同請求且涉及的類別都沒有重新解析、原始碼也沒有變動時，直接返回快取的結果
+        String cacheKey = ExtractionResultCache.keyOf(request);
+        CodeExtractionResult cached = extractionResultCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("代碼提取快取命中，進入點: {}", request.getEntryPointMethodFqn());
+            return cached;
+        }
+
+        long versionBefore = astIndex.getVersion();
+        Set<String> tracedClasses = new HashSet<>();
+        CodeExtractionResult result = extractCode(request, null, tracedClasses);
+
+        // 提取期間 AST 有變動時無法確定結果對應的版本，不放入快取
+        if (result.getErrorMessage() == null && astIndex.getVersion() == versionBefore) {
+            extractionResultCache.put(cacheKey, result, extractionResultCache.snapshot(tracedClasses));
+        }
+        return result;
+    }
+
+    /**
+     * 取得代碼提取結果快取的統計資訊
+     */
+    public ExtractionCacheStats getCacheStats() {
+        return extractionResultCache.getStats();
+    }
+
+    /**
+     * 提取代碼，與使用同一個 TraceMemo 的其他進入點共用已展開的子樹。
+     * memo 不為 null 時不會重新載入索引，呼叫前需先以 SequenceTraceService.prepare 載入。
+     * 
+     * @param request 提取請求
+     * @param memo    子樹記憶，為 null 時不記憶
+     * @return 提取結果
+     */
+    public CodeExtractionResult extractCode(CodeExtractionRequest request, TraceMemo memo) {
+        return extractCode(request, memo, new HashSet<>());
+    }
+
+    /**
+     * 提取代碼，並將追蹤過程中涉及的類別加入 tracedClasses，供結果快取判斷何時失效
+     */
+    private CodeExtractionResult extractCode(CodeExtractionRequest request, TraceMemo memo,
+            Set<String> tracedClasses) {
         logger.info("開始代碼提取，進入點: {}", request.getEntryPointMethodFqn());
 
         try {
-            // 1. 追蹤依賴關係，識別所有涉及的類別
-            Set<String> involvedMethodFqns = traceDependencies(request);
-            logger.info("識別到 {} 個相關方法: {}", involvedMethodFqns.size(), involvedMethodFqns);
-
-            // 2. 使用新的抽象層提取原始碼
-            List<ClassSourceCode> classSources = extractClassSourcesWithNewAbstractions(involvedMethodFqns, request);
+            // 1-2. 追蹤依賴關係並編織每個類別
+            List<ClassSourceCode> classSources = new ArrayList<>();
+            ExtractionBudgetPlanner.Plan plan = weaveClassSources(request, memo, tracedClasses, classSources::add);
 
             // 3. 合併代碼
-            String mergedCode = mergeSourceCode(classSources, request);
+            StringBuilder mergedCodeBuilder = new StringBuilder();
+            MarkdownExtractionWriter writer = mergeSourceCode(classSources, request, mergedCodeBuilder);
+            String mergedCode = mergedCodeBuilder.toString();
 
-            // 4. 計算統計資訊
-            int totalLines = mergedCode.split("\n").length;
+            // 4. 計算統計資訊（行數在寫入時已累計）
+            int totalLines = writer.getLineCount();
 
             // 5. 提取涉及的類別FQN
             Set<String> involvedClasses = new HashSet<>();
@@ -138,6 +241,9 @@ public class CodeExtractorService {
                     .mergedSourceCode(mergedCode)
                     .totalClasses(involvedClasses.size())
                     .totalLines(totalLines)
+                    .estimatedTokens(TokenEstimator.estimate(mergedCode))
+                    .stubbedMembers(plan != null ? plan.stubbedMembers : null)
+                    .elidedMembers(plan != null ? plan.elidedMembers : null)
                     .build();
 
         } catch (Exception e) {
@@ -154,13 +260,157 @@ public class CodeExtractorService {
     }
 
     /**
-     * 追蹤依賴關係，識別所有涉及的類別
+     * 串流提取代碼：每個類別編織完成後立即以 Markdown 寫入 out，不在記憶體中組出整份文件。
+     * 類別數與行數在寫入時累計，總類別數改在文件結尾的統計段落輸出。
+     * 
+     * @param request 提取請求
+     * @param out     輸出目標
+     * @return 提取結果，不含合併後的原始碼
+     */
+    public CodeExtractionResult streamExtraction(CodeExtractionRequest request, Appendable out) {
+        logger.info("開始串流代碼提取，進入點: {}", request.getEntryPointMethodFqn());
+
+        MarkdownExtractionWriter writer = new MarkdownExtractionWriter(out);
+        writer.writeHeader(request.getEntryPointMethodFqn(), -1);
+        Set<String> involvedClasses = new HashSet<>();
+        try {
+            ExtractionBudgetPlanner.Plan plan = weaveClassSources(request, null, new HashSet<>(), classSource -> {
+                writer.writeClass(classSource.getClassFqn(), classSource.getRelativePath(),
+                        classSource.getSourceCode());
+                involvedClasses.add(classSource.getClassFqn());
+            });
+            int totalLines = writer.getLineCount();
+            writer.writeSummary(plan);
+
+            return CodeExtractionResult.builder()
+                    .entryPointMethodFqn(request.getEntryPointMethodFqn())
+                    .involvedClasses(involvedClasses)
+                    .totalClasses(writer.getClassCount())
+                    .totalLines(totalLines)
+                    .stubbedMembers(plan != null ? plan.stubbedMembers : null)
+                    .elidedMembers(plan != null ? plan.elidedMembers : null)
+                    .build();
+
+        } catch (UncheckedIOException e) {
+            // 輸出端已中斷，無法再寫入錯誤訊息
+            throw e;
+        } catch (Exception e) {
+            logger.error("串流代碼提取失敗", e);
+            writer.writeError("代碼提取失敗: " + e.getMessage());
+            return CodeExtractionResult.builder()
+                    .entryPointMethodFqn(request.getEntryPointMethodFqn())
+                    .involvedClasses(involvedClasses)
+                    .totalClasses(writer.getClassCount())
+                    .totalLines(writer.getLineCount())
+                    .errorMessage("代碼提取失敗: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * 追蹤依賴關係並編織每個涉及的類別，類別依 FQN 排序後逐一交給 sink
+     * 
+     * @return 預算模式的規劃結果，非預算模式為 null
+     */
+    private ExtractionBudgetPlanner.Plan weaveClassSources(CodeExtractionRequest request, TraceMemo memo,
+            Set<String> tracedClasses, Consumer<ClassSourceCode> sink) {
+        // 1. 追蹤依賴關係，識別所有涉及的方法與其呼叫距離
+        Map<String, Integer> methodDistances = traceDependencies(request, memo);
+        logger.info("識別到 {} 個相關方法: {}", methodDistances.size(), methodDistances.keySet());
+        for (String methodFqn : methodDistances.keySet()) {
+            tracedClasses.add(MethodRef.of(methodFqn).getErasedClassFqn());
+        }
+
+        // 2. 沿型別引用補充呼叫鏈以外的上下文類別（參數 DTO、欄位型別、父類別、常數類別等）
+        Map<String, Integer> closureClasses = collectTypeClosure(methodDistances.keySet(), request);
+        tracedClasses.addAll(closureClasses.keySet());
+
+        // 3. 使用新的抽象層提取原始碼；預算模式下依呼叫距離決定每個方法的輸出方式
+        if (request.hasBudget()) {
+            Map<String, Map<String, Integer>> classMethodDistances = groupDistancesByClass(methodDistances,
+                    request);
+            Set<String> classFqns = new HashSet<>(classMethodDistances.keySet());
+            classFqns.addAll(closureClasses.keySet());
+            Map<String, String> sourceCodes = sourceProvider.getSourceCodes(classFqns);
+            int budget = request.getMaxTokens() > 0 ? request.getMaxTokens() : request.getMaxChars();
+            ExtractionBudgetPlanner.Plan plan = planBudget(classMethodDistances, closureClasses, sourceCodes,
+                    request, budget);
+            List<ClassSourceCode> woven = new ArrayList<>();
+            extractClassSourcesWithinBudget(plan, sourceCodes, request, woven::add);
+
+            // 規劃以各區段的成本相加估算，與合併後整份文件的估算可能有差距；超出時縮小預算重新規劃，
+            // 每次縮小的幅度加倍，最後以 0 規劃，保證輸出不超過預算（標題本身超出時除外）
+            int overshoot = measureMerged(woven, request) - budget;
+            int plannedBudget = budget;
+            for (int attempt = 1; overshoot > 0 && plannedBudget > 0; attempt++) {
+                plannedBudget = attempt < MAX_BUDGET_REPLANS
+                        ? Math.max(0, plannedBudget - (overshoot << (attempt - 1)))
+                        : 0;
+                logger.info("預算模式輸出超出預算 {}，以預算 {} 重新規劃", overshoot, plannedBudget);
+                plan = planBudget(classMethodDistances, closureClasses, sourceCodes, request, plannedBudget);
+                woven.clear();
+                extractClassSourcesWithinBudget(plan, sourceCodes, request, woven::add);
+                overshoot = measureMerged(woven, request) - budget;
+            }
+            woven.forEach(sink);
+            return plan;
+        }
+        extractClassSourcesWithNewAbstractions(methodDistances.keySet(), closureClasses.keySet(), request, sink);
+        return null;
+    }
+
+    /**
+     * 從呼叫鏈涉及的類別出發，以預先建立的型別引用索引收集依賴閉包。
+     * 比加深追蹤便宜得多：只查詢索引，不展開任何方法呼叫
+     *
+     * @return 補充的類別 FQN -> 與呼叫鏈的型別引用距離，未啟用時為空
+     */
+    private Map<String, Integer> collectTypeClosure(Set<String> methodFqns, CodeExtractionRequest request) {
+        if (request.getTypeClosureDepth() <= 0) {
+            return Map.of();
+        }
+
+        Set<String> seedClasses = new HashSet<>();
+        for (String methodFqn : methodFqns) {
+            String classFqn = MethodRef.of(methodFqn).getErasedClassFqn();
+            if (!classFqn.isEmpty() && isClassInBasePackages(classFqn, request.getBasePackages())) {
+                seedClasses.add(classFqn);
+            }
+        }
+        int maxClasses = request.getMaxClosureClasses() > 0 ? request.getMaxClosureClasses()
+                : DEFAULT_MAX_CLOSURE_CLASSES;
+        Map<String, Integer> closure = typeReferenceIndex.collectClosure(seedClasses,
+                request.getTypeClosureDepth(), maxClasses,
+                classFqn -> isClassInBasePackages(classFqn, request.getBasePackages()));
+
+        logger.info("依型別引用補充 {} 個類別: {}", closure.size(), closure.keySet());
+        return closure;
+    }
+
+    /**
+     * 類別中所有方法（含構造函數）的名稱
      */
-    private Set<String> traceDependencies(CodeExtractionRequest request) {
-        Set<String> involvedMethodFqns = new HashSet<>();
+    private Set<String> getAllMethodNames(FileAstData astData) {
+        Set<String> methodNames = new HashSet<>();
+        if (astData != null && astData.getSequenceDiagramData() != null
+                && astData.getSequenceDiagramData().getMethodGroups() != null) {
+            for (MethodGroup methodGroup : astData.getSequenceDiagramData().getMethodGroups()) {
+                methodNames.add(methodGroup.getMethodName());
+            }
+        }
+        return methodNames;
+    }
+
+    /**
+     * 追蹤依賴關係，識別所有涉及的方法
+     *
+     * @return 方法 FQN -> 與進入點的最短呼叫距離（進入點為 0，鏈式呼叫與前一個環節相同）
+     */
+    private Map<String, Integer> traceDependencies(CodeExtractionRequest request, TraceMemo memo) {
+        Map<String, Integer> involvedMethodFqns = new HashMap<>();
 
         // 檢查進入點方法是否在 basePackages 範圍內
-        String entryPointClassFqn = AstClassUtil.getClassFqnFromMethodFqn(request.getEntryPointMethodFqn());
+        String entryPointClassFqn = MethodRef.of(request.getEntryPointMethodFqn()).getClassFqn();
         if (!isClassInBasePackages(entryPointClassFqn, request.getBasePackages())) {
             logger.warn("進入點方法 {} 的類別 {} 不在 basePackages 範圍內",
                     request.getEntryPointMethodFqn(), entryPointClassFqn);
@@ -168,86 +418,278 @@ public class CodeExtractorService {
         }
 
         // 使用 SequenceTraceService 來追蹤方法呼叫
-        SequenceOutputConfig config = SequenceOutputConfig.builder()
-                .basePackages(request.getBasePackages())
-                .depth(request.getMaxDepth())
-                .build();
-
-        // 執行追蹤
-        TraceResult traceResult = sequenceTraceService.trace(request.getEntryPointMethodFqn(), config);
+        SequenceOutputConfig config = createTraceConfig(request);
 
-        // 從追蹤結果中提取所有涉及的類別
-        extractClassesFromTraceResult(traceResult, involvedMethodFqns);
+        // 執行追蹤並提取所有涉及的類別；批次追蹤共用已展開的子樹，單次追蹤則以串流事件收集
+        if (memo != null) {
+            TraceResult traceResult = sequenceTraceService.trace(request.getEntryPointMethodFqn(), config, memo);
+            extractClassesFromTraceResult(traceResult, involvedMethodFqns);
+        } else {
+            sequenceTraceService.trace(request.getEntryPointMethodFqn(), config,
+                    new MethodFqnCollector(involvedMethodFqns));
+        }
 
         // 確保進入點方法的類別也被包含
-        involvedMethodFqns.add(request.getEntryPointMethodFqn());
+        involvedMethodFqns.put(request.getEntryPointMethodFqn(), 0);
 
         return involvedMethodFqns;
     }
 
+    /**
+     * 建立提取時使用的追蹤配置
+     */
+    public SequenceOutputConfig createTraceConfig(CodeExtractionRequest request) {
+        return SequenceOutputConfig.builder()
+                .basePackages(request.getBasePackages())
+                .depth(request.getMaxDepth())
+                .build();
+    }
+
     /**
      * 使用新的抽象層提取類別原始碼
      */
-    private List<ClassSourceCode> extractClassSourcesWithNewAbstractions(Set<String> methodFqns,
-            CodeExtractionRequest request) {
+    private void extractClassSourcesWithNewAbstractions(Set<String> methodFqns, Set<String> closureClassFqns,
+            CodeExtractionRequest request, Consumer<ClassSourceCode> sink) {
         logger.info("使用新的抽象層提取原始碼，提供者: {}, 編織器: {}",
                 sourceProvider.getProviderName(), sourceCodeWeaver.getWeaverName());
 
-        List<ClassSourceCode> classSources = new ArrayList<>();
-
-        // 1. Group method FQNs by class FQN
-        Map<String, Set<String>> classToMethodsMap = groupMethodsByClass(methodFqns);
-        logger.info("分組結果: {} 個類別", classToMethodsMap.size());
-
-        // 2. Process each class
-        for (Map.Entry<String, Set<String>> entry : classToMethodsMap.entrySet()) {
+        // 1. Group method FQNs by class FQN（依 FQN 排序，輸出順序固定）
+        Map<String, Set<String>> classToMethodsMap = new TreeMap<>();
+        for (Map.Entry<String, Set<String>> entry : groupMethodsByClass(methodFqns).entrySet()) {
             // 移除泛型資訊
-            String classFqn = entry.getKey();
-            classFqn = classFqn.replaceAll("<.*>", "");
-
-            Set<String> classMethods = entry.getValue();
+            String classFqn = AstClassUtil.stripGenerics(entry.getKey());
 
             // 檢查類別是否在 basePackages 範圍內
             if (!isClassInBasePackages(classFqn, request.getBasePackages())) {
                 logger.debug("跳過不在 basePackages 範圍內的類別: {}", classFqn);
                 continue;
             }
+            classToMethodsMap.computeIfAbsent(classFqn, k -> new HashSet<>()).addAll(entry.getValue());
+        }
+        logger.info("分組結果: {} 個類別", classToMethodsMap.size());
 
-            logger.debug("處理類別: {} 包含 {} 個方法", classFqn, classMethods.size());
+        // 2. 每個類別的 AST 資料只查詢一次；只提取使用的方法且原始檔未變動時，
+        // 直接使用 AST 中保存的成員原始碼，不讀取整個檔案
+        Set<String> classFqns = new TreeSet<>(classToMethodsMap.keySet());
+        classFqns.addAll(closureClassFqns);
+        Map<String, FileAstData> astDataMap = new HashMap<>();
+        Set<String> classFqnsToRead = new HashSet<>();
+        for (String classFqn : classFqns) {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData != null) {
+                astDataMap.put(classFqn, astData);
+            }
+            boolean onlyUsedMethods = request.isExtractOnlyUsedMethods() || !classToMethodsMap.containsKey(classFqn);
+            if (!onlyUsedMethods || !canWeaveStoredMembers(astData)) {
+                classFqnsToRead.add(classFqn);
+            }
+        }
 
-            // 3. 使用SourceProvider獲取原始碼
-            String sourceCode = sourceProvider.getSourceCode(classFqn);
+        // 3. 一次批次讀取其餘類別的原始碼
+        Map<String, String> sourceCodes = sourceProvider.getSourceCodes(classFqnsToRead);
+        logger.debug("使用保存的成員原始碼: {} 個類別，讀取原始檔: {} 個類別",
+                classFqns.size() - classFqnsToRead.size(), classFqnsToRead.size());
+
+        // 4. 各類別互不相依，平行編織
+        List<Callable<ClassSourceCode>> tasks = new ArrayList<>();
+        for (String classFqn : classFqns) {
+            Set<String> classMethods = classToMethodsMap.get(classFqn);
+            FileAstData astData = astDataMap.get(classFqn);
+            tasks.add(() -> {
+                // 5. 創建編織規則，傳入該類別的方法集合
+                SourceCodeWeaver.WeavingRules rules;
+                if (classMethods == null) {
+                    // 補充的上下文類別只需要欄位與方法簽名
+                    logger.debug("處理補充類別: {}", classFqn);
+                    rules = createWeavingRules(classFqn, Set.of(), getAllMethodNames(astData), true, false,
+                            request);
+                } else {
+                    logger.debug("處理類別: {} 包含 {} 個方法", classFqn, classMethods.size());
+                    Set<String> usedMethodNames = collectUsedMethodNames(classFqn, classMethods, astData, request);
+                    rules = createWeavingRules(classFqn, usedMethodNames, Set.of(),
+                            request.isExtractOnlyUsedMethods(), request.isIncludeConstructors(), request);
+                }
 
-            if (sourceCode == null) {
-                logger.warn("無法獲取類別原始碼: {}", classFqn);
-                continue;
-            }
+                // 6. 優先使用保存的成員原始碼，無法使用時才讀取原始檔
+                String sourceCode = sourceCodes.get(classFqn);
+                if (sourceCode == null && !classFqnsToRead.contains(classFqn)) {
+                    SourceCodeWeaver.WeavingResult stored = sourceCodeWeaver.weaveStoredMembers(astData, rules);
+                    if (stored != null && stored.isSuccess()) {
+                        return toClassSourceCode(classFqn, stored.getWovenSourceCode());
+                    }
+                    sourceCode = sourceProvider.getSourceCode(classFqn);
+                }
+                if (sourceCode == null) {
+                    logger.warn("無法獲取類別原始碼: {}", classFqn);
+                    return null;
+                }
+
+                // 7. 使用SourceCodeWeaver編織原始碼並創建ClassSourceCode
+                return weaveClass(classFqn, sourceCode, astData, rules);
+            });
+        }
+        weaveInOrder(tasks, sink);
+    }
+
+    /**
+     * 是否能只用 AST 中保存的成員原始碼編織：AST 有保存且原始檔在解析後沒有變動
+     */
+    private boolean canWeaveStoredMembers(FileAstData astData) {
+        return astData != null && astData.getSequenceDiagramData() != null
+                && astData.getSequenceDiagramData().hasCompressedSource()
+                && sourceProvider.matchesParsedSource(astData);
+    }
+
+    /**
+     * 編織單一類別，編織失敗時保持原始碼不變
+     */
+    private ClassSourceCode weaveClass(String classFqn, String sourceCode, FileAstData astData,
+            SourceCodeWeaver.WeavingRules rules) {
+        SourceCodeWeaver.WeavingResult weavingResult = sourceCodeWeaver.weave(sourceCode, astData, rules);
+        if (!weavingResult.isSuccess()) {
+            logger.warn("原始碼編織失敗: {} - {}", classFqn, weavingResult.getErrorMessage());
+        } else {
+            sourceCode = weavingResult.getWovenSourceCode();
+        }
 
-            // 4. 創建編織規則，傳入該類別的方法集合
-            SourceCodeWeaver.WeavingRules rules = createWeavingRules(classFqn, classMethods, request);
+        return toClassSourceCode(classFqn, sourceCode);
+    }
 
-            // 5. 使用SourceCodeWeaver編織原始碼
-            SourceCodeWeaver.WeavingResult weavingResult = sourceCodeWeaver.weave(sourceCode, rules);
+    private ClassSourceCode toClassSourceCode(String classFqn, String sourceCode) {
+        logger.debug("提取類別原始碼: {} -> {} 字元", classFqn, sourceCode.length());
+        return ClassSourceCode.builder()
+                .classFqn(classFqn)
+                .relativePath(classFqn.replace('.', '/') + ".java")
+                .sourceCode(sourceCode)
+                .build();
+    }
 
-            if (!weavingResult.isSuccess()) {
-                logger.warn("原始碼編織失敗: {} - {}", classFqn, weavingResult.getErrorMessage());
-                // 如果編織失敗，保持原始碼不變
-            } else {
-                sourceCode = weavingResult.getWovenSourceCode();
+    /**
+     * 在編織執行緒池上平行執行，依提交順序把結果交給 sink（null 代表略過）；
+     * 前面的類別完成後即可輸出，不必等待全部完成
+     */
+    private void weaveInOrder(List<Callable<ClassSourceCode>> tasks, Consumer<ClassSourceCode> sink) {
+        if (tasks.size() <= 1) {
+            for (Callable<ClassSourceCode> task : tasks) {
+                acceptIfPresent(callUnchecked(task), sink);
             }
+            return;
+        }
 
-            // 6. 創建ClassSourceCode
-            String relativePath = classFqn.replace('.', '/') + ".java";
-            classSources.add(ClassSourceCode.builder()
-                    .classFqn(classFqn)
-                    .relativePath(relativePath)
-                    .sourceCode(sourceCode)
-                    .build());
+        List<Future<ClassSourceCode>> futures = new ArrayList<>();
+        for (Callable<ClassSourceCode> task : tasks) {
+            futures.add(weavingExecutor.submit(task));
+        }
+        try {
+            for (Future<ClassSourceCode> future : futures) {
+                acceptIfPresent(future.get(), sink);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("類別編織被中斷", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("類別編織失敗: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 
-            logger.debug("提取類別原始碼: {} -> {} 行", classFqn, sourceCode.split("\n").length);
+    private void acceptIfPresent(ClassSourceCode classSource, Consumer<ClassSourceCode> sink) {
+        if (classSource != null) {
+            sink.accept(classSource);
         }
+    }
+
+    private ClassSourceCode callUnchecked(Callable<ClassSourceCode> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("類別編織失敗: " + e.getMessage(), e);
+        }
+    }
 
-        return classSources;
+    @PreDestroy
+    public void shutdown() {
+        weavingExecutor.shutdown();
+    }
+
+    /**
+     * 將方法呼叫距離按類別與方法名稱分組，只保留 basePackages 範圍內的類別
+     */
+    private Map<String, Map<String, Integer>> groupDistancesByClass(Map<String, Integer> methodDistances,
+            CodeExtractionRequest request) {
+        Map<String, Map<String, Integer>> classMethodDistances = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : methodDistances.entrySet()) {
+            MethodRef method = MethodRef.of(entry.getKey());
+            String classFqn = method.getErasedClassFqn();
+            String methodName = method.getMethodName();
+            if (classFqn.isEmpty() || methodName.isEmpty()
+                    || !isClassInBasePackages(classFqn, request.getBasePackages())) {
+                continue;
+            }
+            classMethodDistances.computeIfAbsent(classFqn, k -> new HashMap<>())
+                    .merge(methodName, entry.getValue(), Math::min);
+        }
+        return classMethodDistances;
+    }
+
+    /**
+     * 依預算規劃每個類別要輸出的方法
+     */
+    private ExtractionBudgetPlanner.Plan planBudget(Map<String, Map<String, Integer>> classMethodDistances,
+            Map<String, Integer> closureDistances, Map<String, String> sourceCodes, CodeExtractionRequest request,
+            int budget) {
+        ToIntFunction<CharSequence> costFunction = costFunction(request);
+        ExtractionBudgetPlanner planner = new ExtractionBudgetPlanner(astIndex, costFunction, budget,
+                request.isIncludeImports(), request.isIncludeConstructors(), request.isIncludeComments());
+        StringBuilder header = new StringBuilder();
+        mergeSourceCode(new ArrayList<>(), request, header);
+        ExtractionBudgetPlanner.Plan plan = planner.plan(classMethodDistances, closureDistances, sourceCodes,
+                costFunction.applyAsInt(header));
+
+        logger.info("預算模式規劃完成，預算: {}, 預估使用: {}, 只輸出簽名: {}, 省略: {}",
+                budget, plan.plannedCost, plan.stubbedMembers.size(), plan.elidedMembers.size());
+        return plan;
+    }
+
+    /**
+     * 預算的計價方式：設定 maxTokens 時以本地 token 估算計價，否則以字元數計價
+     */
+    private static ToIntFunction<CharSequence> costFunction(CodeExtractionRequest request) {
+        return request.getMaxTokens() > 0 ? TokenEstimator::estimate : CharSequence::length;
+    }
+
+    /**
+     * 編織結果合併後整份文件的成本，與 extractCode 返回的合併原始碼相同
+     */
+    private int measureMerged(List<ClassSourceCode> classSources, CodeExtractionRequest request) {
+        StringBuilder merged = new StringBuilder();
+        mergeSourceCode(new ArrayList<>(classSources), request, merged);
+        return costFunction(request).applyAsInt(merged);
+    }
+
+    /**
+     * 依預算規劃結果編織每個類別：完整輸出的方法保留本體，其餘只輸出簽名
+     */
+    private void extractClassSourcesWithinBudget(ExtractionBudgetPlanner.Plan plan,
+            Map<String, String> sourceCodes, CodeExtractionRequest request, Consumer<ClassSourceCode> sink) {
+        Map<String, ExtractionBudgetPlanner.ClassSelection> selections = new TreeMap<>(plan.selections);
+        List<Callable<ClassSourceCode>> tasks = new ArrayList<>();
+        for (Map.Entry<String, ExtractionBudgetPlanner.ClassSelection> entry : selections.entrySet()) {
+            String classFqn = entry.getKey();
+            ExtractionBudgetPlanner.ClassSelection selection = entry.getValue();
+
+            // 無法逐一切割方法的類別整個輸出；其餘由規劃結果決定，構造函數也已納入規劃
+            SourceCodeWeaver.WeavingRules rules = selection.isWholeClass()
+                    ? createWeavingRules(classFqn, Set.of(), Set.of(), false, false, request)
+                    : createWeavingRules(classFqn, selection.fullMethodNames, selection.stubMethodNames,
+                            true, false, request);
+            tasks.add(() -> weaveClass(classFqn, sourceCodes.get(classFqn),
+                    astIndex.getAstDataByClassFqn(classFqn), rules));
+        }
+        weaveInOrder(tasks, sink);
     }
 
     /**
@@ -257,7 +699,7 @@ public class CodeExtractorService {
         Map<String, Set<String>> classToMethodsMap = new HashMap<>();
 
         for (String methodFqn : methodFqns) {
-            String classFqn = AstClassUtil.getClassFqnFromMethodFqn(methodFqn);
+            String classFqn = MethodRef.of(methodFqn).getClassFqn();
             if (classFqn.isEmpty()) {
                 logger.warn("無法從方法FQN中提取類別FQN: {}", methodFqn);
                 continue;
@@ -272,11 +714,9 @@ public class CodeExtractorService {
     /**
      * 創建編織規則
      */
-    private SourceCodeWeaver.WeavingRules createWeavingRules(String classFqn, Set<String> classMethods,
+    private SourceCodeWeaver.WeavingRules createWeavingRules(String classFqn, Set<String> usedMethodNames,
+            Set<String> stubMethodNames, boolean extractOnlyUsedMethods, boolean includeConstructors,
             CodeExtractionRequest request) {
-        // 收集使用的方法名稱
-        Set<String> usedMethodNames = collectUsedMethodNames(classFqn, classMethods, request);
-
         return new SourceCodeWeaver.WeavingRules() {
             @Override
             public boolean includeImports() {
@@ -290,12 +730,12 @@ public class CodeExtractorService {
 
             @Override
             public boolean extractOnlyUsedMethods() {
-                return request.isExtractOnlyUsedMethods();
+                return extractOnlyUsedMethods;
             }
 
             @Override
             public boolean includeConstructors() {
-                return request.isIncludeConstructors();
+                return includeConstructors;
             }
 
             @Override
@@ -303,6 +743,11 @@ public class CodeExtractorService {
                 return usedMethodNames;
             }
 
+            @Override
+            public Set<String> getStubMethodNames() {
+                return stubMethodNames;
+            }
+
             @Override
             public String getClassFqn() {
                 return classFqn;
@@ -313,16 +758,15 @@ public class CodeExtractorService {
     /**
      * 收集使用的方法名稱
      */
-    private Set<String> collectUsedMethodNames(String classFqn, Set<String> classMethods,
+    private Set<String> collectUsedMethodNames(String classFqn, Set<String> classMethods, FileAstData astData,
             CodeExtractionRequest request) {
         Set<String> usedMethodNames = new HashSet<>();
 
         if (request.isExtractOnlyUsedMethods()) {
             // 如果只提取使用的方法，則從classMethods中提取方法名稱
             for (String methodFqn : classMethods) {
-                String methodSignature = AstClassUtil.getMethodSignature(methodFqn);
                 // 提取方法名稱（去掉參數部分）
-                String methodName = extractMethodNameFromSignature(methodSignature);
+                String methodName = MethodRef.of(methodFqn).getMethodName();
                 if (!methodName.isEmpty()) {
                     usedMethodNames.add(methodName);
                 }
@@ -330,44 +774,12 @@ public class CodeExtractorService {
             logger.debug("類別 {} 使用的方法: {}", classFqn, usedMethodNames);
         } else {
             // 如果提取所有方法，則從AST資料中獲取所有方法資訊
-            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
-            if (astData != null && astData.getSequenceDiagramData() != null &&
-                    astData.getSequenceDiagramData().getMethodGroups() != null) {
-
-                for (MethodGroup methodGroup : astData.getSequenceDiagramData().getMethodGroups()) {
-                    usedMethodNames.add(methodGroup.getMethodName());
-                }
-            }
+            usedMethodNames.addAll(getAllMethodNames(astData));
         }
 
         return usedMethodNames;
     }
 
-    /**
-     * 從方法簽名中提取方法名稱
-     */
-    private String extractMethodNameFromSignature(String methodSignature) {
-        if (methodSignature == null || methodSignature.isEmpty()) {
-            return "";
-        }
-
-        // 找到第一個 '(' 的位置，方法名稱在其前面
-        int parenIndex = methodSignature.indexOf('(');
-        if (parenIndex == -1) {
-            return methodSignature;
-        }
-
-        String beforeParen = methodSignature.substring(0, parenIndex);
-
-        // 找到最後一個 '.' 的位置，方法名稱在其後面
-        int lastDotIndex = beforeParen.lastIndexOf('.');
-        if (lastDotIndex == -1) {
-            return beforeParen;
-        }
-
-        return beforeParen.substring(lastDotIndex + 1);
-    }
-
     /**
      * 檢查類別是否在 basePackages 範圍內
      */
@@ -383,15 +795,15 @@ public class CodeExtractorService {
     /**
      * 從追蹤結果中遞迴提取所有涉及的類別
      */
-    private void extractClassesFromTraceResult(TraceResult traceResult, Set<String> involvedMethodFqns) {
-        extractClassesFromTraceResult(traceResult, involvedMethodFqns, new HashSet<>());
+    private void extractClassesFromTraceResult(TraceResult traceResult, Map<String, Integer> involvedMethodFqns) {
+        extractClassesFromTraceResult(traceResult, involvedMethodFqns, new HashSet<>(), 1);
     }
 
     /**
      * 從追蹤結果中遞迴提取所有涉及的類別（帶訪問追蹤）
      */
-    private void extractClassesFromTraceResult(TraceResult traceResult, Set<String> involvedMethodFqns,
-            Set<Object> visitedNodes) {
+    private void extractClassesFromTraceResult(TraceResult traceResult, Map<String, Integer> involvedMethodFqns,
+            Set<Object> visitedNodes, int distance) {
         if (traceResult == null || traceResult.getSequenceNodes() == null) {
             return;
         }
@@ -408,8 +820,9 @@ public class CodeExtractorService {
 
                 // 添加被呼叫者的類別
                 if (interaction.getCallee() != null) {
-                    involvedMethodFqns
-                            .add(AstClassUtil.getMethodFqn(interaction.getCallee(), interaction.getMethodName()));
+                    involvedMethodFqns.merge(
+                            MethodRef.of(interaction.getCallee(), interaction.getMethodName()).getFqn(),
+                            distance, Math::min);
                 }
 
                 // 遞迴處理內部呼叫
@@ -419,7 +832,8 @@ public class CodeExtractorService {
                             extractClassesFromTraceResult(
                                     new TraceResult("", List.of(internalNode)),
                                     involvedMethodFqns,
-                                    visitedNodes);
+                                    visitedNodes,
+                                    distance + 1);
                         }
                     }
                 }
@@ -429,38 +843,79 @@ public class CodeExtractorService {
                     extractClassesFromTraceResult(
                             new TraceResult("", List.of(interaction.getNextChainedCall())),
                             involvedMethodFqns,
-                            visitedNodes);
+                            visitedNodes,
+                            distance);
                 }
             }
         }
     }
 
+    /**
+     * 以串流追蹤事件收集方法 FQN 與呼叫距離，規則與 extractClassesFromTraceResult 相同：
+     * 收集互動、其內部呼叫與鏈式呼叫的被呼叫方法，控制流程片段內的互動不收集
+     */
+    private static class MethodFqnCollector implements Consumer<TraceEvent> {
+        private final Map<String, Integer> involvedMethodFqns;
+        // 目前路徑上每個呼叫的距離
+        private final Deque<Integer> distances = new ArrayDeque<>();
+        private int fragmentDepth = 0;
+
+        MethodFqnCollector(Map<String, Integer> involvedMethodFqns) {
+            this.involvedMethodFqns = involvedMethodFqns;
+        }
+
+        @Override
+        public void accept(TraceEvent event) {
+            switch (event.getType()) {
+                case FRAGMENT_START:
+                    fragmentDepth++;
+                    break;
+                case FRAGMENT_END:
+                    fragmentDepth--;
+                    break;
+                case CALL:
+                    // 鏈式呼叫的後續環節與前一個環節同層
+                    int parentDistance = distances.isEmpty() ? 0 : distances.peek();
+                    int distance = event.isChained() ? parentDistance : parentDistance + 1;
+                    distances.push(distance);
+
+                    InteractionModel interaction = event.getInteraction();
+                    if (fragmentDepth == 0 && interaction.getCallee() != null) {
+                        involvedMethodFqns.merge(
+                                MethodRef.of(interaction.getCallee(), interaction.getMethodName()).getFqn(),
+                                distance, Math::min);
+                    }
+                    break;
+                case RETURN:
+                    distances.pop();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     /**
      * 合併原始碼
+     * 
+     * @return 寫入器，可取得寫入時累計的行數
      */
-    private String mergeSourceCode(List<ClassSourceCode> classSources, CodeExtractionRequest request) {
-        StringBuilder mergedCode = new StringBuilder();
+    private MarkdownExtractionWriter mergeSourceCode(List<ClassSourceCode> classSources,
+            CodeExtractionRequest request, StringBuilder mergedCode) {
+        MarkdownExtractionWriter writer = new MarkdownExtractionWriter(mergedCode);
 
         // 添加 Markdown 標題
-        mergedCode.append("# 代碼提取結果\n\n");
-        mergedCode.append("## 提取資訊\n\n");
-        mergedCode.append("- **進入點**: `").append(request.getEntryPointMethodFqn()).append("`\n");
-        mergedCode.append("- **提取時間**: ").append(java.time.LocalDateTime.now()).append("\n");
-        mergedCode.append("- **總類別數**: ").append(classSources.size()).append("\n\n");
+        writer.writeHeader(request.getEntryPointMethodFqn(), classSources.size());
 
         // 按類別名稱排序
         classSources.sort((a, b) -> a.getClassFqn().compareTo(b.getClassFqn()));
 
         // 合併每個類別的原始碼
         for (ClassSourceCode classSource : classSources) {
-            mergedCode.append("## ").append(classSource.getRelativePath()).append("\n\n");
-            mergedCode.append("**類別**: `").append(classSource.getClassFqn()).append("`\n\n");
-            mergedCode.append("```java\n");
-            mergedCode.append(classSource.getSourceCode());
-            mergedCode.append("\n```\n\n");
+            writer.writeClass(classSource.getClassFqn(), classSource.getRelativePath(), classSource.getSourceCode());
         }
 
-        return mergedCode.toString();
+        return writer;
     }
 
     /**
@@ -0,0 +1,510 @@
+package kai.javaparser.ast.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import kai.javaparser.ast.java2ast.JavaToAstFile;
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.repository.AstRepository;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.repository.FileSystemAstRepository;
+import kai.javaparser.service.GitObjectStore;
+import kai.javaparser.service.GitSourceProvider;
+import kai.javaparser.service.RoutingSourceProvider;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 依 git commit 解析 AST 的服務：
+ * 不需要 checkout 即可載入過去版本的 AST，之後的序列圖與代碼提取都以該版本為準。
+ *
+ * 1. 每個 commit 的 AST 存放在 {astDir}/commits/{commitId}，解析完成後再次載入同一個 commit 不需要重新解析
+ * 2. 解析結果另以 blob ID 存放在 {astDir}/blobs，不同 commit 中內容沒有變動的檔案直接沿用，只解析變動過的檔案。
+ * JDT 的型別綁定取決於整個 sourcepath，內容相同的檔案在不同 commit 中可能解析出不同的 AST，
+ * 因此每個 blob 另外記錄解析時的依賴狀態（解析環境與直接引用的檔案的 blob ID），
+ * 只有解析環境相同且引用的檔案都沒有變動時才沿用
+ * 3. 原始碼由 GitSourceProvider 直接從 git 物件資料庫讀取
+ */
+@Service
+public class CommitAstService {
+    private static final Logger logger = LoggerFactory.getLogger(CommitAstService.class);
+
+    private static final String COMMITS_DIR = "commits";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final String DEPENDENCIES_SUFFIX = ".deps.json";
+    private static final String SOURCE_ROOT_MARKER = "src/main/java/";
+
+    private final AstRepository astRepository;
+    private final AstIndex astIndex;
+    private final RoutingSourceProvider routingSourceProvider;
+    private final ObjectMapper mapper;
+    private final Path astBaseDir;
+    private final boolean storeCompressedSource;
+
+    // 儲存庫目錄 -> 物件讀取器
+    private final Map<Path, GitObjectStore> objectStores = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CommitAstService(AstRepository astRepository, AstIndex astIndex,
+            RoutingSourceProvider routingSourceProvider, ObjectMapper mapper, AppConfig appConfig) {
+        this.astRepository = astRepository;
+        this.astIndex = astIndex;
+        this.routingSourceProvider = routingSourceProvider;
+        this.mapper = mapper;
+        this.astBaseDir = Paths.get(appConfig.getAstDir());
+        this.storeCompressedSource = appConfig.isStoreCompressedSource();
+    }
+
+    /**
+     * 解析並載入指定版本的 AST
+     *
+     * @param repositoryDir       git 儲存庫目錄
+     * @param revision            版本，例如 commit ID、分支或標籤
+     * @param classpathArg        類路徑（逗號分隔）
+     * @param javaComplianceLevel Java合規性級別
+     * @return 解析結果信息
+     * @throws IOException 版本不存在、git 執行失敗或 AST 寫入失敗
+     */
+    public synchronized String parseCommit(String repositoryDir, String revision, String classpathArg,
+            String javaComplianceLevel) throws IOException {
+        if (!(astRepository instanceof FileSystemAstRepository)) {
+            throw new IllegalStateException("依 commit 載入 AST 需要 FileSystemAstRepository");
+        }
+        FileSystemAstRepository repository = (FileSystemAstRepository) astRepository;
+
+        ParsedCommit parsed = parse(repositoryDir, revision, classpathArg, javaComplianceLevel);
+        repository.initialize(parsed.commitDir);
+        loadIndex();
+        routingSourceProvider.activate(parsed.commitDir,
+                new GitSourceProvider(parsed.objectStore, parsed.commitId, astIndex));
+        return parsed.message;
+    }
+
+    /**
+     * 解析指定版本的 AST，載入到獨立的索引，不影響目前使用中的 AST。
+     * 用於同時追蹤多個版本，例如版本比較
+     *
+     * @param repositoryDir       git 儲存庫目錄
+     * @param revision            版本，例如 commit ID、分支或標籤
+     * @param classpathArg        類路徑（逗號分隔）
+     * @param javaComplianceLevel Java合規性級別
+     * @return 只包含該版本的 AST 索引
+     * @throws IOException 版本不存在、git 執行失敗或 AST 寫入失敗
+     */
+    public AstIndex loadCommitIndex(String repositoryDir, String revision, String classpathArg,
+            String javaComplianceLevel) throws IOException {
+        ParsedCommit parsed;
+        synchronized (this) {
+            parsed = parse(repositoryDir, revision, classpathArg, javaComplianceLevel);
+        }
+        FileSystemAstRepository repository = new FileSystemAstRepository(mapper);
+        repository.initialize(parsed.commitDir);
+        AstIndex commitIndex = new AstIndex(repository);
+        try {
+            commitIndex.loadOrBuild();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("載入 AST 索引失敗", e);
+        }
+        return commitIndex;
+    }
+
+    /**
+     * 確保指定版本的 AST 已寫入 {astDir}/commits/{commitId}
+     */
+    private ParsedCommit parse(String repositoryDir, String revision, String classpathArg,
+            String javaComplianceLevel) throws IOException {
+        Path repoDir = Paths.get(repositoryDir).toAbsolutePath().normalize();
+        GitObjectStore objectStore = objectStores.computeIfAbsent(repoDir, GitObjectStore::new);
+        String commitId = objectStore.resolveCommit(revision);
+        Path commitDir = astBaseDir.resolve(COMMITS_DIR).resolve(commitId);
+
+        if (Files.exists(commitDir.resolve(COMPLETE_MARKER))) {
+            logger.info("沿用已解析的 commit {}: {}", commitId, commitDir);
+            return new ParsedCommit(commitDir, objectStore, commitId, String.format(
+                    "Commit %s already parsed. AST loaded from: %s", commitId, commitDir.toAbsolutePath()));
+        }
+
+        Map<String, String> javaFiles = findJavaFiles(objectStore.listFiles(commitId));
+        SourceIndex sourceIndex = new SourceIndex(javaFiles);
+        String context = parseContext(classpathArg, javaComplianceLevel);
+        Path blobDir = astBaseDir.resolve(BLOBS_DIR);
+        Files.createDirectories(blobDir);
+
+        // 內容與依賴都沒有變動的檔案直接沿用以 blob ID 存放的解析結果
+        List<FileAstData> astDataList = new ArrayList<>();
+        Map<String, String> unparsed = new ConcurrentHashMap<>();
+        for (Map.Entry<String, String> file : javaFiles.entrySet()) {
+            FileAstData cached = readBlobAst(blobDir, file.getKey(), file.getValue(), context, sourceIndex);
+            if (cached != null) {
+                astDataList.add(withRepositoryPath(cached, repoDir, file.getKey()));
+            } else {
+                unparsed.put(file.getKey(), file.getValue());
+            }
+        }
+        int reusedFiles = astDataList.size();
+
+        if (!unparsed.isEmpty()) {
+            astDataList.addAll(parseFiles(objectStore, repoDir, javaFiles, unparsed, blobDir, classpathArg,
+                    javaComplianceLevel, context, sourceIndex));
+        }
+
+        // 以獨立的 repository 寫入，目前使用中的 AST 由呼叫端決定是否切換
+        FileSystemAstRepository writer = new FileSystemAstRepository(mapper);
+        writer.initialize(commitDir);
+        for (FileAstData astData : astDataList) {
+            writer.save(astData);
+        }
+        Files.writeString(commitDir.resolve(COMPLETE_MARKER), commitId, StandardCharsets.UTF_8);
+
+        logger.info("commit {} 解析完成，沿用 {} 個檔案，新解析 {} 個檔案，blob 快取命中/未命中: {}/{}",
+                commitId, reusedFiles, astDataList.size() - reusedFiles,
+                objectStore.getHitCount(), objectStore.getMissCount());
+        return new ParsedCommit(commitDir, objectStore, commitId, String.format(
+                "Commit %s parsed. Reused %d files, parsed %d/%d files. Output saved to: %s",
+                commitId, reusedFiles, astDataList.size() - reusedFiles, unparsed.size(),
+                commitDir.toAbsolutePath()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        objectStores.values().forEach(GitObjectStore::close);
+        objectStores.clear();
+    }
+
+    /**
+     * 解析尚未快取的檔案。
+     * JDT 需要完整的 sourcepath 才能解析跨檔案的型別綁定，因此將 commit 中所有 Java 檔案寫到暫存目錄，
+     * 但只解析內容有變動的檔案
+     */
+    private List<FileAstData> parseFiles(GitObjectStore objectStore, Path repoDir, Map<String, String> javaFiles,
+            Map<String, String> unparsed, Path blobDir, String classpathArg, String javaComplianceLevel,
+            String context, SourceIndex sourceIndex) throws IOException {
+        Path workDir = Files.createTempDirectory("ast-parser-commit-");
+        try {
+            Set<String> sourceRoots = new TreeSet<>();
+            for (Map.Entry<String, String> file : javaFiles.entrySet()) {
+                String content = objectStore.readBlob(file.getValue());
+                if (content == null) {
+                    continue;
+                }
+                Path target = workDir.resolve(file.getKey());
+                Files.createDirectories(target.getParent());
+                Files.writeString(target, content, StandardCharsets.UTF_8);
+
+                int marker = file.getKey().indexOf(SOURCE_ROOT_MARKER);
+                sourceRoots.add(workDir.resolve(marker >= 0
+                        ? file.getKey().substring(0, marker + SOURCE_ROOT_MARKER.length())
+                        : "").toString());
+            }
+
+            String[] projectSources = sourceRoots.toArray(new String[0]);
+            String[] projectClasspath = classpathEntries(classpathArg).toArray(new String[0]);
+            JavaToAstFile astExtractor = new JavaToAstFile(storeCompressedSource);
+
+            return unparsed.entrySet().parallelStream()
+                    .map(file -> {
+                        FileAstData astData = astExtractor.parseJavaFile(workDir.resolve(file.getKey()),
+                                projectSources, projectClasspath, javaComplianceLevel);
+                        if (astData == null) {
+                            return null;
+                        }
+                        withRepositoryPath(astData, repoDir, file.getKey());
+                        try {
+                            // 先移除舊的依賴記錄，寫入中斷時不會以舊的依賴沿用新的 AST
+                            Path dependenciesFile = blobDir.resolve(file.getValue() + DEPENDENCIES_SUFFIX);
+                            Files.deleteIfExists(dependenciesFile);
+                            mapper.writeValue(blobDir.resolve(file.getValue() + ".json").toFile(), astData);
+                            mapper.writeValue(dependenciesFile.toFile(),
+                                    sourceIndex.dependencies(file.getKey(), astData, context));
+                        } catch (IOException e) {
+                            logger.warn("寫入 blob AST 快取失敗: {}", file.getKey(), e);
+                        }
+                        return astData;
+                    })
+                    .filter(astData -> astData != null)
+                    .collect(Collectors.toList());
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * 只取主要原始碼目錄下的 Java 檔案，沒有 src/main/java 結構的儲存庫取全部 Java 檔案
+     */
+    private Map<String, String> findJavaFiles(Map<String, String> files) {
+        Map<String, String> javaFiles = files.entrySet().stream()
+                .filter(file -> file.getKey().endsWith(".java"))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        Map<String, String> mainFiles = javaFiles.entrySet().stream()
+                .filter(file -> file.getKey().startsWith(SOURCE_ROOT_MARKER)
+                        || file.getKey().contains("/" + SOURCE_ROOT_MARKER))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return mainFiles.isEmpty() ? javaFiles : mainFiles;
+    }
+
+    /**
+     * 讀取以 blob ID 存放的解析結果，解析環境不同或引用的檔案有變動時返回 null
+     */
+    private FileAstData readBlobAst(Path blobDir, String path, String blobId, String context,
+            SourceIndex sourceIndex) {
+        Path blobFile = blobDir.resolve(blobId + ".json");
+        Path dependenciesFile = blobDir.resolve(blobId + DEPENDENCIES_SUFFIX);
+        if (!Files.exists(blobFile) || !Files.exists(dependenciesFile)) {
+            return null;
+        }
+        try {
+            BlobDependencies dependencies = mapper.readValue(dependenciesFile.toFile(), BlobDependencies.class);
+            if (!context.equals(dependencies.getContext()) || !sourceIndex.isUnchanged(path, dependencies)) {
+                logger.debug("依賴有變動，重新解析: {}", path);
+                return null;
+            }
+            return mapper.readValue(blobFile.toFile(), FileAstData.class);
+        } catch (IOException e) {
+            logger.warn("讀取 blob AST 快取失敗，重新解析: {}", blobFile, e);
+            return null;
+        }
+    }
+
+    private static List<String> classpathEntries(String classpathArg) {
+        return Stream.of(classpathArg == null ? new String[0] : classpathArg.split(","))
+                .filter(s -> !s.trim().isEmpty())
+                .map(s -> Paths.get(s).toAbsolutePath().toString())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 解析環境：合規性級別、是否保存壓縮原始碼與類路徑，任一項不同時解析結果不能沿用
+     */
+    private String parseContext(String classpathArg, String javaComplianceLevel) {
+        return javaComplianceLevel + "|" + storeCompressedSource + "|"
+                + String.join(",", new TreeSet<>(classpathEntries(classpathArg)));
+    }
+
+    /**
+     * 路徑改為儲存庫中的位置；檔案系統上沒有對應的檔案版本，不記錄修改時間與大小
+     */
+    private static FileAstData withRepositoryPath(FileAstData astData, Path repoDir, String path) {
+        astData.setRelativePath(path);
+        astData.setAbsolutePath(repoDir.resolve(path).toString());
+        astData.setSourceLastModified(0);
+        astData.setSourceSize(0);
+        return astData;
+    }
+
+    private void loadIndex() throws IOException {
+        try {
+            astIndex.loadOrBuild();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("載入 AST 索引失敗", e);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.debug("刪除暫存檔案失敗: {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("刪除暫存目錄失敗: {}", dir, e);
+        }
+    }
+
+    /**
+     * 已寫入磁碟的 commit AST
+     */
+    @AllArgsConstructor
+    private static final class ParsedCommit {
+        private final Path commitDir;
+        private final GitObjectStore objectStore;
+        private final String commitId;
+        private final String message;
+    }
+
+    /**
+     * 解析某個 blob 時的依賴狀態
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static final class BlobDependencies {
+        private String context; // 解析環境
+        private List<String> packages; // 整個目錄列入依賴的包，包中新增或移除檔案也會使快取失效
+        private Map<String, String> files; // 依賴的檔案路徑 -> 解析時的 blob ID
+    }
+
+    /**
+     * commit 中 Java 檔案的查詢表，用來把解析結果引用的型別對應到檔案
+     */
+    private static final class SourceIndex {
+        private final Map<String, String> blobIds; // 路徑 -> blob ID
+        private final Map<String, String> pathsByFqn = new HashMap<>();
+        private final Map<String, List<String>> pathsByPackage = new HashMap<>();
+
+        private SourceIndex(Map<String, String> javaFiles) {
+            this.blobIds = javaFiles;
+            for (String path : javaFiles.keySet()) {
+                String fqn = fqnOf(path);
+                pathsByFqn.put(fqn, path);
+                pathsByPackage.computeIfAbsent(packageOf(fqn), k -> new ArrayList<>()).add(path);
+            }
+        }
+
+        /**
+         * 解析結果依賴的檔案：同一個包的所有檔案，以及 import、父類別、介面、引用型別與呼叫對象所在的檔案。
+         * 萬用字元 import 的包以整個目錄列入
+         */
+        private BlobDependencies dependencies(String path, FileAstData astData, String context) {
+            Set<String> packages = new TreeSet<>();
+            packages.add(packageOf(fqnOf(path)));
+            Map<String, String> files = new TreeMap<>();
+            for (String typeName : referencedTypes(astData)) {
+                String type = AstClassUtil.stripGenerics(typeName).replace("[]", "").trim();
+                if (pathsByPackage.containsKey(type)) {
+                    packages.add(type);
+                    continue;
+                }
+                // 巢狀類別與靜態 import 的成員往外找所屬的頂層類別
+                for (String candidate = type; !candidate.isEmpty(); candidate = packageOf(candidate)) {
+                    String dependency = pathsByFqn.get(candidate);
+                    if (dependency != null) {
+                        files.put(dependency, blobIds.get(dependency));
+                        break;
+                    }
+                }
+            }
+            for (String packageName : packages) {
+                for (String dependency : pathsByPackage.getOrDefault(packageName, List.of())) {
+                    files.put(dependency, blobIds.get(dependency));
+                }
+            }
+            files.remove(path);
+            return new BlobDependencies(context, new ArrayList<>(packages), files);
+        }
+
+        /**
+         * 依賴的檔案在目前的 commit 中是否都沒有變動
+         */
+        private boolean isUnchanged(String path, BlobDependencies dependencies) {
+            if (dependencies.getFiles() == null || dependencies.getPackages() == null) {
+                return false;
+            }
+            for (Map.Entry<String, String> file : dependencies.getFiles().entrySet()) {
+                if (!file.getValue().equals(blobIds.get(file.getKey()))) {
+                    return false;
+                }
+            }
+            for (String packageName : dependencies.getPackages()) {
+                for (String current : pathsByPackage.getOrDefault(packageName, List.of())) {
+                    if (!current.equals(path) && !dependencies.getFiles().containsKey(current)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static String fqnOf(String path) {
+            int marker = path.indexOf(SOURCE_ROOT_MARKER);
+            String relative = marker >= 0 ? path.substring(marker + SOURCE_ROOT_MARKER.length()) : path;
+            return relative.substring(0, relative.length() - ".java".length()).replace('/', '.');
+        }
+
+        private static String packageOf(String fqn) {
+            int lastDot = fqn.lastIndexOf('.');
+            return lastDot == -1 ? "" : fqn.substring(0, lastDot);
+        }
+
+        /**
+         * 解析結果中出現的型別名稱
+         */
+        private static Set<String> referencedTypes(FileAstData astData) {
+            Set<String> types = new TreeSet<>();
+            if (astData.getImports() != null) {
+                types.addAll(astData.getImports());
+            }
+            SequenceDiagramData data = astData.getSequenceDiagramData();
+            if (data == null) {
+                return types;
+            }
+            if (data.getExtendsClassFqn() != null) {
+                types.add(data.getExtendsClassFqn());
+            }
+            if (data.getImplementsInterfaceFqns() != null) {
+                types.addAll(data.getImplementsInterfaceFqns());
+            }
+            if (data.getReferencedTypeFqns() != null) {
+                types.addAll(data.getReferencedTypeFqns());
+            }
+            if (data.getMethodGroups() != null) {
+                for (MethodGroup methodGroup : data.getMethodGroups()) {
+                    addInteractionTypes(methodGroup.getInteractions(), types);
+                    addFragmentTypes(methodGroup.getControlFlowFragments(), types);
+                }
+            }
+            return types;
+        }
+
+        private static void addInteractionTypes(List<InteractionModel> interactions, Set<String> types) {
+            if (interactions == null) {
+                return;
+            }
+            for (InteractionModel interaction : interactions) {
+                for (InteractionModel call = interaction; call != null; call = call.getNextChainedCall()) {
+                    if (call.getCallee() != null) {
+                        types.add(call.getCallee());
+                    }
+                    if (call.getReturnValue() != null) {
+                        types.add(call.getReturnValue());
+                    }
+                }
+            }
+        }
+
+        private static void addFragmentTypes(List<ControlFlowFragment> fragments, Set<String> types) {
+            if (fragments == null) {
+                return;
+            }
+            for (ControlFlowFragment fragment : fragments) {
+                addInteractionTypes(fragment.getConditionInteractions(), types);
+                addInteractionTypes(fragment.getContentInteractions(), types);
+                addFragmentTypes(fragment.getAlternatives(), types);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package kai.javaparser.ast.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.model.SourceRange;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 預算模式的提取規劃：
+ * 依方法與進入點的呼叫距離排序，在預算內貪婪地決定每個方法輸出完整本體、只輸出簽名或省略。
+ *
+ * 1. 第一輪依距離由近到遠，為每個方法保留簽名（連同所屬類別的宣告與欄位），放不下的省略
+ * 2. 第二輪依同樣順序，在剩餘預算內把簽名升級為完整本體
+ *
+ * 預算緊時近的方法保有本體、遠的類別只剩簽名。不保留註解時，成本以移除註解後的區段估算，與實際輸出一致。
+ * 沒有字元範圍的舊版 AST 無法逐一切割方法，整個類別視為一個單位，只能完整輸出或省略。
+ * 依型別引用補充的上下文類別排在所有呼叫鏈方法之後，方法最多只輸出簽名，不參與第二輪升級。
+ */
+class ExtractionBudgetPlanner {
+
+    private enum Level {
+        ELIDED, STUB, FULL
+    }
+
+    private final AstIndex astIndex;
+    private final ToIntFunction<CharSequence> costFunction;
+    private final int budget;
+    private final boolean includeImports;
+    private final boolean includeConstructors;
+    private final boolean includeComments;
+
+    ExtractionBudgetPlanner(AstIndex astIndex, ToIntFunction<CharSequence> costFunction, int budget,
+            boolean includeImports, boolean includeConstructors, boolean includeComments) {
+        this.astIndex = astIndex;
+        this.costFunction = costFunction;
+        this.budget = budget;
+        this.includeImports = includeImports;
+        this.includeConstructors = includeConstructors;
+        this.includeComments = includeComments;
+    }
+
+    /**
+     * 規劃每個類別要輸出的方法
+     *
+     * @param classMethodDistances 類別 FQN -> (方法名稱 -> 與進入點的呼叫距離)
+     * @param closureDistances     依型別引用補充的類別 FQN -> 與呼叫鏈的型別引用距離
+     * @param sourceCodes          類別 FQN -> 原始碼
+     * @param fixedCost            不屬於任何類別的固定成本（例如文件標題）
+     * @return 規劃結果
+     */
+    Plan plan(Map<String, Map<String, Integer>> classMethodDistances, Map<String, Integer> closureDistances,
+            Map<String, String> sourceCodes, int fixedCost) {
+        Map<String, Integer> skeletonCosts = new HashMap<>();
+        List<Unit> units = new ArrayList<>();
+        int maxCallDistance = 0;
+        for (Map.Entry<String, Map<String, Integer>> entry : classMethodDistances.entrySet()) {
+            String classFqn = entry.getKey();
+            String sourceCode = sourceCodes.get(classFqn);
+            if (sourceCode != null) {
+                collectUnits(classFqn, entry.getValue(), -1, sourceCode, skeletonCosts, units);
+            }
+            for (int distance : entry.getValue().values()) {
+                maxCallDistance = Math.max(maxCallDistance, distance);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : closureDistances.entrySet()) {
+            String classFqn = entry.getKey();
+            String sourceCode = sourceCodes.get(classFqn);
+            if (sourceCode != null && !classMethodDistances.containsKey(classFqn)) {
+                collectUnits(classFqn, Map.of(), maxCallDistance + entry.getValue(), sourceCode, skeletonCosts,
+                        units);
+            }
+        }
+        units.sort(Comparator.comparingInt((Unit unit) -> unit.distance)
+                .thenComparing(unit -> unit.classFqn)
+                .thenComparing(unit -> unit.methodName, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        // 第一輪：由近到遠保留簽名
+        int used = fixedCost;
+        Set<String> admittedClasses = new HashSet<>();
+        for (Unit unit : units) {
+            int classCost = admittedClasses.contains(unit.classFqn) ? 0 : skeletonCosts.get(unit.classFqn);
+            boolean stubOnly = unit.stubCost >= 0 && unit.stubCost < unit.fullCost;
+            int cost = classCost + (stubOnly ? unit.stubCost : unit.fullCost);
+            if (used + cost <= budget) {
+                used += cost;
+                admittedClasses.add(unit.classFqn);
+                unit.level = stubOnly ? Level.STUB : Level.FULL;
+            }
+        }
+
+        // 第二輪：由近到遠把簽名升級為完整本體
+        for (Unit unit : units) {
+            if (unit.level == Level.STUB && !closureDistances.containsKey(unit.classFqn)
+                    && used + unit.fullCost - unit.stubCost <= budget) {
+                used += unit.fullCost - unit.stubCost;
+                unit.level = Level.FULL;
+            }
+        }
+
+        Plan plan = new Plan(used);
+        for (Unit unit : units) {
+            String memberName = unit.methodName == null ? unit.classFqn : unit.classFqn + "." + unit.methodName;
+            switch (unit.level) {
+                case FULL:
+                    plan.selection(unit.classFqn).fullMethodNames.add(unit.methodName);
+                    break;
+                case STUB:
+                    plan.selection(unit.classFqn).stubMethodNames.add(unit.methodName);
+                    plan.stubbedMembers.add(memberName);
+                    break;
+                case ELIDED:
+                    plan.elidedMembers.add(memberName);
+                    break;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @param closureDistance 依型別引用補充的類別為其所有方法共用的距離，呼叫鏈上的類別為 -1
+     */
+    private void collectUnits(String classFqn, Map<String, Integer> methodDistances, int closureDistance,
+            String sourceCode, Map<String, Integer> skeletonCosts, List<Unit> units) {
+        int classDistance = closureDistance >= 0 ? closureDistance
+                : methodDistances.values().stream().min(Integer::compare).orElse(0);
+        int sectionCost = costFunction.applyAsInt(sectionOverhead(classFqn));
+
+        FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+        SequenceDiagramData data = astData != null ? astData.getSequenceDiagramData() : null;
+        if (data == null || !JdtBasedSourceCodeWeaver.hasValidSourceRanges(sourceCode, data)) {
+            // 無法逐一切割方法：整個類別為一個單位
+            skeletonCosts.put(classFqn, sectionCost);
+            units.add(new Unit(classFqn, null, classDistance, cost(sourceCode, data, 0, sourceCode.length()), -1));
+            return;
+        }
+
+        skeletonCosts.put(classFqn, sectionCost + skeletonCost(sourceCode, data));
+
+        // 同名的多載方法會一起輸出，成本合併計算
+        Map<String, Unit> unitsByName = new LinkedHashMap<>();
+        if (data.getMethodGroups() != null) {
+            for (MethodGroup methodGroup : data.getMethodGroups()) {
+                if (methodGroup.getLength() <= 0) {
+                    continue;
+                }
+                Integer distance = closureDistance >= 0 ? Integer.valueOf(closureDistance)
+                        : methodDistances.get(methodGroup.getMethodName());
+                if (distance == null && includeConstructors && JdtBasedSourceCodeWeaver.isConstructor(methodGroup)) {
+                    distance = classDistance;
+                }
+                if (distance == null) {
+                    continue;
+                }
+
+                int start = JdtBasedSourceCodeWeaver.lineStart(sourceCode, methodGroup.getStartPosition());
+                int end = methodGroup.getStartPosition() + methodGroup.getLength();
+                int bodyStart = JdtBasedSourceCodeWeaver.findBodyStart(sourceCode, start, end);
+                int fullCost = cost(sourceCode, data, start, end) + 1;
+                int stubCost = bodyStart < 0 ? fullCost
+                        : cost(sourceCode, data, start, bodyStart)
+                                + costFunction.applyAsInt(JdtBasedSourceCodeWeaver.STUB_BODY) + 1;
+
+                Unit unit = unitsByName.get(methodGroup.getMethodName());
+                if (unit == null) {
+                    unitsByName.put(methodGroup.getMethodName(),
+                            new Unit(classFqn, methodGroup.getMethodName(), distance, fullCost, stubCost));
+                } else {
+                    unit.fullCost += fullCost;
+                    unit.stubCost += stubCost;
+                }
+            }
+        }
+        if (unitsByName.isEmpty() && closureDistance >= 0) {
+            // 沒有方法的補充類別（例如只有欄位的 DTO）整個輸出
+            skeletonCosts.put(classFqn, sectionCost);
+            units.add(new Unit(classFqn, null, classDistance, cost(sourceCode, data, 0, sourceCode.length()), -1));
+            return;
+        }
+        units.addAll(unitsByName.values());
+    }
+
+    /**
+     * 類別宣告到左大括號、所有欄位與結尾大括號的成本
+     */
+    private int skeletonCost(String sourceCode, SequenceDiagramData data) {
+        int cost = cost(sourceCode, data,
+                JdtBasedSourceCodeWeaver.lineStart(sourceCode, data.getTypeStartPosition()),
+                data.getTypeBodyStartPosition() + 1) + 2;
+        if (includeImports && data.getHeaderLength() > 0) {
+            cost += cost(sourceCode, data, data.getHeaderStartPosition(),
+                    data.getHeaderStartPosition() + data.getHeaderLength()) + 1;
+        }
+        if (data.getFieldRanges() != null) {
+            for (SourceRange field : data.getFieldRanges()) {
+                cost += cost(sourceCode, data,
+                        JdtBasedSourceCodeWeaver.lineStart(sourceCode, field.getStartPosition()),
+                        field.getEndPosition()) + 1;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * 區段 [start, end) 輸出後的成本，不保留註解時先以編織器相同的方式移除註解
+     */
+    private int cost(String sourceCode, SequenceDiagramData data, int start, int end) {
+        if (includeComments) {
+            return costFunction.applyAsInt(sourceCode.subSequence(start, end));
+        }
+        StringBuilder stripped = new StringBuilder(end - start);
+        JdtBasedSourceCodeWeaver.appendRange(stripped, sourceCode, start, end, 0, data, false);
+        return costFunction.applyAsInt(stripped);
+    }
+
+    /**
+     * 合併輸出時每個類別段落的標題與程式碼區塊標記
+     */
+    private String sectionOverhead(String classFqn) {
+        return "## " + classFqn.replace('.', '/') + ".java\n\n**類別**: `" + classFqn + "`\n\n```java\n\n```\n\n";
+    }
+
+    /**
+     * 單一規劃單位：類別中的一個方法名稱（含多載），methodName 為 null 時代表整個類別
+     */
+    private static final class Unit {
+        private final String classFqn;
+        private final String methodName;
+        private final int distance;
+        private int fullCost;
+        private int stubCost; // 小於 0 代表無法只輸出簽名
+        private Level level = Level.ELIDED;
+
+        private Unit(String classFqn, String methodName, int distance, int fullCost, int stubCost) {
+            this.classFqn = classFqn;
+            this.methodName = methodName;
+            this.distance = distance;
+            this.fullCost = fullCost;
+            this.stubCost = stubCost;
+        }
+    }
+
+    /**
+     * 某個類別要輸出的方法
+     */
+    static final class ClassSelection {
+        final Set<String> fullMethodNames = new HashSet<>(); // 包含 null 時代表整個類別
+        final Set<String> stubMethodNames = new HashSet<>();
+
+        boolean isWholeClass() {
+            return fullMethodNames.contains(null);
+        }
+    }
+
+    /**
+     * 規劃結果
+     */
+    static final class Plan {
+        final Map<String, ClassSelection> selections = new LinkedHashMap<>();
+        final List<String> stubbedMembers = new ArrayList<>();
+        final List<String> elidedMembers = new ArrayList<>();
+        final int plannedCost;
+
+        private Plan(int plannedCost) {
+            this.plannedCost = plannedCost;
+        }
+
+        private ClassSelection selection(String classFqn) {
+            return selections.computeIfAbsent(classFqn, k -> new ClassSelection());
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package kai.javaparser.ast.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.ast.model.ExtractionCacheStats;
+import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionRequest;
+import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionResult;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.service.SourceProvider;
+
+/**
+ * 代碼提取結果快取：
+ * 以提取請求的所有欄位為鍵，記錄結果與追蹤過程中涉及的每個類別的 AST 版本及原始碼版本。
+ *
+ * 1. 取用時逐一比對涉及類別的版本與索引成員版本，任何一個類別重新解析或原始碼變動即失效
+ * 2. 以估算的記憶體大小為上限，依最久未使用的順序淘汰；設定 spillDir 時淘汰的記錄寫到磁碟，之後可讀回
+ */
+@Component
+public class ExtractionResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionResultCache.class);
+
+    private final AstIndex astIndex;
+    private final SourceProvider sourceProvider;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final Path spillDir;
+    private final ObjectMapper spillMapper;
+
+    // 以下兩個 Map 與 memoryBytes 皆以 entries 為鎖
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, SpilledEntry> spilled = new HashMap<>();
+    private long memoryBytes = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong spillHitCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @Autowired
+    public ExtractionResultCache(AstIndex astIndex, SourceProvider sourceProvider, AppConfig appConfig) {
+        AppConfig.ExtractionCacheConfig config = appConfig.getExtractionCache();
+        this.astIndex = astIndex;
+        this.sourceProvider = sourceProvider;
+        this.enabled = config.isEnabled();
+        this.maxBytes = Math.max(1, config.getMaxMemoryMb()) * 1024L * 1024L;
+        this.spillDir = config.getSpillDir() != null && !config.getSpillDir().isBlank()
+                ? Paths.get(config.getSpillDir())
+                : null;
+        this.spillMapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 以提取請求的所有欄位組成快取鍵
+     */
+    public static String keyOf(CodeExtractionRequest request) {
+        Set<String> basePackages = request.getBasePackages() != null
+                ? new TreeSet<>(request.getBasePackages())
+                : Set.of();
+        return request.getEntryPointMethodFqn()
+                + "|" + request.getAstDir()
+                + "|" + String.join(",", basePackages)
+                + "|" + request.getMaxDepth()
+                + "|" + request.isIncludeImports()
+                + "|" + request.isIncludeComments()
+                + "|" + request.isExtractOnlyUsedMethods()
+                + "|" + request.isIncludeConstructors()
+                + "|" + request.getMaxTokens()
+                + "|" + request.getMaxChars()
+                + "|" + request.getTypeClosureDepth()
+                + "|" + request.getMaxClosureClasses();
+    }
+
+    /**
+     * 取得仍然有效的快取結果
+     *
+     * @param key 快取鍵
+     * @return 快取結果的複本，呼叫端修改不影響快取；沒有或已失效時為 null
+     */
+    public CodeExtractionResult get(String key) {
+        Entry entry;
+        SpilledEntry spilledEntry = null;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                spilledEntry = spilled.remove(key);
+            }
+        }
+
+        if (entry != null) {
+            if (isValid(entry.versions)) {
+                hitCount.incrementAndGet();
+                return copyOf(entry.result);
+            }
+            invalidate(key, entry);
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        if (spilledEntry != null) {
+            CodeExtractionResult result = readSpilled(spilledEntry);
+            if (result != null && isValid(spilledEntry.versions)) {
+                hitCount.incrementAndGet();
+                spillHitCount.incrementAndGet();
+                store(key, new Entry(result, spilledEntry.versions));
+                return copyOf(result);
+            }
+            if (result != null) {
+                invalidationCount.incrementAndGet();
+            }
+        }
+
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 記錄涉及類別目前的版本，需在提取完成後、結果放入快取前呼叫
+     *
+     * @param classFqns 追蹤過程中涉及的類別
+     * @return 版本快照
+     */
+    public VersionSnapshot snapshot(Set<String> classFqns) {
+        Map<String, long[]> classVersions = new HashMap<>();
+        for (String classFqn : classFqns) {
+            classVersions.put(classFqn, new long[] {
+                    astIndex.getClassVersion(classFqn), sourceProvider.getSourceVersion(classFqn) });
+        }
+        return new VersionSnapshot(astIndex.getIndexVersion(), classVersions);
+    }
+
+    /**
+     * 放入快取
+     *
+     * @param key      快取鍵
+     * @param result   提取結果
+     * @param versions 涉及類別的版本快照
+     */
+    public void put(String key, CodeExtractionResult result, VersionSnapshot versions) {
+        store(key, new Entry(copyOf(result), versions));
+    }
+
+    /**
+     * 結果的複本，集合各自複製，快取內外不共用可變的集合
+     */
+    private static CodeExtractionResult copyOf(CodeExtractionResult result) {
+        return result.toBuilder()
+                .involvedClasses(result.getInvolvedClasses() != null
+                        ? new HashSet<>(result.getInvolvedClasses())
+                        : null)
+                .stubbedMembers(result.getStubbedMembers() != null
+                        ? new ArrayList<>(result.getStubbedMembers())
+                        : null)
+                .elidedMembers(result.getElidedMembers() != null
+                        ? new ArrayList<>(result.getElidedMembers())
+                        : null)
+                .build();
+    }
+
+    /**
+     * 清除所有快取，包含寫到磁碟的記錄
+     */
+    public void clear() {
+        List<SpilledEntry> spilledEntries;
+        synchronized (entries) {
+            entries.clear();
+            memoryBytes = 0;
+            spilledEntries = new ArrayList<>(spilled.values());
+            spilled.clear();
+        }
+        spilledEntries.forEach(spilledEntry -> deleteQuietly(spilledEntry.path));
+    }
+
+    public ExtractionCacheStats getStats() {
+        ExtractionCacheStats stats = new ExtractionCacheStats();
+        stats.setEnabled(enabled);
+        stats.setHits(hitCount.get());
+        stats.setMisses(missCount.get());
+        long total = stats.getHits() + stats.getMisses();
+        stats.setHitRate(total == 0 ? 0 : (double) stats.getHits() / total);
+        stats.setSpillHits(spillHitCount.get());
+        stats.setInvalidations(invalidationCount.get());
+        stats.setEvictions(evictionCount.get());
+        synchronized (entries) {
+            stats.setMemoryEntries(entries.size());
+            stats.setMemoryBytes(memoryBytes);
+            stats.setSpilledEntries(spilled.size());
+        }
+        return stats;
+    }
+
+    private boolean isValid(VersionSnapshot versions) {
+        if (versions.indexVersion != astIndex.getIndexVersion()) {
+            return false;
+        }
+        for (Map.Entry<String, long[]> classVersion : versions.classVersions.entrySet()) {
+            String classFqn = classVersion.getKey();
+            long[] recorded = classVersion.getValue();
+            if (recorded[0] != astIndex.getClassVersion(classFqn)
+                    || recorded[1] != sourceProvider.getSourceVersion(classFqn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invalidate(String key, Entry entry) {
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+                memoryBytes -= entry.bytes;
+            }
+        }
+        invalidationCount.incrementAndGet();
+    }
+
+    private void store(String key, Entry entry) {
+        if (entry.bytes > maxBytes) {
+            return; // 超過整個快取上限的結果不快取
+        }
+
+        Map<String, Entry> evicted = new LinkedHashMap<>();
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                memoryBytes -= previous.bytes;
+            }
+            memoryBytes += entry.bytes;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (memoryBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                memoryBytes -= eldest.getValue().bytes;
+                evicted.put(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+
+        evictionCount.addAndGet(evicted.size());
+        if (spillDir != null) {
+            evicted.forEach(this::spill);
+        }
+    }
+
+    /**
+     * 將被淘汰的記錄寫到磁碟，寫出失敗時直接捨棄
+     */
+    private void spill(String key, Entry entry) {
+        try {
+            Files.createDirectories(spillDir);
+            Path path = spillDir.resolve(hash(key) + ".json");
+            spillMapper.writeValue(path.toFile(), entry.result);
+            synchronized (entries) {
+                spilled.put(key, new SpilledEntry(path, entry.versions));
+            }
+        } catch (IOException e) {
+            logger.warn("寫出提取結果快取失敗: {}", e.getMessage());
+        }
+    }
+
+    private CodeExtractionResult readSpilled(SpilledEntry spilledEntry) {
+        try {
+            return spillMapper.readValue(spilledEntry.path.toFile(), CodeExtractionResult.class);
+        } catch (IOException e) {
+            logger.warn("讀回提取結果快取失敗: {}", e.getMessage());
+            return null;
+        } finally {
+            deleteQuietly(spilledEntry.path);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("刪除提取結果快取檔案失敗: {}", path, e);
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 涉及類別的版本快照：索引成員版本，以及每個類別的 [AST 版本, 原始碼版本]
+     */
+    public static final class VersionSnapshot {
+        private final long indexVersion;
+        private final Map<String, long[]> classVersions;
+
+        private VersionSnapshot(long indexVersion, Map<String, long[]> classVersions) {
+            this.indexVersion = indexVersion;
+            this.classVersions = classVersions;
+        }
+    }
+
+    private static final class Entry {
+        private final CodeExtractionResult result;
+        private final VersionSnapshot versions;
+        private final long bytes;
+
+        private Entry(CodeExtractionResult result, VersionSnapshot versions) {
+            this.result = result;
+            this.versions = versions;
+            this.bytes = estimateBytes(result, versions);
+        }
+
+        private static long estimateBytes(CodeExtractionResult result, VersionSnapshot versions) {
+            long bytes = 256;
+            if (result.getMergedSourceCode() != null) {
+                bytes += 2L * result.getMergedSourceCode().length();
+            }
+            if (result.getInvolvedClasses() != null) {
+                bytes += 96L * result.getInvolvedClasses().size();
+            }
+            return bytes + 128L * versions.classVersions.size();
+        }
+    }
+
+    private static final class SpilledEntry {
+        private final Path path;
+        private final VersionSnapshot versions;
+
+        private SpilledEntry(Path path, VersionSnapshot versions) {
+            this.path = path;
+            this.versions = versions;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package kai.javaparser.ast.service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -9,9 +12,12 @@ import org.springframework.stereotype.Component;
 
 import kai.javaparser.ast.model.FileAstData;
 import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.model.SourceRange;
 import kai.javaparser.diagram.AstClassUtil;
 import kai.javaparser.diagram.idx.AstIndex;
 import kai.javaparser.service.SourceCodeWeaver;
+import kai.javaparser.util.TextCompressor;
 
 /**
  * 基於JDT的原始碼編織器
@@ -21,6 +27,9 @@ import kai.javaparser.service.SourceCodeWeaver;
 public class JdtBasedSourceCodeWeaver implements SourceCodeWeaver {
     private static final Logger logger = LoggerFactory.getLogger(JdtBasedSourceCodeWeaver.class);
 
+    // 只輸出簽名時用來取代方法本體的文字
+    static final String STUB_BODY = " { ... }";
+
     private final AstIndex astIndex;
 
     public JdtBasedSourceCodeWeaver(AstIndex astIndex) {
@@ -29,17 +38,30 @@ public class JdtBasedSourceCodeWeaver implements SourceCodeWeaver {
 
     @Override
     public WeavingResult weave(String sourceCode, WeavingRules rules) {
+        return weave(sourceCode, null, rules);
+    }
+
+    @Override
+    public WeavingResult weave(String sourceCode, FileAstData astData, WeavingRules rules) {
         logger.debug("開始編織原始碼，類別: {}, 規則: {}", rules.getClassFqn(), rules);
 
         try {
-            // 獲取AST資料
-            FileAstData astData = astIndex.getAstDataByClassFqn(rules.getClassFqn());
+            // 獲取AST資料（呼叫端未提供時才查詢）
+            if (astData == null) {
+                astData = astIndex.getAstDataByClassFqn(rules.getClassFqn());
+            }
             if (astData == null) {
                 return new WeavingResultImpl("", false, "找不到類別的AST資料: " + rules.getClassFqn());
             }
 
             String wovenCode;
-            if (rules.extractOnlyUsedMethods()) {
+            SequenceDiagramData data = astData.getSequenceDiagramData();
+            if (data != null && hasValidSourceRanges(sourceCode, data)) {
+                // 依解析時記錄的字元範圍直接複製區段
+                wovenCode = rules.extractOnlyUsedMethods()
+                        ? sliceUsedMembers(sourceCode, data, rules)
+                        : sliceFullClass(sourceCode, data, rules);
+            } else if (rules.extractOnlyUsedMethods()) {
                 // 只提取使用的方法和所有屬性
                 wovenCode = extractUsedMethodsAndAllFields(sourceCode, astData, rules);
             } else {
@@ -65,6 +87,376 @@ public class JdtBasedSourceCodeWeaver implements SourceCodeWeaver {
         return "JDT";
     }
 
+    /**
+     * 字元範圍是否存在且與目前的原始碼一致（原始碼在解析後被修改時改用逐行處理）
+     */
+    static boolean hasValidSourceRanges(String sourceCode, SequenceDiagramData data) {
+        if (!data.hasSourceRanges()) {
+            return false;
+        }
+        int typeEnd = data.getTypeStartPosition() + data.getTypeLength();
+        int bodyStart = data.getTypeBodyStartPosition();
+        return typeEnd <= sourceCode.length()
+                && sourceCode.charAt(typeEnd - 1) == '}'
+                && bodyStart > data.getTypeStartPosition() && bodyStart < typeEnd
+                && sourceCode.charAt(bodyStart) == '{';
+    }
+
+    /**
+     * 依字元範圍提取完整類別
+     */
+    private String sliceFullClass(String sourceCode, SequenceDiagramData data, WeavingRules rules) {
+        StringBuilder result = new StringBuilder(sourceCode.length());
+        appendHeader(result, sourceCode, data, rules);
+        appendRange(result, sourceCode, lineStart(sourceCode, data.getTypeStartPosition()),
+                data.getTypeStartPosition() + data.getTypeLength(), 0, data, rules.includeComments());
+        result.append('\n');
+        return result.toString();
+    }
+
+    /**
+     * 依字元範圍提取型別宣告、所有欄位（含列舉常數與巢狀型別）、使用的方法與構造函數；只需簽名的方法以 { ... } 取代本體
+     */
+    private String sliceUsedMembers(String sourceCode, SequenceDiagramData data, WeavingRules rules) {
+        List<MemberRange> members = new ArrayList<>();
+        if (data.getFieldRanges() != null) {
+            for (SourceRange field : data.getFieldRanges()) {
+                members.add(new MemberRange(field.getStartPosition(), field.getEndPosition(), false,
+                        sourceCode, lineStart(sourceCode, field.getStartPosition()), field.getEndPosition(), 0));
+            }
+        }
+        if (data.getMethodGroups() != null) {
+            for (MethodGroup methodGroup : data.getMethodGroups()) {
+                Boolean stub = selectMethod(methodGroup, rules);
+                if (stub != null) {
+                    int start = methodGroup.getStartPosition();
+                    int end = start + methodGroup.getLength();
+                    members.add(new MemberRange(start, end, stub, sourceCode, lineStart(sourceCode, start), end, 0));
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        appendHeader(result, sourceCode, data, rules);
+        appendRange(result, sourceCode, lineStart(sourceCode, data.getTypeStartPosition()),
+                data.getTypeBodyStartPosition() + 1, 0, data, rules.includeComments());
+        appendMembers(result, data, members, rules);
+        return result.toString();
+    }
+
+    /**
+     * 只使用 AST 中保存的壓縮原始碼提取型別宣告、所有欄位、使用的方法與構造函數，
+     * 只解壓縮需要的方法，輸出與 sliceUsedMembers 相同
+     */
+    @Override
+    public WeavingResult weaveStoredMembers(FileAstData astData, WeavingRules rules) {
+        SequenceDiagramData data = astData != null ? astData.getSequenceDiagramData() : null;
+        if (!rules.extractOnlyUsedMethods() || data == null || !data.hasCompressedSource()) {
+            return null;
+        }
+
+        try {
+            List<MemberRange> members = new ArrayList<>();
+            if (data.getFieldRanges() != null) {
+                for (SourceRange field : data.getFieldRanges()) {
+                    if (field.getCompressedSource() == null) {
+                        return null;
+                    }
+                    String text = TextCompressor.decompress(field.getCompressedSource());
+                    members.add(new MemberRange(field.getStartPosition(), field.getEndPosition(), false,
+                            text, 0, text.length(), field.getEndPosition() - text.length()));
+                }
+            }
+            if (data.getMethodGroups() != null) {
+                for (MethodGroup methodGroup : data.getMethodGroups()) {
+                    Boolean stub = selectMethod(methodGroup, rules);
+                    if (stub == null) {
+                        continue;
+                    }
+                    if (methodGroup.getCompressedSource() == null) {
+                        return null;
+                    }
+                    String text = TextCompressor.decompress(methodGroup.getCompressedSource());
+                    int start = methodGroup.getStartPosition();
+                    int end = start + methodGroup.getLength();
+                    members.add(new MemberRange(start, end, stub, text, 0, text.length(), end - text.length()));
+                }
+            }
+
+            StringBuilder result = new StringBuilder();
+            if (rules.includeImports() && data.getHeaderLength() > 0) {
+                if (data.getCompressedHeaderSource() == null) {
+                    return null;
+                }
+                String header = TextCompressor.decompress(data.getCompressedHeaderSource());
+                appendRange(result, header, 0, header.length(), data.getHeaderStartPosition(), data,
+                        rules.includeComments());
+                result.append("\n\n");
+            }
+            String typeHead = TextCompressor.decompress(data.getCompressedTypeHeadSource());
+            appendRange(result, typeHead, 0, typeHead.length(),
+                    data.getTypeBodyStartPosition() + 1 - typeHead.length(), data, rules.includeComments());
+            appendMembers(result, data, members, rules);
+
+            logger.debug("以保存的成員原始碼編織完成: {}，長度: {} 字元", rules.getClassFqn(), result.length());
+            return new WeavingResultImpl(result.toString(), true, null);
+
+        } catch (IllegalArgumentException e) {
+            logger.warn("保存的成員原始碼無法解壓縮: {} - {}", rules.getClassFqn(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 判斷方法是否要輸出
+     *
+     * @return null 代表不輸出，false 代表完整輸出，true 代表只輸出簽名
+     */
+    private Boolean selectMethod(MethodGroup methodGroup, WeavingRules rules) {
+        if (methodGroup.getLength() <= 0) {
+            return null;
+        }
+        if (rules.getUsedMethodNames().contains(methodGroup.getMethodName())
+                || (rules.includeConstructors() && isConstructor(methodGroup))) {
+            return false;
+        }
+        if (rules.getStubMethodNames().contains(methodGroup.getMethodName())) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * 依原始位置排序輸出成員並補上結尾大括號，型別宣告到左大括號的部分需已寫入
+     */
+    private void appendMembers(StringBuilder result, SequenceDiagramData data, List<MemberRange> members,
+            WeavingRules rules) {
+        members.sort(Comparator.comparingInt(member -> member.start));
+        result.append('\n');
+
+        // 巢狀型別與列舉常數記錄在欄位範圍中完整輸出，其中的方法（以及方法內區域類別的方法）
+        // 會落在已輸出的範圍內，略過以免重複
+        int copiedUntil = data.getTypeBodyStartPosition() + 1;
+        for (MemberRange member : members) {
+            if (member.start < copiedUntil) {
+                continue;
+            }
+            int bodyStart = member.stub ? findBodyStart(member.text, member.textStart, member.textEnd) : -1;
+            if (bodyStart < 0) {
+                appendRange(result, member.text, member.textStart, member.textEnd, member.textOffset, data,
+                        rules.includeComments());
+            } else {
+                appendRange(result, member.text, member.textStart, bodyStart, member.textOffset, data,
+                        rules.includeComments());
+                trimTrailingWhitespace(result);
+                result.append(STUB_BODY);
+            }
+            result.append('\n');
+            copiedUntil = member.end;
+        }
+
+        result.append("}");
+    }
+
+    private void appendHeader(StringBuilder result, String sourceCode, SequenceDiagramData data,
+            WeavingRules rules) {
+        if (rules.includeImports() && data.getHeaderLength() > 0) {
+            appendRange(result, sourceCode, data.getHeaderStartPosition(),
+                    data.getHeaderStartPosition() + data.getHeaderLength(), 0, data, rules.includeComments());
+            result.append("\n\n");
+        }
+    }
+
+    /**
+     * 複製 text 的 [start, end) 區段；不保留註解時依解析時記錄的註解範圍移除註解，
+     * 舊版 AST 沒有註解範圍時逐行略過註解行，行的判斷方式與逐行處理相同
+     *
+     * @param textOffset text 開頭在原始檔中的位置，整個原始碼為 0，保存的成員原始碼為該區段的開始位置
+     */
+    static void appendRange(StringBuilder result, String text, int start, int end, int textOffset,
+            SequenceDiagramData data, boolean includeComments) {
+        if (includeComments) {
+            result.append(text, start, end);
+            return;
+        }
+        if (data != null && data.hasCommentRanges()) {
+            appendWithoutComments(result, text, start, end, textOffset, data.getCommentRanges());
+            return;
+        }
+
+        int lineBegin = start;
+        while (lineBegin < end) {
+            int newline = text.indexOf('\n', lineBegin);
+            int lineEnd = newline < 0 || newline >= end ? end : newline + 1;
+            if (!isCommentLine(text, lineBegin, lineEnd)) {
+                result.append(text, lineBegin, lineEnd);
+            }
+            lineBegin = lineEnd;
+        }
+    }
+
+    /**
+     * 依註解範圍一次掃過區段移除註解：
+     * 獨佔整行的註解連同縮排與換行一起移除，行尾註解連同前面的空白移除，行內註解只移除註解本身
+     */
+    private static void appendWithoutComments(StringBuilder result, String text, int start, int end,
+            int textOffset, List<SourceRange> comments) {
+        int copyFrom = start;
+        for (int i = firstCommentEndingAfter(comments, textOffset + start); i < comments.size(); i++) {
+            SourceRange comment = comments.get(i);
+            int commentStart = Math.max(comment.getStartPosition() - textOffset, start);
+            if (commentStart >= end) {
+                break;
+            }
+            int commentEnd = Math.min(comment.getEndPosition() - textOffset, end);
+
+            int before = commentStart;
+            while (before > copyFrom && isBlank(text.charAt(before - 1))) {
+                before--;
+            }
+            int after = commentEnd;
+            while (after < end && isBlank(text.charAt(after))) {
+                after++;
+            }
+            boolean startsLine = before == 0 || text.charAt(before - 1) == '\n';
+            boolean endsLine = after >= end || text.charAt(after) == '\n' || text.charAt(after) == '\r';
+
+            if (startsLine && endsLine) {
+                result.append(text, copyFrom, before);
+                copyFrom = skipLineBreak(text, after, end);
+            } else if (endsLine) {
+                result.append(text, copyFrom, before);
+                copyFrom = after;
+            } else {
+                result.append(text, copyFrom, commentStart);
+                copyFrom = startsLine ? after : commentEnd;
+            }
+        }
+        result.append(text, copyFrom, end);
+    }
+
+    /**
+     * 二分搜尋第一個結束位置在 position 之後的註解；註解不會重疊，結束位置與開始位置同樣遞增
+     */
+    private static int firstCommentEndingAfter(List<SourceRange> comments, int position) {
+        int low = 0;
+        int high = comments.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comments.get(mid).getEndPosition() <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipLineBreak(String text, int position, int end) {
+        if (position < end && text.charAt(position) == '\r') {
+            position++;
+        }
+        if (position < end && text.charAt(position) == '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * 找出方法本體的左大括號：第一個不在括號、字串或註解內的 '{'；沒有本體（抽象方法）時返回 -1
+     */
+    static int findBodyStart(String sourceCode, int start, int end) {
+        int parenDepth = 0;
+        int i = start;
+        while (i < end) {
+            char c = sourceCode.charAt(i);
+            char next = i + 1 < end ? sourceCode.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                int newline = sourceCode.indexOf('\n', i);
+                i = newline < 0 ? end : newline + 1;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                int commentEnd = sourceCode.indexOf("*/", i + 2);
+                i = commentEnd < 0 ? end : commentEnd + 2;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                i = skipLiteral(sourceCode, i, end, c);
+                continue;
+            }
+            if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                parenDepth--;
+            } else if (c == '{' && parenDepth == 0) {
+                return i;
+            } else if (c == ';' && parenDepth == 0) {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipLiteral(String sourceCode, int quoteStart, int end, char quote) {
+        int i = quoteStart + 1;
+        while (i < end) {
+            char c = sourceCode.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (c == quote) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private void trimTrailingWhitespace(StringBuilder result) {
+        int length = result.length();
+        while (length > 0 && Character.isWhitespace(result.charAt(length - 1))) {
+            length--;
+        }
+        result.setLength(length);
+    }
+
+    /**
+     * 讓區段從所在行的開頭開始，保留原本的縮排
+     */
+    static int lineStart(String sourceCode, int position) {
+        int lineBegin = position;
+        while (lineBegin > 0 && (sourceCode.charAt(lineBegin - 1) == ' ' || sourceCode.charAt(lineBegin - 1) == '\t')) {
+            lineBegin--;
+        }
+        return lineBegin;
+    }
+
+    static boolean isConstructor(MethodGroup methodGroup) {
+        String methodName = methodGroup.getMethodName();
+        String className = AstClassUtil.getSimpleClassName(methodGroup.getClassName());
+        return methodName != null && className != null && methodName.equals(className);
+    }
+
+    private static boolean isCommentLine(String sourceCode, int lineBegin, int lineEnd) {
+        int i = lineBegin;
+        while (i < lineEnd && Character.isWhitespace(sourceCode.charAt(i))) {
+            i++;
+        }
+        if (i >= lineEnd) {
+            return false;
+        }
+        char c = sourceCode.charAt(i);
+        return c == '*' || (c == '/' && i + 1 < lineEnd
+                && (sourceCode.charAt(i + 1) == '/' || sourceCode.charAt(i + 1) == '*'));
+    }
+
     /**
      * 提取完整類別
      */
@@ -210,6 +602,32 @@ public class JdtBasedSourceCodeWeaver implements SourceCodeWeaver {
         return line.startsWith("//") || line.startsWith("/*") || line.startsWith("*");
     }
 
+    /**
+     * 要輸出的成員範圍：start / end 為在原始檔中的位置，用來排序與略過巢狀成員；
+     * 實際輸出 text 的 [textStart, textEnd) 區段，可以是整個原始碼或解壓縮後的成員原始碼，
+     * textOffset 用來把註解範圍換算成 text 中的位置
+     */
+    private static final class MemberRange {
+        private final int start;
+        private final int end;
+        private final boolean stub; // 是否只輸出簽名
+        private final String text;
+        private final int textStart;
+        private final int textEnd;
+        private final int textOffset; // text 開頭在原始檔中的位置
+
+        private MemberRange(int start, int end, boolean stub, String text, int textStart, int textEnd,
+                int textOffset) {
+            this.start = start;
+            this.end = end;
+            this.stub = stub;
+            this.text = text;
+            this.textStart = textStart;
+            this.textEnd = textEnd;
+            this.textOffset = textOffset;
+        }
+    }
+
     /**
      * 編織結果實現
      */
@@ -0,0 +1,113 @@
+package kai.javaparser.ast.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 代碼提取結果的 Markdown 寫入器：
+ * 每個類別編織完成後即寫入目標，同時累計類別數與行數，不需要先組出整份文件再切割計算。
+ * 行數的計算方式與 String.split("\n") 相同（結尾的空行不計）。
+ */
+class MarkdownExtractionWriter {
+
+    private final Appendable out;
+    private int classCount = 0;
+    private int newlineCount = 0;
+    private int lineCount = 0;
+
+    MarkdownExtractionWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * 寫入文件標題與提取資訊
+     *
+     * @param entryPointMethodFqn 進入點
+     * @param totalClasses        總類別數，串流時事先未知則傳入負數，改在結尾的統計中輸出
+     */
+    void writeHeader(String entryPointMethodFqn, int totalClasses) {
+        write("# 代碼提取結果\n\n");
+        write("## 提取資訊\n\n");
+        write("- **進入點**: `");
+        write(entryPointMethodFqn);
+        write("`\n");
+        write("- **提取時間**: ");
+        // 固定到秒且固定格式，標題的成本不隨時間變動，預算模式量測的成本與最終輸出一致
+        write(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        write("\n");
+        if (totalClasses >= 0) {
+            write("- **總類別數**: ");
+            write(Integer.toString(totalClasses));
+            write("\n");
+        }
+        write("\n");
+    }
+
+    /**
+     * 寫入一個類別的段落
+     */
+    void writeClass(String classFqn, String relativePath, String sourceCode) {
+        write("## ");
+        write(relativePath);
+        write("\n\n");
+        write("**類別**: `");
+        write(classFqn);
+        write("`\n\n");
+        write("```java\n");
+        write(sourceCode);
+        write("\n```\n\n");
+        classCount++;
+    }
+
+    /**
+     * 寫入結尾的統計，數字為統計段落之前的內容
+     *
+     * @param plan 預算模式的規劃結果，非預算模式為 null
+     */
+    void writeSummary(ExtractionBudgetPlanner.Plan plan) {
+        int classes = classCount;
+        int lines = lineCount;
+        write("## 統計\n\n");
+        write("- **總類別數**: " + classes + "\n");
+        write("- **總行數**: " + lines + "\n");
+        if (plan != null) {
+            write("- **只輸出簽名**: " + String.join(", ", plan.stubbedMembers) + "\n");
+            write("- **省略**: " + String.join(", ", plan.elidedMembers) + "\n");
+        }
+    }
+
+    /**
+     * 寫入錯誤訊息
+     */
+    void writeError(String message) {
+        write("\n> ");
+        write(message);
+        write("\n");
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    private void write(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                newlineCount++;
+            } else {
+                lineCount = newlineCount + 1;
+            }
+        }
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("代碼提取結果輸出失敗", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package kai.javaparser.ast.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import kai.javaparser.ast.model.ReverseTraceResult;
+import kai.javaparser.ast.model.ReverseTraceResult.CallerNode;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.idx.CallGraphIndex;
+
+/**
+ * 反向追蹤服務：
+ * 給定一個方法，找出 N 層內所有會呼叫到它的方法與入口點，用於影響範圍分析。
+ *
+ * 以 CallGraphIndex 的反向鄰接表做逐層 BFS，每個方法只在最短距離那一層出現一次，
+ * 共用的呼叫路徑因此自動去重；路徑數以逐層累加的方式計算，整體為線性時間。
+ */
+@Service
+public class ReverseTraceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReverseTraceService.class);
+
+    private final AstIndex astIndex;
+    private final CallGraphIndex callGraphIndex;
+
+    @Autowired
+    public ReverseTraceService(AstIndex astIndex, CallGraphIndex callGraphIndex) {
+        this.astIndex = astIndex;
+        this.callGraphIndex = callGraphIndex;
+    }
+
+    /**
+     * 反向追蹤呼叫者
+     *
+     * @param methodFqn    目標方法的完整限定名，例如 "com.example.UserDao.findById(long)"
+     * @param maxDepth     最多往上追蹤的層數
+     * @param basePackages 只保留這些包下的呼叫者，為空時不過濾
+     * @return 反向追蹤結果
+     */
+    public ReverseTraceResult traceCallers(String methodFqn, int maxDepth, Set<String> basePackages) {
+        logger.info("開始反向追蹤，目標方法: {}, 最大層數: {}", methodFqn, maxDepth);
+
+        try {
+            astIndex.loadOrBuild();
+        } catch (Exception e) {
+            logger.error("載入 AST 索引失敗", e);
+            throw new RuntimeException("載入 AST 索引失敗: " + e.getMessage(), e);
+        }
+        callGraphIndex.ensureBuilt();
+
+        String targetKey = CallGraphIndex.toMethodKey(methodFqn);
+
+        Map<String, Integer> levels = new HashMap<>();
+        Map<String, Long> pathCounts = new HashMap<>();
+        Map<String, CallerNode> nodes = new LinkedHashMap<>();
+        levels.put(targetKey, 0);
+        pathCounts.put(targetKey, 1L);
+
+        List<String> frontier = List.of(targetKey);
+        for (int level = 1; level <= maxDepth && !frontier.isEmpty(); level++) {
+            List<String> nextFrontier = new ArrayList<>();
+
+            for (String calleeKey : frontier) {
+                long calleePaths = pathCounts.get(calleeKey);
+                for (String callerKey : sortedCallers(calleeKey, basePackages)) {
+                    Integer existingLevel = levels.get(callerKey);
+                    if (existingLevel == null) {
+                        levels.put(callerKey, level);
+                        CallerNode node = new CallerNode();
+                        node.setMethodKey(callerKey);
+                        node.setLevel(level);
+                        nodes.put(callerKey, node);
+                        nextFrontier.add(callerKey);
+                    } else if (existingLevel != level) {
+                        // 已在更近的層級出現過，這條較長的路徑不列入
+                        continue;
+                    }
+
+                    CallerNode node = nodes.get(callerKey);
+                    node.getCallees().add(calleeKey);
+                    node.setPathCount(node.getPathCount() + calleePaths);
+                }
+            }
+
+            for (String callerKey : nextFrontier) {
+                pathCounts.put(callerKey, nodes.get(callerKey).getPathCount());
+            }
+            frontier = nextFrontier;
+        }
+
+        ReverseTraceResult result = new ReverseTraceResult();
+        result.setTargetMethod(targetKey);
+        result.setMaxDepth(maxDepth);
+
+        long totalPaths = 0;
+        for (CallerNode node : nodes.values()) {
+            boolean hasCallers = !sortedCallers(node.getMethodKey(), basePackages).isEmpty();
+            node.setEntryPoint(!hasCallers);
+            node.setTruncated(hasCallers && node.getLevel() == maxDepth);
+            if (node.isEntryPoint()) {
+                result.getEntryPoints().add(node.getMethodKey());
+                totalPaths += node.getPathCount();
+            }
+            result.getCallers().add(node);
+        }
+        result.setTotalPaths(totalPaths);
+
+        logger.info("反向追蹤完成，目標方法: {}, 呼叫者數量: {}, 入口點數量: {}",
+                targetKey, nodes.size(), result.getEntryPoints().size());
+        return result;
+    }
+
+    private List<String> sortedCallers(String calleeKey, Set<String> basePackages) {
+        List<String> callers = new ArrayList<>();
+        for (String callerKey : callGraphIndex.findCallers(calleeKey)) {
+            if (isInBasePackages(callerKey, basePackages)) {
+                callers.add(callerKey);
+            }
+        }
+        callers.sort(null);
+        return callers;
+    }
+
+    private boolean isInBasePackages(String methodKey, Set<String> basePackages) {
+        if (basePackages == null || basePackages.isEmpty()) {
+            return true;
+        }
+        return basePackages.stream().anyMatch(methodKey::startsWith);
+    }
+}
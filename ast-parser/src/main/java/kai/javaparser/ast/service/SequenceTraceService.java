@@ -5,6 +5,10 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -12,15 +16,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
 import kai.javaparser.ast.model.ControlFlowFragment;
 import kai.javaparser.ast.model.DiagramNode;
 import kai.javaparser.ast.model.FileAstData;
 import kai.javaparser.ast.model.InteractionModel;
 import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.TraceEvent;
 import kai.javaparser.ast.model.TraceResult;
-import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.MethodRef;
 import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.filter.CompiledTraceFilter;
 import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.idx.TypeHierarchyIndex;
 
 /**
  * 序列追蹤服務：
@@ -42,10 +50,15 @@ public class SequenceTraceService {
     private static final Logger logger = LoggerFactory.getLogger(SequenceTraceService.class);
 
     private final AstIndex astIndex;
+    private final TypeHierarchyIndex typeHierarchyIndex;
+
+    // 平行追蹤使用的 fork/join 執行緒池
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     @Autowired
-    public SequenceTraceService(AstIndex astIndex) {
+    public SequenceTraceService(AstIndex astIndex, TypeHierarchyIndex typeHierarchyIndex) {
         this.astIndex = astIndex;
+        this.typeHierarchyIndex = typeHierarchyIndex;
     }
 
     /**
@@ -56,8 +69,16 @@ public class SequenceTraceService {
      * @return 追蹤結果
      */
     public TraceResult trace(String entryPointMethodFqn, SequenceOutputConfig config) {
-        logger.info("開始序列追蹤，進入點: {}", entryPointMethodFqn);
+        prepare(config);
+        return trace(entryPointMethodFqn, config, null);
+    }
 
+    /**
+     * 載入追蹤所需的索引。批次追蹤時只需在開始前呼叫一次。
+     * 
+     * @param config 追蹤配置
+     */
+    public void prepare(SequenceOutputConfig config) {
         // 確保 AstIndex 被正確載入
         try {
             astIndex.loadOrBuild();
@@ -65,120 +86,432 @@ public class SequenceTraceService {
             logger.error("載入 AST 索引失敗", e);
             throw new RuntimeException("載入 AST 索引失敗: " + e.getMessage(), e);
         }
+        if (isDispatchEnabled(config)) {
+            typeHierarchyIndex.ensureBuilt();
+        }
+    }
 
-        List<DiagramNode> sequenceNodes = new ArrayList<>();
-        traceMethod(entryPointMethodFqn, new HashSet<>(), config.getDepth(), sequenceNodes, config);
+    /**
+     * 執行序列追蹤，並與使用同一個 TraceMemo 的其他追蹤共用已展開的子樹。
+     * 不會重新載入索引，呼叫前需先呼叫 {@link #prepare(SequenceOutputConfig)}。
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param memo                子樹記憶，為 null 時不記憶
+     * @return 追蹤結果
+     */
+    public TraceResult trace(String entryPointMethodFqn, SequenceOutputConfig config, TraceMemo memo) {
+        logger.info("開始序列追蹤，進入點: {}, 平行模式: {}", entryPointMethodFqn, config.isParallel());
+
+        SubtreeStats rootStats = memo != null ? new SubtreeStats() : null;
+        // 過濾器的統計自建立以來累計，同一個配置可能用於多次追蹤，記錄追蹤前的數字以計算本次的差
+        CompiledTraceFilter.Stats filterStatsBefore = config.getFilter() instanceof CompiledTraceFilter
+                ? ((CompiledTraceFilter) config.getFilter()).getStats()
+                : null;
+        MethodRef entryPoint = MethodRef.of(entryPointMethodFqn);
+        List<DiagramNode> sequenceNodes;
+        if (config.isParallel()) {
+            sequenceNodes = forkJoinPool.invoke(ForkJoinTask.adapt(
+                    () -> traceMethod(entryPoint, Set.of(), config.getDepth(), config, memo, rootStats)));
+        } else {
+            sequenceNodes = traceMethod(entryPoint, Set.of(), config.getDepth(), config, memo, rootStats);
+        }
 
         logger.info("序列追蹤完成，進入點: {}, 追蹤到的節點數量: {}",
                 entryPointMethodFqn, sequenceNodes.size());
+        if (filterStatsBefore != null) {
+            logger.info("過濾統計: {}",
+                    ((CompiledTraceFilter) config.getFilter()).getStats().since(filterStatsBefore));
+        }
 
-        return new TraceResult(entryPointMethodFqn, sequenceNodes);
+        // 頂層列表可能來自記憶，複製一份避免與其他結果共用
+        return new TraceResult(entryPointMethodFqn, new ArrayList<>(sequenceNodes));
+    }
+
+    /**
+     * 追蹤完整呼叫樹中某個位置的方法。callStack 與 depth 和完整追蹤時該位置相同時，結果與完整追蹤的子樹相同；
+     * depth 較小時只到該深度為止。深度以方法計算：多型分派的實作呼叫節點（{@link InteractionModel#getDispatchTarget()}）
+     * 與其宣告型別的呼叫共用同一個深度，只在樹中多一層，因此樹的層數可能多於 depth。
+     * 用於分頁瀏覽時按需展開：進入點與收合的呼叫各自以此追蹤有限的層數，以同一個 TraceMemo 共用子樹。
+     * 不會重新載入索引，呼叫前需先呼叫 {@link #prepare(SequenceOutputConfig)}。
+     *
+     * @param method    方法
+     * @param callStack 從進入點到此方法之前的呼叫路徑，用於循環偵測
+     * @param depth     方法的剩餘深度
+     * @param config    追蹤配置
+     * @param memo      子樹記憶，為 null 時不記憶
+     * @return 方法內的節點，可能與 memo 中的記錄共用，不可修改
+     */
+    public List<DiagramNode> traceSubtree(MethodRef method, Set<MethodRef> callStack, int depth,
+            SequenceOutputConfig config, TraceMemo memo) {
+        return traceMethod(method, callStack, depth, config, memo, memo != null ? new SubtreeStats() : null);
+    }
+
+    /**
+     * 展開單一呼叫（不含鏈式呼叫的後續環節），被呼叫者為介面或抽象類別時與完整追蹤相同，改為展開具體實作。
+     * 多型分派的實作呼叫節點與其宣告型別的呼叫位在同一個方法中，callStack 與 depth 與宣告型別的呼叫相同
+     *
+     * @param interaction 要展開的呼叫，不會被修改
+     * @param callStack   呼叫所在方法的呼叫路徑（含所在方法）
+     * @param depth       被呼叫方法的剩餘深度
+     * @param config      追蹤配置
+     * @param memo        子樹記憶，為 null 時不記憶
+     * @return 呼叫的內部節點，可能與 memo 中的記錄共用，不可修改
+     */
+    public List<DiagramNode> expandCall(InteractionModel interaction, Set<MethodRef> callStack, int depth,
+            SequenceOutputConfig config, TraceMemo memo) {
+        InteractionModel call = interaction.copyForTrace();
+        call.setNextChainedCall(null);
+        processInteractionModelRecursive(call, callStack, depth + 1, config, memo,
+                memo != null ? new SubtreeStats() : null);
+        return call.getInternalCalls() != null ? call.getInternalCalls() : new ArrayList<>();
+    }
+
+    /**
+     * 串流追蹤：以深度優先、依渲染順序將追蹤事件交給 listener，不建立完整的呼叫樹。
+     * 同一時間只保留目前路徑上每一層的節點列表，峰值記憶體與深度 x 寬度成正比。
+     * 事件順序固定，因此一律循序追蹤，不使用 parallel 設定。
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param listener            事件接收者
+     */
+    public void trace(String entryPointMethodFqn, SequenceOutputConfig config, Consumer<TraceEvent> listener) {
+        logger.info("開始串流序列追蹤，進入點: {}", entryPointMethodFqn);
+        prepare(config);
+
+        listener.accept(TraceEvent.enter(entryPointMethodFqn));
+        int depth = config.getDepth();
+        MethodRef entryPoint = MethodRef.of(entryPointMethodFqn);
+        List<DiagramNode> nodes = loadTraceableMethodNodes(entryPoint, Set.of(), depth, config);
+        if (!nodes.isEmpty()) {
+            Set<MethodRef> branchCallStack = Set.of(entryPoint);
+            for (DiagramNode node : nodes) {
+                streamNode(node, branchCallStack, depth, config, listener);
+            }
+        }
+        listener.accept(TraceEvent.exit(entryPointMethodFqn));
+
+        logger.info("串流序列追蹤完成，進入點: {}", entryPointMethodFqn);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdown();
     }
 
     /**
      * 遞迴追蹤方法呼叫並建立 DiagramNode 列表
      * 簡化邏輯：專注於建立清晰的資料結構
+     * 
+     * callStack 為當前分支的呼叫路徑，只讀不寫；進入方法時複製一份往下傳，
+     * 讓每個分支各自做循環偵測，平行展開時也不需要同步。
+     * 使用 memo 時，parentStats 會收集子樹資訊，用來判斷結果能否被其他路徑重用。
      */
-    private void traceMethod(String methodFqn, Set<String> callStack, int depth,
-            List<DiagramNode> parentNodes, SequenceOutputConfig config) {
+    private List<DiagramNode> traceMethod(MethodRef method, Set<MethodRef> callStack, int depth,
+            SequenceOutputConfig config, TraceMemo memo, SubtreeStats parentStats) {
         if (depth <= 0)
-            return;
-        if (!isTraceable(methodFqn, callStack, config))
-            return;
+            return new ArrayList<>();
+        if (callStack.contains(method)) {
+            if (parentStats != null) {
+                parentStats.prunedMethods.add(method);
+            }
+            return new ArrayList<>();
+        }
+        if (!isTraceable(method, config))
+            return new ArrayList<>();
+
+        if (memo != null) {
+            parentStats.calledMethods.add(method);
+            TraceMemo.Entry cached = memo.lookup(method, depth, callStack);
+            if (cached != null) {
+                parentStats.calledMethods.addAll(cached.getCalledMethods());
+                return cached.getNodes();
+            }
+        }
+
+        // 讀取本層節點，沒有任何頂層互動或控制流程時返回
+        List<DiagramNode> sortedNodes = loadMethodNodes(method, config);
+        if (sortedNodes.isEmpty())
+            return sortedNodes;
+
+        Set<MethodRef> branchCallStack = new HashSet<>(callStack);
+        branchCallStack.add(method);
+
+        // 為本層的每個節點遞迴尋找下一層 (處理 internalCalls)
+        SubtreeStats stats = memo != null ? new SubtreeStats() : null;
+        expandNodes(sortedNodes, branchCallStack, depth, config, memo, stats);
+
+        if (stats != null) {
+            // 截斷在本方法上的循環屬於子樹自身，與外層路徑無關
+            stats.prunedMethods.remove(method);
+            if (stats.prunedMethods.isEmpty()) {
+                memo.store(method, depth, sortedNodes, stats.calledMethods);
+            }
+            parentStats.calledMethods.addAll(stats.calledMethods);
+            parentStats.prunedMethods.addAll(stats.prunedMethods);
+        }
+
+        return sortedNodes;
+    }
 
+    /**
+     * 讀取方法本體這一層的節點（互動與控制流程），複製後依行號排序，尚未展開下一層
+     */
+    private List<DiagramNode> loadMethodNodes(MethodRef method, SequenceOutputConfig config) {
         // 移除泛型資訊
-        String classFqn = AstClassUtil.getClassFqnFromMethodFqn(methodFqn);
-        classFqn = classFqn.replaceAll("<.*>", "");
+        String classFqn = method.getErasedClassFqn();
 
         FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
         if (astData == null) {
             logger.warn("無法找到類別的 AST 資料: {}", classFqn);
-            return;
+            return new ArrayList<>();
         }
 
-        List<InteractionModel> topLevelInvocations = astData.findMethodNode(methodFqn)
+        // 複製節點後再掛載內部呼叫，AST 快取中的物件保持不變
+        List<InteractionModel> topLevelInvocations = astData.findMethodNodeByName(method.getMethodName())
                 .map(astData::findMethodInvocations)
                 .orElse(new ArrayList<>()).stream()
                 .filter(inv -> inv.getMethodName() != null
                         && !config.getFilter().shouldExclude(inv.getCallee(), inv.getMethodName(), astIndex))
                 .filter(inv -> inv.getNextChainedCall() == null) // 只處理頂層互動 (非鏈式呼叫的後續環節)
+                .map(InteractionModel::copyForTrace)
                 .collect(Collectors.toList());
 
         // 獲取當前方法的 MethodGroup
         MethodGroup currentMethodGroup = astData.getSequenceDiagramData()
-                .findMethodGroup(AstClassUtil.getMethodSignature(methodFqn).split("\\(")[0]);
+                .findMethodGroup(method.getMethodName());
         List<ControlFlowFragment> controlFlowFragments = new ArrayList<>();
         if (currentMethodGroup != null && currentMethodGroup.getControlFlowFragments() != null) {
-            controlFlowFragments.addAll(currentMethodGroup.getControlFlowFragments());
+            for (ControlFlowFragment fragment : currentMethodGroup.getControlFlowFragments()) {
+                controlFlowFragments.add(fragment.copyForTrace());
+            }
         }
 
-        // 如果沒有任何頂層互動或控制流程，則返回
-        if (topLevelInvocations.isEmpty() && controlFlowFragments.isEmpty())
-            return;
-
-        callStack.add(methodFqn);
-
         // 合併所有 DiagramNode 並按行號排序
         List<DiagramNode> sortedNodes = new ArrayList<>();
         sortedNodes.addAll(topLevelInvocations);
         sortedNodes.addAll(controlFlowFragments);
         sortedNodes.sort(Comparator.comparingInt(DiagramNode::getStartLineNumber));
 
-        // 將當前層級的節點加入父節點列表
-        parentNodes.addAll(sortedNodes);
+        return sortedNodes;
+    }
 
-        // 為本層的每個節點遞迴尋找下一層 (處理 internalCalls)
-        for (DiagramNode node : sortedNodes) {
-            if (node instanceof InteractionModel) {
-                // 處理鏈式呼叫和內部呼叫
-                processInteractionModelRecursive((InteractionModel) node, callStack, depth, config);
-            } else if (node instanceof ControlFlowFragment) {
-                processControlFlowNode((ControlFlowFragment) node, callStack, depth, config);
+    /**
+     * 展開同一層的節點
+     * 節點順序在排序後已固定，子樹彼此獨立；工作量超過門檻時以 fork/join 平行展開，
+     * 每個子樹只寫入自己的節點，因此結果與循序展開一致。
+     */
+    private void expandNodes(List<DiagramNode> sortedNodes, Set<MethodRef> callStack, int depth,
+            SequenceOutputConfig config, TraceMemo memo, SubtreeStats stats) {
+        if (shouldFork(sortedNodes, depth, config)) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(sortedNodes.size());
+            for (DiagramNode node : sortedNodes) {
+                tasks.add(ForkJoinTask.adapt(() -> expandNode(node, callStack, depth, config, memo, stats)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (DiagramNode node : sortedNodes) {
+                expandNode(node, callStack, depth, config, memo, stats);
             }
         }
+    }
+
+    private boolean shouldFork(List<DiagramNode> sortedNodes, int depth, SequenceOutputConfig config) {
+        return config.isParallel()
+                && ForkJoinTask.inForkJoinPool()
+                && sortedNodes.size() > 1
+                && (long) sortedNodes.size() * depth >= config.getParallelThreshold();
+    }
 
-        callStack.remove(methodFqn);
+    private void expandNode(DiagramNode node, Set<MethodRef> callStack, int depth, SequenceOutputConfig config,
+            TraceMemo memo, SubtreeStats stats) {
+        if (node instanceof InteractionModel) {
+            // 處理鏈式呼叫和內部呼叫
+            processInteractionModelRecursive((InteractionModel) node, callStack, depth, config, memo, stats);
+        } else if (node instanceof ControlFlowFragment) {
+            processControlFlowNode((ControlFlowFragment) node, callStack, depth, config, memo, stats);
+        }
     }
 
     /**
      * 遞迴處理 InteractionModel，包括其鏈式呼叫和內部呼叫
      */
-    private void processInteractionModelRecursive(InteractionModel interaction, Set<String> callStack,
-            int depth, SequenceOutputConfig config) {
+    private void processInteractionModelRecursive(InteractionModel interaction, Set<MethodRef> callStack,
+            int depth, SequenceOutputConfig config, TraceMemo memo, SubtreeStats stats) {
         if (depth <= 0)
             return;
 
         // 1. 處理當前互動的內部呼叫 (如果它不是鏈式呼叫的後續環節)
         // 我們需要追蹤 callee 方法內部的活動
-        String calleeMethodFqn = AstClassUtil.getMethodFqn(interaction.getCallee(), interaction.getMethodName());
-        List<DiagramNode> internalChildNodes = new ArrayList<>();
+        MethodRef calleeMethod = MethodRef.of(interaction.getCallee(), interaction.getMethodName());
+        List<DiagramNode> internalChildNodes = traceMethod(calleeMethod, callStack, depth - 1, config, memo,
+                stats);
 
-        // 保存 callStack 的狀態
-        Set<String> savedCallStack = new HashSet<>(callStack);
-        traceMethod(calleeMethodFqn, callStack, depth - 1, internalChildNodes, config);
-        // 恢復 callStack 的狀態
-        callStack.clear();
-        callStack.addAll(savedCallStack);
+        // 被呼叫者為介面或抽象類別且本身沒有可追蹤的內容時，改為展開具體實作
+        if (internalChildNodes.isEmpty()) {
+            internalChildNodes = traceDispatchTargets(interaction, callStack, depth, config, memo, stats);
+        }
 
         // 將內部呼叫設定到 internalCalls 中
-        if (!internalChildNodes.isEmpty()) {
-            for (DiagramNode node : internalChildNodes) {
-                interaction.addInternalCall(node);
-            }
+        for (DiagramNode node : internalChildNodes) {
+            interaction.addInternalCall(node);
         }
 
         // 2. 處理鏈式呼叫的下一個環節
         if (interaction.getNextChainedCall() != null) {
-            processInteractionModelRecursive(interaction.getNextChainedCall(), callStack, depth, config);
+            processInteractionModelRecursive(interaction.getNextChainedCall(), callStack, depth, config, memo,
+                    stats);
+        }
+    }
+
+    /**
+     * 多型分派：依 DispatchStrategy 選出的具體實作，為每個實作建立一個
+     * 「宣告型別 -> 實作類別」的呼叫節點，並在其下追蹤實作方法的內容。
+     * 具體實作清單來自預先計算的 TypeHierarchyIndex，不需逐邊掃描。
+     */
+    private List<DiagramNode> traceDispatchTargets(InteractionModel interaction, Set<MethodRef> callStack,
+            int depth, SequenceOutputConfig config, TraceMemo memo, SubtreeStats stats) {
+        List<DiagramNode> dispatchNodes = new ArrayList<>();
+        for (InteractionModel dispatchCall : createDispatchCalls(interaction, config)) {
+            MethodRef implMethod = MethodRef.of(dispatchCall.getCallee(), dispatchCall.getMethodName());
+            for (DiagramNode node : traceMethod(implMethod, callStack, depth - 1, config, memo, stats)) {
+                dispatchCall.addInternalCall(node);
+            }
+            dispatchNodes.add(dispatchCall);
         }
+        return dispatchNodes;
+    }
+
+    /**
+     * 依 DispatchStrategy 建立「宣告型別 -> 實作類別」的呼叫節點（尚未追蹤實作內容）
+     */
+    private List<InteractionModel> createDispatchCalls(InteractionModel interaction, SequenceOutputConfig config) {
+        List<InteractionModel> dispatchCalls = new ArrayList<>();
+        String declaredType = interaction.getCallee();
+        if (!isDispatchEnabled(config) || declaredType == null
+                || !typeHierarchyIndex.isAbstractType(declaredType)) {
+            return dispatchCalls;
+        }
+
+        List<String> implementations = config.getDispatchStrategy().selectImplementations(
+                declaredType, interaction.getMethodName(),
+                typeHierarchyIndex.getConcreteImplementations(declaredType));
+
+        for (String implementation : implementations) {
+            InteractionModel dispatchCall = new InteractionModel();
+            dispatchCall.setSequenceId(interaction.getSequenceId());
+            dispatchCall.setCaller(declaredType);
+            dispatchCall.setCallee(implementation);
+            dispatchCall.setMethodName(interaction.getMethodName());
+            dispatchCall.setArguments(interaction.getArguments());
+            dispatchCall.setReturnValue(interaction.getReturnValue());
+            dispatchCall.setLineNumber(interaction.getLineNumber());
+            dispatchCall.setDispatchTarget(true);
+            dispatchCalls.add(dispatchCall);
+        }
+
+        if (!implementations.isEmpty()) {
+            logger.debug("多型分派: {}.{} -> {}", declaredType, interaction.getMethodName(), implementations);
+        }
+        return dispatchCalls;
+    }
+
+    /**
+     * 與 traceMethod 相同的進入條件，但只讀取本層節點，不展開
+     */
+    private List<DiagramNode> loadTraceableMethodNodes(MethodRef method, Set<MethodRef> callStack, int depth,
+            SequenceOutputConfig config) {
+        if (depth <= 0 || callStack.contains(method) || !isTraceable(method, config))
+            return new ArrayList<>();
+        return loadMethodNodes(method, config);
+    }
+
+    private void streamNode(DiagramNode node, Set<MethodRef> callStack, int depth, SequenceOutputConfig config,
+            Consumer<TraceEvent> listener) {
+        if (node instanceof InteractionModel) {
+            streamInteraction((InteractionModel) node, false, false, callStack, depth, config, listener);
+        } else if (node instanceof ControlFlowFragment) {
+            streamControlFlow((ControlFlowFragment) node, true, callStack, depth, config, listener);
+        }
+    }
+
+    /**
+     * 串流模式下的 processInteractionModelRecursive：
+     * 先讀出被呼叫方法本層的節點（或多型分派的實作呼叫），決定是否有內部呼叫後再發出 CALL，
+     * 接著依序展開內部呼叫與鏈式呼叫的下一個環節，最後發出 RETURN。
+     */
+    private void streamInteraction(InteractionModel interaction, boolean conditionEvaluation, boolean chained,
+            Set<MethodRef> callStack, int depth, SequenceOutputConfig config, Consumer<TraceEvent> listener) {
+        List<DiagramNode> internalNodes = new ArrayList<>();
+        Set<MethodRef> internalCallStack = callStack;
+        int internalDepth = depth;
+
+        if (depth > 0) {
+            MethodRef calleeMethod = MethodRef.of(interaction.getCallee(), interaction.getMethodName());
+            internalNodes = loadTraceableMethodNodes(calleeMethod, callStack, depth - 1, config);
+            if (!internalNodes.isEmpty()) {
+                internalCallStack = new HashSet<>(callStack);
+                internalCallStack.add(calleeMethod);
+                internalDepth = depth - 1;
+            } else {
+                // 分派節點與原互動同層展開，其內部再追蹤實作方法
+                internalNodes.addAll(createDispatchCalls(interaction, config));
+            }
+        }
+
+        listener.accept(TraceEvent.call(interaction, conditionEvaluation, chained, !internalNodes.isEmpty()));
+
+        for (DiagramNode node : internalNodes) {
+            streamNode(node, internalCallStack, internalDepth, config, listener);
+        }
+
+        if (interaction.getNextChainedCall() != null) {
+            streamInteraction(interaction.getNextChainedCall(), conditionEvaluation, true, callStack, depth, config,
+                    listener);
+        }
+
+        listener.accept(TraceEvent.returnFrom(interaction));
+    }
+
+    /**
+     * 串流模式下的控制流程：依渲染順序發出條件互動、內容互動與 alternatives
+     */
+    private void streamControlFlow(ControlFlowFragment fragment, boolean firstAlternative, Set<MethodRef> callStack,
+            int depth, SequenceOutputConfig config, Consumer<TraceEvent> listener) {
+        listener.accept(TraceEvent.fragmentStart(fragment, firstAlternative));
+
+        if (fragment.getConditionInteractions() != null) {
+            for (InteractionModel interaction : fragment.getConditionInteractions()) {
+                streamInteraction(interaction, true, false, callStack, depth, config, listener);
+            }
+        }
+        if (fragment.getContentInteractions() != null) {
+            for (InteractionModel interaction : fragment.getContentInteractions()) {
+                streamInteraction(interaction, false, false, callStack, depth, config, listener);
+            }
+        }
+        if (fragment.getAlternatives() != null) {
+            boolean first = true;
+            for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                streamControlFlow(alternative, first, callStack, depth, config, listener);
+                first = false;
+            }
+        }
+
+        listener.accept(TraceEvent.fragmentEnd(fragment));
+    }
+
+    private boolean isDispatchEnabled(SequenceOutputConfig config) {
+        return config.getDispatchStrategy() != null && config.getDispatchStrategy().isEnabled();
     }
 
     /**
      * 處理控制流程節點
      * 簡化邏輯：專注於建立清晰的資料結構
      */
-    private void processControlFlowNode(ControlFlowFragment fragment, Set<String> callStack,
-            int depth, SequenceOutputConfig config) {
+    private void processControlFlowNode(ControlFlowFragment fragment, Set<MethodRef> callStack,
+            int depth, SequenceOutputConfig config, TraceMemo memo, SubtreeStats stats) {
         if (depth <= 0)
             return;
 
@@ -203,40 +536,38 @@ public class SequenceTraceService {
         sortedNodes.sort(Comparator.comparingInt(DiagramNode::getStartLineNumber));
 
         // 依排序後的順序處理所有節點
-        for (DiagramNode node : sortedNodes) {
-            if (node instanceof InteractionModel) {
-                // 處理鏈式呼叫和內部呼叫
-                // 保存 callStack 的狀態
-                Set<String> savedCallStack = new HashSet<>(callStack);
-                processInteractionModelRecursive((InteractionModel) node, callStack, depth, config);
-                // 恢復 callStack 的狀態
-                callStack.clear();
-                callStack.addAll(savedCallStack);
-            } else if (node instanceof ControlFlowFragment) {
-                // 遞迴處理巢狀的控制流程片段
-                // 保存 callStack 的狀態
-                Set<String> savedCallStack = new HashSet<>(callStack);
-                processControlFlowNode((ControlFlowFragment) node, callStack, depth, config);
-                // 恢復 callStack 的狀態
-                callStack.clear();
-                callStack.addAll(savedCallStack);
-            }
-        }
+        expandNodes(sortedNodes, callStack, depth, config, memo, stats);
     }
 
-    private boolean isTraceable(String methodFqn, Set<String> callStack, SequenceOutputConfig config) {
-        if (callStack.contains(methodFqn))
-            return false;
-
+    /**
+     * 判斷方法是否在追蹤範圍內（循環偵測由 traceMethod 處理）
+     */
+    private boolean isTraceable(MethodRef method, SequenceOutputConfig config) {
         // Check if method belongs to any of the base packages
         if (config.getBasePackages() != null && !config.getBasePackages().isEmpty()) {
-            boolean belongsToBasePackage = config.getBasePackages().stream()
-                    .anyMatch(basePackage -> methodFqn.startsWith(basePackage));
+            String methodFqn = method.getFqn();
+            boolean belongsToBasePackage = false;
+            for (String basePackage : config.getBasePackages()) {
+                if (methodFqn.startsWith(basePackage)) {
+                    belongsToBasePackage = true;
+                    break;
+                }
+            }
             if (!belongsToBasePackage) {
                 return false;
             }
         }
 
-        return !config.getFilter().shouldExclude(methodFqn, astIndex);
+        return !config.getFilter().shouldExclude(method, astIndex);
+    }
+
+    /**
+     * 使用 TraceMemo 時收集的子樹資訊。
+     * calledMethods 為子樹中進入過的方法；prunedMethods 為因已在外層呼叫路徑上而被截斷的方法，
+     * 不為空時代表子樹結果依賴外層路徑，不能記錄。平行展開時會被多個分支同時寫入。
+     */
+    private static final class SubtreeStats {
+        private final Set<MethodRef> calledMethods = ConcurrentHashMap.newKeySet();
+        private final Set<MethodRef> prunedMethods = ConcurrentHashMap.newKeySet();
     }
 }
@@ -0,0 +1,139 @@
+package kai.javaparser.ast.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.diagram.MethodRef;
+
+/**
+ * 批次追蹤共用的子樹記憶。
+ * <p>
+ * 以「方法 + 剩餘深度」為鍵，記錄 SequenceTraceService 展開方法後的節點列表，
+ * 讓多個進入點共用的下層方法只展開一次。
+ * </p>
+ * <p>
+ * 只有循環截斷全部發生在子樹自身路徑上的結果才會被記錄；重用時再確認目前呼叫路徑上
+ * 沒有子樹中進入過的方法，因此結果與不使用記憶時完全相同。
+ * 記錄的節點會被多個追蹤結果共用，追蹤完成後只能讀取，不可修改。
+ * 同一個 TraceMemo 只能搭配同一份 SequenceOutputConfig 使用。
+ * </p>
+ */
+public class TraceMemo {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TraceMemo() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries 最多記錄的子樹數量，超過後不再新增記錄
+     */
+    public TraceMemo(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 查詢可重用的子樹
+     *
+     * @param method    方法
+     * @param depth     剩餘深度
+     * @param callStack 目前的呼叫路徑
+     * @return 可重用的記錄，沒有或與目前路徑衝突時為 null
+     */
+    Entry lookup(MethodRef method, int depth, Set<MethodRef> callStack) {
+        Entry entry = entries.get(new Key(method, depth));
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        for (MethodRef onPath : callStack) {
+            if (entry.calledMethods.contains(onPath)) {
+                // 子樹中的方法已在目前路徑上，重新展開時會被截斷，不能重用
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    void store(MethodRef method, int depth, List<DiagramNode> nodes, Set<MethodRef> calledMethods) {
+        if (entries.size() >= maxEntries) {
+            return;
+        }
+        entries.putIfAbsent(new Key(method, depth), new Entry(nodes, calledMethods));
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 記憶鍵：方法參考已預先算好雜湊值，不需要組出「FQN#深度」字串
+     */
+    private static final class Key {
+        private final MethodRef method;
+        private final int depth;
+
+        private Key(MethodRef method, int depth) {
+            this.method = method;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return depth == other.depth && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + depth;
+        }
+    }
+
+    /**
+     * 子樹記錄：展開後的節點與子樹中進入過的方法
+     */
+    static final class Entry {
+        private final List<DiagramNode> nodes;
+        private final Set<MethodRef> calledMethods;
+
+        Entry(List<DiagramNode> nodes, Set<MethodRef> calledMethods) {
+            this.nodes = nodes;
+            this.calledMethods = calledMethods;
+        }
+
+        List<DiagramNode> getNodes() {
+            return nodes;
+        }
+
+        Set<MethodRef> getCalledMethods() {
+            return calledMethods;
+        }
+    }
+}
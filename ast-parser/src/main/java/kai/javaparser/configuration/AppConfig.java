@@ -46,6 +46,26 @@ public class AppConfig {
      */
     private GraphConfig graph = new GraphConfig();
 
+    /**
+     * 代碼提取結果快取配置
+     */
+    private ExtractionCacheConfig extractionCache = new ExtractionCacheConfig();
+
+    /**
+     * 序列圖渲染結果快取配置
+     */
+    private DiagramCacheConfig diagramCache = new DiagramCacheConfig();
+
+    /**
+     * 分頁瀏覽呼叫樹的工作階段配置
+     */
+    private CallTreeSessionConfig callTreeSession = new CallTreeSessionConfig();
+
+    /**
+     * 解析時是否保存各成員的壓縮原始碼，只提取使用的方法時可不讀取整個原始檔
+     */
+    private boolean storeCompressedSource = true;
+
     // Getters and Setters
     public String getAstDir() {
         return astDir;
@@ -95,6 +115,38 @@ public class AppConfig {
         this.graph = graph;
     }
 
+    public ExtractionCacheConfig getExtractionCache() {
+        return extractionCache;
+    }
+
+    public void setExtractionCache(ExtractionCacheConfig extractionCache) {
+        this.extractionCache = extractionCache;
+    }
+
+    public DiagramCacheConfig getDiagramCache() {
+        return diagramCache;
+    }
+
+    public void setDiagramCache(DiagramCacheConfig diagramCache) {
+        this.diagramCache = diagramCache;
+    }
+
+    public CallTreeSessionConfig getCallTreeSession() {
+        return callTreeSession;
+    }
+
+    public void setCallTreeSession(CallTreeSessionConfig callTreeSession) {
+        this.callTreeSession = callTreeSession;
+    }
+
+    public boolean isStoreCompressedSource() {
+        return storeCompressedSource;
+    }
+
+    public void setStoreCompressedSource(boolean storeCompressedSource) {
+        this.storeCompressedSource = storeCompressedSource;
+    }
+
     /**
      * 獲取完整的AST輸出目錄路徑
      * 
@@ -124,6 +176,10 @@ public class AppConfig {
                 ", maxConcurrentTasks=" + maxConcurrentTasks +
                 ", taskTimeoutSeconds=" + taskTimeoutSeconds +
                 ", graph=" + graph +
+                ", extractionCache=" + extractionCache +
+                ", diagramCache=" + diagramCache +
+                ", callTreeSession=" + callTreeSession +
+                ", storeCompressedSource=" + storeCompressedSource +
                 '}';
     }
 
@@ -152,6 +208,137 @@ public class AppConfig {
         }
     }
 
+    /**
+     * 序列圖渲染結果快取配置類
+     */
+    public static class DiagramCacheConfig {
+        /**
+         * 是否啟用快取
+         */
+        private boolean enabled = true;
+
+        /**
+         * 記憶體中快取的上限（MB）
+         */
+        private int maxMemoryMb = 32;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMemoryMb() {
+            return maxMemoryMb;
+        }
+
+        public void setMaxMemoryMb(int maxMemoryMb) {
+            this.maxMemoryMb = maxMemoryMb;
+        }
+
+        @Override
+        public String toString() {
+            return "DiagramCacheConfig{" +
+                    "enabled=" + enabled +
+                    ", maxMemoryMb=" + maxMemoryMb +
+                    '}';
+        }
+    }
+
+    /**
+     * 分頁瀏覽呼叫樹的工作階段配置類
+     */
+    public static class CallTreeSessionConfig {
+        /**
+         * 工作階段最後一次使用後保留的時間（秒）
+         */
+        private int ttlSeconds = 600;
+
+        /**
+         * 同時保留的工作階段上限，超過時淘汰最久未使用的
+         */
+        private int maxSessions = 64;
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public int getMaxSessions() {
+            return maxSessions;
+        }
+
+        public void setMaxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+        }
+
+        @Override
+        public String toString() {
+            return "CallTreeSessionConfig{" +
+                    "ttlSeconds=" + ttlSeconds +
+                    ", maxSessions=" + maxSessions +
+                    '}';
+        }
+    }
+
+    /**
+     * 代碼提取結果快取配置類
+     */
+    public static class ExtractionCacheConfig {
+        /**
+         * 是否啟用快取
+         */
+        private boolean enabled = true;
+
+        /**
+         * 記憶體中快取的上限（MB）
+         */
+        private int maxMemoryMb = 64;
+
+        /**
+         * 超過記憶體上限時寫出的目錄，未設定時直接淘汰
+         */
+        private String spillDir;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMemoryMb() {
+            return maxMemoryMb;
+        }
+
+        public void setMaxMemoryMb(int maxMemoryMb) {
+            this.maxMemoryMb = maxMemoryMb;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+
+        @Override
+        public String toString() {
+            return "ExtractionCacheConfig{" +
+                    "enabled=" + enabled +
+                    ", maxMemoryMb=" + maxMemoryMb +
+                    ", spillDir='" + spillDir + '\'' +
+                    '}';
+        }
+    }
+
     /**
      * 排除配置類
      */
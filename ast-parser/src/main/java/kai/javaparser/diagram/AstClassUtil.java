@@ -40,6 +40,21 @@ public class AstClassUtil {
         return fqn.substring(classFqn.length() + 1);
     }
 
+    /**
+     * 移除泛型資訊，與 replaceAll("&lt;.*&gt;", "") 相同：移除第一個 &lt; 到最後一個 &gt; 之間的內容，但不經過正規表示式
+     */
+    public static String stripGenerics(String typeName) {
+        int start = typeName.indexOf('<');
+        if (start == -1) {
+            return typeName;
+        }
+        int end = typeName.lastIndexOf('>');
+        if (end < start) {
+            return typeName;
+        }
+        return typeName.substring(0, start) + typeName.substring(end + 1);
+    }
+
     /**
      * 產生 Mermaid 安全 ID（以 simple class name 為基礎）
      */
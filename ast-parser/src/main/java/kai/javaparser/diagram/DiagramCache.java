@@ -0,0 +1,298 @@
+package kai.javaparser.diagram;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 序列圖渲染結果快取：
+ * 以進入點、輸出配置與格式為鍵，記錄渲染結果、ETag，以及呼叫樹中每個類別的 AST 版本。
+ *
+ * 1. 取用時只比對版本，不需要重新追蹤；任何一個涉及的類別或其父型別（繼承的方法）重新解析，
+ * 或有新類別加入索引即失效。啟用多型分派時任何類別重新解析都可能改變實作集合，改以整個 AST 的版本判斷
+ * 2. ETag 由圖表內容計算，快取被淘汰後重新渲染出相同內容時 ETag 不變
+ * 3. 以估算的記憶體大小為上限，依最久未使用的順序淘汰
+ */
+@Component
+public class DiagramCache {
+    private final AstIndex astIndex;
+    private final boolean enabled;
+    private final long maxBytes;
+
+    // entries 與 memoryBytes 皆以 entries 為鎖
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    public DiagramCache(AstIndex astIndex, AppConfig appConfig) {
+        AppConfig.DiagramCacheConfig config = appConfig.getDiagramCache();
+        this.astIndex = astIndex;
+        this.enabled = config.isEnabled();
+        this.maxBytes = Math.max(1, config.getMaxMemoryMb()) * 1024L * 1024L;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 可放入快取的圖表長度上限（字元），更長的圖表 put 時一定會被捨棄，不需要組出整份字串
+     */
+    public int getMaxContentChars() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, (maxBytes - 256) / 2));
+    }
+
+    /**
+     * 以會影響輸出的所有欄位組成快取鍵；平行展開不影響輸出，不列入
+     */
+    public static String keyOf(String entryPointMethodFqn, SequenceOutputConfig config, DiagramFormat format) {
+        Set<String> basePackages = config.getBasePackages() != null
+                ? new TreeSet<>(config.getBasePackages())
+                : Set.of();
+        return entryPointMethodFqn
+                + "|" + format
+                + "|" + String.join(",", basePackages)
+                + "|" + config.getDepth()
+                + "|" + config.isHideDetailsInConditionals()
+                + "|" + config.isHideDetailsInChainExpression()
+                + "|" + config.getFilter()
+                + "|" + config.getDispatchStrategy()
+                + "|" + config.isFoldRepeatedCalls()
+                + "|" + config.isFoldPrivateHelpers()
+                + "|" + config.getMaxFanOut();
+    }
+
+    /**
+     * 由圖表內容計算強 ETag（含引號）
+     */
+    public static String etagOf(String diagram) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(diagram.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 收集呼叫樹中出現的所有類別（呼叫者與被呼叫者）
+     */
+    public static Set<String> involvedClasses(TraceResult traceResult) {
+        Set<String> classFqns = new HashSet<>();
+        classFqns.add(AstClassUtil.getClassFqnFromMethodFqn(traceResult.getEntryPointMethodFqn()));
+        collectClasses(traceResult.getSequenceNodes(), classFqns);
+        return classFqns;
+    }
+
+    /**
+     * 取得仍然有效的快取結果
+     *
+     * @param key 快取鍵
+     * @return 快取的圖表，沒有或已失效時為 null
+     */
+    public RenderedDiagram get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (isValid(entry)) {
+                hitCount.incrementAndGet();
+                return entry.diagram;
+            }
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                    memoryBytes -= entry.bytes;
+                }
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 記錄涉及類別及其所有父型別目前的版本並放入快取，需在渲染完成後呼叫
+     *
+     * @param key             快取鍵
+     * @param diagram         渲染結果
+     * @param classFqns       呼叫樹中涉及的類別
+     * @param dispatchEnabled 是否啟用多型分派，啟用時任何類別重新解析都使快取失效
+     */
+    public void put(String key, RenderedDiagram diagram, Set<String> classFqns, boolean dispatchEnabled) {
+        Map<String, Long> classVersions = new HashMap<>();
+        for (String classFqn : withSupertypes(classFqns)) {
+            classVersions.put(classFqn, astIndex.getClassVersion(classFqn));
+        }
+        long astVersion = dispatchEnabled ? astIndex.getVersion() : -1;
+        Entry entry = new Entry(diagram, astIndex.getIndexVersion(), astVersion, classVersions);
+        if (entry.bytes > maxBytes) {
+            return; // 超過整個快取上限的圖表不快取
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                memoryBytes -= previous.bytes;
+            }
+            memoryBytes += entry.bytes;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (memoryBytes > maxBytes && iterator.hasNext()) {
+                memoryBytes -= iterator.next().getValue().bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 清除所有快取
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private boolean isValid(Entry entry) {
+        if (entry.indexVersion != astIndex.getIndexVersion()) {
+            return false;
+        }
+        if (entry.astVersion >= 0 && entry.astVersion != astIndex.getVersion()) {
+            return false;
+        }
+        for (Map.Entry<String, Long> classVersion : entry.classVersions.entrySet()) {
+            if (classVersion.getValue() != astIndex.getClassVersion(classVersion.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 加入所有父類別與介面（遞迴），追蹤時繼承的方法來自父型別的 AST
+     */
+    private Set<String> withSupertypes(Set<String> classFqns) {
+        Set<String> closure = new HashSet<>();
+        List<String> pending = new ArrayList<>(classFqns);
+        while (!pending.isEmpty()) {
+            String classFqn = pending.remove(pending.size() - 1);
+            if (!closure.add(classFqn)) {
+                continue;
+            }
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            SequenceDiagramData data = astData != null ? astData.getSequenceDiagramData() : null;
+            if (data == null) {
+                continue;
+            }
+            if (data.getExtendsClassFqn() != null) {
+                pending.add(AstClassUtil.stripGenerics(data.getExtendsClassFqn()));
+            }
+            if (data.getImplementsInterfaceFqns() != null) {
+                for (String interfaceFqn : data.getImplementsInterfaceFqns()) {
+                    pending.add(AstClassUtil.stripGenerics(interfaceFqn));
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static void collectClasses(List<? extends DiagramNode> nodes, Set<String> classFqns) {
+        if (nodes == null) {
+            return;
+        }
+        for (DiagramNode node : nodes) {
+            if (node instanceof InteractionModel) {
+                InteractionModel interaction = (InteractionModel) node;
+                while (interaction != null) {
+                    if (interaction.getCaller() != null) {
+                        classFqns.add(interaction.getCaller());
+                    }
+                    if (interaction.getCallee() != null) {
+                        classFqns.add(interaction.getCallee());
+                    }
+                    collectClasses(interaction.getInternalCalls(), classFqns);
+                    interaction = interaction.getNextChainedCall();
+                }
+            } else if (node instanceof ControlFlowFragment) {
+                ControlFlowFragment fragment = (ControlFlowFragment) node;
+                collectClasses(fragment.getConditionInteractions(), classFqns);
+                collectClasses(fragment.getContentInteractions(), classFqns);
+                collectClasses(fragment.getAlternatives(), classFqns);
+            }
+        }
+    }
+
+    /**
+     * 渲染後的圖表與其 ETag
+     */
+    public static final class RenderedDiagram {
+        private final String content;
+        private final String etag;
+
+        public RenderedDiagram(String content) {
+            this.content = content;
+            this.etag = etagOf(content);
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private static final class Entry {
+        private final RenderedDiagram diagram;
+        private final long indexVersion;
+        private final long astVersion; // 不依整個 AST 的版本判斷時為 -1
+        private final Map<String, Long> classVersions;
+        private final long bytes;
+
+        private Entry(RenderedDiagram diagram, long indexVersion, long astVersion, Map<String, Long> classVersions) {
+            this.diagram = diagram;
+            this.indexVersion = indexVersion;
+            this.astVersion = astVersion;
+            this.classVersions = classVersions;
+            this.bytes = 256 + 2L * diagram.getContent().length() + 128L * classVersions.size();
+        }
+    }
+}
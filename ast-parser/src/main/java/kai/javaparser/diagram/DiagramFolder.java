@@ -0,0 +1,401 @@
+package kai.javaparser.diagram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.NoteNode;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 圖表折疊：在追蹤與渲染之間縮減呼叫樹，讓非常大的追蹤結果仍然可以渲染。
+ * <p>
+ * 1. foldRepeatedCalls：連續重複的相同呼叫（或長度不超過 MAX_BLOCK 的呼叫序列）只保留一次，
+ * 區塊中的呼叫標示重複次數（xN）；相同指的是整個子樹都相同
+ * 2. foldPrivateHelpers：同類別的 private 輔助方法鏈折疊為一個註解，鏈中對其他類別的呼叫與控制流程片段上移到呼叫者
+ * 3. maxFanOut：子節點超過上限時只保留前面的節點，其餘以「…N more calls」註解表示，N 為省略的呼叫總數
+ * </p>
+ * <p>
+ * 不修改輸入的呼叫樹（TraceMemo 會共用子樹），有變動的節點一律複製，共用的子樹只折疊一次。
+ * 控制流程片段中的清單只能放呼叫，因此片段內只做重複折疊
+ * </p>
+ */
+public class DiagramFolder {
+    private static final int MAX_BLOCK = 8;
+
+    private final SequenceOutputConfig config;
+    private final AstIndex astIndex;
+
+    // 原始呼叫 -> 折疊後的呼叫
+    private final Map<InteractionModel, InteractionModel> foldedInteractions = new IdentityHashMap<>();
+    // 折疊後節點的結構雜湊，用於快速排除不同的區塊
+    private final Map<DiagramNode, Long> fingerprints = new IdentityHashMap<>();
+    // 類別#方法名 -> 同名的方法是否全為 private
+    private final Map<String, Boolean> privateMethods = new HashMap<>();
+
+    /**
+     * @param config   輸出配置，決定啟用哪些折疊
+     * @param astIndex 用於判斷方法是否為 private，可為 null（不折疊輔助方法）
+     */
+    public DiagramFolder(SequenceOutputConfig config, AstIndex astIndex) {
+        this.config = config;
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 折疊整個呼叫樹
+     *
+     * @param traceResult 追蹤結果
+     * @return 折疊後的追蹤結果
+     */
+    public TraceResult fold(TraceResult traceResult) {
+        String entryClassFqn = AstClassUtil.getClassFqnFromMethodFqn(traceResult.getEntryPointMethodFqn());
+        return new TraceResult(traceResult.getEntryPointMethodFqn(),
+                foldNodes(traceResult.getSequenceNodes(), entryClassFqn));
+    }
+
+    private List<DiagramNode> foldNodes(List<DiagramNode> nodes, String ownerClassFqn) {
+        if (nodes == null) {
+            return null;
+        }
+
+        List<DiagramNode> result = new ArrayList<>(nodes.size());
+        for (DiagramNode node : nodes) {
+            if (node instanceof InteractionModel) {
+                InteractionModel interaction = (InteractionModel) node;
+                if (config.isFoldPrivateHelpers() && isPrivateHelper(interaction, ownerClassFqn)) {
+                    List<String> chain = new ArrayList<>();
+                    List<DiagramNode> hoisted = new ArrayList<>();
+                    absorbHelper(interaction, ownerClassFqn, chain, hoisted);
+                    result.add(new NoteNode("private " + String.join(" → ", chain), interaction.getLineNumber()));
+                    result.addAll(hoisted);
+                } else {
+                    result.add(foldInteraction(interaction));
+                }
+            } else if (node instanceof ControlFlowFragment) {
+                result.add(foldFragment((ControlFlowFragment) node));
+            } else {
+                result.add(node);
+            }
+        }
+
+        if (config.isFoldRepeatedCalls()) {
+            result = foldRepeats(result);
+        }
+        if (config.getMaxFanOut() > 0 && result.size() > config.getMaxFanOut()) {
+            result = limitFanOut(result, config.getMaxFanOut());
+        }
+        return result;
+    }
+
+    private InteractionModel foldInteraction(InteractionModel interaction) {
+        if (interaction.getInternalCalls() == null && interaction.getNextChainedCall() == null) {
+            return interaction;
+        }
+        InteractionModel folded = foldedInteractions.get(interaction);
+        if (folded != null) {
+            return folded;
+        }
+
+        folded = interaction.copyForTrace();
+        folded.setInternalCalls(foldNodes(interaction.getInternalCalls(), interaction.getCallee()));
+        if (interaction.getNextChainedCall() != null) {
+            folded.setNextChainedCall(foldInteraction(interaction.getNextChainedCall()));
+        }
+        foldedInteractions.put(interaction, folded);
+        return folded;
+    }
+
+    private ControlFlowFragment foldFragment(ControlFlowFragment fragment) {
+        ControlFlowFragment folded = new ControlFlowFragment();
+        folded.setSequenceId(fragment.getSequenceId());
+        folded.setType(fragment.getType());
+        folded.setCondition(fragment.getCondition());
+        folded.setCallerClass(fragment.getCallerClass());
+        folded.setCallerMethod(fragment.getCallerMethod());
+        folded.setContextPath(fragment.getContextPath());
+        folded.setStartLineNumber(fragment.getStartLineNumber());
+        folded.setEndLineNumber(fragment.getEndLineNumber());
+        folded.setDiffStatus(fragment.getDiffStatus());
+        folded.setConditionInteractions(foldInteractions(fragment.getConditionInteractions()));
+        folded.setContentInteractions(foldInteractions(fragment.getContentInteractions()));
+        if (fragment.getAlternatives() != null) {
+            List<ControlFlowFragment> alternatives = new ArrayList<>(fragment.getAlternatives().size());
+            for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                alternatives.add(foldFragment(alternative));
+            }
+            folded.setAlternatives(alternatives);
+        } else {
+            folded.setAlternatives(null);
+        }
+        return folded;
+    }
+
+    private List<InteractionModel> foldInteractions(List<InteractionModel> interactions) {
+        if (interactions == null) {
+            return null;
+        }
+        List<InteractionModel> result = new ArrayList<>(interactions.size());
+        for (InteractionModel interaction : interactions) {
+            result.add(foldInteraction(interaction));
+        }
+        return config.isFoldRepeatedCalls() ? foldRepeats(result) : result;
+    }
+
+    // ---- private 輔助方法 ----
+
+    private boolean isPrivateHelper(InteractionModel interaction, String ownerClassFqn) {
+        return ownerClassFqn != null
+                && ownerClassFqn.equals(interaction.getCallee())
+                && interaction.getNextChainedCall() == null
+                && isPrivateMethod(interaction.getCallee(), interaction.getMethodName());
+    }
+
+    /**
+     * 呼叫只記錄方法名，無法得知呼叫的是哪一個多載；
+     * 同名的方法全部為 private 時才視為輔助方法，有任何一個非 private 的多載時不折疊
+     */
+    private boolean isPrivateMethod(String classFqn, String methodName) {
+        if (astIndex == null || methodName == null) {
+            return false;
+        }
+        return privateMethods.computeIfAbsent(classFqn + "#" + methodName, key -> {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData == null || astData.getSequenceDiagramData() == null) {
+                return false;
+            }
+            List<MethodGroup> overloads = astData.getSequenceDiagramData().findMethodGroups(methodName);
+            return !overloads.isEmpty() && overloads.stream().allMatch(MethodGroup::isPrivateMethod);
+        });
+    }
+
+    /**
+     * 依呼叫順序收集輔助方法鏈的名稱，鏈中其他節點折疊後上移
+     */
+    private void absorbHelper(InteractionModel helper, String ownerClassFqn, List<String> chain,
+            List<DiagramNode> hoisted) {
+        chain.add(helper.getMethodName());
+        if (helper.getInternalCalls() == null) {
+            return;
+        }
+        for (DiagramNode node : helper.getInternalCalls()) {
+            if (node instanceof InteractionModel && isPrivateHelper((InteractionModel) node, ownerClassFqn)) {
+                absorbHelper((InteractionModel) node, ownerClassFqn, chain, hoisted);
+            } else if (node instanceof InteractionModel) {
+                hoisted.add(foldInteraction((InteractionModel) node));
+            } else if (node instanceof ControlFlowFragment) {
+                hoisted.add(foldFragment((ControlFlowFragment) node));
+            } else {
+                hoisted.add(node);
+            }
+        }
+    }
+
+    // ---- 重複折疊 ----
+
+    /**
+     * 從每個位置找最短的重複區塊，區塊必須以呼叫開頭；
+     * 區塊只保留一次，其中的呼叫標示重複次數
+     */
+    private <T extends DiagramNode> List<T> foldRepeats(List<T> nodes) {
+        int size = nodes.size();
+        List<T> result = new ArrayList<>(size);
+        int i = 0;
+        while (i < size) {
+            int blockLength = 0;
+            int repeats = 1;
+            if (nodes.get(i) instanceof InteractionModel) {
+                for (int k = 1; k <= MAX_BLOCK && i + 2 * k <= size; k++) {
+                    int r = 1;
+                    while (i + (r + 1) * k <= size && sameBlock(nodes, i, i + r * k, k)) {
+                        r++;
+                    }
+                    if (r > 1) {
+                        blockLength = k;
+                        repeats = r;
+                        break;
+                    }
+                }
+            }
+
+            if (blockLength == 0) {
+                result.add(nodes.get(i));
+                i++;
+                continue;
+            }
+            for (int j = 0; j < blockLength; j++) {
+                result.add(withRepeatCount(nodes.get(i + j), repeats));
+            }
+            i += blockLength * repeats;
+        }
+        return result;
+    }
+
+    private boolean sameBlock(List<? extends DiagramNode> nodes, int first, int second, int length) {
+        for (int j = 0; j < length; j++) {
+            if (!sameNode(nodes.get(first + j), nodes.get(second + j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends DiagramNode> T withRepeatCount(T node, int repeats) {
+        if (!(node instanceof InteractionModel)) {
+            return node;
+        }
+        InteractionModel interaction = (InteractionModel) node;
+        InteractionModel copy = interaction.copyForTrace();
+        copy.setNextChainedCall(interaction.getNextChainedCall());
+        copy.setInternalCalls(interaction.getInternalCalls());
+        copy.setRepeatCount(repeats * (interaction.getRepeatCount() != null ? interaction.getRepeatCount() : 1));
+        return (T) copy;
+    }
+
+    private boolean sameNode(DiagramNode a, DiagramNode b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass() || fingerprint(a) != fingerprint(b)) {
+            return false;
+        }
+
+        if (a instanceof InteractionModel) {
+            InteractionModel x = (InteractionModel) a;
+            InteractionModel y = (InteractionModel) b;
+            return Objects.equals(x.getCallee(), y.getCallee())
+                    && Objects.equals(x.getMethodName(), y.getMethodName())
+                    && Objects.equals(x.getArguments(), y.getArguments())
+                    && Objects.equals(x.getAssignedToVariable(), y.getAssignedToVariable())
+                    && Objects.equals(x.getRepeatCount(), y.getRepeatCount())
+                    && sameNode(x.getNextChainedCall(), y.getNextChainedCall())
+                    && sameNodes(x.getInternalCalls(), y.getInternalCalls());
+        }
+        if (a instanceof ControlFlowFragment) {
+            ControlFlowFragment x = (ControlFlowFragment) a;
+            ControlFlowFragment y = (ControlFlowFragment) b;
+            return x.getType() == y.getType()
+                    && Objects.equals(x.getCondition(), y.getCondition())
+                    && sameNodes(x.getConditionInteractions(), y.getConditionInteractions())
+                    && sameNodes(x.getContentInteractions(), y.getContentInteractions())
+                    && sameNodes(x.getAlternatives(), y.getAlternatives());
+        }
+        return a.equals(b);
+    }
+
+    private boolean sameNodes(List<? extends DiagramNode> a, List<? extends DiagramNode> b) {
+        int sizeA = a == null ? 0 : a.size();
+        int sizeB = b == null ? 0 : b.size();
+        if (sizeA != sizeB) {
+            return false;
+        }
+        for (int i = 0; i < sizeA; i++) {
+            if (!sameNode(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long fingerprint(DiagramNode node) {
+        if (node == null) {
+            return 0;
+        }
+        Long cached = fingerprints.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        long hash;
+        if (node instanceof InteractionModel) {
+            InteractionModel interaction = (InteractionModel) node;
+            hash = 1;
+            hash = hash * 31 + Objects.hashCode(interaction.getCallee());
+            hash = hash * 31 + Objects.hashCode(interaction.getMethodName());
+            hash = hash * 31 + Objects.hashCode(interaction.getArguments());
+            hash = hash * 31 + Objects.hashCode(interaction.getAssignedToVariable());
+            hash = hash * 31 + Objects.hashCode(interaction.getRepeatCount());
+            hash = hash * 31 + fingerprint(interaction.getNextChainedCall());
+            hash = hash * 31 + fingerprint(interaction.getInternalCalls());
+        } else if (node instanceof ControlFlowFragment) {
+            ControlFlowFragment fragment = (ControlFlowFragment) node;
+            hash = 2;
+            hash = hash * 31 + Objects.hashCode(fragment.getType());
+            hash = hash * 31 + Objects.hashCode(fragment.getCondition());
+            hash = hash * 31 + fingerprint(fragment.getConditionInteractions());
+            hash = hash * 31 + fingerprint(fragment.getContentInteractions());
+            hash = hash * 31 + fingerprint(fragment.getAlternatives());
+        } else {
+            hash = node.hashCode();
+        }
+        fingerprints.put(node, hash);
+        return hash;
+    }
+
+    private long fingerprint(List<? extends DiagramNode> nodes) {
+        if (nodes == null) {
+            return 0;
+        }
+        long hash = 1;
+        for (DiagramNode node : nodes) {
+            hash = hash * 1_000_003 + fingerprint(node);
+        }
+        return hash;
+    }
+
+    // ---- 分支上限 ----
+
+    private List<DiagramNode> limitFanOut(List<DiagramNode> nodes, int maxFanOut) {
+        List<DiagramNode> result = new ArrayList<>(nodes.subList(0, maxFanOut));
+        long omittedCalls = 0;
+        for (DiagramNode node : nodes.subList(maxFanOut, nodes.size())) {
+            omittedCalls += countCalls(node);
+        }
+        result.add(new NoteNode("…" + omittedCalls + " more calls", nodes.get(maxFanOut).getStartLineNumber()));
+        return result;
+    }
+
+    private long countCalls(DiagramNode node) {
+        if (node instanceof InteractionModel) {
+            InteractionModel interaction = (InteractionModel) node;
+            long count = 1 + countCalls(interaction.getNextChainedCall());
+            if (interaction.getInternalCalls() != null) {
+                for (DiagramNode internalCall : interaction.getInternalCalls()) {
+                    count += countCalls(internalCall);
+                }
+            }
+            return count * (interaction.getRepeatCount() != null ? interaction.getRepeatCount() : 1);
+        }
+        if (node instanceof ControlFlowFragment) {
+            ControlFlowFragment fragment = (ControlFlowFragment) node;
+            long count = 0;
+            if (fragment.getConditionInteractions() != null) {
+                for (InteractionModel interaction : fragment.getConditionInteractions()) {
+                    count += countCalls(interaction);
+                }
+            }
+            if (fragment.getContentInteractions() != null) {
+                for (InteractionModel interaction : fragment.getContentInteractions()) {
+                    count += countCalls(interaction);
+                }
+            }
+            if (fragment.getAlternatives() != null) {
+                for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                    count += countCalls(alternative);
+                }
+            }
+            return count;
+        }
+        return 0;
+    }
+}
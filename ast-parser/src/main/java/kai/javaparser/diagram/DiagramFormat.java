@@ -0,0 +1,54 @@
+package kai.javaparser.diagram;
+
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 圖表輸出格式
+ * 所有格式都以 SequenceDiagramWalker 走訪同一個 TraceResult，過濾與隱藏細節的規則相同
+ */
+public enum DiagramFormat {
+    /** Mermaid 序列圖 */
+    MERMAID("Mermaid", "text/plain"),
+    /** PlantUML 序列圖 */
+    PLANTUML("PlantUML", "text/plain"),
+    /** 帶版本的 JSON 呼叫樹，供前端或其他工具使用 */
+    JSON("JSON", "application/json");
+
+    private final String displayName;
+    private final String contentType;
+
+    DiagramFormat(String displayName, String contentType) {
+        this.displayName = displayName;
+        this.contentType = contentType;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * 回應使用的 MIME 類型（不含字元集）
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 建立此格式的渲染器
+     *
+     * @param config   輸出配置
+     * @param astIndex 用於查詢註解，可為 null
+     * @return 渲染器
+     */
+    public DiagramRenderer createRenderer(SequenceOutputConfig config, AstIndex astIndex) {
+        switch (this) {
+            case PLANTUML:
+                return new PlantUmlRenderer(config, astIndex);
+            case JSON:
+                return new JsonCallTreeRenderer(config, astIndex);
+            case MERMAID:
+            default:
+                return new MermaidRenderer(config, astIndex);
+        }
+    }
+}
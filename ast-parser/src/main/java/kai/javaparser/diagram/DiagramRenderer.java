@@ -1,5 +1,8 @@
 package kai.javaparser.diagram;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import kai.javaparser.ast.model.TraceResult;
 
 /**
@@ -16,6 +19,20 @@ public interface DiagramRenderer {
      */
     String render(TraceResult traceResult);
 
+    /**
+     * 渲染圖表並寫到輸出目標，預設先組出整份字串再寫出，支援串流的渲染器應覆寫
+     * 
+     * @param traceResult 追蹤結果
+     * @param out         輸出目標
+     */
+    default void render(TraceResult traceResult, Appendable out) {
+        try {
+            out.append(render(traceResult));
+        } catch (IOException e) {
+            throw new UncheckedIOException("圖表輸出失敗", e);
+        }
+    }
+
     /**
      * 獲取渲染器支援的格式名稱
      * 
@@ -1,17 +1,25 @@
 package kai.javaparser.diagram;
 
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import kai.javaparser.ast.model.DiagramCacheStats;
 import kai.javaparser.ast.model.TraceResult;
 import kai.javaparser.ast.service.SequenceTraceService;
+import kai.javaparser.ast.service.TraceMemo;
+import kai.javaparser.diagram.idx.AnnotationIndex;
 import kai.javaparser.diagram.idx.AstIndex;
 
 /**
  * 圖表服務
- * 提供統一的圖表生成介面，支援多種圖表格式
+ * 提供統一的圖表生成介面，支援多種圖表格式（見 DiagramFormat），同一次追蹤可渲染為多種格式
  */
 @Service
 public class DiagramService {
@@ -19,11 +27,13 @@ public class DiagramService {
 
     private final SequenceTraceService sequenceTraceService;
     private final AstIndex astIndex;
+    private final DiagramCache diagramCache;
 
     @Autowired
-    public DiagramService(SequenceTraceService sequenceTraceService, AstIndex astIndex) {
+    public DiagramService(SequenceTraceService sequenceTraceService, AstIndex astIndex, DiagramCache diagramCache) {
         this.sequenceTraceService = sequenceTraceService;
         this.astIndex = astIndex;
+        this.diagramCache = diagramCache;
     }
 
     /**
@@ -34,18 +44,59 @@ public class DiagramService {
      * @return 圖表字串
      */
     public String generateDiagram(String entryPointMethodFqn, SequenceOutputConfig config) {
-        logger.info("開始生成Mermaid圖表，進入點: {}", entryPointMethodFqn);
+        return generateDiagram(entryPointMethodFqn, config, DiagramFormat.MERMAID);
+    }
+
+    /**
+     * 以指定格式生成圖表
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param format              輸出格式
+     * @return 圖表字串
+     */
+    public String generateDiagram(String entryPointMethodFqn, SequenceOutputConfig config, DiagramFormat format) {
+        logger.info("開始生成{}圖表，進入點: {}", format.getDisplayName(), entryPointMethodFqn);
 
         try {
             // 1. 追蹤並建立呼叫樹
             TraceResult traceResult = sequenceTraceService.trace(entryPointMethodFqn, config);
 
             // 2. 創建渲染器並渲染呼叫樹
-            DiagramRenderer renderer = new MermaidRenderer(config, astIndex);
-            String diagram = renderer.render(traceResult);
+            return render(traceResult, config, format);
 
-            logger.info("Mermaid圖表生成完成，長度: {} 字元", diagram.length());
-            return diagram;
+        } catch (Exception e) {
+            logger.error("圖表生成失敗", e);
+            throw new RuntimeException("圖表生成失敗: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以快取取得渲染後的圖表與 ETag：
+     * 相同的進入點、配置與格式，且涉及的類別與其父型別都沒有重新解析時，不追蹤也不渲染，直接返回快取的結果
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param format              輸出格式
+     * @return 圖表與 ETag
+     */
+    public DiagramCache.RenderedDiagram generateCachedDiagram(String entryPointMethodFqn,
+            SequenceOutputConfig config, DiagramFormat format) {
+        String cacheKey = DiagramCache.keyOf(entryPointMethodFqn, config, format);
+        DiagramCache.RenderedDiagram cached = diagramCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("圖表快取命中，進入點: {}", entryPointMethodFqn);
+            return cached;
+        }
+
+        logger.info("開始生成{}圖表，進入點: {}", format.getDisplayName(), entryPointMethodFqn);
+        try {
+            long versionBefore = astIndex.getVersion();
+            TraceResult traceResult = sequenceTraceService.trace(entryPointMethodFqn, config);
+            DiagramCache.RenderedDiagram rendered = new DiagramCache.RenderedDiagram(
+                    render(traceResult, config, format));
+            cache(cacheKey, rendered, traceResult, config, versionBefore);
+            return rendered;
 
         } catch (Exception e) {
             logger.error("圖表生成失敗", e);
@@ -54,11 +105,210 @@ public class DiagramService {
     }
 
     /**
-     * 獲取當前使用的圖表格式名稱
+     * 以快取取得圖表，未命中時只緩衝不超過快取上限的內容：
+     * 圖表放得進快取時與 generateCachedDiagram 相同，返回圖表與 ETag；
+     * 超過上限時不組出整份字串，改為邊渲染邊寫到 overflow 取得的輸出目標，沒有 ETag 也不放入快取。
+     * 追蹤失敗時在寫出任何內容之前拋出例外
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param format              輸出格式
+     * @param overflow            圖表超過快取上限時取得輸出目標，最多呼叫一次
+     * @return 圖表與 ETag；圖表已直接寫到 overflow 時為 null
+     */
+    public DiagramCache.RenderedDiagram writeCachedDiagram(String entryPointMethodFqn, SequenceOutputConfig config,
+            DiagramFormat format, Supplier<Appendable> overflow) {
+        String cacheKey = DiagramCache.keyOf(entryPointMethodFqn, config, format);
+        DiagramCache.RenderedDiagram cached = diagramCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("圖表快取命中，進入點: {}", entryPointMethodFqn);
+            return cached;
+        }
+
+        logger.info("開始生成{}圖表，進入點: {}", format.getDisplayName(), entryPointMethodFqn);
+        long versionBefore = astIndex.getVersion();
+        TraceResult traceResult;
+        try {
+            traceResult = sequenceTraceService.trace(entryPointMethodFqn, config);
+        } catch (Exception e) {
+            logger.error("圖表生成失敗", e);
+            throw new RuntimeException("圖表生成失敗: " + e.getMessage(), e);
+        }
+
+        SpillingDiagramBuffer buffer = new SpillingDiagramBuffer(diagramCache.getMaxContentChars(), overflow);
+        format.createRenderer(config, astIndex).render(fold(traceResult, config), buffer);
+        if (buffer.isSpilled()) {
+            logger.info("{}圖表超過快取上限，已直接寫出且不快取，進入點: {}", format.getDisplayName(), entryPointMethodFqn);
+            return null;
+        }
+
+        DiagramCache.RenderedDiagram rendered = new DiagramCache.RenderedDiagram(buffer.toString());
+        cache(cacheKey, rendered, traceResult, config, versionBefore);
+        return rendered;
+    }
+
+    /**
+     * 追蹤期間 AST 有變動時無法確定圖表對應的版本，不放入快取
+     */
+    private void cache(String cacheKey, DiagramCache.RenderedDiagram rendered, TraceResult traceResult,
+            SequenceOutputConfig config, long versionBefore) {
+        if (astIndex.getVersion() == versionBefore) {
+            boolean dispatchEnabled = config.getDispatchStrategy() != null
+                    && config.getDispatchStrategy().isEnabled();
+            diagramCache.put(cacheKey, rendered, DiagramCache.involvedClasses(traceResult), dispatchEnabled);
+        }
+    }
+
+    /**
+     * 是否啟用圖表快取
+     */
+    public boolean isCacheEnabled() {
+        return diagramCache.isEnabled();
+    }
+
+    /**
+     * 取得圖表快取與註解查詢表的統計資訊
+     */
+    public DiagramCacheStats getCacheStats() {
+        DiagramCacheStats stats = new DiagramCacheStats();
+        stats.setEnabled(diagramCache.isEnabled());
+        stats.setHits(diagramCache.getHitCount());
+        stats.setMisses(diagramCache.getMissCount());
+        long total = stats.getHits() + stats.getMisses();
+        stats.setHitRate(total == 0 ? 0 : (double) stats.getHits() / total);
+        AnnotationIndex annotationIndex = astIndex.getAnnotationIndex();
+        stats.setAnnotationClasses(annotationIndex.getClassCount());
+        stats.setAnnotationFailures(annotationIndex.getFailureCount());
+        return stats;
+    }
+
+    /**
+     * 只追蹤一次，以多種格式渲染同一個呼叫樹
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param formats             輸出格式
+     * @return 格式 -> 圖表字串
+     */
+    public Map<DiagramFormat, String> generateDiagrams(String entryPointMethodFqn, SequenceOutputConfig config,
+            Collection<DiagramFormat> formats) {
+        logger.info("開始生成圖表 {}，進入點: {}", formats, entryPointMethodFqn);
+
+        try {
+            TraceResult traceResult = sequenceTraceService.trace(entryPointMethodFqn, config);
+
+            // 折疊也只做一次，各格式渲染同一個折疊後的呼叫樹
+            TraceResult folded = fold(traceResult, config);
+            Map<DiagramFormat, String> diagrams = new EnumMap<>(DiagramFormat.class);
+            for (DiagramFormat format : formats) {
+                diagrams.put(format, renderFolded(folded, config, format));
+            }
+            return diagrams;
+
+        } catch (Exception e) {
+            logger.error("圖表生成失敗", e);
+            throw new RuntimeException("圖表生成失敗: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 生成圖表，與使用同一個 TraceMemo 的其他進入點共用已展開的子樹。
+     * 供批次追蹤使用，呼叫前需先以 SequenceTraceService.prepare 載入索引。
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param memo                子樹記憶
+     * @return 圖表字串
+     */
+    public String generateDiagram(String entryPointMethodFqn, SequenceOutputConfig config, TraceMemo memo) {
+        try {
+            TraceResult traceResult = sequenceTraceService.trace(entryPointMethodFqn, config, memo);
+            return render(traceResult, config, DiagramFormat.MERMAID);
+
+        } catch (Exception e) {
+            logger.error("圖表生成失敗，進入點: {}", entryPointMethodFqn, e);
+            throw new RuntimeException("圖表生成失敗: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 生成圖表並直接寫到輸出目標：先追蹤建立呼叫樹，再邊走訪邊寫出，
+     * 不在記憶體中累積圖表項目或組出整份字串，輸出與 generateDiagram 相同。
+     * 追蹤失敗時在寫出任何內容之前拋出例外
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param out                 輸出目標
+     */
+    public void writeDiagram(String entryPointMethodFqn, SequenceOutputConfig config, Appendable out) {
+        writeDiagram(entryPointMethodFqn, config, DiagramFormat.MERMAID, out);
+    }
+
+    /**
+     * 以指定格式生成圖表並直接寫到輸出目標，追蹤失敗時在寫出任何內容之前拋出例外
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param format              輸出格式
+     * @param out                 輸出目標
+     */
+    public void writeDiagram(String entryPointMethodFqn, SequenceOutputConfig config, DiagramFormat format,
+            Appendable out) {
+        logger.info("開始生成{}圖表（直接寫出），進入點: {}", format.getDisplayName(), entryPointMethodFqn);
+
+        TraceResult traceResult;
+        try {
+            traceResult = sequenceTraceService.trace(entryPointMethodFqn, config);
+        } catch (Exception e) {
+            logger.error("圖表生成失敗", e);
+            throw new RuntimeException("圖表生成失敗: " + e.getMessage(), e);
+        }
+
+        format.createRenderer(config, astIndex).render(fold(traceResult, config), out);
+    }
+
+    /**
+     * 以串流方式生成圖表：追蹤事件直接交給 StreamingMermaidRenderer，邊追蹤邊寫出，
+     * 不建立完整的呼叫樹。participant 會在第一次出現時宣告，其餘內容與 generateDiagram 相同。
+     * 沒有完整的呼叫樹可供比對，不套用折疊配置。
+     * 
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param out                 輸出目標
+     */
+    public void streamDiagram(String entryPointMethodFqn, SequenceOutputConfig config, Appendable out) {
+        logger.info("開始串流生成Mermaid圖表，進入點: {}", entryPointMethodFqn);
+        sequenceTraceService.trace(entryPointMethodFqn, config, new StreamingMermaidRenderer(config, astIndex, out));
+    }
+
+    private String render(TraceResult traceResult, SequenceOutputConfig config, DiagramFormat format) {
+        return renderFolded(fold(traceResult, config), config, format);
+    }
+
+    private String renderFolded(TraceResult traceResult, SequenceOutputConfig config, DiagramFormat format) {
+        DiagramRenderer renderer = format.createRenderer(config, astIndex);
+        String diagram = renderer.render(traceResult);
+
+        logger.info("{}圖表生成完成，長度: {} 字元", renderer.getFormatName(), diagram.length());
+        return diagram;
+    }
+
+    /**
+     * 追蹤與渲染之間的折疊階段，配置沒有啟用任何折疊時直接返回
+     */
+    private TraceResult fold(TraceResult traceResult, SequenceOutputConfig config) {
+        if (!config.isFoldingEnabled()) {
+            return traceResult;
+        }
+        return new DiagramFolder(config, astIndex).fold(traceResult);
+    }
+
+    /**
+     * 獲取未指定格式時使用的圖表格式名稱
      * 
      * @return 格式名稱
      */
     public String getFormatName() {
-        return "Mermaid";
+        return DiagramFormat.MERMAID.getDisplayName();
     }
 }
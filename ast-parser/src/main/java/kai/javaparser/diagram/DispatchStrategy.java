@@ -0,0 +1,29 @@
+package kai.javaparser.diagram;
+
+import java.util.List;
+
+/**
+ * 定義多型分派的選擇策略。
+ * 當被呼叫者是介面或抽象類別時，追蹤器會從型別階層索引取得所有具體實作，
+ * 再交由此策略決定要展開哪些實作。
+ */
+public interface DispatchStrategy {
+
+    /**
+     * 從候選的具體實作中選出要展開的類別。
+     *
+     * @param declaredTypeFqn 呼叫時宣告的型別 (介面或抽象類別) FQN
+     * @param methodName      被呼叫的方法名稱
+     * @param candidates      已依名稱排序的具體實作 FQN 列表
+     * @return 要展開的實作 FQN 列表，回傳空列表代表不展開
+     */
+    List<String> selectImplementations(String declaredTypeFqn, String methodName, List<String> candidates);
+
+    /**
+     * 是否啟用多型分派；停用時追蹤器不會建立型別階層索引。
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+}
@@ -0,0 +1,177 @@
+package kai.javaparser.diagram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.output.CallTreeBuilder;
+import kai.javaparser.diagram.output.CallTreeNode;
+
+/**
+ * JSON 呼叫樹渲染器：
+ * 將 TraceResult 轉換為帶版本的精簡 JSON，走訪規則與 MermaidRenderer 相同。
+ * <p>
+ * 格式（schema = "kai.call-tree"，version = 1）：
+ *
+ * <pre>
+ * {"schema":"kai.call-tree","version":1,"entryPoint":"...","nodeCount":N,
+ *  "participants":[{"id":"User","name":"User","actor":true},{"id":"com_example_A","name":"com.example.A"}],
+ *  "root":{"id":0,"type":"call","from":0,"to":1,"method":"run","size":3,"children":[...]}}
+ * </pre>
+ *
+ * - type 為 call、alt、else、opt、loop
+ * - 呼叫節點：from / to 為參與者索引，另有 method、args、assign、return、condition（條件評估中的呼叫）、note
+ * - 片段節點：label 為條件
+ * - 版本比較的圖表中，有差異的節點另有 diff（added、removed、changed）
+ * - 分頁瀏覽時，子樹尚未展開的呼叫另有 expand（展開用的代號）
+ * - id 為前序走訪順序，size 為後代數量，子樹範圍為 [id, id + size]
+ * - 空值、false、0 與空陣列不輸出
+ * </p>
+ */
+public class JsonCallTreeRenderer implements DiagramRenderer {
+    public static final String SCHEMA = "kai.call-tree";
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+
+    private final SequenceDiagramWalker walker;
+
+    public JsonCallTreeRenderer(SequenceOutputConfig config, AstIndex astIndex) {
+        this.walker = new SequenceDiagramWalker(config, astIndex);
+    }
+
+    /**
+     * 建立呼叫樹
+     *
+     * @param traceResult 追蹤結果
+     * @return 已完成的呼叫樹
+     */
+    public CallTreeBuilder buildTree(TraceResult traceResult) {
+        CallTreeBuilder builder = new CallTreeBuilder();
+        walker.walk(traceResult, builder);
+        return builder;
+    }
+
+    @Override
+    public String render(TraceResult traceResult) {
+        StringBuilder json = new StringBuilder();
+        render(traceResult, json);
+        return json.toString();
+    }
+
+    @Override
+    public void render(TraceResult traceResult, Appendable out) {
+        CallTreeBuilder tree = buildTree(traceResult);
+        CallTreeNode root = tree.getRoot();
+        try {
+            out.append("{\"schema\":");
+            appendString(out, SCHEMA);
+            out.append(",\"version\":").append(String.valueOf(SCHEMA_VERSION));
+            out.append(",\"entryPoint\":");
+            appendString(out, traceResult.getEntryPointMethodFqn());
+            out.append(",\"nodeCount\":").append(String.valueOf(tree.getNodeCount()));
+
+            out.append(",\"participants\":[");
+            List<CallTreeBuilder.Participant> participants = tree.getParticipants();
+            for (int i = 0; i < participants.size(); i++) {
+                CallTreeBuilder.Participant participant = participants.get(i);
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append("{\"id\":");
+                appendString(out, participant.getId());
+                out.append(",\"name\":");
+                appendString(out, participant.getName());
+                if (participant.isActor()) {
+                    out.append(",\"actor\":true");
+                }
+                out.append('}');
+            }
+            out.append("],\"root\":");
+            if (root == null) {
+                out.append("null");
+            } else {
+                appendNode(out, root);
+            }
+            out.append('}');
+        } catch (IOException e) {
+            throw new UncheckedIOException("JSON 呼叫樹輸出失敗", e);
+        }
+    }
+
+    @Override
+    public String getFormatName() {
+        return DiagramFormat.JSON.getDisplayName();
+    }
+
+    private static void appendNode(Appendable out, CallTreeNode node) throws IOException {
+        out.append("{\"id\":").append(String.valueOf(node.getId()));
+        out.append(",\"type\":\"").append(node.getKind().getJsonName()).append('"');
+
+        if (node.getKind() == CallTreeNode.Kind.CALL) {
+            out.append(",\"from\":").append(String.valueOf(node.getFrom()));
+            out.append(",\"to\":").append(String.valueOf(node.getTo()));
+            appendField(out, "method", node.getMethod());
+            if (node.getArguments() != null && !node.getArguments().isEmpty()) {
+                out.append(",\"args\":[");
+                for (int i = 0; i < node.getArguments().size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    appendString(out, node.getArguments().get(i));
+                }
+                out.append(']');
+            }
+            appendField(out, "assign", node.getAssignedToVariable());
+            appendField(out, "return", node.getReturnValue());
+            if (node.isConditionEvaluation()) {
+                out.append(",\"condition\":true");
+            }
+            appendField(out, "note", node.getNote());
+            if (node.getExpandHandle() != null) {
+                out.append(",\"expand\":").append(String.valueOf(node.getExpandHandle()));
+            }
+        } else {
+            appendField(out, "label", node.getCondition());
+        }
+
+        if (node.getDiff() != null) {
+            appendField(out, "diff", node.getDiff().getLabel());
+        }
+        if (node.getDescendantCount() > 0) {
+            out.append(",\"size\":").append(String.valueOf(node.getDescendantCount()));
+        }
+        List<CallTreeNode> children = node.getChildren();
+        if (!children.isEmpty()) {
+            out.append(",\"children\":[");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendNode(out, children.get(i));
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    private static void appendField(Appendable out, String name, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        out.append(",\"").append(name).append("\":");
+        appendString(out, value);
+    }
+
+    private static void appendString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"').append(new String(ENCODER.quoteAsString(value))).append('"');
+    }
+}
@@ -0,0 +1,175 @@
+package kai.javaparser.diagram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已解析的方法參考，取代在各處以 AstClassUtil 反覆切割方法 FQN。
+ * <p>
+ * 同一個 FQN 只解析一次：類別 FQN、去除泛型的類別 FQN、方法名稱、簽章、去除泛型的參數型別與雜湊值
+ * 都在建立時計算，之後只讀取。實例經由 {@link #of(String)} / {@link #of(String, String)} 取得並共用，
+ * 命中時不配置任何物件。
+ * </p>
+ * 共用表超過上限時整個清空；相等性以 FQN 判斷，清空前後取得的實例仍可互相比較。
+ */
+public final class MethodRef {
+    private static final int MAX_INTERNED = 200_000;
+
+    private static final Map<String, MethodRef> BY_FQN = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, MethodRef>> BY_CLASS_AND_NAME = new ConcurrentHashMap<>();
+
+    private final String fqn;
+    private final String classFqn;
+    private final String erasedClassFqn;
+    private final String simpleClassName;
+    private final String signature;
+    private final String methodName;
+    private final List<String> erasedParameterTypes;
+    private final int hash;
+
+    private MethodRef(String fqn) {
+        this.fqn = fqn;
+        this.classFqn = AstClassUtil.getClassFqnFromMethodFqn(fqn);
+        this.erasedClassFqn = AstClassUtil.stripGenerics(classFqn);
+        this.simpleClassName = AstClassUtil.getSimpleClassName(fqn);
+        this.signature = AstClassUtil.getMethodSignature(fqn);
+        int paren = signature.indexOf('(');
+        this.methodName = paren == -1 ? signature : signature.substring(0, paren);
+        this.erasedParameterTypes = paren == -1 ? List.of() : parseParameterTypes(signature.substring(paren + 1));
+        this.hash = fqn.hashCode();
+    }
+
+    /**
+     * 取得方法 FQN 對應的共用實例
+     *
+     * @param methodFqn 方法的 FQN，例如 "com.example.MyClass.myMethod(int)"
+     */
+    public static MethodRef of(String methodFqn) {
+        MethodRef ref = BY_FQN.get(methodFqn);
+        if (ref != null) {
+            return ref;
+        }
+        if (BY_FQN.size() >= MAX_INTERNED) {
+            clearInterned();
+        }
+        return BY_FQN.computeIfAbsent(methodFqn, MethodRef::new);
+    }
+
+    /**
+     * 取得「類別.方法()」的共用實例，與 {@link AstClassUtil#getMethodFqn(String, String)} 的 FQN 相同，
+     * 命中時不需要組出 FQN 字串
+     *
+     * @param classFqn   類別 FQN（互動的 callee）
+     * @param methodName 方法名稱
+     */
+    public static MethodRef of(String classFqn, String methodName) {
+        if (classFqn == null || methodName == null) {
+            return of(AstClassUtil.getMethodFqn(classFqn, methodName));
+        }
+        Map<String, MethodRef> methods = BY_CLASS_AND_NAME.get(classFqn);
+        if (methods != null) {
+            MethodRef ref = methods.get(methodName);
+            if (ref != null) {
+                return ref;
+            }
+        }
+        MethodRef ref = of(AstClassUtil.getMethodFqn(classFqn, methodName));
+        BY_CLASS_AND_NAME.computeIfAbsent(classFqn, k -> new ConcurrentHashMap<>()).putIfAbsent(methodName, ref);
+        return ref;
+    }
+
+    /**
+     * 清空共用表，已取得的實例仍然有效
+     */
+    public static void clearInterned() {
+        BY_FQN.clear();
+        BY_CLASS_AND_NAME.clear();
+    }
+
+    /** 原始的方法 FQN */
+    public String getFqn() {
+        return fqn;
+    }
+
+    /** 類別 FQN（保留泛型），同 {@link AstClassUtil#getClassFqnFromMethodFqn(String)} */
+    public String getClassFqn() {
+        return classFqn;
+    }
+
+    /** 去除泛型的類別 FQN，可直接用來查詢 AST 索引 */
+    public String getErasedClassFqn() {
+        return erasedClassFqn;
+    }
+
+    /** 類別簡單名稱，同 {@link AstClassUtil#getSimpleClassName(String)} */
+    public String getSimpleClassName() {
+        return simpleClassName;
+    }
+
+    /** 方法簽章（名稱與參數），同 {@link AstClassUtil#getMethodSignature(String)} */
+    public String getSignature() {
+        return signature;
+    }
+
+    /** 不含參數的方法名稱 */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /** 去除泛型的參數型別 */
+    public List<String> getErasedParameterTypes() {
+        return erasedParameterTypes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodRef)) {
+            return false;
+        }
+        MethodRef other = (MethodRef) o;
+        return hash == other.hash && fqn.equals(other.fqn);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return fqn;
+    }
+
+    /**
+     * 依頂層逗號切出參數型別（泛型內的逗號不切），並去除泛型
+     */
+    private static List<String> parseParameterTypes(String parameters) {
+        int close = parameters.lastIndexOf(')');
+        String body = (close == -1 ? parameters : parameters.substring(0, close)).trim();
+        if (body.isEmpty()) {
+            return List.of();
+        }
+        List<String> types = new ArrayList<>();
+        int nesting = 0;
+        int start = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '<') {
+                nesting++;
+            } else if (c == '>') {
+                nesting--;
+            } else if (c == ',' && nesting == 0) {
+                types.add(AstClassUtil.stripGenerics(body.substring(start, i).trim()));
+                start = i + 1;
+            }
+        }
+        types.add(AstClassUtil.stripGenerics(body.substring(start).trim()));
+        return Collections.unmodifiableList(types);
+    }
+}
@@ -0,0 +1,43 @@
+package kai.javaparser.diagram;
+
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.output.DeclarationCollector;
+import kai.javaparser.diagram.output.PlantUmlWriter;
+
+/**
+ * PlantUML 渲染器：
+ * 將 TraceResult 轉換為 PlantUML 序列圖語法，走訪規則與 MermaidRenderer 相同
+ */
+public class PlantUmlRenderer implements DiagramRenderer {
+    private final SequenceDiagramWalker walker;
+
+    public PlantUmlRenderer(SequenceOutputConfig config, AstIndex astIndex) {
+        this.walker = new SequenceDiagramWalker(config, astIndex);
+    }
+
+    @Override
+    public String render(TraceResult traceResult) {
+        StringBuilder diagram = new StringBuilder();
+        render(traceResult, diagram);
+        return diagram.toString();
+    }
+
+    /**
+     * 先走訪一輪收集宣告寫在開頭，第二輪邊走訪邊寫出
+     */
+    @Override
+    public void render(TraceResult traceResult, Appendable out) {
+        DeclarationCollector declarations = new DeclarationCollector();
+        walker.walk(traceResult, declarations);
+
+        PlantUmlWriter writer = new PlantUmlWriter(out, declarations.getDeclarations());
+        walker.walk(traceResult, writer);
+        writer.finish();
+    }
+
+    @Override
+    public String getFormatName() {
+        return DiagramFormat.PLANTUML.getDisplayName();
+    }
+}
@@ -0,0 +1,299 @@
+package kai.javaparser.diagram;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.DiffStatus;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.NoteNode;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.output.SequenceDiagramSink;
+
+/**
+ * 序列圖走訪器：
+ * 依配置走訪 TraceResult 的呼叫樹，將參與者、呼叫、片段與註解依序交給 SequenceDiagramSink。
+ * 過濾、隱藏鏈式呼叫細節與條件細節等規則都在這裡處理，各格式的渲染器只負責輸出語法，
+ * 因此同一個 TraceResult 以不同格式渲染時內容一致
+ */
+public class SequenceDiagramWalker {
+    private final SequenceOutputConfig config;
+    private final AstIndex astIndex;
+    private SequenceDiagramSink sink;
+
+    // 類別 FQN -> 參與者 ID，同一個類別在呼叫樹中反覆出現，只轉換一次
+    private final Map<String, String> participantIds = new HashMap<>();
+
+    /**
+     * @param config   輸出配置
+     * @param astIndex 用於查詢類別與方法註解，可為 null（不輸出註解）
+     */
+    public SequenceDiagramWalker(SequenceOutputConfig config, AstIndex astIndex) {
+        this.config = config;
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 走訪整個呼叫樹並輸出到接收端
+     *
+     * @param traceResult 追蹤結果
+     * @param sink        接收端
+     */
+    public void walk(TraceResult traceResult, SequenceDiagramSink sink) {
+        this.sink = sink;
+
+        // 1. 設定進入點
+        sink.addActor("User");
+        MethodRef entryPoint = MethodRef.of(traceResult.getEntryPointMethodFqn());
+        String methodSignature = entryPoint.getMethodName();
+        String entryClassId = participantId(entryPoint.getClassFqn());
+
+        // 添加類別註解信息
+        renderClassAnnotations(entryPoint.getClassFqn(), entryClassId);
+
+        sink.addEntryPointCall("User", entryClassId, methodSignature);
+        sink.activate(entryClassId);
+
+        // 2. 遞迴遍歷呼叫樹
+        for (DiagramNode node : traceResult.getSequenceNodes()) {
+            renderNode(node, entryClassId);
+        }
+
+        sink.deactivate(entryClassId);
+    }
+
+    private String participantId(String classFqn) {
+        return participantIds.computeIfAbsent(classFqn, AstClassUtil::safeMermaidId);
+    }
+
+    /**
+     * 渲染類別註解信息
+     */
+    private void renderClassAnnotations(String classFqn, String classId) {
+        if (astIndex == null) {
+            // 如果沒有 AstIndex，跳過類別註解渲染
+            return;
+        }
+        addNote(classId, astIndex.getAnnotationIndex().getClassNote(classFqn));
+    }
+
+    /**
+     * 渲染方法註解信息，註解文字由 AnnotationIndex 預先整理，每個類別只讀取一次 AST
+     */
+    private void renderMethodAnnotations(String classFqn, String methodName, String participantId) {
+        if (astIndex == null) {
+            // 如果沒有 AstIndex，跳過方法註解渲染
+            return;
+        }
+        addNote(participantId, astIndex.getAnnotationIndex().getMethodNote(classFqn, methodName));
+    }
+
+    private void addNote(String participantId, String annotationText) {
+        if (annotationText != null) {
+            sink.addNote(participantId, annotationText);
+        }
+    }
+
+    private void renderNode(DiagramNode node, String callerId) {
+        if (node instanceof InteractionModel) {
+            renderInteraction(false, (InteractionModel) node, callerId);
+        } else if (node instanceof ControlFlowFragment) {
+            renderControlFlow((ControlFlowFragment) node, callerId, true); // Initial call, always true for top-level
+        } else if (node instanceof NoteNode) {
+            sink.addNote(callerId, ((NoteNode) node).getText());
+        }
+    }
+
+    private void renderInteraction(boolean isConditionEvaluation, InteractionModel interaction, String callerId) {
+        // 使用新的資料結構來處理渲染邏輯
+        if (interaction.getNextChainedCall() != null) {
+            // 這是一個鏈式呼叫，需要按照正確的順序渲染
+            renderChainedInteraction(isConditionEvaluation, interaction, callerId);
+        } else {
+            // 單一呼叫
+            renderSingleInteraction(isConditionEvaluation, interaction, callerId);
+        }
+    }
+
+    private void renderSingleInteraction(boolean isConditionEvaluation, InteractionModel interaction, String callerId) {
+        String calleeClassFqn = interaction.getCallee() != null ? interaction.getCallee() : "";
+        String calleeId = participantId(calleeClassFqn);
+
+        // 只有在未被過濾器排除的情況下才渲染此交互
+        if (!config.getFilter().shouldExclude(calleeClassFqn, interaction.getMethodName(), null)) {
+            sink.addParticipant(calleeId, calleeClassFqn);
+
+            // 渲染方法註解（如果有的話）
+            renderMethodAnnotations(calleeClassFqn, interaction.getMethodName(), calleeId);
+
+            DiffStatus diffStatus = interaction.getDiffStatus();
+            if (diffStatus != null) {
+                sink.beginHighlight(diffStatus);
+            }
+
+            sink.addCall(callerId, calleeId, methodLabel(interaction),
+                    interaction.getArguments(), interaction.getAssignedToVariable(), isConditionEvaluation,
+                    interaction.getReturnValue());
+            if (interaction.getExpandHandle() != null) {
+                sink.markExpandable(interaction.getExpandHandle());
+            }
+
+            // 只有在有內部呼叫時才添加 activate/deactivate
+            boolean hasInternalCalls = !config.isHideDetailsInChainExpression() &&
+                    interaction.getInternalCalls() != null &&
+                    !interaction.getInternalCalls().isEmpty();
+
+            if (hasInternalCalls) {
+                sink.activate(calleeId);
+
+                // 渲染內部呼叫
+                for (DiagramNode internalCall : interaction.getInternalCalls()) {
+                    renderNode(internalCall, calleeId);
+                }
+
+                sink.deactivate(calleeId);
+            }
+
+            if (diffStatus != null) {
+                sink.endHighlight();
+            }
+        }
+    }
+
+    private void renderChainedInteraction(boolean isConditionEvaluation, InteractionModel interaction,
+            String callerId) {
+        // 對於鏈式呼叫 a.b().c()，正確的順序應該是：
+        // 1. callerId -> a : b()
+        // 2. a -> returnType : c()
+
+        String calleeClassFqn = interaction.getCallee() != null ? interaction.getCallee() : "";
+        String calleeId = participantId(calleeClassFqn);
+
+        // 只有在未被過濾器排除的情況下才渲染此交互
+        if (!config.getFilter().shouldExclude(calleeClassFqn, interaction.getMethodName(), null)) {
+            sink.addParticipant(calleeId, calleeClassFqn);
+
+            // 渲染方法註解（如果有的話）
+            renderMethodAnnotations(calleeClassFqn, interaction.getMethodName(), calleeId);
+
+            DiffStatus diffStatus = interaction.getDiffStatus();
+            if (diffStatus != null) {
+                sink.beginHighlight(diffStatus);
+            }
+
+            sink.addCall(callerId, calleeId, methodLabel(interaction),
+                    interaction.getArguments(), interaction.getAssignedToVariable(), isConditionEvaluation,
+                    interaction.getReturnValue());
+            if (interaction.getExpandHandle() != null) {
+                sink.markExpandable(interaction.getExpandHandle());
+            }
+
+            // 檢查是否有內部呼叫或鏈式呼叫的下一個環節
+            boolean hasInternalCalls = !config.isHideDetailsInChainExpression() &&
+                    interaction.getInternalCalls() != null &&
+                    !interaction.getInternalCalls().isEmpty();
+            boolean hasNextChainedCall = interaction.getNextChainedCall() != null;
+
+            if (hasInternalCalls || hasNextChainedCall) {
+                sink.activate(calleeId);
+
+                // 渲染內部呼叫（如果配置允許）
+                if (hasInternalCalls) {
+                    for (DiagramNode internalCall : interaction.getInternalCalls()) {
+                        renderNode(internalCall, calleeId);
+                    }
+                }
+
+                // 遞迴渲染鏈式呼叫的下一個環節
+                if (hasNextChainedCall) {
+                    renderInteraction(isConditionEvaluation, interaction.getNextChainedCall(), calleeId);
+                }
+
+                sink.deactivate(calleeId);
+            }
+
+            if (diffStatus != null) {
+                sink.endHighlight();
+            }
+        }
+    }
+
+    /**
+     * 折疊後重複的呼叫在方法名稱前標示次數，例如 "x3 findById"
+     */
+    private static String methodLabel(InteractionModel interaction) {
+        Integer repeatCount = interaction.getRepeatCount();
+        if (repeatCount != null && repeatCount > 1) {
+            return "x" + repeatCount + " " + interaction.getMethodName();
+        }
+        return interaction.getMethodName();
+    }
+
+    private void renderControlFlow(ControlFlowFragment fragment, String callerId, boolean isFirstAlternativeInBlock) {
+        String condition = fragment.getCondition() != null ? fragment.getCondition() : "";
+
+        // 差異以區塊包住整個片段；else 分支無法單獨包住，改在條件前標示
+        DiffStatus diffStatus = fragment.getDiffStatus();
+        boolean highlighted = diffStatus != null && isFirstAlternativeInBlock;
+        if (highlighted) {
+            sink.beginHighlight(diffStatus);
+        } else if (diffStatus != null) {
+            condition = ("[" + diffStatus.getLabel() + "] " + condition).trim();
+        }
+
+        // 開始控制流程片段
+        switch (fragment.getType()) {
+            case ALTERNATIVE:
+                if (isFirstAlternativeInBlock) {
+                    sink.addAltFragment(condition);
+                } else {
+                    if (condition.isEmpty()) {
+                        sink.addElseFragment(); // Assuming a new method for 'else'
+                    } else {
+                        sink.addElseIfFragment(condition); // Assuming a new method for 'else if'
+                    }
+                }
+                break;
+            case LOOP:
+                sink.addLoopFragment(condition);
+                break;
+            case OPTIONAL:
+                sink.addOptFragment(condition);
+                break;
+        }
+
+        // 渲染條件評估互動 (只有在不隱藏細節的情況下)
+        if (fragment.getConditionInteractions() != null && !config.isHideDetailsInConditionals()) {
+            for (InteractionModel interaction : fragment.getConditionInteractions()) {
+                // 渲染條件評估的互動節點
+                renderInteraction(true, interaction, callerId);
+            }
+        }
+
+        // 渲染內容執行互動 (只有在不隱藏細節的情況下)
+        if (fragment.getContentInteractions() != null && !config.isHideDetailsInConditionals()) {
+            for (InteractionModel interaction : fragment.getContentInteractions()) {
+                // 渲染內容執行的互動節點
+                renderInteraction(false, interaction, callerId);
+            }
+        }
+
+        // 渲染 alternatives
+        if (fragment.getAlternatives() != null) {
+            boolean firstAlternative = true;
+            for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                renderControlFlow(alternative, callerId, firstAlternative);
+                firstAlternative = false;
+            }
+        }
+
+        // 結束控制流程片段
+        sink.endFragment();
+
+        if (highlighted) {
+            sink.endHighlight();
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package kai.javaparser.diagram;
 
-import java.util.HashSet;
 import java.util.Set;
 
-import kai.javaparser.diagram.filter.DefaultTraceFilter;
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy;
+import kai.javaparser.diagram.filter.CompiledTraceFilter;
 import lombok.Builder;
 import lombok.Data;
 
@@ -25,8 +25,38 @@ public class SequenceOutputConfig {
     /** 基礎包列表 */
     private Set<String> basePackages;
 
-    /** 過濾器 */
+    /** 過濾器；預設的 CompiledTraceFilter 把含 * 或 ? 的類別規則視為萬用字元，而非 DefaultTraceFilter 的字面前綴 */
     @Builder.Default
-    private TraceFilter filter = new DefaultTraceFilter(new HashSet<>(), new HashSet<>());
+    private TraceFilter filter = CompiledTraceFilter.compile(Set.of(), Set.of());
 
+    /** 被呼叫者為介面或抽象類別時的多型分派策略 */
+    @Builder.Default
+    private DispatchStrategy dispatchStrategy = new DefaultDispatchStrategy(DefaultDispatchStrategy.Mode.NONE);
+
+    /** 是否以 fork/join 平行展開同層的呼叫子樹 */
+    @Builder.Default
+    private boolean parallel = false;
+
+    /** 平行展開的工作量門檻（同層節點數 x 剩餘深度），低於門檻時仍循序展開 */
+    @Builder.Default
+    private int parallelThreshold = 16;
+
+    /** 是否將連續重複的相同呼叫（或呼叫序列）折疊為一次並標示 xN */
+    @Builder.Default
+    private boolean foldRepeatedCalls = false;
+
+    /** 是否將同類別的 private 輔助方法鏈折疊為一個註解，其中對外的呼叫上移到呼叫者 */
+    @Builder.Default
+    private boolean foldPrivateHelpers = false;
+
+    /** 每個節點最多顯示的子節點數，超過的部分以「…N more calls」表示，0 代表不限制 */
+    @Builder.Default
+    private int maxFanOut = 0;
+
+    /**
+     * 是否需要在渲染前經過 DiagramFolder
+     */
+    public boolean isFoldingEnabled() {
+        return foldRepeatedCalls || foldPrivateHelpers || maxFanOut > 0;
+    }
 }
@@ -0,0 +1,83 @@
+package kai.javaparser.diagram;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * 有上限的圖表緩衝區：
+ * 內容不超過上限時留在記憶體中，渲染完成後可計算 ETag 並放入快取；
+ * 超過上限時取得輸出目標，先寫出已緩衝的內容，之後的內容直接寫出，不再組出整份字串
+ */
+final class SpillingDiagramBuffer implements Appendable {
+    private final int maxChars;
+    private final Supplier<Appendable> overflow;
+
+    private StringBuilder buffer = new StringBuilder();
+    private Appendable out; // 超過上限後的輸出目標
+
+    /**
+     * @param maxChars 緩衝的字元數上限
+     * @param overflow 超過上限時取得輸出目標，只呼叫一次
+     */
+    SpillingDiagramBuffer(int maxChars, Supplier<Appendable> overflow) {
+        this.maxChars = maxChars;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        CharSequence text = csq != null ? csq : "null";
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        CharSequence text = csq != null ? csq : "null";
+        if (out == null && buffer.length() + (end - start) > maxChars) {
+            spill();
+        }
+        if (out != null) {
+            out.append(text, start, end);
+        } else {
+            buffer.append(text, start, end);
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if (out == null && buffer.length() + 1 > maxChars) {
+            spill();
+        }
+        if (out != null) {
+            out.append(c);
+        } else {
+            buffer.append(c);
+        }
+        return this;
+    }
+
+    /**
+     * 內容是否已超過上限並直接寫出
+     */
+    boolean isSpilled() {
+        return out != null;
+    }
+
+    /**
+     * 緩衝的完整內容，只在沒有超過上限時有效
+     */
+    @Override
+    public String toString() {
+        if (out != null) {
+            throw new IllegalStateException("內容已超過上限並直接寫出");
+        }
+        return buffer.toString();
+    }
+
+    private void spill() throws IOException {
+        out = overflow.get();
+        out.append(buffer);
+        buffer = null;
+    }
+}
@@ -0,0 +1,208 @@
+package kai.javaparser.diagram;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.TraceEvent;
+import kai.javaparser.diagram.idx.AnnotationIndex;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.output.MermaidStreamWriter;
+
+/**
+ * 串流 Mermaid 渲染器：
+ * 直接消費 SequenceTraceService 發出的 TraceEvent，邊追蹤邊輸出，不需要完整的 TraceResult。
+ * 渲染規則與 SequenceDiagramWalker 相同（過濾、隱藏條件細節、隱藏鏈式呼叫細節、註解），
+ * 被隱藏的子樹以計數方式略過，只需保留目前路徑上的 frame。
+ */
+public class StreamingMermaidRenderer implements Consumer<TraceEvent> {
+    private final SequenceOutputConfig config;
+    private final AnnotationIndex annotationIndex; // 沒有 AstIndex 時為 null，不輸出註解
+    private final MermaidStreamWriter output;
+
+    // 目前路徑上的呼叫與片段
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    // 大於 0 時代表正在略過被隱藏的子樹，值為尚未結束的事件層數
+    private int skipDepth = 0;
+    // 類別 FQN -> 參與者 ID，只轉換一次
+    private final Map<String, String> participantIds = new HashMap<>();
+
+    public StreamingMermaidRenderer(SequenceOutputConfig config, AstIndex astIndex, Appendable out) {
+        this.config = config;
+        this.annotationIndex = astIndex != null ? astIndex.getAnnotationIndex() : null;
+        this.output = new MermaidStreamWriter(out);
+    }
+
+    @Override
+    public void accept(TraceEvent event) {
+        switch (event.getType()) {
+            case ENTER:
+                onEnter(event.getMethodFqn());
+                break;
+            case EXIT:
+                onExit();
+                break;
+            case CALL:
+                onCall(event);
+                break;
+            case RETURN:
+                onReturn();
+                break;
+            case FRAGMENT_START:
+                onFragmentStart(event.getFragment(), event.isFirstAlternative());
+                break;
+            case FRAGMENT_END:
+                onFragmentEnd();
+                break;
+        }
+    }
+
+    private void onEnter(String entryPointMethodFqn) {
+        output.addActor("User");
+        MethodRef entryPoint = MethodRef.of(entryPointMethodFqn);
+        String entryClassFqn = entryPoint.getClassFqn();
+        String methodSignature = entryPoint.getMethodName();
+        String entryClassId = participantId(entryClassFqn);
+
+        // 註解會參照 participant，需先宣告
+        output.addParticipant(entryClassId, AstClassUtil.getSimpleClassName(entryClassId));
+        if (annotationIndex != null) {
+            addNote(entryClassId, annotationIndex.getClassNote(entryClassFqn));
+        }
+
+        output.addEntryPointCall("User", entryClassId, methodSignature);
+        output.activate(entryClassId);
+        frames.push(new Frame(entryClassId, false, true, true));
+    }
+
+    private void onExit() {
+        Frame frame = frames.pop();
+        output.deactivate(frame.participantId);
+        output.flush();
+    }
+
+    private void onCall(TraceEvent event) {
+        if (skipDepth > 0) {
+            skipDepth++;
+            return;
+        }
+
+        Frame parent = frames.peek();
+        InteractionModel interaction = event.getInteraction();
+        String calleeClassFqn = interaction.getCallee() != null ? interaction.getCallee() : "";
+
+        boolean hidden = parent.fragment
+                ? config.isHideDetailsInConditionals()
+                : !parent.childrenVisible && !event.isChained();
+        if (hidden || config.getFilter().shouldExclude(calleeClassFqn, interaction.getMethodName(), null)) {
+            skipDepth = 1;
+            return;
+        }
+
+        String calleeId = participantId(calleeClassFqn);
+        output.addParticipant(calleeId, calleeClassFqn);
+
+        // 渲染方法註解（如果有的話）
+        if (annotationIndex != null) {
+            addNote(calleeId, annotationIndex.getMethodNote(calleeClassFqn, interaction.getMethodName()));
+        }
+
+        output.addCall(parent.participantId, calleeId, interaction.getMethodName(),
+                interaction.getArguments(), interaction.getAssignedToVariable(), event.isConditionEvaluation(),
+                interaction.getReturnValue());
+
+        // 只有在有內部呼叫（且未隱藏）或有鏈式呼叫的下一個環節時才 activate
+        boolean childrenVisible = !config.isHideDetailsInChainExpression();
+        boolean activated = (childrenVisible && event.isHasInternalCalls())
+                || interaction.getNextChainedCall() != null;
+        if (activated) {
+            output.activate(calleeId);
+        }
+        frames.push(new Frame(calleeId, false, activated, childrenVisible));
+    }
+
+    private void onReturn() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+        Frame frame = frames.pop();
+        if (frame.activated) {
+            output.deactivate(frame.participantId);
+        }
+    }
+
+    private void onFragmentStart(ControlFlowFragment fragment, boolean firstAlternative) {
+        if (skipDepth > 0) {
+            skipDepth++;
+            return;
+        }
+
+        Frame parent = frames.peek();
+        if (!parent.fragment && !parent.childrenVisible) {
+            skipDepth = 1;
+            return;
+        }
+
+        String condition = fragment.getCondition() != null ? fragment.getCondition() : "";
+        switch (fragment.getType()) {
+            case ALTERNATIVE:
+                if (firstAlternative) {
+                    output.addAltFragment(condition);
+                } else if (condition.isEmpty()) {
+                    output.addElseFragment();
+                } else {
+                    output.addElseIfFragment(condition);
+                }
+                break;
+            case LOOP:
+                output.addLoopFragment(condition);
+                break;
+            case OPTIONAL:
+                output.addOptFragment(condition);
+                break;
+        }
+        // 片段內的呼叫仍由外層的 participant 發出
+        frames.push(new Frame(parent.participantId, true, false, true));
+    }
+
+    private void onFragmentEnd() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+        frames.pop();
+        output.endFragment();
+    }
+
+    private void addNote(String participantId, String annotationText) {
+        if (annotationText != null) {
+            output.addNote(participantId, annotationText);
+        }
+    }
+
+    private String participantId(String classFqn) {
+        return participantIds.computeIfAbsent(classFqn, AstClassUtil::safeMermaidId);
+    }
+
+    /**
+     * 目前路徑上的一層：呼叫或控制流程片段
+     */
+    private static final class Frame {
+        private final String participantId; // 此層內呼叫的發起者
+        private final boolean fragment; // 是否為控制流程片段
+        private final boolean activated; // 結束時是否需要 deactivate
+        private final boolean childrenVisible; // 內部呼叫是否要渲染
+
+        private Frame(String participantId, boolean fragment, boolean activated, boolean childrenVisible) {
+            this.participantId = participantId;
+            this.fragment = fragment;
+            this.activated = activated;
+            this.childrenVisible = childrenVisible;
+        }
+    }
+}
@@ -21,4 +21,16 @@ public interface TraceFilter {
 
     boolean shouldExclude(String methodFqn, AstIndex astIndex);
 
+    /**
+     * 以已解析的方法參考判斷，不需要再切割 FQN。
+     * 預設以類別 FQN 與方法名稱呼叫 {@link #shouldExclude(String, String, AstIndex)}。
+     *
+     * @param methodRef 方法參考
+     * @param astIndex  AST 索引物件
+     * @return 如果應該排除，則返回 true；否則返回 false。
+     */
+    default boolean shouldExclude(MethodRef methodRef, AstIndex astIndex) {
+        return shouldExclude(methodRef.getClassFqn(), methodRef.getMethodName(), astIndex);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package kai.javaparser.diagram.dependency;
+
+/**
+ * 依賴圖的節點粒度
+ */
+public enum DependencyGranularity {
+    CLASS, // 每個類別一個節點
+    PACKAGE // 同一個包的類別合併為一個節點，邊的權重加總；大型程式碼庫建議使用
+}
@@ -0,0 +1,405 @@
+package kai.javaparser.diagram.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 有向、帶權重的依賴圖，節點為類別或包。
+ * <p>
+ * 節點依名稱排序，邊依（起點, 終點）排序，同一對節點只有一條邊，各種依賴來源的權重分開累計。
+ * 建立時以 Tarjan 演算法（非遞迴，節點數不受呼叫堆疊限制）找出強連通分量，
+ * 多於一個節點的分量即為循環依賴。
+ * </p>
+ * 圖建立後不再變動；{@link #subgraph(Predicate, Set)} 與 {@link #aggregate(Function)} 回傳新的圖。
+ */
+public class DependencyGraph {
+    private static final DependencyKind[] KINDS = DependencyKind.values();
+
+    private final List<String> nodes;
+    private final int[] nodeSizes;
+    private final List<Edge> edges;
+    private final List<List<String>> cycles;
+    // 節點 -> 所在循環的索引，不在循環中為 -1
+    private final int[] cycleIndex;
+
+    private DependencyGraph(List<String> nodes, int[] nodeSizes, List<Edge> edges, List<List<String>> cycles,
+            int[] cycleIndex) {
+        this.nodes = nodes;
+        this.nodeSizes = nodeSizes;
+        this.edges = edges;
+        this.cycles = cycles;
+        this.cycleIndex = cycleIndex;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 所有節點，依名稱排序
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 節點包含的類別數（類別粒度時為 1）
+     */
+    public int getNodeSize(int node) {
+        return nodeSizes[node];
+    }
+
+    /**
+     * 所有邊，依起點與終點排序
+     */
+    public List<Edge> getEdges() {
+        return edges;
+    }
+
+    /**
+     * 循環依賴（多於一個節點的強連通分量），依大小由大到小排列，分量內的節點依名稱排序
+     */
+    public List<List<String>> getCycles() {
+        return cycles;
+    }
+
+    /**
+     * 節點所在循環在 {@link #getCycles()} 中的索引
+     *
+     * @param node 節點在 {@link #getNodes()} 中的索引
+     * @return 循環索引，不在循環中時為 -1
+     */
+    public int getCycleIndex(int node) {
+        return cycleIndex[node];
+    }
+
+    /**
+     * 邊的兩端是否在同一個循環中
+     */
+    public boolean isCyclic(Edge edge) {
+        return cycleIndex[edge.from] != -1 && cycleIndex[edge.from] == cycleIndex[edge.to];
+    }
+
+    /**
+     * 只保留符合條件的節點與指定來源的依賴，沒有剩餘權重的邊會被移除
+     *
+     * @param nodeFilter 要保留的節點
+     * @param kinds      要保留的依賴來源
+     */
+    public DependencyGraph subgraph(Predicate<String> nodeFilter, Set<DependencyKind> kinds) {
+        boolean[] kept = new boolean[nodes.size()];
+        Builder builder = builder();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodeFilter.test(nodes.get(i))) {
+                kept[i] = true;
+                builder.addNode(nodes.get(i), nodeSizes[i]);
+            }
+        }
+        for (Edge edge : edges) {
+            if (!kept[edge.from] || !kept[edge.to]) {
+                continue;
+            }
+            int[] weights = new int[KINDS.length];
+            int total = 0;
+            for (DependencyKind kind : kinds) {
+                weights[kind.ordinal()] = edge.weights[kind.ordinal()];
+                total += weights[kind.ordinal()];
+            }
+            if (total > 0) {
+                builder.addEdge(edge.getFrom(), edge.getTo(), weights);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 將節點依分組合併（例如類別 -> 所在的包），節點大小與邊的權重加總，同一組內的邊被移除
+     *
+     * @param grouping 節點 -> 分組名稱
+     */
+    public DependencyGraph aggregate(Function<String, String> grouping) {
+        String[] groups = new String[nodes.size()];
+        Builder builder = builder();
+        for (int i = 0; i < nodes.size(); i++) {
+            groups[i] = grouping.apply(nodes.get(i));
+            builder.addNode(groups[i], nodeSizes[i]);
+        }
+        for (Edge edge : edges) {
+            if (!groups[edge.from].equals(groups[edge.to])) {
+                builder.addEdge(groups[edge.from], groups[edge.to], edge.weights);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("節點數: %d, 邊數: %d, 循環數: %d", nodes.size(), edges.size(), cycles.size());
+    }
+
+    /**
+     * 兩個節點間的依賴，各來源的權重分開記錄
+     */
+    public static final class Edge {
+        private final int from;
+        private final int to;
+        private final String fromName;
+        private final String toName;
+        private final int[] weights;
+        private final int weight;
+
+        private Edge(int from, int to, String fromName, String toName, int[] weights) {
+            this.from = from;
+            this.to = to;
+            this.fromName = fromName;
+            this.toName = toName;
+            this.weights = weights;
+            int total = 0;
+            for (int w : weights) {
+                total += w;
+            }
+            this.weight = total;
+        }
+
+        /** 起點在 {@link DependencyGraph#getNodes()} 中的索引 */
+        public int getFromIndex() {
+            return from;
+        }
+
+        /** 終點在 {@link DependencyGraph#getNodes()} 中的索引 */
+        public int getToIndex() {
+            return to;
+        }
+
+        public String getFrom() {
+            return fromName;
+        }
+
+        public String getTo() {
+            return toName;
+        }
+
+        /** 所有來源的權重總和 */
+        public int getWeight() {
+            return weight;
+        }
+
+        public int getWeight(DependencyKind kind) {
+            return weights[kind.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return fromName + " -> " + toName + " (" + weight + ")";
+        }
+    }
+
+    /**
+     * 逐一加入節點與邊，重複的邊累加權重，自我依賴被忽略
+     */
+    public static final class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private int[] sizes = new int[16];
+        // (起點 id << 32 | 終點 id) -> 各來源的權重
+        private final Map<Long, int[]> edgeWeights = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 加入節點，已存在時累加大小
+         *
+         * @param node 節點名稱
+         * @param size 節點包含的類別數
+         */
+        public Builder addNode(String node, int size) {
+            int id = idOf(node);
+            sizes[id] += size;
+            return this;
+        }
+
+        /**
+         * 加入依賴，節點不存在時以大小 0 加入
+         */
+        public Builder addEdge(String from, String to, DependencyKind kind, int weight) {
+            if (from.equals(to) || weight <= 0) {
+                return this;
+            }
+            weightsOf(from, to)[kind.ordinal()] += weight;
+            return this;
+        }
+
+        private void addEdge(String from, String to, int[] weights) {
+            if (from.equals(to)) {
+                return;
+            }
+            int[] target = weightsOf(from, to);
+            for (int i = 0; i < weights.length; i++) {
+                target[i] += weights[i];
+            }
+        }
+
+        private int[] weightsOf(String from, String to) {
+            long key = ((long) idOf(from) << 32) | idOf(to);
+            return edgeWeights.computeIfAbsent(key, k -> new int[KINDS.length]);
+        }
+
+        private int idOf(String node) {
+            Integer id = ids.get(node);
+            if (id != null) {
+                return id;
+            }
+            int newId = names.size();
+            ids.put(node, newId);
+            names.add(node);
+            if (newId == sizes.length) {
+                sizes = Arrays.copyOf(sizes, newId * 2);
+            }
+            return newId;
+        }
+
+        public DependencyGraph build() {
+            int n = names.size();
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(names::get));
+            int[] rank = new int[n];
+            List<String> sortedNames = new ArrayList<>(n);
+            int[] sortedSizes = new int[n];
+            for (int i = 0; i < n; i++) {
+                rank[order[i]] = i;
+                sortedNames.add(names.get(order[i]));
+                sortedSizes[i] = sizes[order[i]];
+            }
+
+            List<Edge> edges = new ArrayList<>(edgeWeights.size());
+            for (Map.Entry<Long, int[]> entry : edgeWeights.entrySet()) {
+                int from = rank[(int) (entry.getKey() >>> 32)];
+                int to = rank[(int) (entry.getKey() & 0xFFFFFFFFL)];
+                edges.add(new Edge(from, to, sortedNames.get(from), sortedNames.get(to), entry.getValue().clone()));
+            }
+            edges.sort(Comparator.<Edge>comparingInt(e -> e.from).thenComparingInt(e -> e.to));
+
+            int[] component = stronglyConnectedComponents(n, edges);
+            return createGraph(sortedNames, sortedSizes, edges, component);
+        }
+
+        private static DependencyGraph createGraph(List<String> nodes, int[] sizes, List<Edge> edges,
+                int[] component) {
+            Map<Integer, List<Integer>> members = new HashMap<>();
+            for (int i = 0; i < component.length; i++) {
+                members.computeIfAbsent(component[i], k -> new ArrayList<>()).add(i);
+            }
+            List<List<Integer>> cycleIds = new ArrayList<>();
+            for (List<Integer> ids : members.values()) {
+                if (ids.size() > 1) {
+                    cycleIds.add(ids); // 節點依索引（即名稱）加入，已排序
+                }
+            }
+            cycleIds.sort(Comparator.<List<Integer>>comparingInt(List::size).reversed()
+                    .thenComparingInt(ids -> ids.get(0)));
+
+            int[] cycleIndex = new int[nodes.size()];
+            Arrays.fill(cycleIndex, -1);
+            List<List<String>> cycles = new ArrayList<>(cycleIds.size());
+            for (int c = 0; c < cycleIds.size(); c++) {
+                List<String> cycle = new ArrayList<>(cycleIds.get(c).size());
+                for (int id : cycleIds.get(c)) {
+                    cycleIndex[id] = c;
+                    cycle.add(nodes.get(id));
+                }
+                cycles.add(Collections.unmodifiableList(cycle));
+            }
+            return new DependencyGraph(Collections.unmodifiableList(nodes), sizes,
+                    Collections.unmodifiableList(edges), Collections.unmodifiableList(cycles), cycleIndex);
+        }
+
+        /**
+         * Tarjan 強連通分量，以明確的堆疊取代遞迴
+         *
+         * @return 節點 -> 分量編號
+         */
+        private static int[] stronglyConnectedComponents(int n, List<Edge> sortedEdges) {
+            // 鄰接表（CSR）：targets[offsets[v] .. offsets[v + 1]) 為 v 的後繼節點
+            int[] offsets = new int[n + 1];
+            for (Edge edge : sortedEdges) {
+                offsets[edge.from + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] targets = new int[sortedEdges.size()];
+            for (int i = 0; i < sortedEdges.size(); i++) {
+                targets[i] = sortedEdges.get(i).to; // 邊已依起點排序，依序填入即可
+            }
+
+            int[] index = new int[n];
+            int[] low = new int[n];
+            int[] component = new int[n];
+            boolean[] onStack = new boolean[n];
+            int[] stack = new int[n];
+            int[] callStack = new int[n];
+            int[] nextEdge = new int[n];
+            Arrays.fill(index, -1);
+            int counter = 0;
+            int componentCount = 0;
+            int sp = 0;
+
+            for (int root = 0; root < n; root++) {
+                if (index[root] != -1) {
+                    continue;
+                }
+                int csp = 0;
+                index[root] = low[root] = counter++;
+                stack[sp++] = root;
+                onStack[root] = true;
+                nextEdge[root] = offsets[root];
+                callStack[csp++] = root;
+
+                while (csp > 0) {
+                    int v = callStack[csp - 1];
+                    if (nextEdge[v] < offsets[v + 1]) {
+                        int w = targets[nextEdge[v]++];
+                        if (index[w] == -1) {
+                            index[w] = low[w] = counter++;
+                            stack[sp++] = w;
+                            onStack[w] = true;
+                            nextEdge[w] = offsets[w];
+                            callStack[csp++] = w;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                        continue;
+                    }
+
+                    csp--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--sp];
+                            onStack[w] = false;
+                            component[w] = componentCount;
+                        } while (w != v);
+                        componentCount++;
+                    }
+                    if (csp > 0) {
+                        int parent = callStack[csp - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+            return component;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package kai.javaparser.diagram.dependency;
+
+/**
+ * 依賴圖輸出格式
+ */
+public enum DependencyGraphFormat {
+    /** Mermaid flowchart */
+    MERMAID("Mermaid"),
+    /** Graphviz DOT */
+    DOT("DOT");
+
+    private final String displayName;
+
+    DependencyGraphFormat(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,181 @@
+package kai.javaparser.diagram.dependency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 將依賴圖渲染為 Mermaid flowchart 或 Graphviz DOT。
+ * <p>
+ * 同一個循環中的節點放在同一個子圖（DOT 為 cluster），循環內的邊以紅色標示；
+ * 邊的標籤為權重總和，DOT 另以線寬與 tooltip（各來源的權重）呈現。
+ * 權重低於 minWeight 的邊不輸出，但循環內的邊一律保留，避免循環在圖上消失。
+ * </p>
+ */
+public class DependencyGraphRenderer {
+    private static final String CYCLE_COLOR = "#d62728";
+
+    private final int minWeight;
+
+    /**
+     * @param minWeight 邊的最小權重，小於等於 1 時輸出所有邊
+     */
+    public DependencyGraphRenderer(int minWeight) {
+        this.minWeight = minWeight;
+    }
+
+    public String render(DependencyGraph graph, DependencyGraphFormat format) {
+        return format == DependencyGraphFormat.DOT ? renderDot(graph) : renderMermaid(graph);
+    }
+
+    public String renderMermaid(DependencyGraph graph) {
+        StringBuilder out = new StringBuilder("flowchart LR\n");
+        List<String> nodes = graph.getNodes();
+
+        List<List<Integer>> cycleMembers = cycleMembers(graph);
+        for (int c = 0; c < cycleMembers.size(); c++) {
+            out.append("    subgraph cycle_").append(c + 1).append(" [\"cycle ").append(c + 1).append("\"]\n");
+            for (int i : cycleMembers.get(c)) {
+                out.append("        ").append(mermaidNode(graph, i)).append('\n');
+            }
+            out.append("    end\n");
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (graph.getCycleIndex(i) == -1) {
+                out.append("    ").append(mermaidNode(graph, i)).append('\n');
+            }
+        }
+
+        List<Integer> cyclicLinks = new ArrayList<>();
+        int link = 0;
+        for (DependencyGraph.Edge edge : graph.getEdges()) {
+            boolean cyclic = graph.isCyclic(edge);
+            if (!cyclic && edge.getWeight() < minWeight) {
+                continue;
+            }
+            out.append("    ").append(nodeId(edge.getFromIndex())).append(" -->|").append(edge.getWeight())
+                    .append("| ").append(nodeId(edge.getToIndex())).append('\n');
+            if (cyclic) {
+                cyclicLinks.add(link);
+            }
+            link++;
+        }
+
+        if (!cyclicLinks.isEmpty()) {
+            out.append("    linkStyle ");
+            for (int i = 0; i < cyclicLinks.size(); i++) {
+                out.append(i > 0 ? "," : "").append(cyclicLinks.get(i));
+            }
+            out.append(" stroke:").append(CYCLE_COLOR).append(",stroke-width:2px\n");
+        }
+        if (!graph.getCycles().isEmpty()) {
+            out.append("    classDef cycle fill:#ffe0e0,stroke:").append(CYCLE_COLOR).append('\n');
+            out.append("    class ");
+            boolean first = true;
+            for (int i = 0; i < nodes.size(); i++) {
+                if (graph.getCycleIndex(i) != -1) {
+                    out.append(first ? "" : ",").append(nodeId(i));
+                    first = false;
+                }
+            }
+            out.append(" cycle\n");
+        }
+        return out.toString();
+    }
+
+    public String renderDot(DependencyGraph graph) {
+        StringBuilder out = new StringBuilder("digraph dependencies {\n");
+        out.append("    rankdir=LR;\n");
+        out.append("    node [shape=box];\n");
+        List<String> nodes = graph.getNodes();
+
+        List<List<Integer>> cycleMembers = cycleMembers(graph);
+        for (int c = 0; c < cycleMembers.size(); c++) {
+            out.append("    subgraph cluster_cycle_").append(c + 1).append(" {\n");
+            out.append("        label=\"cycle ").append(c + 1).append("\";\n");
+            out.append("        color=\"").append(CYCLE_COLOR).append("\";\n");
+            for (int i : cycleMembers.get(c)) {
+                out.append("        ").append(dotNode(graph, i)).append('\n');
+            }
+            out.append("    }\n");
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (graph.getCycleIndex(i) == -1) {
+                out.append("    ").append(dotNode(graph, i)).append('\n');
+            }
+        }
+
+        for (DependencyGraph.Edge edge : graph.getEdges()) {
+            boolean cyclic = graph.isCyclic(edge);
+            if (!cyclic && edge.getWeight() < minWeight) {
+                continue;
+            }
+            out.append("    ").append(nodeId(edge.getFromIndex())).append(" -> ").append(nodeId(edge.getToIndex()))
+                    .append(" [label=\"").append(edge.getWeight()).append('"')
+                    .append(", penwidth=").append(penWidth(edge.getWeight()))
+                    .append(", tooltip=\"").append(weightBreakdown(edge)).append('"');
+            if (cyclic) {
+                out.append(", color=\"").append(CYCLE_COLOR).append('"');
+            }
+            out.append("];\n");
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * 各循環包含的節點索引，一次走訪所有節點
+     */
+    private static List<List<Integer>> cycleMembers(DependencyGraph graph) {
+        List<List<Integer>> members = new ArrayList<>();
+        for (int c = 0; c < graph.getCycles().size(); c++) {
+            members.add(new ArrayList<>(graph.getCycles().get(c).size()));
+        }
+        for (int i = 0; i < graph.getNodes().size(); i++) {
+            if (graph.getCycleIndex(i) != -1) {
+                members.get(graph.getCycleIndex(i)).add(i);
+            }
+        }
+        return members;
+    }
+
+    private static String mermaidNode(DependencyGraph graph, int node) {
+        String label = nodeLabel(graph, node).replace("\"", "#quot;");
+        return nodeId(node) + "[\"" + label + "\"]";
+    }
+
+    private static String dotNode(DependencyGraph graph, int node) {
+        String label = nodeLabel(graph, node).replace("\\", "\\\\").replace("\"", "\\\"");
+        return nodeId(node) + " [label=\"" + label + "\"];";
+    }
+
+    private static String nodeLabel(DependencyGraph graph, int node) {
+        String name = graph.getNodes().get(node);
+        int size = graph.getNodeSize(node);
+        return size > 1 ? name + " (" + size + ")" : name;
+    }
+
+    // 以索引作為 ID，數萬個節點時仍然簡短，且不受名稱中的特殊字元影響
+    private static String nodeId(int node) {
+        return "n" + node;
+    }
+
+    /**
+     * 線寬隨權重以對數成長，上限 6
+     */
+    private static String penWidth(int weight) {
+        double width = Math.min(6.0, 1.0 + Math.log(weight) / Math.log(2));
+        return String.format(Locale.ROOT, "%.1f", width);
+    }
+
+    private static String weightBreakdown(DependencyGraph.Edge edge) {
+        StringBuilder text = new StringBuilder();
+        for (DependencyKind kind : DependencyKind.values()) {
+            int weight = edge.getWeight(kind);
+            if (weight > 0) {
+                text.append(text.length() > 0 ? ", " : "").append(kind.getLabel()).append('=').append(weight);
+            }
+        }
+        return text.toString();
+    }
+}
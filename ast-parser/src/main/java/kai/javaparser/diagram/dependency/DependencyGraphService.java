@@ -0,0 +1,229 @@
+package kai.javaparser.diagram.dependency;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.idx.CallGraphIndex;
+
+/**
+ * 整個程式碼庫的類別 / 包依賴圖。
+ * <p>
+ * 類別層級的依賴來自 import、extendsClassFqn、implementsInterfaceFqns、引用的型別，
+ * 以及 CallGraphIndex 的方法呼叫；只保留 AST 中存在的類別。類別圖在 AST 版本變動後的第一次查詢時建立
+ * （各類別平行讀取），之後每次查詢只需篩選與合併。包粒度時同一個包的類別合併為一個節點，
+ * 數萬個類別也只剩數百個節點，渲染結果仍可閱讀。
+ * </p>
+ */
+@Service
+public class DependencyGraphService {
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraphService.class);
+
+    private final AstIndex astIndex;
+    private final CallGraphIndex callGraphIndex;
+
+    private volatile DependencyGraph classGraph;
+    // 類別 FQN -> 所在的包
+    private volatile Map<String, String> classPackages = Collections.emptyMap();
+    private volatile long builtVersion = -1;
+
+    @Autowired
+    public DependencyGraphService(AstIndex astIndex, CallGraphIndex callGraphIndex) {
+        this.astIndex = astIndex;
+        this.callGraphIndex = callGraphIndex;
+    }
+
+    /**
+     * 建立依賴圖
+     *
+     * @param granularity  節點粒度
+     * @param basePackages 只保留這些包下的類別，為空時不過濾
+     * @param kinds        要計入的依賴來源，為空時計入所有來源
+     * @return 依賴圖（含循環依賴）
+     */
+    public DependencyGraph buildGraph(DependencyGranularity granularity, Set<String> basePackages,
+            Set<DependencyKind> kinds) {
+        ensureBuilt();
+        long start = System.currentTimeMillis();
+        DependencyGraph graph = classGraph;
+        boolean allKinds = kinds == null || kinds.isEmpty() || kinds.containsAll(EnumSet.allOf(DependencyKind.class));
+        if (!allKinds || (basePackages != null && !basePackages.isEmpty())) {
+            Set<DependencyKind> selected = allKinds ? EnumSet.allOf(DependencyKind.class) : kinds;
+            graph = graph.subgraph(classFqn -> isInBasePackages(classFqn, basePackages), selected);
+        }
+        if (granularity == DependencyGranularity.PACKAGE) {
+            Map<String, String> packages = classPackages;
+            graph = graph.aggregate(classFqn -> packages.getOrDefault(classFqn, packageOf(classFqn)));
+        }
+        logger.info("依賴圖建立完成，粒度: {}，{}，耗時: {} ms", granularity, graph,
+                System.currentTimeMillis() - start);
+        return graph;
+    }
+
+    /**
+     * 渲染依賴圖
+     *
+     * @param minWeight 邊的最小權重，循環內的邊不受限制
+     */
+    public String render(DependencyGraph graph, DependencyGraphFormat format, int minWeight) {
+        return new DependencyGraphRenderer(minWeight).render(graph, format);
+    }
+
+    /**
+     * 確保類別圖為最新狀態，AST 版本變動時重建
+     */
+    public void ensureBuilt() {
+        if (builtVersion == astIndex.getVersion()) {
+            return;
+        }
+        synchronized (this) {
+            long version = astIndex.getVersion();
+            if (builtVersion != version) {
+                build();
+                builtVersion = version;
+            }
+        }
+    }
+
+    /**
+     * 標記類別圖失效，下次查詢時重建
+     */
+    public void invalidate() {
+        builtVersion = -1;
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        List<String> classFqns = astIndex.getAllClassFqns();
+        Set<String> knownClasses = new HashSet<>(classFqns);
+
+        List<ClassDependencies> collected = classFqns.parallelStream()
+                .map(classFqn -> collect(classFqn, knownClasses))
+                .collect(Collectors.toList());
+
+        DependencyGraph.Builder builder = DependencyGraph.builder();
+        Map<String, String> packages = new HashMap<>();
+        for (ClassDependencies dependencies : collected) {
+            builder.addNode(dependencies.classFqn, 1);
+            packages.put(dependencies.classFqn, dependencies.packageName);
+            for (Map.Entry<DependencyKind, Set<String>> entry : dependencies.targets.entrySet()) {
+                for (String target : entry.getValue()) {
+                    builder.addEdge(dependencies.classFqn, target, entry.getKey(), 1);
+                }
+            }
+        }
+
+        // 呼叫邊：每個「呼叫者方法 -> 被呼叫者方法」計一次
+        for (String callerKey : callGraphIndex.getAllCallerKeys()) {
+            String callerClass = classOfMethodKey(callerKey);
+            if (!knownClasses.contains(callerClass)) {
+                continue;
+            }
+            for (String calleeKey : callGraphIndex.findCallees(callerKey)) {
+                String calleeClass = classOfMethodKey(calleeKey);
+                if (knownClasses.contains(calleeClass)) {
+                    builder.addEdge(callerClass, calleeClass, DependencyKind.CALL, 1);
+                }
+            }
+        }
+
+        this.classGraph = builder.build();
+        this.classPackages = packages;
+        logger.info("類別依賴圖建立完成，{}，耗時: {} ms", classGraph, System.currentTimeMillis() - start);
+    }
+
+    private ClassDependencies collect(String classFqn, Set<String> knownClasses) {
+        ClassDependencies dependencies = new ClassDependencies(classFqn);
+        FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+        if (astData == null) {
+            dependencies.packageName = packageOf(classFqn);
+            return dependencies;
+        }
+        dependencies.packageName = astData.getPackageName() != null ? astData.getPackageName() : packageOf(classFqn);
+
+        if (astData.getImports() != null) {
+            for (String importName : astData.getImports()) {
+                if (knownClasses.contains(importName)) {
+                    dependencies.add(DependencyKind.IMPORT, importName, knownClasses);
+                } else {
+                    // 靜態 import 指向成員，改取其所屬類別
+                    int lastDot = importName.lastIndexOf('.');
+                    if (lastDot > 0) {
+                        dependencies.add(DependencyKind.IMPORT, importName.substring(0, lastDot), knownClasses);
+                    }
+                }
+            }
+        }
+        SequenceDiagramData data = astData.getSequenceDiagramData();
+        if (data != null) {
+            dependencies.add(DependencyKind.EXTENDS, data.getExtendsClassFqn(), knownClasses);
+            dependencies.addAll(DependencyKind.IMPLEMENTS, data.getImplementsInterfaceFqns(), knownClasses);
+            dependencies.addAll(DependencyKind.REFERENCE, data.getReferencedTypeFqns(), knownClasses);
+        }
+        return dependencies;
+    }
+
+    private static boolean isInBasePackages(String classFqn, Set<String> basePackages) {
+        if (basePackages == null || basePackages.isEmpty()) {
+            return true;
+        }
+        return basePackages.stream().anyMatch(classFqn::startsWith);
+    }
+
+    private static String packageOf(String classFqn) {
+        int lastDot = classFqn.lastIndexOf('.');
+        return lastDot == -1 ? "" : classFqn.substring(0, lastDot);
+    }
+
+    private static String classOfMethodKey(String methodKey) {
+        int lastDot = methodKey.lastIndexOf('.');
+        return lastDot == -1 ? methodKey : methodKey.substring(0, lastDot);
+    }
+
+    /**
+     * 單一類別直接依賴的類別，依來源分開
+     */
+    private static final class ClassDependencies {
+        private final String classFqn;
+        private String packageName;
+        private final Map<DependencyKind, Set<String>> targets = new EnumMap<>(DependencyKind.class);
+
+        private ClassDependencies(String classFqn) {
+            this.classFqn = classFqn;
+        }
+
+        private void addAll(DependencyKind kind, List<String> typeFqns, Set<String> knownClasses) {
+            if (typeFqns != null) {
+                for (String typeFqn : typeFqns) {
+                    add(kind, typeFqn, knownClasses);
+                }
+            }
+        }
+
+        private void add(DependencyKind kind, String typeFqn, Set<String> knownClasses) {
+            if (typeFqn == null) {
+                return;
+            }
+            String stripped = AstClassUtil.stripGenerics(typeFqn);
+            if (!stripped.equals(classFqn) && knownClasses.contains(stripped)) {
+                targets.computeIfAbsent(kind, k -> new TreeSet<>()).add(stripped);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package kai.javaparser.diagram.dependency;
+
+/**
+ * 依賴關係的來源
+ */
+public enum DependencyKind {
+    IMPORT("import"), // import 宣告（靜態 import 取其所屬類別）
+    EXTENDS("extends"), // 繼承的父類別
+    IMPLEMENTS("implements"), // 實現的介面
+    REFERENCE("reference"), // 欄位、方法參數與回傳值引用的型別（同一個包不需要 import）
+    CALL("call"); // 方法呼叫，權重為不同的「呼叫者方法 -> 被呼叫者方法」數量
+
+    private final String label;
+
+    DependencyKind(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
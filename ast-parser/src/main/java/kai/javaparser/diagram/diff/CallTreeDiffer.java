@@ -0,0 +1,473 @@
+package kai.javaparser.diagram.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.DiffStatus;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.NoteNode;
+import kai.javaparser.ast.model.TraceResult;
+
+/**
+ * 比較同一個進入點在兩個版本的呼叫樹，合併為一棵標示差異的呼叫樹。
+ * <p>
+ * 1. 每個節點計算一次配對鍵（被呼叫者與方法，片段為類型）、標籤（另含參數、賦值、回傳值與條件）與子樹雜湊
+ * 2. 同一層的子節點依配對鍵對齊：先去除相同的開頭與結尾，再以兩邊都只出現一次的鍵為錨點取最長遞增子序列，
+ * 錨點之間的區段遞迴對齊，沒有錨點時小區段以動態規劃求最長共同子序列，大區段依序貪婪配對
+ * 3. 配對成功且子樹相同的節點直接沿用新版本；子樹不同時複製節點，標籤不同標示為 CHANGED，並遞迴比較子節點；
+ * 沒有配對的舊節點標示為 REMOVED，新節點標示為 ADDED，其子樹不再展開比較
+ * </p>
+ * <p>
+ * 與 DiagramFolder 相同，不修改輸入的呼叫樹（TraceMemo 會共用子樹），有變動的節點一律複製。
+ * 每次比較使用新的實例，非執行緒安全
+ * </p>
+ */
+public class CallTreeDiffer {
+    // 區段兩邊節點數的乘積不超過此值時以動態規劃對齊
+    private static final int MAX_DP_CELLS = 4096;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<DiagramNode, String> keys = new IdentityHashMap<>();
+    private final Map<DiagramNode, String> labels = new IdentityHashMap<>();
+    private final Map<DiagramNode, Long> hashes = new IdentityHashMap<>();
+
+    private int addedCount;
+    private int removedCount;
+    private int changedCount;
+
+    /**
+     * 比較兩個版本的追蹤結果
+     *
+     * @param base 舊版本
+     * @param head 新版本
+     * @return 合併後的呼叫樹與差異數量，進入點以新版本為準
+     */
+    public DiffResult diff(TraceResult base, TraceResult head) {
+        List<DiagramNode> merged = align(base.getSequenceNodes(), head.getSequenceNodes());
+        return new DiffResult(new TraceResult(head.getEntryPointMethodFqn(), merged),
+                addedCount, removedCount, changedCount);
+    }
+
+    private <T extends DiagramNode> List<T> align(List<T> base, List<T> head) {
+        List<T> a = base != null ? base : List.of();
+        List<T> b = head != null ? head : List.of();
+        List<T> merged = new ArrayList<>(Math.max(a.size(), b.size()));
+        alignRange(a, 0, a.size(), b, 0, b.size(), merged);
+        return merged;
+    }
+
+    private <T extends DiagramNode> void alignRange(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd, List<T> merged) {
+        while (aStart < aEnd && bStart < bEnd && key(a.get(aStart)).equals(key(b.get(bStart)))) {
+            merged.add(match(a.get(aStart++), b.get(bStart++)));
+        }
+        int suffix = 0;
+        while (aStart < aEnd - suffix && bStart < bEnd - suffix
+                && key(a.get(aEnd - 1 - suffix)).equals(key(b.get(bEnd - 1 - suffix)))) {
+            suffix++;
+        }
+
+        alignMiddle(a, aStart, aEnd - suffix, b, bStart, bEnd - suffix, merged);
+
+        for (int i = suffix; i > 0; i--) {
+            merged.add(match(a.get(aEnd - i), b.get(bEnd - i)));
+        }
+    }
+
+    private <T extends DiagramNode> void alignMiddle(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd, List<T> merged) {
+        if (aStart == aEnd || bStart == bEnd) {
+            emitUnmatched(a, aStart, aEnd, b, bStart, bEnd, merged);
+            return;
+        }
+
+        int[][] anchors = uniqueAnchors(a, aStart, aEnd, b, bStart, bEnd);
+        if (anchors.length > 0) {
+            int aNext = aStart;
+            int bNext = bStart;
+            for (int[] anchor : anchors) {
+                alignRange(a, aNext, anchor[0], b, bNext, anchor[1], merged);
+                merged.add(match(a.get(anchor[0]), b.get(anchor[1])));
+                aNext = anchor[0] + 1;
+                bNext = anchor[1] + 1;
+            }
+            alignRange(a, aNext, aEnd, b, bNext, bEnd, merged);
+        } else if ((long) (aEnd - aStart) * (bEnd - bStart) <= MAX_DP_CELLS) {
+            alignByLcs(a, aStart, aEnd, b, bStart, bEnd, merged);
+        } else {
+            alignGreedy(a, aStart, aEnd, b, bStart, bEnd, merged);
+        }
+    }
+
+    /**
+     * 兩邊都只出現一次的配對鍵，依舊版本位置排序後取新版本位置的最長遞增子序列
+     *
+     * @return 錨點 {舊版本索引, 新版本索引}，兩個索引皆遞增
+     */
+    private <T extends DiagramNode> int[][] uniqueAnchors(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd) {
+        // 配對鍵 -> {舊版本出現次數, 舊版本索引, 新版本出現次數, 新版本索引}
+        Map<String, int[]> occurrences = new HashMap<>();
+        for (int i = aStart; i < aEnd; i++) {
+            int[] occurrence = occurrences.computeIfAbsent(key(a.get(i)), k -> new int[4]);
+            occurrence[0]++;
+            occurrence[1] = i;
+        }
+        for (int j = bStart; j < bEnd; j++) {
+            int[] occurrence = occurrences.get(key(b.get(j)));
+            if (occurrence != null) {
+                occurrence[2]++;
+                occurrence[3] = j;
+            }
+        }
+
+        List<int[]> candidates = new ArrayList<>();
+        for (int[] occurrence : occurrences.values()) {
+            if (occurrence[0] == 1 && occurrence[2] == 1) {
+                candidates.add(new int[] { occurrence[1], occurrence[3] });
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new int[0][];
+        }
+        candidates.sort((x, y) -> Integer.compare(x[0], y[0]));
+
+        // 耐心排序求最長遞增子序列：tails[k] 為長度 k + 1 的子序列中結尾最小者
+        int[] tails = new int[candidates.size()];
+        int[] previous = new int[candidates.size()];
+        int length = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int value = candidates.get(i)[1];
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (candidates.get(tails[mid])[1] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[][] anchors = new int[length][];
+        for (int i = tails[length - 1], k = length - 1; k >= 0; i = previous[i], k--) {
+            anchors[k] = candidates.get(i);
+        }
+        return anchors;
+    }
+
+    private <T extends DiagramNode> void alignByLcs(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd, List<T> merged) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        // lengths[i][j]：a[aStart + i..] 與 b[bStart + j..] 的最長共同子序列長度
+        int[][] lengths = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lengths[i][j] = key(a.get(aStart + i)).equals(key(b.get(bStart + j)))
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            if (key(a.get(aStart + i)).equals(key(b.get(bStart + j)))) {
+                merged.add(match(a.get(aStart + i), b.get(bStart + j)));
+                i++;
+                j++;
+            } else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+                merged.add(marked(a.get(aStart + i++), DiffStatus.REMOVED));
+            } else {
+                merged.add(marked(b.get(bStart + j++), DiffStatus.ADDED));
+            }
+        }
+        emitUnmatched(a, aStart + i, aEnd, b, bStart + j, bEnd, merged);
+    }
+
+    /**
+     * 大區段依序配對：每個舊節點配對新版本中下一個相同鍵的節點，略過的新節點視為新增
+     */
+    private <T extends DiagramNode> void alignGreedy(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd, List<T> merged) {
+        Map<String, ArrayDeque<Integer>> positions = new HashMap<>();
+        for (int j = bStart; j < bEnd; j++) {
+            positions.computeIfAbsent(key(b.get(j)), k -> new ArrayDeque<>()).add(j);
+        }
+
+        int bNext = bStart;
+        for (int i = aStart; i < aEnd; i++) {
+            ArrayDeque<Integer> queue = positions.get(key(a.get(i)));
+            while (queue != null && !queue.isEmpty() && queue.peek() < bNext) {
+                queue.poll();
+            }
+            if (queue == null || queue.isEmpty()) {
+                merged.add(marked(a.get(i), DiffStatus.REMOVED));
+                continue;
+            }
+            int j = queue.poll();
+            while (bNext < j) {
+                merged.add(marked(b.get(bNext++), DiffStatus.ADDED));
+            }
+            merged.add(match(a.get(i), b.get(j)));
+            bNext = j + 1;
+        }
+        while (bNext < bEnd) {
+            merged.add(marked(b.get(bNext++), DiffStatus.ADDED));
+        }
+    }
+
+    private <T extends DiagramNode> void emitUnmatched(List<T> a, int aStart, int aEnd,
+            List<T> b, int bStart, int bEnd, List<T> merged) {
+        for (int i = aStart; i < aEnd; i++) {
+            merged.add(marked(a.get(i), DiffStatus.REMOVED));
+        }
+        for (int j = bStart; j < bEnd; j++) {
+            merged.add(marked(b.get(j), DiffStatus.ADDED));
+        }
+    }
+
+    /**
+     * 配對成功的兩個節點（配對鍵相同）
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends DiagramNode> T match(T base, T head) {
+        if (sameTree(base, head)) {
+            return head;
+        }
+        if (head instanceof InteractionModel) {
+            return (T) mergeInteraction((InteractionModel) base, (InteractionModel) head);
+        }
+        if (head instanceof ControlFlowFragment) {
+            return (T) mergeFragment((ControlFlowFragment) base, (ControlFlowFragment) head);
+        }
+        return head;
+    }
+
+    private InteractionModel mergeInteraction(InteractionModel base, InteractionModel head) {
+        // 配對鍵包含整條鏈，兩邊的鏈長度相同
+        InteractionModel merged = head.copyForTrace();
+        InteractionModel baseLink = base;
+        InteractionModel headLink = head;
+        InteractionModel mergedLink = merged;
+        while (mergedLink != null) {
+            mergedLink.setInternalCalls(align(baseLink.getInternalCalls(), headLink.getInternalCalls()));
+            if (!label(baseLink).equals(label(headLink))) {
+                mergedLink.setDiffStatus(DiffStatus.CHANGED);
+                changedCount++;
+            }
+            baseLink = baseLink.getNextChainedCall();
+            headLink = headLink.getNextChainedCall();
+            mergedLink = mergedLink.getNextChainedCall();
+        }
+        return merged;
+    }
+
+    private ControlFlowFragment mergeFragment(ControlFlowFragment base, ControlFlowFragment head) {
+        ControlFlowFragment merged = shallowCopy(head);
+        if (!Objects.equals(base.getCondition(), head.getCondition())) {
+            merged.setDiffStatus(DiffStatus.CHANGED);
+            changedCount++;
+        }
+        merged.setConditionInteractions(align(base.getConditionInteractions(), head.getConditionInteractions()));
+        merged.setContentInteractions(align(base.getContentInteractions(), head.getContentInteractions()));
+        merged.setAlternatives(align(base.getAlternatives(), head.getAlternatives()));
+        return merged;
+    }
+
+    /**
+     * 只有一邊有的節點：複製節點本身並標示狀態，子樹沿用
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends DiagramNode> T marked(T node, DiffStatus status) {
+        if (status == DiffStatus.ADDED) {
+            addedCount++;
+        } else {
+            removedCount++;
+        }
+        if (node instanceof InteractionModel) {
+            InteractionModel interaction = (InteractionModel) node;
+            InteractionModel copy = interaction.copyForTrace();
+            copy.setNextChainedCall(interaction.getNextChainedCall());
+            copy.setInternalCalls(interaction.getInternalCalls());
+            copy.setDiffStatus(status);
+            return (T) copy;
+        }
+        if (node instanceof ControlFlowFragment) {
+            ControlFlowFragment fragment = (ControlFlowFragment) node;
+            ControlFlowFragment copy = shallowCopy(fragment);
+            copy.setConditionInteractions(fragment.getConditionInteractions());
+            copy.setContentInteractions(fragment.getContentInteractions());
+            copy.setAlternatives(fragment.getAlternatives());
+            copy.setDiffStatus(status);
+            return (T) copy;
+        }
+        // 註解無法標示，維持原樣
+        return node;
+    }
+
+    private static ControlFlowFragment shallowCopy(ControlFlowFragment fragment) {
+        ControlFlowFragment copy = new ControlFlowFragment();
+        copy.setSequenceId(fragment.getSequenceId());
+        copy.setType(fragment.getType());
+        copy.setCondition(fragment.getCondition());
+        copy.setCallerClass(fragment.getCallerClass());
+        copy.setCallerMethod(fragment.getCallerMethod());
+        copy.setContextPath(fragment.getContextPath());
+        copy.setStartLineNumber(fragment.getStartLineNumber());
+        copy.setEndLineNumber(fragment.getEndLineNumber());
+        copy.setDiffStatus(fragment.getDiffStatus());
+        return copy;
+    }
+
+    /**
+     * 子樹雜湊相同時再逐一比對標籤，排除雜湊碰撞；相同的子樹只在配對時比對一次
+     */
+    private boolean sameTree(DiagramNode a, DiagramNode b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass() || hash(a) != hash(b)
+                || !label(a).equals(label(b))) {
+            return false;
+        }
+        if (a instanceof InteractionModel) {
+            InteractionModel x = (InteractionModel) a;
+            InteractionModel y = (InteractionModel) b;
+            return sameTrees(x.getInternalCalls(), y.getInternalCalls())
+                    && sameTree(x.getNextChainedCall(), y.getNextChainedCall());
+        }
+        if (a instanceof ControlFlowFragment) {
+            ControlFlowFragment x = (ControlFlowFragment) a;
+            ControlFlowFragment y = (ControlFlowFragment) b;
+            return sameTrees(x.getConditionInteractions(), y.getConditionInteractions())
+                    && sameTrees(x.getContentInteractions(), y.getContentInteractions())
+                    && sameTrees(x.getAlternatives(), y.getAlternatives());
+        }
+        return true;
+    }
+
+    private boolean sameTrees(List<? extends DiagramNode> a, List<? extends DiagramNode> b) {
+        int sizeA = a == null ? 0 : a.size();
+        int sizeB = b == null ? 0 : b.size();
+        if (sizeA != sizeB) {
+            return false;
+        }
+        for (int i = 0; i < sizeA; i++) {
+            if (!sameTree(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 配對鍵：呼叫為整條鏈的「被呼叫者#方法」，片段為類型，註解為內容
+     */
+    private String key(DiagramNode node) {
+        String key = keys.get(node);
+        if (key != null) {
+            return key;
+        }
+        if (node instanceof InteractionModel) {
+            StringBuilder builder = new StringBuilder("I:");
+            for (InteractionModel link = (InteractionModel) node; link != null; link = link.getNextChainedCall()) {
+                builder.append(link.getCallee()).append('#').append(link.getMethodName()).append('.');
+            }
+            key = builder.toString();
+        } else if (node instanceof ControlFlowFragment) {
+            key = "F:" + ((ControlFlowFragment) node).getType();
+        } else if (node instanceof NoteNode) {
+            key = "N:" + ((NoteNode) node).getText();
+        } else {
+            key = "?:" + node.getClass().getName();
+        }
+        keys.put(node, key);
+        return key;
+    }
+
+    /**
+     * 節點本身（不含子節點與鏈的後續環節）的內容，行號不列入
+     */
+    private String label(DiagramNode node) {
+        String label = labels.get(node);
+        if (label != null) {
+            return label;
+        }
+        if (node instanceof InteractionModel) {
+            InteractionModel interaction = (InteractionModel) node;
+            label = interaction.getCallee() + '#' + interaction.getMethodName()
+                    + '(' + (interaction.getArguments() != null ? String.join(",", interaction.getArguments()) : "")
+                    + ")=" + interaction.getAssignedToVariable()
+                    + ':' + interaction.getReturnValue()
+                    + 'x' + interaction.getRepeatCount();
+        } else if (node instanceof ControlFlowFragment) {
+            ControlFlowFragment fragment = (ControlFlowFragment) node;
+            label = fragment.getType() + "[" + fragment.getCondition() + "]";
+        } else {
+            label = key(node);
+        }
+        labels.put(node, label);
+        return label;
+    }
+
+    /**
+     * 64 位元的子樹雜湊（FNV-1a），共用的子樹只計算一次
+     */
+    private long hash(DiagramNode node) {
+        Long cached = hashes.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = mix(FNV_OFFSET, label(node));
+        if (node instanceof InteractionModel) {
+            InteractionModel interaction = (InteractionModel) node;
+            hash = mix(hash, interaction.getInternalCalls());
+            if (interaction.getNextChainedCall() != null) {
+                hash = (hash ^ hash(interaction.getNextChainedCall())) * FNV_PRIME;
+            }
+        } else if (node instanceof ControlFlowFragment) {
+            ControlFlowFragment fragment = (ControlFlowFragment) node;
+            hash = mix(hash, fragment.getConditionInteractions());
+            hash = mix(hash, fragment.getContentInteractions());
+            hash = mix(hash, fragment.getAlternatives());
+        }
+        hashes.put(node, hash);
+        return hash;
+    }
+
+    private long mix(long hash, List<? extends DiagramNode> children) {
+        // 清單的開頭與長度也列入，區分 [[a], b] 與 [a, b]
+        hash = (hash ^ '[') * FNV_PRIME;
+        if (children != null) {
+            for (DiagramNode child : children) {
+                hash = (hash ^ hash(child)) * FNV_PRIME;
+            }
+            hash = (hash ^ children.size()) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
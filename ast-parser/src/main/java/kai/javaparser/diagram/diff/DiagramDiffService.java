@@ -0,0 +1,130 @@
+package kai.javaparser.diagram.diff;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.ast.service.CommitAstService;
+import kai.javaparser.ast.service.SequenceTraceService;
+import kai.javaparser.diagram.DiagramFolder;
+import kai.javaparser.diagram.DiagramFormat;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.idx.TypeHierarchyIndex;
+
+/**
+ * 版本比較圖表服務：
+ * 以同一個進入點追蹤兩個版本，比較呼叫樹後渲染為一張標示差異的圖表
+ * （Mermaid 以背景色區塊、PlantUML 以 group、JSON 以 diff 欄位標示）。
+ * <p>
+ * 兩個版本各自以 CommitAstService 載入到獨立的 AST 索引，追蹤、折疊（private 輔助方法的判斷）
+ * 與渲染都使用該版本的索引，不會切換目前使用中的 AST，比較期間其他請求不受影響
+ * </p>
+ */
+@Service
+public class DiagramDiffService {
+    private static final Logger logger = LoggerFactory.getLogger(DiagramDiffService.class);
+
+    private final CommitAstService commitAstService;
+
+    @Autowired
+    public DiagramDiffService(CommitAstService commitAstService) {
+        this.commitAstService = commitAstService;
+    }
+
+    /**
+     * 比較兩個已追蹤（並折疊）的呼叫樹
+     *
+     * @param base 舊版本
+     * @param head 新版本
+     * @return 合併後的呼叫樹與差異數量
+     */
+    public DiffResult diff(TraceResult base, TraceResult head) {
+        return new CallTreeDiffer().diff(base, head);
+    }
+
+    /**
+     * 以指定格式渲染比較結果
+     *
+     * @param astIndex 新版本的 AST 索引
+     */
+    public String render(DiffResult diffResult, SequenceOutputConfig config, DiagramFormat format,
+            AstIndex astIndex) {
+        return format.createRenderer(config, astIndex).render(diffResult.getMerged());
+    }
+
+    /**
+     * 載入兩個版本、分別追蹤同一個進入點並渲染比較圖表
+     *
+     * @param baseRepositoryPath  舊版本的 git 儲存庫路徑
+     * @param baseRevision        舊版本，例如 commit ID、分支或標籤
+     * @param headRepositoryPath  新版本的 git 儲存庫路徑，null 時與舊版本相同
+     * @param headRevision        新版本
+     * @param classpath           類路徑（逗號分隔）
+     * @param javaComplianceLevel Java合規性級別
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置
+     * @param format              輸出格式
+     * @return 圖表與差異數量
+     * @throws IOException 版本不存在或解析失敗
+     */
+    public DiffDiagram generateDiffDiagram(String baseRepositoryPath, String baseRevision,
+            String headRepositoryPath, String headRevision, String classpath, String javaComplianceLevel,
+            String entryPointMethodFqn, SequenceOutputConfig config, DiagramFormat format) throws IOException {
+        String headRepository = headRepositoryPath != null && !headRepositoryPath.isBlank()
+                ? headRepositoryPath
+                : baseRepositoryPath;
+        logger.info("開始比較版本 {} 與 {}，進入點: {}", baseRevision, headRevision, entryPointMethodFqn);
+
+        AstIndex baseIndex = commitAstService.loadCommitIndex(baseRepositoryPath, baseRevision, classpath,
+                javaComplianceLevel);
+        TraceResult base = traceAndFold(baseIndex, entryPointMethodFqn, config);
+
+        AstIndex headIndex = commitAstService.loadCommitIndex(headRepository, headRevision, classpath,
+                javaComplianceLevel);
+        TraceResult head = traceAndFold(headIndex, entryPointMethodFqn, config);
+
+        DiffResult diffResult = diff(base, head);
+        String content = render(diffResult, config, format, headIndex);
+        logger.info("版本比較完成，{}，圖表長度: {} 字元", diffResult, content.length());
+        return new DiffDiagram(content, diffResult);
+    }
+
+    private TraceResult traceAndFold(AstIndex astIndex, String entryPointMethodFqn, SequenceOutputConfig config) {
+        SequenceTraceService traceService = new SequenceTraceService(astIndex, new TypeHierarchyIndex(astIndex));
+        try {
+            TraceResult traceResult = traceService.trace(entryPointMethodFqn, config);
+            if (!config.isFoldingEnabled()) {
+                return traceResult;
+            }
+            return new DiagramFolder(config, astIndex).fold(traceResult);
+        } finally {
+            traceService.shutdown();
+        }
+    }
+
+    /**
+     * 渲染後的比較圖表
+     */
+    public static final class DiffDiagram {
+        private final String content;
+        private final DiffResult diffResult;
+
+        public DiffDiagram(String content, DiffResult diffResult) {
+            this.content = content;
+            this.diffResult = diffResult;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public DiffResult getDiffResult() {
+            return diffResult;
+        }
+    }
+}
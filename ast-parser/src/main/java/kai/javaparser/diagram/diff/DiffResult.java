@@ -0,0 +1,32 @@
+package kai.javaparser.diagram.diff;
+
+import kai.javaparser.ast.model.TraceResult;
+import lombok.Getter;
+
+/**
+ * 呼叫樹比較結果：合併後的呼叫樹與各種差異的節點數。
+ * 新增與移除的子樹只計算最上層的節點
+ */
+@Getter
+public class DiffResult {
+    private final TraceResult merged;
+    private final int added;
+    private final int removed;
+    private final int changed;
+
+    public DiffResult(TraceResult merged, int added, int removed, int changed) {
+        this.merged = merged;
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    public boolean hasChanges() {
+        return added > 0 || removed > 0 || changed > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added + ", removed=" + removed + ", changed=" + changed;
+    }
+}
@@ -0,0 +1,76 @@
+package kai.javaparser.diagram.dispatch;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import kai.javaparser.diagram.DispatchStrategy;
+
+/**
+ * DispatchStrategy 的預設實作。
+ * <p>
+ * 支援三種模式：
+ * 1. NONE: 不展開，維持追蹤停在介面的行為。
+ * 2. SINGLE_IMPLEMENTATION: 只有唯一一個具體實作時才展開。
+ * 3. ALL_IMPLEMENTATIONS: 展開所有具體實作。
+ * 另外可指定包名前綴，只保留符合前綴的實作 (例如排除測試用的 Mock 實作)。
+ * </p>
+ */
+public class DefaultDispatchStrategy implements DispatchStrategy {
+
+    public enum Mode {
+        NONE,
+        SINGLE_IMPLEMENTATION,
+        ALL_IMPLEMENTATIONS
+    }
+
+    private final Mode mode;
+    private final Set<String> includedPackagePrefixes;
+
+    public DefaultDispatchStrategy(Mode mode) {
+        this(mode, Set.of());
+    }
+
+    public DefaultDispatchStrategy(Mode mode, Set<String> includedPackagePrefixes) {
+        this.mode = mode;
+        this.includedPackagePrefixes = includedPackagePrefixes;
+    }
+
+    @Override
+    public List<String> selectImplementations(String declaredTypeFqn, String methodName, List<String> candidates) {
+        if (mode == Mode.NONE || candidates.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> selected = candidates;
+        if (includedPackagePrefixes != null && !includedPackagePrefixes.isEmpty()) {
+            selected = candidates.stream()
+                    .filter(candidate -> includedPackagePrefixes.stream().anyMatch(candidate::startsWith))
+                    .collect(Collectors.toList());
+        }
+
+        if (mode == Mode.SINGLE_IMPLEMENTATION) {
+            return selected.size() == 1 ? selected : List.of();
+        }
+        return selected;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 內容相同的策略字串相同，可作為快取鍵的一部分
+     */
+    @Override
+    public String toString() {
+        return "DefaultDispatchStrategy{mode=" + mode + ", includedPackagePrefixes="
+                + new TreeSet<>(includedPackagePrefixes) + "}";
+    }
+}
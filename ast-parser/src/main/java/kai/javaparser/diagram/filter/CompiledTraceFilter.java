@@ -0,0 +1,310 @@
+package kai.javaparser.diagram.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import kai.javaparser.diagram.TraceFilter;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 預先編譯規則的 TraceFilter，規則與 DefaultTraceFilter 相同，但判斷時不配置物件也不寫日誌。
+ * <p>
+ * 規則寫法：
+ * 1. 類別：一般字串為 FQN 前綴（例如 "java.", "org.springframework."），編譯為字元前綴樹
+ * 2. 類別 / 方法：含 * 或 ? 的字串為萬用字元，須完整比對（例如 "com.example.*Dto", "get*"）
+ * 3. 類別 / 方法：以 "regex:" 開頭為正規表示式，須完整比對
+ * 4. 方法：一般字串為方法名稱，放入 intern 過的集合
+ * </p>
+ * <p>
+ * 注意與 DefaultTraceFilter 的差異：DefaultTraceFilter 的類別規則一律是字面前綴，
+ * 本類別（也是 SequenceOutputConfig 的預設過濾器）則把含 * 或 ? 的類別規則視為萬用字元並完整比對。
+ * 例如 "com.example.*Dto" 在 DefaultTraceFilter 中只比對字面上以該字串開頭的類別（實際上不會命中），
+ * 在這裡則排除所有以 Dto 結尾的 com.example 類別；且萬用字元須比對完整的 FQN，不再有前綴的效果。
+ * 規則中的 * 與 ? 要照字面比對時，改用 "regex:" 並跳脫
+ * </p>
+ * 每個實例記錄檢查次數與各規則的命中次數，取代逐次的日誌。數字自實例建立以來累計，
+ * 同一個過濾器用於多次追蹤時，以追蹤前後的 {@link #getStats()} 相減（{@link Stats#since(Stats)}）取得單次追蹤的數字。
+ */
+public class CompiledTraceFilter implements TraceFilter {
+    private static final String REGEX_PREFIX = "regex:";
+
+    private final Set<String> classPatterns;
+    private final Set<String> methodPatterns;
+
+    private final PrefixTrie classPrefixes;
+    private final Pattern classPattern;
+    private final Set<String> methodNames;
+    private final Pattern methodPattern;
+
+    private final LongAdder checkCount = new LongAdder();
+    private final LongAdder classHitCount = new LongAdder();
+    private final LongAdder methodHitCount = new LongAdder();
+
+    private CompiledTraceFilter(Collection<String> classPatterns, Collection<String> methodPatterns) {
+        this.classPatterns = new TreeSet<>(classPatterns);
+        this.methodPatterns = new TreeSet<>(methodPatterns);
+
+        List<String> prefixes = new ArrayList<>();
+        List<String> classRegexes = new ArrayList<>();
+        for (String pattern : this.classPatterns) {
+            if (isPattern(pattern)) {
+                classRegexes.add(toRegex(pattern));
+            } else {
+                prefixes.add(pattern);
+            }
+        }
+        this.classPrefixes = PrefixTrie.of(prefixes);
+        this.classPattern = compileAll(classRegexes);
+
+        Set<String> names = new HashSet<>();
+        List<String> methodRegexes = new ArrayList<>();
+        for (String pattern : this.methodPatterns) {
+            if (isPattern(pattern)) {
+                methodRegexes.add(toRegex(pattern));
+            } else {
+                names.add(pattern.intern());
+            }
+        }
+        this.methodNames = Set.copyOf(names);
+        this.methodPattern = compileAll(methodRegexes);
+    }
+
+    /**
+     * 編譯過濾規則
+     *
+     * @param classPatterns  類別規則：FQN 前綴、萬用字元或 "regex:" 開頭的正規表示式
+     * @param methodPatterns 方法規則：方法名稱、萬用字元或 "regex:" 開頭的正規表示式
+     * @return 編譯後的過濾器
+     * @throws IllegalArgumentException 正規表示式不合法時
+     */
+    public static CompiledTraceFilter compile(Collection<String> classPatterns, Collection<String> methodPatterns) {
+        return new CompiledTraceFilter(
+                classPatterns != null ? classPatterns : Set.of(),
+                methodPatterns != null ? methodPatterns : Set.of());
+    }
+
+    @Override
+    public boolean shouldExclude(String classFqn, String simpleMethodName, AstIndex astIndex) {
+        checkCount.increment();
+        if (classFqn != null && matchesClass(classFqn, classFqn.length())) {
+            classHitCount.increment();
+            return true;
+        }
+        if (simpleMethodName != null && matchesMethod(simpleMethodName)) {
+            methodHitCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean shouldExclude(String methodFqn, AstIndex astIndex) {
+        checkCount.increment();
+        // 與 AstClassUtil 相同的切法，但只在需要時才切出字串
+        int paren = methodFqn.indexOf('(');
+        int nameEnd = paren == -1 ? methodFqn.length() : paren;
+        int lastDot = methodFqn.lastIndexOf('.', nameEnd);
+        int classEnd = Math.max(lastDot, 0);
+
+        if (matchesClass(methodFqn, classEnd)) {
+            classHitCount.increment();
+            return true;
+        }
+        if ((!methodNames.isEmpty() || methodPattern != null)
+                && matchesMethod(methodFqn.substring(lastDot + 1, nameEnd))) {
+            methodHitCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 本實例建立以來的檢查與命中次數
+     */
+    public Stats getStats() {
+        return new Stats(checkCount.sum(), classHitCount.sum(), methodHitCount.sum());
+    }
+
+    private boolean matchesClass(String text, int end) {
+        if (classPrefixes.matchesPrefixOf(text, end)) {
+            return true;
+        }
+        return classPattern != null && classPattern.matcher(text).region(0, end).matches();
+    }
+
+    private boolean matchesMethod(String methodName) {
+        if (methodNames.contains(methodName)) {
+            return true;
+        }
+        return methodPattern != null && methodPattern.matcher(methodName).matches();
+    }
+
+    private static boolean isPattern(String pattern) {
+        return pattern.startsWith(REGEX_PREFIX) || pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0;
+    }
+
+    /**
+     * 萬用字元轉為正規表示式：* 對應任意字元，? 對應單一字元，其餘字元照字面比對
+     */
+    private static String toRegex(String pattern) {
+        if (pattern.startsWith(REGEX_PREFIX)) {
+            return pattern.substring(REGEX_PREFIX.length());
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
+    /**
+     * 多個規則合併為一個正規表示式，比對時只需走一次
+     */
+    private static Pattern compileAll(List<String> regexes) {
+        if (regexes.isEmpty()) {
+            return null;
+        }
+        StringBuilder combined = new StringBuilder();
+        for (String regex : regexes) {
+            if (combined.length() > 0) {
+                combined.append('|');
+            }
+            combined.append("(?:").append(regex).append(')');
+        }
+        return Pattern.compile(combined.toString());
+    }
+
+    /**
+     * 規則相同的過濾器字串相同，可作為快取鍵的一部分
+     */
+    @Override
+    public String toString() {
+        return "CompiledTraceFilter{classPatterns=" + classPatterns + ", methodPatterns=" + methodPatterns + "}";
+    }
+
+    /**
+     * 檢查與命中次數
+     */
+    public static final class Stats {
+        private final long checks;
+        private final long classHits;
+        private final long methodHits;
+
+        private Stats(long checks, long classHits, long methodHits) {
+            this.checks = checks;
+            this.classHits = classHits;
+            this.methodHits = methodHits;
+        }
+
+        public long getChecks() {
+            return checks;
+        }
+
+        public long getClassHits() {
+            return classHits;
+        }
+
+        public long getMethodHits() {
+            return methodHits;
+        }
+
+        /**
+         * 自較早的統計以來增加的次數
+         */
+        public Stats since(Stats earlier) {
+            return new Stats(checks - earlier.checks, classHits - earlier.classHits,
+                    methodHits - earlier.methodHits);
+        }
+
+        @Override
+        public String toString() {
+            return "checks=" + checks + ", classHits=" + classHits + ", methodHits=" + methodHits;
+        }
+    }
+
+    /**
+     * 唯讀的字元前綴樹，每個節點的子節點以排序後的字元陣列二分搜尋，比對時不配置物件
+     */
+    private static final class PrefixTrie {
+        private static final char[] NO_KEYS = new char[0];
+        private static final PrefixTrie[] NO_CHILDREN = new PrefixTrie[0];
+
+        private char[] keys = NO_KEYS;
+        private PrefixTrie[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        static PrefixTrie of(Collection<String> prefixes) {
+            PrefixTrie root = new PrefixTrie();
+            for (String prefix : prefixes) {
+                PrefixTrie node = root;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.childOrCreate(prefix.charAt(i));
+                }
+                node.terminal = true;
+            }
+            return root;
+        }
+
+        /**
+         * text 的前 end 個字元是否以任一前綴開頭
+         */
+        boolean matchesPrefixOf(String text, int end) {
+            PrefixTrie node = this;
+            for (int i = 0; ; i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i >= end) {
+                    return false;
+                }
+                int index = Arrays.binarySearch(node.keys, text.charAt(i));
+                if (index < 0) {
+                    return false;
+                }
+                node = node.children[index];
+            }
+        }
+
+        private PrefixTrie childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            PrefixTrie child = new PrefixTrie();
+
+            char[] newKeys = new char[keys.length + 1];
+            PrefixTrie[] newChildren = new PrefixTrie[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
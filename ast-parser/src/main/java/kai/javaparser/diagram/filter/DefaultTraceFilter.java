@@ -1,11 +1,12 @@
 package kai.javaparser.diagram.filter;
 
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.MethodRef;
 import kai.javaparser.diagram.TraceFilter;
 import kai.javaparser.diagram.idx.AstIndex;
 
@@ -17,6 +18,7 @@ import kai.javaparser.diagram.idx.AstIndex;
  * 2. 根據方法名稱排除 (例如 "toString", "hashCode")。
  * 3. 自動排除屬性的 Getter/Setter 方法。
  * </p>
+ * 每次判斷都會走訪所有前綴；規則多或追蹤量大時改用 {@link CompiledTraceFilter}。
  */
 public class DefaultTraceFilter implements TraceFilter {
     private final Logger logger = LoggerFactory.getLogger(DefaultTraceFilter.class);
@@ -31,17 +33,15 @@ public class DefaultTraceFilter implements TraceFilter {
 
     @Override
     public boolean shouldExclude(String classFqn, String simpleMethodName, AstIndex astIndex) {
-        logger.info("INFO: 檢查是否排除方法: {} {}", classFqn, simpleMethodName);
-
         // 規則 1: 檢查是否符合被排除的類別前綴
         if (classFqn != null && excludedClassPrefixes.stream().anyMatch(classFqn::startsWith)) {
-            logger.info("INFO: 已跳過追蹤符合排除前綴的類別: {}", classFqn);
+            logger.debug("已跳過追蹤符合排除前綴的類別: {}", classFqn);
             return true;
         }
 
         // 規則 2: 檢查是否為被排除的特定方法名稱
         if (simpleMethodName != null && excludedMethodNames.contains(simpleMethodName)) {
-            logger.info("INFO: 已跳過追蹤被排除的方法名稱: {}", simpleMethodName);
+            logger.debug("已跳過追蹤被排除的方法名稱: {}", simpleMethodName);
             return true;
         }
 
@@ -56,9 +56,15 @@ public class DefaultTraceFilter implements TraceFilter {
 
     @Override
     public boolean shouldExclude(String methodFqn, AstIndex astIndex) {
-        String classFqn = AstClassUtil.getClassFqnFromMethodFqn(methodFqn);
-        String methodSignature = AstClassUtil.getMethodSignature(methodFqn);
-        String simpleMethodName = methodSignature.split("\\(")[0];
-        return shouldExclude(classFqn, simpleMethodName, astIndex);
+        return shouldExclude(MethodRef.of(methodFqn), astIndex);
+    }
+
+    /**
+     * 規則相同的過濾器字串相同，可作為快取鍵的一部分
+     */
+    @Override
+    public String toString() {
+        return "DefaultTraceFilter{excludedClassPrefixes=" + new TreeSet<>(excludedClassPrefixes)
+                + ", excludedMethodNames=" + new TreeSet<>(excludedMethodNames) + "}";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package kai.javaparser.diagram.idx;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import kai.javaparser.ast.model.AnnotationInfo;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.SequenceDiagramData;
+
+/**
+ * 類別與方法註解的查詢表。
+ * <p>
+ * 渲染序列圖時每個呼叫都要顯示被呼叫方法的註解，原本每次都從 AstIndex 取出 FileAstData
+ * 再線性掃描方法分組。此處每個類別只在第一次查詢時整理一次，類別註解與各方法的註解文字
+ * 預先格式化，之後的查詢只需兩次 Map 查詢。AstIndex 版本號變動時換上新的空表，
+ * 仍在使用舊表的查詢只會寫入舊表，不會把舊版本的結果留在新表中。
+ * </p>
+ * 讀取 AST 失敗的類別記錄一次警告並計數，之後視為沒有註解，不影響圖表生成；
+ * 失敗次數透過 DiagramService 的快取統計對外提供。
+ */
+public class AnnotationIndex {
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationIndex.class);
+
+    private static final ClassAnnotations NONE = new ClassAnnotations(null, Collections.emptyMap());
+
+    private final AstIndex astIndex;
+
+    // 目前 AST 版本的查詢表
+    private volatile Table table = new Table(-1);
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public AnnotationIndex(AstIndex astIndex) {
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 獲取類別註解的註解文字
+     *
+     * @param classFqn 類別的完整限定名
+     * @return 例如 "@Service"，沒有註解時為 null
+     */
+    public String getClassNote(String classFqn) {
+        return lookup(classFqn).classNote;
+    }
+
+    /**
+     * 獲取方法註解的註解文字，同名的多載方法取第一個，與 SequenceDiagramData.findMethodGroup 相同
+     *
+     * @param classFqn   類別的完整限定名
+     * @param methodName 方法名稱
+     * @return 例如 "@GetMapping(value=/users), @Transactional"，沒有註解時為 null
+     */
+    public String getMethodNote(String classFqn, String methodName) {
+        if (methodName == null) {
+            return null;
+        }
+        return lookup(classFqn).methodNotes.get(methodName);
+    }
+
+    /**
+     * 已整理的類別數（自上次清空起）
+     */
+    public long getClassCount() {
+        return table.classCount.get();
+    }
+
+    /**
+     * 讀取 AST 失敗的次數（累計）
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * 將註解格式化為註解文字，例如 "@GetMapping(value=/users), @Transactional"
+     */
+    public static String formatAnnotations(List<AnnotationInfo> annotations) {
+        if (annotations == null || annotations.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder annotationText = new StringBuilder();
+        for (int i = 0; i < annotations.size(); i++) {
+            AnnotationInfo annotation = annotations.get(i);
+            if (i > 0) {
+                annotationText.append(", ");
+            }
+            annotationText.append("@").append(annotation.getSimpleName());
+
+            // 添加註解參數
+            if (annotation.getParameters() != null && !annotation.getParameters().isEmpty()) {
+                annotationText.append("(");
+                for (int j = 0; j < annotation.getParameters().size(); j++) {
+                    AnnotationInfo.AnnotationParameter param = annotation.getParameters().get(j);
+                    if (j > 0) {
+                        annotationText.append(", ");
+                    }
+                    if (param.getParameterName() != null) {
+                        annotationText.append(param.getParameterName()).append("=");
+                    }
+                    annotationText.append(param.getParameterValue());
+                }
+                annotationText.append(")");
+            }
+        }
+
+        return annotationText.toString();
+    }
+
+    private ClassAnnotations lookup(String classFqn) {
+        if (classFqn == null) {
+            return NONE;
+        }
+        long version = astIndex.getVersion();
+        Table current = table;
+        if (current.version != version) {
+            synchronized (this) {
+                current = table;
+                if (current.version != version) {
+                    current = new Table(version);
+                    table = current;
+                }
+            }
+        }
+        Table target = current;
+        return target.byClass.computeIfAbsent(classFqn, key -> build(key, target));
+    }
+
+    private ClassAnnotations build(String classFqn, Table target) {
+        target.classCount.incrementAndGet();
+        SequenceDiagramData data;
+        try {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            data = astData != null ? astData.getSequenceDiagramData() : null;
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            logger.warn("讀取類別註解失敗，視為沒有註解: {}", classFqn, e);
+            return NONE;
+        }
+        if (data == null) {
+            return NONE;
+        }
+
+        Map<String, String> methodNotes = new HashMap<>();
+        if (data.getMethodGroups() != null) {
+            for (MethodGroup group : data.getMethodGroups()) {
+                if (group.getMethodName() == null || methodNotes.containsKey(group.getMethodName())) {
+                    continue;
+                }
+                // 沒有註解的方法也要佔住名稱，後面的同名多載不可取代第一個
+                methodNotes.put(group.getMethodName(), emptyToNull(formatAnnotations(group.getAnnotations())));
+            }
+        }
+        return new ClassAnnotations(emptyToNull(formatAnnotations(data.getClassAnnotations())), methodNotes);
+    }
+
+    private static String emptyToNull(String text) {
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * 單一 AST 版本的查詢表
+     */
+    private static final class Table {
+        private final long version;
+        // 類別 FQN -> 已整理的註解文字
+        private final Map<String, ClassAnnotations> byClass = new ConcurrentHashMap<>();
+        private final AtomicLong classCount = new AtomicLong();
+
+        private Table(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * 單一類別已格式化的註解文字
+     */
+    private static final class ClassAnnotations {
+        private final String classNote;
+        private final Map<String, String> methodNotes;
+
+        private ClassAnnotations(String classNote, Map<String, String> methodNotes) {
+            this.classNote = classNote;
+            this.methodNotes = methodNotes;
+        }
+    }
+}
@@ -21,10 +21,12 @@ import kai.javaparser.ast.repository.AstRepository;
 public class AstIndex {
 
     private final AstRepository astRepository;
+    private final AnnotationIndex annotationIndex;
 
     @Autowired
     public AstIndex(AstRepository astRepository) {
         this.astRepository = astRepository;
+        this.annotationIndex = new AnnotationIndex(this);
     }
 
     /**
@@ -57,6 +59,15 @@ public class AstIndex {
         return astRepository.findByFqn(classFqn);
     }
 
+    /**
+     * 獲取類別與方法註解的查詢表，渲染時以此取代逐次讀取 FileAstData
+     *
+     * @return 註解查詢表，版本號變動時自動清空
+     */
+    public AnnotationIndex getAnnotationIndex() {
+        return annotationIndex;
+    }
+
     /**
      * 獲取所有已索引的類別 FQN 列表
      * 
@@ -75,4 +86,32 @@ public class AstIndex {
     public boolean hasClass(String classFqn) {
         return astRepository.exists(classFqn);
     }
+
+    /**
+     * 獲取 AST 資料的版本號，內容變動時遞增
+     * 
+     * @return 版本號
+     */
+    public long getVersion() {
+        return astRepository.getVersion();
+    }
+
+    /**
+     * 獲取單一類別 AST 的版本號，類別重新解析時改變
+     * 
+     * @param classFqn 類別的完整限定名
+     * @return 版本號，類別不存在時為 -1
+     */
+    public long getClassVersion(String classFqn) {
+        return astRepository.getClassVersion(classFqn);
+    }
+
+    /**
+     * 獲取索引成員的版本號，類別加入索引時遞增
+     * 
+     * @return 版本號
+     */
+    public long getIndexVersion() {
+        return astRepository.getIndexVersion();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package kai.javaparser.diagram.idx;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.MethodRef;
+
+/**
+ * 方法層級的呼叫圖索引。
+ * <p>
+ * 一次掃描所有 FileAstData 的 MethodGroup（包含控制流程片段與鏈式呼叫中的互動），
+ * 建立「呼叫者 -> 被呼叫者」與「被呼叫者 -> 呼叫者」兩個方向的鄰接表，
+ * 讓反向追蹤不需要逐邊查詢 Neo4j。
+ * </p>
+ * <p>
+ * 方法以 "classFqn.methodName" 作為鍵（不含參數與泛型），與 InteractionModel
+ * 只記錄方法名稱的粒度一致。AstIndex 版本號變動時會在下次查詢前自動重建。
+ * </p>
+ */
+@Component
+public class CallGraphIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CallGraphIndex.class);
+
+    private final AstIndex astIndex;
+
+    // 被呼叫者 -> 呼叫者
+    private volatile Map<String, Set<String>> callersIndex = Collections.emptyMap();
+    // 呼叫者 -> 被呼叫者
+    private volatile Map<String, Set<String>> calleesIndex = Collections.emptyMap();
+    // 建立索引時的 AST 版本號，-1 代表尚未建立
+    private volatile long builtVersion = -1;
+
+    @Autowired
+    public CallGraphIndex(AstIndex astIndex) {
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 確保索引為最新狀態，AST 版本變動時重建
+     */
+    public void ensureBuilt() {
+        if (builtVersion == astIndex.getVersion()) {
+            return;
+        }
+        synchronized (this) {
+            long version = astIndex.getVersion();
+            if (builtVersion != version) {
+                build();
+                builtVersion = version;
+            }
+        }
+    }
+
+    /**
+     * 標記索引失效，下次查詢時重建
+     */
+    public void invalidate() {
+        builtVersion = -1;
+    }
+
+    /**
+     * 查詢直接呼叫指定方法的所有方法
+     *
+     * @param methodKey 方法鍵，見 {@link #toMethodKey(String)}
+     * @return 呼叫者方法鍵集合，找不到時為空集合
+     */
+    public Set<String> findCallers(String methodKey) {
+        ensureBuilt();
+        return callersIndex.getOrDefault(methodKey, Collections.emptySet());
+    }
+
+    /**
+     * 查詢指定方法直接呼叫的所有方法
+     *
+     * @param methodKey 方法鍵，見 {@link #toMethodKey(String)}
+     * @return 被呼叫者方法鍵集合，找不到時為空集合
+     */
+    public Set<String> findCallees(String methodKey) {
+        ensureBuilt();
+        return calleesIndex.getOrDefault(methodKey, Collections.emptySet());
+    }
+
+    /**
+     * 獲取所有作為呼叫者出現過的方法鍵
+     */
+    public Set<String> getAllCallerKeys() {
+        ensureBuilt();
+        return Collections.unmodifiableSet(calleesIndex.keySet());
+    }
+
+    /**
+     * 將方法 FQN（例如 "com.example.A.run(int)"）轉換為索引使用的方法鍵 "com.example.A.run"
+     */
+    public static String toMethodKey(String methodFqn) {
+        if (methodFqn.indexOf('(') == -1) {
+            return AstClassUtil.stripGenerics(methodFqn);
+        }
+        MethodRef method = MethodRef.of(methodFqn);
+        return toMethodKey(method.getErasedClassFqn(), method.getMethodName());
+    }
+
+    /**
+     * 由類別 FQN 與方法名稱組成方法鍵，類別的泛型資訊會被移除
+     */
+    public static String toMethodKey(String classFqn, String methodName) {
+        return AstClassUtil.stripGenerics(classFqn) + "." + methodName;
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        Map<String, Set<String>> callers = new ConcurrentHashMap<>();
+        Map<String, Set<String>> callees = new ConcurrentHashMap<>();
+
+        List<String> classFqns = astIndex.getAllClassFqns();
+        classFqns.parallelStream().forEach(classFqn -> {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData == null || astData.getSequenceDiagramData() == null
+                    || astData.getSequenceDiagramData().getMethodGroups() == null) {
+                return;
+            }
+
+            for (MethodGroup group : astData.getSequenceDiagramData().getMethodGroups()) {
+                String callerKey = toMethodKey(classFqn, group.getMethodName());
+                Set<String> calleeKeys = callees.computeIfAbsent(callerKey, k -> ConcurrentHashMap.newKeySet());
+                collectCallees(group, calleeKeys);
+                for (String calleeKey : calleeKeys) {
+                    callers.computeIfAbsent(calleeKey, k -> ConcurrentHashMap.newKeySet()).add(callerKey);
+                }
+            }
+        });
+
+        this.callersIndex = callers;
+        this.calleesIndex = callees;
+        logger.info("呼叫圖索引建立完成，類別數: {}, 呼叫者方法數: {}, 耗時: {} ms",
+                classFqns.size(), callees.size(), System.currentTimeMillis() - start);
+    }
+
+    private void collectCallees(MethodGroup group, Set<String> calleeKeys) {
+        if (group.getInteractions() != null) {
+            for (InteractionModel interaction : group.getInteractions()) {
+                collectCallees(interaction, calleeKeys);
+            }
+        }
+        if (group.getControlFlowFragments() != null) {
+            for (ControlFlowFragment fragment : group.getControlFlowFragments()) {
+                collectCallees(fragment, calleeKeys);
+            }
+        }
+    }
+
+    private void collectCallees(ControlFlowFragment fragment, Set<String> calleeKeys) {
+        if (fragment.getConditionInteractions() != null) {
+            for (InteractionModel interaction : fragment.getConditionInteractions()) {
+                collectCallees(interaction, calleeKeys);
+            }
+        }
+        if (fragment.getContentInteractions() != null) {
+            for (InteractionModel interaction : fragment.getContentInteractions()) {
+                collectCallees(interaction, calleeKeys);
+            }
+        }
+        if (fragment.getAlternatives() != null) {
+            for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                collectCallees(alternative, calleeKeys);
+            }
+        }
+    }
+
+    private void collectCallees(InteractionModel interaction, Set<String> calleeKeys) {
+        for (InteractionModel current = interaction; current != null; current = current.getNextChainedCall()) {
+            if (current.getCallee() != null && current.getMethodName() != null) {
+                calleeKeys.add(toMethodKey(current.getCallee(), current.getMethodName()));
+            }
+        }
+    }
+}
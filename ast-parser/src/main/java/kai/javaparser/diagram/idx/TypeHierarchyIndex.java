@@ -0,0 +1,185 @@
+package kai.javaparser.diagram.idx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.diagram.AstClassUtil;
+
+/**
+ * 型別階層索引。
+ * <p>
+ * 由每個類別的 extendsClassFqn 與 implementsInterfaceFqns 建立「父型別 -> 子型別」索引，
+ * 並預先計算每個介面 / 抽象類別的所有具體實作（遞移閉包），
+ * 讓追蹤時的多型分派只需一次 Map 查詢，不需逐邊掃描。
+ * AstIndex 版本號變動時會在下次查詢前自動重建。
+ * </p>
+ */
+@Component
+public class TypeHierarchyIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TypeHierarchyIndex.class);
+
+    public static final String TYPE_CLASS = "Class";
+    public static final String TYPE_ABSTRACT_CLASS = "AbstractClass";
+    public static final String TYPE_INTERFACE = "Interface";
+
+    private final AstIndex astIndex;
+
+    // 類別 FQN -> 類別類型 ("Class", "AbstractClass", "Interface")
+    private volatile Map<String, String> classTypes = Collections.emptyMap();
+    // 父型別 -> 直接子型別
+    private volatile Map<String, Set<String>> directSubtypes = Collections.emptyMap();
+    // 類別 -> 直接父型別 (extends 與 implements)
+    private volatile Map<String, List<String>> directSupertypes = Collections.emptyMap();
+    // 介面 / 抽象類別 -> 所有具體實作 (已排序)
+    private volatile Map<String, List<String>> concreteImplementations = Collections.emptyMap();
+    private volatile long builtVersion = -1;
+
+    @Autowired
+    public TypeHierarchyIndex(AstIndex astIndex) {
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 確保索引為最新狀態，AST 版本變動時重建
+     */
+    public void ensureBuilt() {
+        if (builtVersion == astIndex.getVersion()) {
+            return;
+        }
+        synchronized (this) {
+            long version = astIndex.getVersion();
+            if (builtVersion != version) {
+                build();
+                builtVersion = version;
+            }
+        }
+    }
+
+    /**
+     * 標記索引失效，下次查詢時重建
+     */
+    public void invalidate() {
+        builtVersion = -1;
+    }
+
+    /**
+     * 判斷型別是否為介面或抽象類別
+     */
+    public boolean isAbstractType(String typeFqn) {
+        ensureBuilt();
+        String classType = classTypes.get(stripGenerics(typeFqn));
+        return TYPE_INTERFACE.equals(classType) || TYPE_ABSTRACT_CLASS.equals(classType);
+    }
+
+    /**
+     * 獲取型別的所有具體實作（遞移），依名稱排序
+     *
+     * @param typeFqn 介面或抽象類別的 FQN，可包含泛型資訊
+     * @return 具體實作 FQN 列表，沒有時為空列表
+     */
+    public List<String> getConcreteImplementations(String typeFqn) {
+        ensureBuilt();
+        return concreteImplementations.getOrDefault(stripGenerics(typeFqn), Collections.emptyList());
+    }
+
+    /**
+     * 獲取型別的直接子型別
+     */
+    public Set<String> getDirectSubtypes(String typeFqn) {
+        ensureBuilt();
+        return directSubtypes.getOrDefault(stripGenerics(typeFqn), Collections.emptySet());
+    }
+
+    /**
+     * 獲取類別的直接父型別（父類別與實現的介面）
+     */
+    public List<String> getDirectSupertypes(String classFqn) {
+        ensureBuilt();
+        return directSupertypes.getOrDefault(stripGenerics(classFqn), Collections.emptyList());
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        Map<String, String> types = new HashMap<>();
+        Map<String, Set<String>> subtypes = new HashMap<>();
+        Map<String, List<String>> supertypes = new HashMap<>();
+
+        for (String classFqn : astIndex.getAllClassFqns()) {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData == null || astData.getSequenceDiagramData() == null) {
+                continue;
+            }
+            SequenceDiagramData data = astData.getSequenceDiagramData();
+            types.put(classFqn, data.getClassType() != null ? data.getClassType() : TYPE_CLASS);
+
+            List<String> parents = new ArrayList<>();
+            if (data.getExtendsClassFqn() != null) {
+                parents.add(stripGenerics(data.getExtendsClassFqn()));
+            }
+            if (data.getImplementsInterfaceFqns() != null) {
+                for (String interfaceFqn : data.getImplementsInterfaceFqns()) {
+                    parents.add(stripGenerics(interfaceFqn));
+                }
+            }
+            supertypes.put(classFqn, parents);
+            for (String parent : parents) {
+                subtypes.computeIfAbsent(parent, k -> new HashSet<>()).add(classFqn);
+            }
+        }
+
+        Map<String, List<String>> implementations = new HashMap<>();
+        for (String typeFqn : subtypes.keySet()) {
+            List<String> concrete = collectConcreteSubtypes(typeFqn, subtypes, types);
+            if (!concrete.isEmpty()) {
+                implementations.put(typeFqn, concrete);
+            }
+        }
+
+        this.classTypes = types;
+        this.directSubtypes = subtypes;
+        this.directSupertypes = supertypes;
+        this.concreteImplementations = implementations;
+        logger.info("型別階層索引建立完成，類別數: {}, 具有實作的型別數: {}, 耗時: {} ms",
+                types.size(), implementations.size(), System.currentTimeMillis() - start);
+    }
+
+    private List<String> collectConcreteSubtypes(String typeFqn, Map<String, Set<String>> subtypes,
+            Map<String, String> types) {
+        Set<String> concrete = new TreeSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(typeFqn);
+        while (!stack.isEmpty()) {
+            String current = stack.pop();
+            for (String subtype : subtypes.getOrDefault(current, Collections.emptySet())) {
+                if (!visited.add(subtype)) {
+                    continue;
+                }
+                if (TYPE_CLASS.equals(types.get(subtype))) {
+                    concrete.add(subtype);
+                }
+                stack.push(subtype);
+            }
+        }
+        return new ArrayList<>(concrete);
+    }
+
+    private static String stripGenerics(String typeFqn) {
+        return AstClassUtil.stripGenerics(typeFqn);
+    }
+}
@@ -0,0 +1,180 @@
+package kai.javaparser.diagram.idx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.diagram.AstClassUtil;
+
+/**
+ * 型別引用索引。
+ * <p>
+ * 由每個類別的 import（含靜態 import 所屬的類別）、extendsClassFqn、implementsInterfaceFqns
+ * 以及解析時記錄的欄位、方法參數與回傳型別，建立「類別 -> 直接引用的類別」索引。
+ * 只保留 AST 中存在的類別，JDK 與第三方型別不會出現在索引中。
+ * 讓代碼提取不需加深追蹤，就能補上 DTO、父類別與常數類別等上下文。
+ * AstIndex 版本號變動時會在下次查詢前自動重建。
+ * </p>
+ */
+@Component
+public class TypeReferenceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TypeReferenceIndex.class);
+
+    private final AstIndex astIndex;
+
+    // 類別 -> 直接引用的類別 (已排序)
+    private volatile Map<String, List<String>> references = Collections.emptyMap();
+    private volatile long builtVersion = -1;
+
+    @Autowired
+    public TypeReferenceIndex(AstIndex astIndex) {
+        this.astIndex = astIndex;
+    }
+
+    /**
+     * 確保索引為最新狀態，AST 版本變動時重建
+     */
+    public void ensureBuilt() {
+        if (builtVersion == astIndex.getVersion()) {
+            return;
+        }
+        synchronized (this) {
+            long version = astIndex.getVersion();
+            if (builtVersion != version) {
+                build();
+                builtVersion = version;
+            }
+        }
+    }
+
+    /**
+     * 標記索引失效，下次查詢時重建
+     */
+    public void invalidate() {
+        builtVersion = -1;
+    }
+
+    /**
+     * 獲取類別直接引用的類別，依名稱排序
+     */
+    public List<String> getReferencedTypes(String classFqn) {
+        ensureBuilt();
+        return references.getOrDefault(stripGenerics(classFqn), Collections.emptyList());
+    }
+
+    /**
+     * 從起始類別沿型別引用逐層展開，收集依賴閉包
+     *
+     * @param seedClassFqns 起始類別，本身不會出現在結果中
+     * @param maxDepth      最多展開的層數
+     * @param maxClasses    最多收集的類別數，較近的層優先，同層依名稱排序
+     * @param filter        要收集的類別條件（例如 basePackages 範圍），不符合的類別也不會再往下展開
+     * @return 類別 FQN -> 與起始類別的距離（1 起算），依距離與名稱排序
+     */
+    public Map<String, Integer> collectClosure(Collection<String> seedClassFqns, int maxDepth, int maxClasses,
+            Predicate<String> filter) {
+        ensureBuilt();
+        Map<String, Integer> closure = new LinkedHashMap<>();
+        Set<String> visited = new HashSet<>();
+        for (String seed : seedClassFqns) {
+            visited.add(stripGenerics(seed));
+        }
+
+        Set<String> frontier = new TreeSet<>(visited);
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            Set<String> next = new TreeSet<>();
+            for (String classFqn : frontier) {
+                for (String referenced : references.getOrDefault(classFqn, Collections.emptyList())) {
+                    if (!visited.contains(referenced) && filter.test(referenced)) {
+                        next.add(referenced);
+                    }
+                }
+            }
+            for (String classFqn : next) {
+                if (closure.size() >= maxClasses) {
+                    return closure;
+                }
+                visited.add(classFqn);
+                closure.put(classFqn, depth);
+            }
+            frontier = next;
+        }
+        return closure;
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        Set<String> knownClasses = new HashSet<>(astIndex.getAllClassFqns());
+        Map<String, List<String>> index = new HashMap<>();
+        int edgeCount = 0;
+
+        for (String classFqn : knownClasses) {
+            FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+            if (astData == null || astData.getSequenceDiagramData() == null) {
+                continue;
+            }
+            SequenceDiagramData data = astData.getSequenceDiagramData();
+
+            Set<String> referenced = new TreeSet<>();
+            if (astData.getImports() != null) {
+                for (String importName : astData.getImports()) {
+                    addKnown(importName, knownClasses, referenced);
+                    // 靜態 import 指向成員，改取其所屬類別
+                    int lastDot = importName.lastIndexOf('.');
+                    if (lastDot > 0 && !knownClasses.contains(importName)) {
+                        addKnown(importName.substring(0, lastDot), knownClasses, referenced);
+                    }
+                }
+            }
+            addKnown(data.getExtendsClassFqn(), knownClasses, referenced);
+            addAllKnown(data.getImplementsInterfaceFqns(), knownClasses, referenced);
+            addAllKnown(data.getReferencedTypeFqns(), knownClasses, referenced);
+            referenced.remove(classFqn);
+
+            if (!referenced.isEmpty()) {
+                index.put(classFqn, new ArrayList<>(referenced));
+                edgeCount += referenced.size();
+            }
+        }
+
+        this.references = index;
+        logger.info("型別引用索引建立完成，類別數: {}, 引用數: {}, 耗時: {} ms",
+                index.size(), edgeCount, System.currentTimeMillis() - start);
+    }
+
+    private void addAllKnown(List<String> typeFqns, Set<String> knownClasses, Set<String> referenced) {
+        if (typeFqns != null) {
+            for (String typeFqn : typeFqns) {
+                addKnown(typeFqn, knownClasses, referenced);
+            }
+        }
+    }
+
+    private void addKnown(String typeFqn, Set<String> knownClasses, Set<String> referenced) {
+        if (typeFqn != null) {
+            String stripped = stripGenerics(typeFqn);
+            if (knownClasses.contains(stripped)) {
+                referenced.add(stripped);
+            }
+        }
+    }
+
+    private static String stripGenerics(String typeFqn) {
+        return AstClassUtil.stripGenerics(typeFqn);
+    }
+}
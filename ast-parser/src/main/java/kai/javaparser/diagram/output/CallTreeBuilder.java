@@ -0,0 +1,215 @@
+package kai.javaparser.diagram.output;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import kai.javaparser.ast.model.DiffStatus;
+import kai.javaparser.diagram.AstClassUtil;
+import lombok.Getter;
+
+/**
+ * 將序列圖項目組成呼叫樹的接收端。
+ * <p>
+ * - 呼叫之後的 activate 到對應的 deactivate 之間的項目為該呼叫的子節點
+ * - 片段開頭到對應的 end 之間的項目為該片段的子節點，else 分支是外層 alt 的子節點
+ * - 註解掛在下一個呼叫上
+ * - 差異標示掛在區塊中的第一個節點（呼叫或片段）上
+ * - 收合子樹的代號掛在前一個呼叫上
+ * - 參與者只記錄一次，節點以索引引用
+ * </p>
+ */
+public class CallTreeBuilder implements SequenceDiagramSink {
+
+    @Getter
+    public static class Participant {
+        private final String id;
+        private final String name;
+        private final boolean actor;
+
+        Participant(String id, String name, boolean actor) {
+            this.id = id;
+            this.name = name;
+            this.actor = actor;
+        }
+    }
+
+    private final List<Participant> participants = new ArrayList<>();
+    private final Map<String, Integer> participantIndex = new HashMap<>();
+    private final List<CallTreeNode> roots = new ArrayList<>();
+    private final Deque<CallTreeNode> open = new ArrayDeque<>();
+
+    private CallTreeNode lastCall;
+    private String pendingNote;
+    private DiffStatus pendingDiff;
+    private int nextId = 0;
+
+    /**
+     * 依第一次出現的順序返回所有參與者
+     */
+    public List<Participant> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * 返回根節點（進入點呼叫），沒有任何節點時返回 null
+     */
+    public CallTreeNode getRoot() {
+        closeAll();
+        return roots.isEmpty() ? null : roots.get(0);
+    }
+
+    /**
+     * 節點總數
+     */
+    public int getNodeCount() {
+        return nextId;
+    }
+
+    @Override
+    public void addActor(String name) {
+        register(name, name, true);
+    }
+
+    @Override
+    public void addParticipant(String safeId, String displayName) {
+        register(safeId, displayName, false);
+    }
+
+    @Override
+    public void addEntryPointCall(String actorName, String calleeId, String calleeDisplayName) {
+        register(calleeId, AstClassUtil.getSimpleClassName(calleeId), false);
+        addCallNode(CallTreeNode.call(nextId++, indexOf(actorName), indexOf(calleeId), calleeDisplayName,
+                null, null, null, false));
+    }
+
+    @Override
+    public void addCall(String callerId, String calleeId, String signature, List<String> arguments,
+            String assignedToVariable, boolean dashLine, String returnValue) {
+        addCallNode(CallTreeNode.call(nextId++, indexOf(callerId), indexOf(calleeId), signature,
+                arguments, assignedToVariable, returnValue, dashLine));
+    }
+
+    @Override
+    public void activate(String participantId) {
+        // activate 一定緊接在對應的呼叫之後
+        open.push(lastCall);
+    }
+
+    @Override
+    public void deactivate(String participantId) {
+        close();
+    }
+
+    @Override
+    public void addAltFragment(String condition) {
+        openFragment(CallTreeNode.Kind.ALT, condition);
+    }
+
+    @Override
+    public void addElseFragment() {
+        openFragment(CallTreeNode.Kind.ELSE, "");
+    }
+
+    @Override
+    public void addElseIfFragment(String condition) {
+        openFragment(CallTreeNode.Kind.ELSE, condition);
+    }
+
+    @Override
+    public void addOptFragment(String condition) {
+        openFragment(CallTreeNode.Kind.OPT, condition);
+    }
+
+    @Override
+    public void addLoopFragment(String condition) {
+        openFragment(CallTreeNode.Kind.LOOP, condition);
+    }
+
+    @Override
+    public void endFragment() {
+        close();
+    }
+
+    @Override
+    public void addNote(String participantId, String content) {
+        pendingNote = pendingNote == null ? content : pendingNote + ", " + content;
+    }
+
+    @Override
+    public void beginHighlight(DiffStatus status) {
+        pendingDiff = status;
+    }
+
+    @Override
+    public void endHighlight() {
+        pendingDiff = null;
+    }
+
+    @Override
+    public void markExpandable(int handle) {
+        if (lastCall != null) {
+            lastCall.setExpandHandle(handle);
+        }
+    }
+
+    private void addCallNode(CallTreeNode node) {
+        if (pendingNote != null) {
+            node.setNote(pendingNote);
+            pendingNote = null;
+        }
+        append(node);
+        lastCall = node;
+    }
+
+    private void openFragment(CallTreeNode.Kind kind, String condition) {
+        CallTreeNode node = CallTreeNode.fragment(nextId++, kind, condition);
+        append(node);
+        open.push(node);
+    }
+
+    private void append(CallTreeNode node) {
+        if (pendingDiff != null) {
+            node.setDiff(pendingDiff);
+            pendingDiff = null;
+        }
+        if (open.isEmpty()) {
+            roots.add(node);
+        } else {
+            open.peek().addChild(node);
+        }
+    }
+
+    private void close() {
+        CallTreeNode node = open.poll();
+        if (node != null) {
+            // 子樹的節點 id 連續，結束時即可得到後代數量
+            node.setDescendantCount(nextId - node.getId() - 1);
+        }
+    }
+
+    private void closeAll() {
+        while (!open.isEmpty()) {
+            close();
+        }
+    }
+
+    private void register(String id, String name, boolean actor) {
+        if (!participantIndex.containsKey(id)) {
+            participantIndex.put(id, participants.size());
+            participants.add(new Participant(id, name, actor));
+        }
+    }
+
+    private int indexOf(String id) {
+        Integer index = participantIndex.get(id);
+        if (index == null) {
+            register(id, id, false);
+            index = participants.size() - 1;
+        }
+        return index;
+    }
+}
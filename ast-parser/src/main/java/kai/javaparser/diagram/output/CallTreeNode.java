@@ -0,0 +1,113 @@
+package kai.javaparser.diagram.output;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import kai.javaparser.ast.model.DiffStatus;
+import lombok.Getter;
+
+/**
+ * 呼叫樹節點：一個呼叫，或一個控制流程片段。
+ * <p>
+ * id 為前序走訪的順序（根節點為 0），子樹中的節點 id 連續，
+ * 因此子樹範圍為 [id, id + descendantCount]
+ * </p>
+ */
+@Getter
+public class CallTreeNode {
+
+    public enum Kind {
+        CALL("call"),
+        ALT("alt"),
+        ELSE("else"),
+        OPT("opt"),
+        LOOP("loop");
+
+        private final String jsonName;
+
+        Kind(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    private final int id;
+    private final Kind kind;
+
+    // 呼叫：呼叫者與被呼叫者在參與者列表中的索引
+    private int from = -1;
+    private int to = -1;
+    private String method;
+    private List<String> arguments;
+    private String assignedToVariable;
+    private String returnValue;
+    private boolean conditionEvaluation;
+    private String note;
+
+    // 片段：條件
+    private String condition;
+
+    // 版本比較的差異狀態，null 代表沒有差異
+    private DiffStatus diff;
+
+    // 分頁瀏覽時收合的子樹代號，null 代表已展開或沒有子樹
+    private Integer expandHandle;
+
+    private List<CallTreeNode> children;
+    private int descendantCount;
+
+    CallTreeNode(int id, Kind kind) {
+        this.id = id;
+        this.kind = kind;
+    }
+
+    static CallTreeNode call(int id, int from, int to, String method, List<String> arguments,
+            String assignedToVariable, String returnValue, boolean conditionEvaluation) {
+        CallTreeNode node = new CallTreeNode(id, Kind.CALL);
+        node.from = from;
+        node.to = to;
+        node.method = method;
+        node.arguments = arguments;
+        node.assignedToVariable = assignedToVariable;
+        node.returnValue = returnValue;
+        node.conditionEvaluation = conditionEvaluation;
+        return node;
+    }
+
+    static CallTreeNode fragment(int id, Kind kind, String condition) {
+        CallTreeNode node = new CallTreeNode(id, kind);
+        node.condition = condition;
+        return node;
+    }
+
+    public List<CallTreeNode> getChildren() {
+        return children == null ? Collections.emptyList() : children;
+    }
+
+    void addChild(CallTreeNode child) {
+        if (children == null) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    void setNote(String note) {
+        this.note = note;
+    }
+
+    void setExpandHandle(Integer expandHandle) {
+        this.expandHandle = expandHandle;
+    }
+
+    void setDiff(DiffStatus diff) {
+        this.diff = diff;
+    }
+
+    void setDescendantCount(int descendantCount) {
+        this.descendantCount = descendantCount;
+    }
+}
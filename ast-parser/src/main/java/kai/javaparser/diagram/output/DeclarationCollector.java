@@ -0,0 +1,88 @@
+package kai.javaparser.diagram.output;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.output.item.AbstractMermaidItem;
+import kai.javaparser.diagram.output.item.MermailActor;
+import kai.javaparser.diagram.output.item.MermailParticipant;
+
+/**
+ * 只收集 actor 與 participant 宣告的接收端，其餘項目直接捨棄。
+ * <p>
+ * 串流輸出前先以此跑一輪，得到與 MermaidOutput 相同順序的宣告，供 MermaidStreamWriter 與 PlantUmlWriter
+ * 寫在開頭，記憶體只與 participant 數量有關，與圖表行數無關
+ * </p>
+ */
+public class DeclarationCollector implements SequenceDiagramSink {
+    private final List<AbstractMermaidItem> declarations = new ArrayList<>();
+    private final Set<String> participantIds = new HashSet<>();
+
+    /**
+     * 依第一次出現的順序返回所有宣告
+     */
+    public List<AbstractMermaidItem> getDeclarations() {
+        return declarations;
+    }
+
+    @Override
+    public void addActor(String name) {
+        declarations.add(new MermailActor(name));
+    }
+
+    @Override
+    public void addParticipant(String safeId, String displayName) {
+        if (participantIds.add(safeId)) {
+            declarations.add(new MermailParticipant(safeId, displayName));
+        }
+    }
+
+    @Override
+    public void addEntryPointCall(String actorName, String calleeId, String calleeDisplayName) {
+        addParticipant(calleeId, AstClassUtil.getSimpleClassName(calleeId));
+    }
+
+    @Override
+    public void addCall(String callerId, String calleeId, String signature, List<String> arguments,
+            String assignedToVariable, boolean dashLine, String returnValue) {
+    }
+
+    @Override
+    public void activate(String participantId) {
+    }
+
+    @Override
+    public void deactivate(String participantId) {
+    }
+
+    @Override
+    public void addAltFragment(String condition) {
+    }
+
+    @Override
+    public void addElseFragment() {
+    }
+
+    @Override
+    public void addElseIfFragment(String condition) {
+    }
+
+    @Override
+    public void addOptFragment(String condition) {
+    }
+
+    @Override
+    public void addLoopFragment(String condition) {
+    }
+
+    @Override
+    public void endFragment() {
+    }
+
+    @Override
+    public void addNote(String participantId, String content) {
+    }
+}
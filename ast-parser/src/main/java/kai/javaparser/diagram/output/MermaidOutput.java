@@ -7,6 +7,7 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 
+import kai.javaparser.ast.model.DiffStatus;
 import kai.javaparser.diagram.AstClassUtil;
 import kai.javaparser.diagram.output.item.AbstractMermaidItem;
 import kai.javaparser.diagram.output.item.AltFragment;
@@ -20,6 +21,7 @@ import kai.javaparser.diagram.output.item.MermailActor;
 import kai.javaparser.diagram.output.item.MermailCall;
 import kai.javaparser.diagram.output.item.MermailParticipant;
 import kai.javaparser.diagram.output.item.OptFragment;
+import kai.javaparser.diagram.output.item.RectFragment;
 
 /**
  * 負責生成 Mermaid 序列圖語法。
@@ -27,8 +29,9 @@ import kai.javaparser.diagram.output.item.OptFragment;
  * - participant <safeId> as <displayName>
  * - 保留原始 FQN 方便將來反向解析
  * - 控制流程片段 (alt, opt, loop)
+ * - 版本比較的差異以背景色區塊 (rect) 標示
  */
-public class MermaidOutput {
+public class MermaidOutput implements SequenceDiagramSink {
     private List<AbstractMermaidItem> mermaidList;
 
     private Set<String> participantIds;
@@ -150,6 +153,19 @@ public class MermaidOutput {
         mermaidList.add(new MermaidNote(participantId, MermaidNote.Location.right, content));
     }
 
+    /**
+     * 標示差異：以背景色區塊包住，對應的 endHighlight 輸出 end
+     */
+    @Override
+    public void beginHighlight(DiffStatus status) {
+        mermaidList.add(RectFragment.forDiff(status));
+    }
+
+    @Override
+    public void endHighlight() {
+        mermaidList.add(new EndFragment());
+    }
+
     /**
      * 1. 所有 participant / actor 移到最前面
      * 2. 去除重複
@@ -189,7 +205,8 @@ public class MermaidOutput {
                 indentLevel += 1;
             } else if (item instanceof MermailActivate && !((MermailActivate) item).isActivate()) {
                 indentLevel -= 1;
-            } else if (item instanceof AltFragment || item instanceof OptFragment || item instanceof LoopFragment) {
+            } else if (item instanceof AltFragment || item instanceof OptFragment || item instanceof LoopFragment
+                    || item instanceof RectFragment) {
                 indentLevel += 1;
             } else if (item instanceof ElseFragment || item instanceof ElseIfFragment) {
                 // Else and ElseIf fragments should not increase indent level, as they are part
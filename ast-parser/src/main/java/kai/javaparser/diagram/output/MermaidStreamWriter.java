@@ -0,0 +1,212 @@
+package kai.javaparser.diagram.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+import kai.javaparser.ast.model.DiffStatus;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.output.item.AbstractMermaidItem;
+import kai.javaparser.diagram.output.item.AltFragment;
+import kai.javaparser.diagram.output.item.ElseFragment;
+import kai.javaparser.diagram.output.item.ElseIfFragment;
+import kai.javaparser.diagram.output.item.EndFragment;
+import kai.javaparser.diagram.output.item.LoopFragment;
+import kai.javaparser.diagram.output.item.MermaidNote;
+import kai.javaparser.diagram.output.item.MermailActivate;
+import kai.javaparser.diagram.output.item.MermailActor;
+import kai.javaparser.diagram.output.item.MermailCall;
+import kai.javaparser.diagram.output.item.MermailParticipant;
+import kai.javaparser.diagram.output.item.OptFragment;
+import kai.javaparser.diagram.output.item.RectFragment;
+
+/**
+ * 邊產生邊輸出的 Mermaid 序列圖寫入器，介面與 MermaidOutput 相同。
+ * <p>
+ * 與 MermaidOutput 的差異：
+ * - participant 在第一次出現時就輸出，而不是移到最前面（Mermaid 允許在使用前任意位置宣告）；
+ * 若事先以 DeclarationCollector 收集宣告並傳入，則全部寫在開頭，輸出與 MermaidOutput 完全相同
+ * - fixDiagram 的規則（opt 後緊接 end 時移除、alt 後緊接 end 時改為 Note）
+ * 以暫存尚未確定的片段開頭來達成，只需要看下一個項目，不保留整份圖表
+ * </p>
+ */
+public class MermaidStreamWriter implements SequenceDiagramSink {
+    private final Appendable out;
+    private final Set<String> participantIds = new HashSet<>();
+    // 宣告已全部寫在開頭，之後的 actor / participant 不再輸出
+    private final boolean declaredInHeader;
+
+    // 尚未輸出的 alt / opt 片段開頭，後面只可能接著被移除的 opt-end 組合
+    private final List<AbstractMermaidItem> pendingFragments = new ArrayList<>();
+    // 最頂端的暫存片段是否就是上一個收到的項目（opt 只有緊接 end 時才移除）
+    private boolean pendingTopIsLast = false;
+    private String lastCallee;
+    private int indentLevel = 0;
+
+    public MermaidStreamWriter(Appendable out) {
+        this.out = out;
+        this.declaredInHeader = false;
+        writeLine("sequenceDiagram");
+    }
+
+    /**
+     * 開頭先寫出所有宣告
+     *
+     * @param out          輸出目標
+     * @param declarations actor 與 participant 宣告，通常來自 DeclarationCollector
+     */
+    public MermaidStreamWriter(Appendable out, List<AbstractMermaidItem> declarations) {
+        this.out = out;
+        this.declaredInHeader = true;
+        writeLine("sequenceDiagram");
+        for (AbstractMermaidItem declaration : declarations) {
+            writeLine(declaration.toDiagramString(0));
+        }
+    }
+
+    public void addActor(String name) {
+        if (!declaredInHeader) {
+            writeLine(new MermailActor(name).toDiagramString(0));
+        }
+    }
+
+    public void addParticipant(String safeId, String displayName) {
+        if (!declaredInHeader && participantIds.add(safeId)) {
+            writeLine(new MermailParticipant(safeId, displayName).toDiagramString(0));
+        }
+    }
+
+    public void addEntryPointCall(String actorName, String calleeId, String calleeDisplayName) {
+        addParticipant(calleeId, AstClassUtil.getSimpleClassName(calleeId));
+        emit(new MermailCall(actorName, calleeId, calleeDisplayName, null, false, null));
+    }
+
+    public void addCall(String callerId, String calleeId, String signature, List<String> arguments,
+            String assignedToVariable, boolean dashLine, String returnValue) {
+        String finalSignature = signature;
+        if (StringUtils.isNotEmpty(assignedToVariable)) {
+            finalSignature = assignedToVariable + " : " + finalSignature;
+        }
+        emit(new MermailCall(callerId, calleeId, finalSignature, arguments, dashLine, returnValue));
+    }
+
+    public void activate(String participantId) {
+        emit(new MermailActivate(participantId, true));
+    }
+
+    public void deactivate(String participantId) {
+        emit(new MermailActivate(participantId, false));
+    }
+
+    public void addAltFragment(String condition) {
+        emit(new AltFragment(condition));
+    }
+
+    public void addElseFragment() {
+        emit(new ElseFragment(""));
+    }
+
+    public void addElseIfFragment(String condition) {
+        emit(new ElseIfFragment(condition));
+    }
+
+    public void addOptFragment(String condition) {
+        emit(new OptFragment(condition));
+    }
+
+    public void addLoopFragment(String condition) {
+        emit(new LoopFragment(condition));
+    }
+
+    public void endFragment() {
+        emit(new EndFragment());
+    }
+
+    public void addNote(String participantId, String content) {
+        emit(new MermaidNote(participantId, MermaidNote.Location.right, content));
+    }
+
+    @Override
+    public void beginHighlight(DiffStatus status) {
+        emit(RectFragment.forDiff(status));
+    }
+
+    @Override
+    public void endHighlight() {
+        emit(new EndFragment());
+    }
+
+    /**
+     * 輸出所有暫存的項目
+     */
+    public void flush() {
+        flushPending();
+    }
+
+    private void emit(AbstractMermaidItem item) {
+        if (item instanceof AltFragment || item instanceof OptFragment) {
+            pendingFragments.add(item);
+            pendingTopIsLast = true;
+            return;
+        }
+
+        if (item instanceof EndFragment && !pendingFragments.isEmpty()) {
+            AbstractMermaidItem top = pendingFragments.get(pendingFragments.size() - 1);
+            if (top instanceof OptFragment && pendingTopIsLast) {
+                // opt 後緊接 end：整組移除
+                pendingFragments.remove(pendingFragments.size() - 1);
+                pendingTopIsLast = false;
+                return;
+            }
+            if (top instanceof AltFragment) {
+                // alt 後（移除空的 opt 後）緊接 end：改為註解
+                pendingFragments.remove(pendingFragments.size() - 1);
+                flushPending();
+                write(new MermaidNote(lastCallee, MermaidNote.Location.right, ((AltFragment) top).getCondition()));
+                return;
+            }
+        }
+
+        flushPending();
+        write(item);
+    }
+
+    private void flushPending() {
+        for (AbstractMermaidItem pending : pendingFragments) {
+            write(pending);
+        }
+        pendingFragments.clear();
+        pendingTopIsLast = false;
+    }
+
+    /**
+     * 輸出單一項目並維護縮排，規則與 MermaidOutput.toString 相同
+     */
+    private void write(AbstractMermaidItem item) {
+        writeLine(item.toDiagramString(indentLevel));
+
+        if (item instanceof MermailCall) {
+            lastCallee = ((MermailCall) item).getCalleeId();
+        } else if (item instanceof MermailActivate) {
+            indentLevel += ((MermailActivate) item).isActivate() ? 1 : -1;
+        } else if (item instanceof AltFragment || item instanceof OptFragment || item instanceof LoopFragment
+                || item instanceof RectFragment) {
+            indentLevel += 1;
+        } else if (item instanceof EndFragment) {
+            indentLevel -= 1;
+        }
+    }
+
+    private void writeLine(String line) {
+        try {
+            out.append(line).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Mermaid 輸出失敗", e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package kai.javaparser.diagram.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+import kai.javaparser.ast.model.DiffStatus;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.output.item.AbstractMermaidItem;
+import kai.javaparser.diagram.output.item.MermailActor;
+import kai.javaparser.diagram.output.item.MermailCall;
+import kai.javaparser.diagram.output.item.MermailParticipant;
+
+/**
+ * 邊產生邊輸出的 PlantUML 序列圖寫入器。
+ * <p>
+ * - 宣告事先以 DeclarationCollector 收集後寫在開頭，PlantUML 不允許在使用之後才宣告 participant
+ * - Mermaid 的 else 之後也會收到一個 end，PlantUML 的 else 沒有自己的 end，因此只關閉外層的 alt；
+ * 外層不是 alt 時改為巢狀的 alt，保證輸出的片段一定成對
+ * - 參數簡化規則與 Mermaid 相同
+ * - 版本比較的差異以 group 標示，標籤為 added / removed / changed
+ * </p>
+ */
+public class PlantUmlWriter implements SequenceDiagramSink {
+    private static final String INDENT = "  ";
+
+    private enum Frame {
+        ALT,
+        GROUP,
+        ELSE
+    }
+
+    private final Appendable out;
+    private final Set<String> participantIds = new HashSet<>();
+    private final boolean declaredInHeader;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private int indentLevel = 0;
+
+    public PlantUmlWriter(Appendable out) {
+        this.out = out;
+        this.declaredInHeader = false;
+        writeLine("@startuml");
+    }
+
+    /**
+     * 開頭先寫出所有宣告
+     *
+     * @param out          輸出目標
+     * @param declarations actor 與 participant 宣告，通常來自 DeclarationCollector
+     */
+    public PlantUmlWriter(Appendable out, List<AbstractMermaidItem> declarations) {
+        this.out = out;
+        this.declaredInHeader = true;
+        writeLine("@startuml");
+        for (AbstractMermaidItem declaration : declarations) {
+            if (declaration instanceof MermailActor) {
+                writeActor(((MermailActor) declaration).getName());
+            } else if (declaration instanceof MermailParticipant) {
+                MermailParticipant participant = (MermailParticipant) declaration;
+                writeParticipant(participant.getSafeId(), participant.getDisplayName());
+            }
+        }
+    }
+
+    @Override
+    public void addActor(String name) {
+        if (!declaredInHeader) {
+            writeActor(name);
+        }
+    }
+
+    @Override
+    public void addParticipant(String safeId, String displayName) {
+        if (!declaredInHeader && participantIds.add(safeId)) {
+            writeParticipant(safeId, displayName);
+        }
+    }
+
+    @Override
+    public void addEntryPointCall(String actorName, String calleeId, String calleeDisplayName) {
+        addParticipant(calleeId, AstClassUtil.getSimpleClassName(calleeId));
+        writeLine(String.format("%s -> %s : %s()", actorName, calleeId, label(calleeDisplayName)));
+    }
+
+    @Override
+    public void addCall(String callerId, String calleeId, String signature, List<String> arguments,
+            String assignedToVariable, boolean dashLine, String returnValue) {
+        String message = signature;
+        if (StringUtils.isNotEmpty(assignedToVariable)) {
+            message = assignedToVariable + " : " + message;
+        }
+        String args = arguments == null || arguments.isEmpty() ? "" : MermailCall.simplifyArguments(arguments);
+        writeLine(String.format("%s %s %s : %s(%s)", callerId, dashLine ? "-->" : "->", calleeId,
+                label(message), label(args)));
+    }
+
+    @Override
+    public void activate(String participantId) {
+        writeLine("activate " + participantId);
+        indentLevel++;
+    }
+
+    @Override
+    public void deactivate(String participantId) {
+        indentLevel--;
+        writeLine("deactivate " + participantId);
+    }
+
+    @Override
+    public void addAltFragment(String condition) {
+        openFragment("alt", condition, Frame.ALT);
+    }
+
+    @Override
+    public void addElseFragment() {
+        addElseIfFragment("");
+    }
+
+    @Override
+    public void addElseIfFragment(String condition) {
+        if (frames.peek() != Frame.ALT) {
+            openFragment("alt", condition, Frame.ALT);
+            return;
+        }
+        indentLevel--;
+        writeLine(StringUtils.isEmpty(condition) ? "else" : "else " + label(condition));
+        indentLevel++;
+        frames.push(Frame.ELSE);
+    }
+
+    @Override
+    public void addOptFragment(String condition) {
+        openFragment("opt", condition, Frame.GROUP);
+    }
+
+    @Override
+    public void addLoopFragment(String condition) {
+        openFragment("loop", condition, Frame.GROUP);
+    }
+
+    @Override
+    public void endFragment() {
+        Frame frame = frames.poll();
+        if (frame == null || frame == Frame.ELSE) {
+            // else 分支由外層 alt 的 end 一併關閉
+            return;
+        }
+        indentLevel--;
+        writeLine("end");
+    }
+
+    @Override
+    public void addNote(String participantId, String content) {
+        writeLine(String.format("note right of %s : %s", participantId, label(content)));
+    }
+
+    @Override
+    public void beginHighlight(DiffStatus status) {
+        openFragment("group", status.getLabel(), Frame.GROUP);
+    }
+
+    @Override
+    public void endHighlight() {
+        endFragment();
+    }
+
+    /**
+     * 關閉所有未結束的片段並寫出結尾
+     */
+    public void finish() {
+        while (!frames.isEmpty()) {
+            endFragment();
+        }
+        indentLevel = 0;
+        writeLine("@enduml");
+    }
+
+    private void openFragment(String keyword, String condition, Frame frame) {
+        writeLine(StringUtils.isEmpty(condition) ? keyword : keyword + " " + label(condition));
+        indentLevel++;
+        frames.push(frame);
+    }
+
+    private void writeActor(String name) {
+        writeLine("actor " + name);
+    }
+
+    private void writeParticipant(String safeId, String displayName) {
+        writeLine(String.format("participant \"%s\" as %s", displayName.replace("\"", "'"), safeId));
+    }
+
+    /**
+     * PlantUML 的訊息與片段標籤只能有一行
+     */
+    private static String label(String text) {
+        return text == null ? "" : text.replaceAll("[\\r\\n]+\\s*", " ");
+    }
+
+    private void writeLine(String line) {
+        try {
+            out.append(INDENT.repeat(Math.max(indentLevel, 0))).append(line).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("PlantUML 輸出失敗", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package kai.javaparser.diagram.output;
+
+import java.util.List;
+
+import kai.javaparser.ast.model.DiffStatus;
+
+/**
+ * 序列圖項目的接收端，與輸出格式無關。
+ * <p>
+ * SequenceDiagramWalker 只透過此介面輸出，各格式的渲染器共用同一套走訪與過濾規則，
+ * 例如在記憶體中累積整份圖表的 MermaidOutput、邊產生邊寫出的 MermaidStreamWriter 與 PlantUmlWriter、
+ * 建立呼叫樹的 CallTreeBuilder，或只收集宣告的 DeclarationCollector。
+ * </p>
+ * <p>
+ * 每個片段開頭（alt / else / else if / opt / loop）都有對應的 endFragment；
+ * activate 一定緊接在對應的呼叫之後；beginHighlight 與 endHighlight 成對出現，中間的項目完整成對
+ * </p>
+ */
+public interface SequenceDiagramSink {
+
+    void addActor(String name);
+
+    void addParticipant(String safeId, String displayName);
+
+    void addEntryPointCall(String actorName, String calleeId, String calleeDisplayName);
+
+    void addCall(String callerId, String calleeId, String signature, List<String> arguments,
+            String assignedToVariable, boolean dashLine, String returnValue);
+
+    void activate(String participantId);
+
+    void deactivate(String participantId);
+
+    void addAltFragment(String condition);
+
+    void addElseFragment();
+
+    void addElseIfFragment(String condition);
+
+    void addOptFragment(String condition);
+
+    void addLoopFragment(String condition);
+
+    void endFragment();
+
+    void addNote(String participantId, String content);
+
+    /**
+     * 標示版本比較的差異，直到對應的 endHighlight 為止；不支援的格式忽略
+     */
+    default void beginHighlight(DiffStatus status) {
+    }
+
+    default void endHighlight() {
+    }
+
+    /**
+     * 上一個呼叫的子樹尚未展開，可再以 handle 按需展開；不支援的格式忽略
+     */
+    default void markExpandable(int handle) {
+    }
+}
@@ -33,6 +33,16 @@ public class MermailCall extends AbstractMermaidItem {
      * @return
      */
     private String getArgumentsString() {
+        return simplifyArguments(arguments);
+    }
+
+    /**
+     * 將參數簡化為圖表上顯示的文字，其他格式的輸出也使用相同規則
+     * 
+     * @param arguments 參數表達式
+     * @return 以逗號分隔的簡化參數
+     */
+    public static String simplifyArguments(List<String> arguments) {
         StringBuilder sb = new StringBuilder();
         for (String arg : arguments) {
             String argName = arg.replaceAll("[^\\].]*\\.", "");
@@ -0,0 +1,38 @@
+package kai.javaparser.diagram.output.item;
+
+import kai.javaparser.ast.model.DiffStatus;
+
+/**
+ * 背景色區塊 (rect) - 用於標示版本比較的差異
+ */
+public class RectFragment extends AbstractMermaidItem {
+    private final String color;
+
+    public RectFragment(String color) {
+        this.color = color;
+    }
+
+    /**
+     * 差異狀態對應的背景色：新增為綠色、移除為紅色、變更為黃色
+     */
+    public static RectFragment forDiff(DiffStatus status) {
+        switch (status) {
+            case ADDED:
+                return new RectFragment("rgb(200, 255, 200)");
+            case REMOVED:
+                return new RectFragment("rgb(255, 210, 210)");
+            default:
+                return new RectFragment("rgb(255, 245, 190)");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "rect " + color;
+    }
+
+    @Override
+    public String toDiagramString(int indentLevel) {
+        return getFullContent(indentLevel, "rect " + color);
+    }
+}
@@ -0,0 +1,383 @@
+package kai.javaparser.diagram.page;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.ast.service.SequenceTraceService;
+import kai.javaparser.ast.service.TraceMemo;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.JsonCallTreeRenderer;
+import kai.javaparser.diagram.MethodRef;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 分頁瀏覽呼叫樹：
+ * 非常大的呼叫樹不一次追蹤與渲染，先返回前幾層，其餘子樹由使用者按需展開。
+ *
+ * 1. 開啟工作階段時只追蹤進入點下 levels + 1 層，返回前 levels 層；最後一層中還有子樹的呼叫收合，標示展開用的代號
+ * 2. 展開時以收合呼叫所在的呼叫路徑與剩餘深度追蹤其下 levels + 1 層，同樣只返回 levels 層，結果與完整追蹤中該位置的子樹相同。
+ * 多型分派的實作呼叫節點不佔追蹤深度，與其宣告型別的呼叫使用相同的呼叫路徑與剩餘深度
+ * 3. 每個工作階段有自己的 TraceMemo，展開過程中重複出現的子樹只追蹤一次；同一個位置的收合呼叫重複展開時沿用相同的代號，
+ * 代號數量不會隨展開次數增加；
+ * 工作階段在最後一次使用後 ttlSeconds 秒過期，AST 重新載入後也不再有效
+ *
+ * 輸出為 JSON 呼叫樹（見 JsonCallTreeRenderer），收合的呼叫有 expand 欄位；不套用折疊配置
+ */
+@Service
+public class CallTreePageService {
+    private static final Logger logger = LoggerFactory.getLogger(CallTreePageService.class);
+
+    public static final int MAX_LEVELS = 10;
+
+    private final SequenceTraceService sequenceTraceService;
+    private final AstIndex astIndex;
+    private final long ttlMillis;
+    private final int maxSessions;
+
+    // 以 sessions 為鎖，依最久未使用的順序排列
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Autowired
+    public CallTreePageService(SequenceTraceService sequenceTraceService, AstIndex astIndex, AppConfig appConfig) {
+        AppConfig.CallTreeSessionConfig config = appConfig.getCallTreeSession();
+        this.sequenceTraceService = sequenceTraceService;
+        this.astIndex = astIndex;
+        this.ttlMillis = Math.max(1, config.getTtlSeconds()) * 1000L;
+        this.maxSessions = Math.max(1, config.getMaxSessions());
+    }
+
+    /**
+     * 開啟工作階段並返回進入點下的前幾層
+     *
+     * @param entryPointMethodFqn 進入點方法的完整限定名
+     * @param config              追蹤配置，之後的展開都使用同一份配置
+     * @param levels              返回的層數（1 到 MAX_LEVELS）
+     * @return 第一頁
+     */
+    public Page open(String entryPointMethodFqn, SequenceOutputConfig config, int levels) {
+        int pageLevels = clampLevels(levels);
+        sequenceTraceService.prepare(config);
+
+        Session session = new Session(UUID.randomUUID().toString(), config, astIndex.getVersion());
+        MethodRef entryPoint = MethodRef.of(entryPointMethodFqn);
+        int depth = config.getDepth();
+        List<DiagramNode> nodes = sequenceTraceService.traceSubtree(entryPoint, Set.of(),
+                Math.min(pageLevels + 1, depth), config, session.memo);
+        List<DiagramNode> page = session.truncate(nodes, Set.of(entryPoint), depth - 1, pageLevels);
+
+        put(session);
+        logger.info("開啟呼叫樹工作階段 {}，進入點: {}，層數: {}", session.id, entryPointMethodFqn, pageLevels);
+        return new Page(session.id, render(session, new TraceResult(entryPointMethodFqn, page)));
+    }
+
+    /**
+     * 展開收合的呼叫
+     *
+     * @param sessionId 工作階段代號
+     * @param handle    收合呼叫的 expand 代號
+     * @param levels    返回的層數（1 到 MAX_LEVELS）
+     * @return 以該呼叫為根的子樹；工作階段不存在、已過期、AST 已重新載入或代號不存在時為 null
+     */
+    public Page expand(String sessionId, int handle, int levels) {
+        Session session = get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        Collapsed collapsed = session.handles.get(handle);
+        if (collapsed == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        int pageLevels = clampLevels(levels);
+        InteractionModel call = collapsed.call;
+        List<DiagramNode> nodes = sequenceTraceService.expandCall(call, collapsed.callStack,
+                Math.min(pageLevels + 1, collapsed.depth), session.config, session.memo);
+
+        List<DiagramNode> page;
+        if (!nodes.isEmpty() && Session.isDispatch(nodes)) {
+            // 展開的是宣告型別的呼叫，實作呼叫與其位在同一個方法中
+            page = session.truncate(nodes, collapsed.callStack, collapsed.depth, pageLevels);
+        } else {
+            Set<MethodRef> callStack = new HashSet<>(collapsed.callStack);
+            callStack.add(MethodRef.of(call.getCallee(), call.getMethodName()));
+            page = session.truncate(nodes, callStack, collapsed.depth - 1, pageLevels);
+        }
+
+        String calleeFqn = MethodRef.of(call.getCallee(), call.getMethodName()).getFqn();
+        Page result = new Page(session.id, render(session, new TraceResult(calleeFqn, page)));
+        logger.debug("展開工作階段 {} 的節點 {}，耗時 {} us", sessionId, handle, (System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    /**
+     * 關閉工作階段
+     */
+    public void close(String sessionId) {
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    /**
+     * 目前保留的工作階段數
+     */
+    public int getSessionCount() {
+        synchronized (sessions) {
+            evictExpired(System.currentTimeMillis());
+            return sessions.size();
+        }
+    }
+
+    private String render(Session session, TraceResult traceResult) {
+        return new JsonCallTreeRenderer(session.config, astIndex).render(traceResult);
+    }
+
+    private void put(Session session) {
+        synchronized (sessions) {
+            evictExpired(System.currentTimeMillis());
+            sessions.put(session.id, session);
+            Iterator<String> iterator = sessions.keySet().iterator();
+            while (sessions.size() > maxSessions && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Session get(String sessionId) {
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            evictExpired(now);
+            Session session = sessions.get(sessionId);
+            if (session == null) {
+                return null;
+            }
+            if (session.astVersion != astIndex.getVersion()) {
+                // AST 已重新載入，收合的呼叫與新的呼叫樹不再對應
+                sessions.remove(sessionId);
+                return null;
+            }
+            session.lastAccess = now;
+            return session;
+        }
+    }
+
+    private void evictExpired(long now) {
+        // 依存取順序排列，遇到第一個未過期的即可停止
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastAccess <= ttlMillis) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static int clampLevels(int levels) {
+        return Math.max(1, Math.min(levels, MAX_LEVELS));
+    }
+
+    /**
+     * 一頁呼叫樹：工作階段代號與 JSON 呼叫樹
+     */
+    public static final class Page {
+        private final String sessionId;
+        private final String tree;
+
+        public Page(String sessionId, String tree) {
+            this.sessionId = sessionId;
+            this.tree = tree;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public String getTree() {
+            return tree;
+        }
+
+        /**
+         * {"session":"...","tree":{...}}
+         */
+        public String toJson() {
+            return "{\"session\":\"" + sessionId + "\",\"tree\":" + tree + "}";
+        }
+    }
+
+    /**
+     * 收合的呼叫與展開時需要的追蹤位置。
+     * 呼叫以呼叫點（sequenceId、行號、被呼叫者與方法）比較，重新追蹤出的相同位置視為同一個收合呼叫
+     */
+    private static final class Collapsed {
+        private final InteractionModel call;
+        private final Set<MethodRef> callStack;
+        private final int depth;
+
+        private Collapsed(InteractionModel call, Set<MethodRef> callStack, int depth) {
+            this.call = call;
+            this.callStack = callStack;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Collapsed)) {
+                return false;
+            }
+            Collapsed other = (Collapsed) o;
+            return depth == other.depth
+                    && call.getLineNumber() == other.call.getLineNumber()
+                    && Objects.equals(call.getSequenceId(), other.call.getSequenceId())
+                    && Objects.equals(call.getCaller(), other.call.getCaller())
+                    && Objects.equals(call.getCallee(), other.call.getCallee())
+                    && Objects.equals(call.getMethodName(), other.call.getMethodName())
+                    && callStack.equals(other.callStack);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(call.getSequenceId(), call.getCallee(), call.getMethodName(), call.getLineNumber(),
+                    depth, callStack);
+        }
+    }
+
+    private static final class Session {
+        private final String id;
+        private final SequenceOutputConfig config;
+        private final long astVersion;
+        private final TraceMemo memo = new TraceMemo();
+        private final Map<Integer, Collapsed> handles = new ConcurrentHashMap<>();
+        private final Map<Collapsed, Integer> handleIds = new ConcurrentHashMap<>();
+        private final AtomicInteger nextHandle = new AtomicInteger();
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Session(String id, SequenceOutputConfig config, long astVersion) {
+            this.id = id;
+            this.config = config;
+            this.astVersion = astVersion;
+        }
+
+        /**
+         * 複製前 levels 層，最後一層中還有子樹的呼叫改為收合並登記代號。
+         * 節點可能與 memo 共用，一律複製後再修改
+         *
+         * @param nodes     同一層的節點
+         * @param callStack 這一層所在方法的呼叫路徑
+         * @param depth     這一層呼叫的被呼叫方法的剩餘深度
+         * @param levels    含這一層在內還要保留的層數
+         */
+        private List<DiagramNode> truncate(List<DiagramNode> nodes, Set<MethodRef> callStack, int depth,
+                int levels) {
+            List<DiagramNode> result = new ArrayList<>(nodes.size());
+            for (DiagramNode node : nodes) {
+                result.add(truncateNode(node, callStack, depth, levels));
+            }
+            return result;
+        }
+
+        private DiagramNode truncateNode(DiagramNode node, Set<MethodRef> callStack, int depth, int levels) {
+            if (node instanceof InteractionModel) {
+                return truncateInteraction((InteractionModel) node, callStack, depth, levels);
+            }
+            if (node instanceof ControlFlowFragment) {
+                ControlFlowFragment fragment = (ControlFlowFragment) node;
+                ControlFlowFragment copy = new ControlFlowFragment();
+                copy.setSequenceId(fragment.getSequenceId());
+                copy.setType(fragment.getType());
+                copy.setCondition(fragment.getCondition());
+                copy.setCallerClass(fragment.getCallerClass());
+                copy.setCallerMethod(fragment.getCallerMethod());
+                copy.setContextPath(fragment.getContextPath());
+                copy.setStartLineNumber(fragment.getStartLineNumber());
+                copy.setEndLineNumber(fragment.getEndLineNumber());
+                if (fragment.getConditionInteractions() != null) {
+                    for (InteractionModel interaction : fragment.getConditionInteractions()) {
+                        copy.addConditionInteraction(truncateInteraction(interaction, callStack, depth, levels));
+                    }
+                }
+                if (fragment.getContentInteractions() != null) {
+                    for (InteractionModel interaction : fragment.getContentInteractions()) {
+                        copy.addContentInteraction(truncateInteraction(interaction, callStack, depth, levels));
+                    }
+                }
+                if (fragment.getAlternatives() != null) {
+                    for (ControlFlowFragment alternative : fragment.getAlternatives()) {
+                        copy.addAlternative((ControlFlowFragment) truncateNode(alternative, callStack, depth, levels));
+                    }
+                }
+                return copy;
+            }
+            return node;
+        }
+
+        private InteractionModel truncateInteraction(InteractionModel interaction, Set<MethodRef> callStack,
+                int depth, int levels) {
+            // 鏈式呼叫的各環節在同一層
+            InteractionModel copy = interaction.copyForTrace();
+            InteractionModel link = interaction;
+            InteractionModel copyLink = copy;
+            while (link != null) {
+                List<DiagramNode> internalCalls = link.getInternalCalls();
+                if (internalCalls != null && !internalCalls.isEmpty()) {
+                    if (levels > 1 && isDispatch(internalCalls)) {
+                        // 多型分派的實作呼叫與宣告型別的呼叫在同一個方法中，不佔深度
+                        copyLink.setInternalCalls(truncate(internalCalls, callStack, depth, levels - 1));
+                    } else if (levels > 1) {
+                        Set<MethodRef> innerCallStack = new HashSet<>(callStack);
+                        innerCallStack.add(MethodRef.of(link.getCallee(), link.getMethodName()));
+                        copyLink.setInternalCalls(truncate(internalCalls, innerCallStack, depth - 1, levels - 1));
+                    } else {
+                        copyLink.setExpandHandle(handleOf(new Collapsed(link, callStack, depth)));
+                    }
+                }
+                link = link.getNextChainedCall();
+                copyLink = copyLink.getNextChainedCall();
+            }
+            return copy;
+        }
+
+        /**
+         * 同一個位置（呼叫、呼叫路徑與剩餘深度相同）的收合呼叫沿用已登記的代號
+         */
+        private int handleOf(Collapsed collapsed) {
+            return handleIds.computeIfAbsent(collapsed, key -> {
+                int handle = nextHandle.getAndIncrement();
+                handles.put(handle, key);
+                return handle;
+            });
+        }
+
+        /**
+         * 內部節點是否為多型分派展開的實作呼叫；分派時呼叫下只有實作呼叫
+         */
+        private static boolean isDispatch(List<DiagramNode> internalCalls) {
+            DiagramNode first = internalCalls.get(0);
+            return first instanceof InteractionModel
+                    && Boolean.TRUE.equals(((InteractionModel) first).getDispatchTarget());
+        }
+    }
+}
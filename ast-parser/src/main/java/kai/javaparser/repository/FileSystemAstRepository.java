@@ -10,6 +10,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -41,6 +42,13 @@ public class FileSystemAstRepository implements AstRepository {
     // 快取: JSON 檔案路徑 -> 已解析的 FileAstData 物件，避免重複讀取和反序列化 JSON
     private final Map<Path, FileAstData> astDataCache = new ConcurrentHashMap<>();
 
+    // 儲存內容的版本號，內容變動時遞增
+    private final AtomicLong version = new AtomicLong();
+    // 索引成員的版本號，類別加入索引或重新初始化時遞增
+    private final AtomicLong indexVersion = new AtomicLong();
+    // 類別 FQN -> 最後一次儲存時的版本號；從磁碟載入後尚未重新儲存的類別不在其中
+    private final Map<String, Long> classVersions = new ConcurrentHashMap<>();
+
     private final ObjectMapper mapper;
 
     private Path astJsonDir;
@@ -67,6 +75,10 @@ public class FileSystemAstRepository implements AstRepository {
         this.astJsonDir = astJsonDir;
         this.cacheFilePath = astJsonDir.resolve(CACHE_FILE_NAME);
         this.classToPathIndex = new ConcurrentHashMap<>();
+        this.astDataCache.clear();
+        this.classVersions.clear();
+        version.incrementAndGet();
+        indexVersion.incrementAndGet();
     }
 
     @Override
@@ -94,8 +106,13 @@ public class FileSystemAstRepository implements AstRepository {
         mapper.writeValue(outputFile.toFile(), fileAstData);
 
         // 更新索引
+        astDataCache.remove(outputFile);
+        long newVersion = version.incrementAndGet();
         fileAstData.findTopLevelClassFqn().ifPresent(classFqn -> {
-            classToPathIndex.put(classFqn, outputFile);
+            classVersions.put(classFqn, newVersion);
+            if (classToPathIndex.put(classFqn, outputFile) == null) {
+                indexVersion.incrementAndGet();
+            }
             logger.debug("Updated index for class: {} -> {}", classFqn, outputFile);
         });
 
@@ -134,6 +151,8 @@ public class FileSystemAstRepository implements AstRepository {
         } else {
             buildFromFileSystem();
             saveToCache();
+            version.incrementAndGet();
+            indexVersion.incrementAndGet();
             logger.info("Built AST index from file system and saved to cache: {}", cacheFilePath);
         }
     }
@@ -148,6 +167,24 @@ public class FileSystemAstRepository implements AstRepository {
         return classToPathIndex.containsKey(classFqn);
     }
 
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public long getClassVersion(String classFqn) {
+        if (!classToPathIndex.containsKey(classFqn)) {
+            return -1;
+        }
+        return classVersions.getOrDefault(classFqn, 0L);
+    }
+
+    @Override
+    public long getIndexVersion() {
+        return indexVersion.get();
+    }
+
     /**
      * 清理緩存，用於測試環境
      */
@@ -195,7 +232,9 @@ public class FileSystemAstRepository implements AstRepository {
         Map<String, String> data = mapper.readValue(cacheFilePath.toFile(), Map.class);
         if (data != null) {
             data.forEach((classFqn, path) -> {
-                classToPathIndex.put(classFqn, Path.of(path.replaceFirst("file://", "")));
+                if (classToPathIndex.put(classFqn, Path.of(path.replaceFirst("file://", ""))) == null) {
+                    indexVersion.incrementAndGet();
+                }
             });
         }
     }
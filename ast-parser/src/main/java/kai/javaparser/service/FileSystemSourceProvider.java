@@ -4,9 +4,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,17 +20,22 @@ import kai.javaparser.diagram.idx.AstIndex;
 
 /**
  * 檔案系統原始碼提供者
- * 從檔案系統中讀取Java原始碼檔案
+ * 從檔案系統中讀取Java原始碼檔案，經由 SourceTextCache 快取，檔案未變動時不重複讀取
  */
 @Component
 public class FileSystemSourceProvider implements SourceProvider {
     private static final Logger logger = LoggerFactory.getLogger(FileSystemSourceProvider.class);
 
+    // 批次讀取時超過此數量才平行處理
+    private static final int PARALLEL_THRESHOLD = 4;
+
     private final AstIndex astIndex;
+    private final SourceTextCache sourceTextCache;
 
     @Autowired
-    public FileSystemSourceProvider(AstIndex astIndex) {
+    public FileSystemSourceProvider(AstIndex astIndex, SourceTextCache sourceTextCache) {
         this.astIndex = astIndex;
+        this.sourceTextCache = sourceTextCache;
     }
 
     @Override
@@ -50,7 +57,7 @@ public class FileSystemSourceProvider implements SourceProvider {
                 return null;
             }
 
-            String sourceCode = Files.readString(sourcePath);
+            String sourceCode = sourceTextCache.read(sourcePath);
             logger.debug("成功讀取原始碼，長度: {} 字元", sourceCode.length());
             return sourceCode;
 
@@ -64,13 +71,16 @@ public class FileSystemSourceProvider implements SourceProvider {
     public Map<String, String> getSourceCodes(Set<String> classFqns) {
         logger.debug("批量獲取類別原始碼，數量: {}", classFqns.size());
 
-        Map<String, String> sourceCodes = new HashMap<>();
-        for (String classFqn : classFqns) {
-            String sourceCode = getSourceCode(classFqn);
-            if (sourceCode != null) {
-                sourceCodes.put(classFqn, sourceCode);
-            }
-        }
+        // 檔案讀取互不相依，數量多時平行處理
+        Map<String, String> fetched = new ConcurrentHashMap<>();
+        (classFqns.size() > PARALLEL_THRESHOLD ? classFqns.parallelStream() : classFqns.stream())
+                .forEach(classFqn -> {
+                    String sourceCode = getSourceCode(classFqn);
+                    if (sourceCode != null) {
+                        fetched.put(classFqn, sourceCode);
+                    }
+                });
+        Map<String, String> sourceCodes = new HashMap<>(fetched);
 
         logger.debug("成功獲取 {} 個類別的原始碼", sourceCodes.size());
         return sourceCodes;
@@ -87,6 +97,42 @@ public class FileSystemSourceProvider implements SourceProvider {
         return Files.exists(sourcePath);
     }
 
+    /**
+     * 以檔案的修改時間與大小組成版本戳記
+     */
+    @Override
+    public long getSourceVersion(String classFqn) {
+        FileAstData fileData = astIndex.getAstDataByClassFqn(classFqn);
+        if (fileData == null) {
+            return -1;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(fileData.getAbsolutePath()),
+                    BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() * 31 + attributes.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 以解析時記錄的修改時間與大小判斷檔案是否變動，只讀取檔案屬性
+     */
+    @Override
+    public boolean matchesParsedSource(FileAstData astData) {
+        if (astData.getAbsolutePath() == null || astData.getSourceSize() <= 0) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(astData.getAbsolutePath()),
+                    BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() == astData.getSourceLastModified()
+                    && attributes.size() == astData.getSourceSize();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     @Override
     public String getProviderName() {
         return "FileSystem";
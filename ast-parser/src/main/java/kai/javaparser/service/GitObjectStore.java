@@ -0,0 +1,275 @@
+package kai.javaparser.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 本地 git 儲存庫的物件讀取器：
+ * 不需要 checkout，直接依 commit 與路徑讀取物件資料庫中的 blob。
+ *
+ * 1. 以常駐的 git cat-file --batch 程序讀取物件，loose object 與 packfile（含 delta 鏈）都由 git 自己解開，
+ * 不需要每個檔案啟動一次程序
+ * 2. blob 以物件 ID 快取；物件 ID 由內容決定，不同 commit 中沒有變動的檔案共用同一份快取，
+ * 比較相近的版本時大多數檔案不必再從 packfile 解壓縮
+ * 3. commit 的檔案清單（路徑 -> blob ID）也會快取，commit 的內容不會改變，不需要失效
+ */
+public class GitObjectStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(GitObjectStore.class);
+
+    public static final long DEFAULT_MAX_BLOB_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_CACHED_TREES = 16;
+    private static final long COMMAND_TIMEOUT_SECONDS = 60;
+
+    private final Path repositoryDir;
+    private final long maxBlobBytes;
+
+    // cat-file 程序與其輸入輸出，以 this 為鎖
+    private Process catFile;
+    private OutputStream catFileInput;
+    private InputStream catFileOutput;
+
+    // blob ID -> 內容，依最久未使用的順序淘汰，以 blobs 為鎖
+    private final LinkedHashMap<String, String> blobs = new LinkedHashMap<>(256, 0.75f, true);
+    private long blobBytes = 0;
+
+    // commit ID -> (路徑 -> blob ID)
+    private final Map<String, Map<String, String>> trees = Collections.synchronizedMap(
+            new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                    return size() > MAX_CACHED_TREES;
+                }
+            });
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public GitObjectStore(Path repositoryDir) {
+        this(repositoryDir, DEFAULT_MAX_BLOB_BYTES);
+    }
+
+    public GitObjectStore(Path repositoryDir, long maxBlobBytes) {
+        this.repositoryDir = repositoryDir.toAbsolutePath().normalize();
+        this.maxBlobBytes = maxBlobBytes;
+    }
+
+    public Path getRepositoryDir() {
+        return repositoryDir;
+    }
+
+    /**
+     * 將分支、標籤或縮寫解析為完整的 commit ID
+     *
+     * @param revision 版本，例如 "v1.2.0"、"main"、"HEAD~3"
+     * @return commit ID
+     * @throws IOException 版本不存在或 git 執行失敗
+     */
+    public String resolveCommit(String revision) throws IOException {
+        String output = new String(runGit("rev-parse", "--verify", "--quiet", revision + "^{commit}"),
+                StandardCharsets.UTF_8).trim();
+        if (output.isEmpty()) {
+            throw new IOException("找不到版本: " + revision);
+        }
+        return output;
+    }
+
+    /**
+     * 列出 commit 中的所有檔案
+     *
+     * @param commitId 完整的 commit ID
+     * @return 路徑 -> blob ID，路徑以 "/" 分隔並相對於儲存庫根目錄
+     * @throws IOException git 執行失敗
+     */
+    public Map<String, String> listFiles(String commitId) throws IOException {
+        Map<String, String> files = trees.get(commitId);
+        if (files != null) {
+            return files;
+        }
+
+        // 每筆格式: <mode> SP <type> SP <object ID> TAB <path> NUL
+        byte[] output = runGit("ls-tree", "-r", "-z", "--full-tree", commitId);
+        Map<String, String> result = new LinkedHashMap<>();
+        int start = 0;
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] != 0) {
+                continue;
+            }
+            String entry = new String(output, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            int tab = entry.indexOf('\t');
+            String[] header = entry.substring(0, tab).split(" ");
+            if (header.length == 3 && "blob".equals(header[1])) {
+                result.put(entry.substring(tab + 1), header[2]);
+            }
+        }
+
+        files = Collections.unmodifiableMap(result);
+        trees.put(commitId, files);
+        logger.debug("列出 commit {} 的檔案: {} 個", commitId, files.size());
+        return files;
+    }
+
+    /**
+     * 讀取 blob 內容（以 UTF-8 解碼）
+     *
+     * @param blobId blob 的物件 ID
+     * @return 內容，物件不存在時為 null
+     * @throws IOException git 執行失敗
+     */
+    public String readBlob(String blobId) throws IOException {
+        synchronized (blobs) {
+            String cached = blobs.get(blobId);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return cached;
+            }
+        }
+
+        missCount.incrementAndGet();
+        byte[] content = readObject(blobId);
+        if (content == null) {
+            return null;
+        }
+        String text = new String(content, StandardCharsets.UTF_8);
+        putBlob(blobId, text);
+        return text;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (catFile != null) {
+            try {
+                catFileInput.close();
+                catFile.waitFor(5, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                logger.debug("關閉 git cat-file 失敗", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                catFile.destroy();
+                catFile = null;
+            }
+        }
+    }
+
+    /**
+     * 經由常駐的 cat-file 程序讀取一個物件
+     */
+    private synchronized byte[] readObject(String objectId) throws IOException {
+        ensureCatFileStarted();
+        try {
+            catFileInput.write((objectId + "\n").getBytes(StandardCharsets.UTF_8));
+            catFileInput.flush();
+
+            // 回應格式: <object ID> SP <type> SP <size> LF <內容> LF，物件不存在時為 <object ID> SP missing LF
+            String header = readLine(catFileOutput);
+            if (header == null) {
+                throw new IOException("git cat-file 意外結束");
+            }
+            String[] parts = header.split(" ");
+            if (parts.length < 3) {
+                logger.debug("物件不存在: {}", objectId);
+                return null;
+            }
+            int size = Integer.parseInt(parts[2]);
+            byte[] content = catFileOutput.readNBytes(size);
+            if (content.length != size || catFileOutput.read() != '\n') {
+                throw new IOException("git cat-file 輸出不完整: " + objectId);
+            }
+            return content;
+        } catch (IOException e) {
+            // 程序狀態未知，下次重新啟動
+            close();
+            throw e;
+        }
+    }
+
+    private void ensureCatFileStarted() throws IOException {
+        if (catFile != null && catFile.isAlive()) {
+            return;
+        }
+        ProcessBuilder pb = new ProcessBuilder("git", "-C", repositoryDir.toString(), "cat-file", "--batch");
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        catFile = pb.start();
+        catFileInput = catFile.getOutputStream();
+        catFileOutput = new BufferedInputStream(catFile.getInputStream(), 64 * 1024);
+        logger.info("啟動 git cat-file: {}", repositoryDir);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(96);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    private byte[] runGit(String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of("git", "-C", repositoryDir.toString()));
+        command.addAll(List.of(args));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = pb.start();
+        try {
+            byte[] output = process.getInputStream().readAllBytes();
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("git 執行逾時: " + String.join(" ", args));
+            }
+            if (process.exitValue() != 0 && output.length == 0) {
+                throw new IOException("git 執行失敗 (exit " + process.exitValue() + "): " + String.join(" ", args));
+            }
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("git 執行被中斷", e);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private void putBlob(String blobId, String text) {
+        long bytes = 2L * text.length();
+        if (bytes > maxBlobBytes) {
+            return; // 超過整個快取上限的檔案不快取
+        }
+        synchronized (blobs) {
+            if (blobs.put(blobId, text) == null) {
+                blobBytes += bytes;
+            }
+            Iterator<Map.Entry<String, String>> iterator = blobs.entrySet().iterator();
+            while (blobBytes > maxBlobBytes && iterator.hasNext()) {
+                blobBytes -= 2L * iterator.next().getValue().length();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package kai.javaparser.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * git 原始碼提供者
+ * 從 git 物件資料庫讀取指定 commit 的原始碼，不需要 checkout
+ *
+ * 類別對應到 commit 中的路徑：優先使用 AST 記錄的相對路徑，找不到時依套件路徑比對檔名結尾
+ */
+public class GitSourceProvider implements SourceProvider {
+    private static final Logger logger = LoggerFactory.getLogger(GitSourceProvider.class);
+
+    private final GitObjectStore objectStore;
+    private final String commitId;
+    private final AstIndex astIndex;
+
+    // 類別 FQN -> blob ID，commit 內容不會改變，不需要失效
+    private final Map<String, String> blobIds = new ConcurrentHashMap<>();
+
+    public GitSourceProvider(GitObjectStore objectStore, String commitId, AstIndex astIndex) {
+        this.objectStore = objectStore;
+        this.commitId = commitId;
+        this.astIndex = astIndex;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    @Override
+    public String getSourceCode(String classFqn) {
+        String blobId = findBlobId(classFqn);
+        if (blobId == null) {
+            logger.warn("commit {} 中找不到類別: {}", commitId, classFqn);
+            return null;
+        }
+        try {
+            return objectStore.readBlob(blobId);
+        } catch (IOException e) {
+            logger.error("讀取 git 物件失敗: {} ({})", classFqn, blobId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Map<String, String> getSourceCodes(Set<String> classFqns) {
+        // cat-file 程序一次只處理一個請求，依序讀取
+        Map<String, String> sourceCodes = new HashMap<>();
+        for (String classFqn : classFqns) {
+            String sourceCode = getSourceCode(classFqn);
+            if (sourceCode != null) {
+                sourceCodes.put(classFqn, sourceCode);
+            }
+        }
+        return sourceCodes;
+    }
+
+    @Override
+    public boolean exists(String classFqn) {
+        return findBlobId(classFqn) != null;
+    }
+
+    /**
+     * 以 blob ID 組成版本戳記，內容相同的檔案在不同 commit 中版本相同
+     */
+    @Override
+    public long getSourceVersion(String classFqn) {
+        String blobId = findBlobId(classFqn);
+        return blobId == null ? -1 : Long.parseUnsignedLong(blobId.substring(0, 15), 16);
+    }
+
+    /**
+     * commit 的 AST 由同一個 commit 的 blob 解析而來，內容不會改變，路徑存在即相同
+     */
+    @Override
+    public boolean matchesParsedSource(FileAstData astData) {
+        if (astData.getRelativePath() == null) {
+            return false;
+        }
+        try {
+            return objectStore.listFiles(commitId).containsKey(astData.getRelativePath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getProviderName() {
+        return "Git";
+    }
+
+    private String findBlobId(String classFqn) {
+        String cached = blobIds.get(classFqn);
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<String, String> files;
+        try {
+            files = objectStore.listFiles(commitId);
+        } catch (IOException e) {
+            logger.error("列出 commit {} 的檔案失敗", commitId, e);
+            return null;
+        }
+
+        String blobId = null;
+        FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+        if (astData != null && astData.getRelativePath() != null) {
+            blobId = files.get(astData.getRelativePath());
+        }
+        if (blobId == null) {
+            String suffix = "/" + classFqn.replace('.', '/') + ".java";
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                if (file.getKey().endsWith(suffix) || file.getKey().equals(suffix.substring(1))) {
+                    blobId = file.getValue();
+                    break;
+                }
+            }
+        }
+
+        if (blobId != null) {
+            blobIds.put(classFqn, blobId);
+        }
+        return blobId;
+    }
+}
@@ -0,0 +1,101 @@
+package kai.javaparser.service;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.repository.AstRepository;
+import kai.javaparser.repository.FileSystemAstRepository;
+
+/**
+ * 依目前載入的 AST 選擇原始碼提供者
+ * 載入的是某個 commit 的 AST 時從 git 物件資料庫讀取，其餘情況從檔案系統讀取
+ */
+@Primary
+@Component
+public class RoutingSourceProvider implements SourceProvider {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingSourceProvider.class);
+
+    private final FileSystemSourceProvider fileSystemSourceProvider;
+    private final AstRepository astRepository;
+
+    private volatile Route activeRoute;
+
+    @Autowired
+    public RoutingSourceProvider(FileSystemSourceProvider fileSystemSourceProvider, AstRepository astRepository) {
+        this.fileSystemSourceProvider = fileSystemSourceProvider;
+        this.astRepository = astRepository;
+    }
+
+    /**
+     * 指定 AST 目錄載入時使用的原始碼提供者
+     *
+     * @param astDir   AST 目錄
+     * @param provider 原始碼提供者
+     */
+    public void activate(Path astDir, SourceProvider provider) {
+        this.activeRoute = new Route(astDir.toAbsolutePath().normalize(), provider);
+        logger.info("原始碼來源切換為 {}: {}", provider.getProviderName(), astDir);
+    }
+
+    /**
+     * 目前使用的原始碼提供者
+     */
+    public SourceProvider current() {
+        Route route = activeRoute;
+        if (route != null && astRepository instanceof FileSystemAstRepository) {
+            Path astDir = ((FileSystemAstRepository) astRepository).getAstJsonDir();
+            if (astDir != null && route.astDir.equals(astDir.toAbsolutePath().normalize())) {
+                return route.provider;
+            }
+        }
+        return fileSystemSourceProvider;
+    }
+
+    @Override
+    public String getSourceCode(String classFqn) {
+        return current().getSourceCode(classFqn);
+    }
+
+    @Override
+    public Map<String, String> getSourceCodes(Set<String> classFqns) {
+        return current().getSourceCodes(classFqns);
+    }
+
+    @Override
+    public boolean exists(String classFqn) {
+        return current().exists(classFqn);
+    }
+
+    @Override
+    public String getProviderName() {
+        return current().getProviderName();
+    }
+
+    @Override
+    public long getSourceVersion(String classFqn) {
+        return current().getSourceVersion(classFqn);
+    }
+
+    @Override
+    public boolean matchesParsedSource(FileAstData astData) {
+        return current().matchesParsedSource(astData);
+    }
+
+    private static final class Route {
+        private final Path astDir;
+        private final SourceProvider provider;
+
+        private Route(Path astDir, SourceProvider provider) {
+            this.astDir = astDir;
+            this.provider = provider;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package kai.javaparser.service;
 
 import java.util.Set;
 
+import kai.javaparser.ast.model.FileAstData;
+
 /**
  * 原始碼編織器介面
  * 定義程式碼過濾與重組的契約
@@ -37,6 +39,13 @@ public interface SourceCodeWeaver {
          */
         Set<String> getUsedMethodNames();
 
+        /**
+         * 只輸出簽名（方法本體以 { ... } 取代）的方法名稱集合（當extractOnlyUsedMethods為true時使用）
+         */
+        default Set<String> getStubMethodNames() {
+            return Set.of();
+        }
+
         /**
          * 要提取的類別完整限定名
          */
@@ -72,6 +81,30 @@ public interface SourceCodeWeaver {
      */
     WeavingResult weave(String sourceCode, WeavingRules rules);
 
+    /**
+     * 使用呼叫端已取得的 AST 資料編織原始碼，避免重複查詢
+     * 
+     * @param sourceCode 原始原始碼
+     * @param astData    類別的 AST 資料，為 null 時由編織器自行查詢
+     * @param rules      編織規則
+     * @return 編織結果
+     */
+    default WeavingResult weave(String sourceCode, FileAstData astData, WeavingRules rules) {
+        return weave(sourceCode, rules);
+    }
+
+    /**
+     * 只使用解析時保存在 AST 中的成員原始碼編織，不讀取原始檔。
+     * 呼叫端需自行確認原始碼在解析後沒有變動。
+     * 
+     * @param astData 類別的 AST 資料
+     * @param rules   編織規則
+     * @return 編織結果；不支援、規則不是只提取使用的方法，或 AST 沒有保存所需的原始碼時返回 null
+     */
+    default WeavingResult weaveStoredMembers(FileAstData astData, WeavingRules rules) {
+        return null;
+    }
+
     /**
      * 獲取編織器名稱
      * 
@@ -2,6 +2,8 @@ package kai.javaparser.service;
 
 import java.util.Set;
 
+import kai.javaparser.ast.model.FileAstData;
+
 /**
  * 原始碼提供者介面
  * 定義獲取原始碼的契約，支援不同的原始碼來源
@@ -38,4 +40,24 @@ public interface SourceProvider {
      * @return 提供者名稱，如 "FileSystem", "Database" 等
      */
     String getProviderName();
+
+    /**
+     * 獲取指定類別原始碼的版本戳記，原始碼變動時改變
+     * 
+     * @param classFqn 類別的完整限定名
+     * @return 版本戳記，無法判斷時返回 0，找不到原始碼時返回 -1
+     */
+    default long getSourceVersion(String classFqn) {
+        return 0;
+    }
+
+    /**
+     * 原始碼是否與解析時相同，相同時可直接使用 AST 中保存的成員原始碼
+     * 
+     * @param astData 類別的 AST 資料
+     * @return 確定沒有變動時返回 true，無法判斷時返回 false
+     */
+    default boolean matchesParsedSource(FileAstData astData) {
+        return false;
+    }
 }
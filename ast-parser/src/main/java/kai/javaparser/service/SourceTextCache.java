@@ -0,0 +1,179 @@
+package kai.javaparser.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * 原始碼文字快取：
+ * 以檔案路徑快取解碼後的原始碼，每次取用時比對檔案的修改時間與大小，檔案變動後自動重新讀取。
+ *
+ * 1. 小檔案一次讀入位元組，大檔案以記憶體映射讀取，避免額外的緩衝區複製
+ * 2. 兩種讀取方式使用相同的 UTF-8 解碼規則：遇到無效的位元組時拋出 IOException，
+ *    與解析時的 Files.readString 一致，不會默默替換成 U+FFFD 而讓字元位置與 AST 對不上
+ * 3. 以快取的總字元數為上限，超過時依最久未使用的順序淘汰
+ */
+@Component
+public class SourceTextCache {
+    private static final Logger logger = LoggerFactory.getLogger(SourceTextCache.class);
+
+    public static final long DEFAULT_MAX_CHARS = 64L * 1024 * 1024;
+    public static final long DEFAULT_MMAP_THRESHOLD = 1024L * 1024;
+
+    private final long maxChars;
+    private final long mmapThreshold;
+
+    // 依存取順序排列，最久未使用的在最前面
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalChars = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public SourceTextCache() {
+        this(DEFAULT_MAX_CHARS, DEFAULT_MMAP_THRESHOLD);
+    }
+
+    public SourceTextCache(long maxChars, long mmapThreshold) {
+        this.maxChars = maxChars;
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    /**
+     * 讀取原始碼，檔案未變動時直接返回快取的內容
+     *
+     * @param path 原始碼檔案路徑
+     * @return 原始碼文字
+     * @throws IOException 讀取失敗
+     */
+    public String read(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified == lastModified && entry.size == size) {
+                hitCount.incrementAndGet();
+                return entry.text;
+            }
+        }
+
+        // 讀取在鎖外進行，同一檔案同時未命中時可能讀取兩次，結果相同
+        missCount.incrementAndGet();
+        String text = size >= mmapThreshold
+                ? readMapped(key, size)
+                : decode(key, ByteBuffer.wrap(Files.readAllBytes(key)));
+        put(key, new Entry(text, lastModified, size));
+        return text;
+    }
+
+    /**
+     * 移除指定檔案的快取
+     */
+    public void invalidate(Path path) {
+        synchronized (entries) {
+            Entry removed = entries.remove(path.toAbsolutePath().normalize());
+            if (removed != null) {
+                totalChars -= removed.text.length();
+            }
+        }
+    }
+
+    /**
+     * 清除所有快取
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalChars = 0;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private String readMapped(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            logger.debug("以記憶體映射讀取原始碼: {} ({} bytes)", path, size);
+            return decode(path, buffer);
+        }
+    }
+
+    /**
+     * 以嚴格的 UTF-8 解碼，解碼器不是執行緒安全的，每次建立新的
+     */
+    private static String decode(Path path, ByteBuffer bytes) throws IOException {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(bytes)
+                    .toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("原始碼不是有效的 UTF-8: " + path, e);
+        }
+    }
+
+    private void put(Path key, Entry entry) {
+        if (entry.text.length() > maxChars) {
+            return; // 超過整個快取上限的檔案不快取
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalChars -= previous.text.length();
+            }
+            totalChars += entry.text.length();
+
+            Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+            while (totalChars > maxChars && iterator.hasNext()) {
+                Map.Entry<Path, Entry> eldest = iterator.next();
+                totalChars -= eldest.getValue().text.length();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String text;
+        private final long lastModified;
+        private final long size;
+
+        private Entry(String text, long lastModified, long size) {
+            this.text = text;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package kai.javaparser.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 文字壓縮工具類
+ * 以 Deflate 壓縮 UTF-8 文字並以 Base64 表示，方便直接存放在 AST JSON 中
+ */
+public class TextCompressor {
+
+    private TextCompressor() {
+    }
+
+    /**
+     * 壓縮文字
+     *
+     * @param text 原始文字
+     * @return Base64 表示的壓縮結果
+     */
+    public static String compress(String text) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return Base64.getEncoder().encodeToString(out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解壓縮文字
+     *
+     * @param compressed {@link #compress(String)} 的結果
+     * @return 原始文字
+     * @throws IllegalArgumentException 內容不是有效的壓縮資料
+     */
+    public static String decompress(String compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            byte[] input = Base64.getDecoder().decode(compressed);
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("壓縮資料不完整");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("無效的壓縮資料", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
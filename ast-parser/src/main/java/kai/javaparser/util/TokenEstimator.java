@@ -0,0 +1,70 @@
+package kai.javaparser.util;
+
+/**
+ * 本地 token 數估算工具類
+ * 以單次字元掃描近似 BPE 分詞器對 Java 原始碼的切分結果，不依賴外部服務，估算值偏保守（略高於實際）
+ *
+ * 規則：
+ * 1. 英數字與底線組成的連續片段，每 6 個字元約 1 個 token
+ * 2. 每個標點符號 1 個 token
+ * 3. 含換行的空白片段 1 個 token，單一空白併入下一個片段
+ * 4. 非 ASCII 字元（例如中文註解）每字 1 個 token
+ */
+public class TokenEstimator {
+
+    private static final int CHARS_PER_WORD_TOKEN = 6;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文字的 token 數
+     *
+     * @param text 文字
+     * @return 估算的 token 數
+     */
+    public static int estimate(CharSequence text) {
+        return text == null ? 0 : estimate(text, 0, text.length());
+    }
+
+    /**
+     * 估算文字中 [start, end) 區段的 token 數
+     *
+     * @param text  文字
+     * @param start 開始位置（含）
+     * @param end   結束位置（不含）
+     * @return 估算的 token 數
+     */
+    public static int estimate(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                int runStart = i;
+                while (i < end && isWordChar(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - runStart + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+            } else if (Character.isWhitespace(c)) {
+                int runStart = i;
+                boolean newline = false;
+                while (i < end && Character.isWhitespace(text.charAt(i))) {
+                    newline |= text.charAt(i) == '\n';
+                    i++;
+                }
+                if (newline || i - runStart > 1) {
+                    tokens++;
+                }
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '$');
+    }
+}
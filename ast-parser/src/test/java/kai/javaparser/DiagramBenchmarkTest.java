@@ -0,0 +1,189 @@
+package kai.javaparser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.management.ThreadMXBean;
+
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.DiagramFormat;
+import kai.javaparser.diagram.DiagramRenderer;
+import kai.javaparser.diagram.MethodRef;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.TraceFilter;
+import kai.javaparser.diagram.filter.CompiledTraceFilter;
+import kai.javaparser.diagram.filter.DefaultTraceFilter;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * 效能量測，不列入一般的 test 任務，以 gradle benchmark 執行。
+ * 結果只記錄在日誌，正確性由 MermaidGeneratorTest 中對應的單元測試檢查
+ */
+@Tag("benchmark")
+public class DiagramBenchmarkTest {
+  private static final Logger logger = LoggerFactory.getLogger(DiagramBenchmarkTest.class);
+
+  static final Set<String> FILTER_CLASS_PREFIXES = Set.of("java.", "javax.", "org.springframework.",
+      "org.slf4j.", "com.fasterxml.", "com.example.util.", "com.example.log");
+  static final Set<String> FILTER_METHOD_NAMES = Set.of("toString", "hashCode", "equals", "getClass");
+
+  /**
+   * 各格式在數千個節點的呼叫樹上的渲染時間，不需要索引，呼叫樹以程式產生
+   */
+  @Test
+  void benchmarkRenderersOnLargeTrace() {
+    TraceResult traceResult = new TraceResult("com.example.bench.Service0.run()",
+        MermaidGeneratorTest.syntheticNodes("com.example.bench.Service0", 4, 8));
+    SequenceOutputConfig config = unfilteredConfig();
+
+    for (DiagramFormat format : DiagramFormat.values()) {
+      DiagramRenderer renderer = format.createRenderer(config, null);
+      for (int i = 0; i < 5; i++) {
+        renderer.render(traceResult, new StringBuilder());
+      }
+
+      int iterations = 20;
+      long length = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        StringBuilder out = new StringBuilder();
+        renderer.render(traceResult, out);
+        length = out.length();
+      }
+      long avgMicros = (System.nanoTime() - start) / iterations / 1000;
+      logger.info("{}: 平均 {} us，輸出 {} 字元", format.getDisplayName(), avgMicros, length);
+      Assertions.assertTrue(length > 0);
+    }
+  }
+
+  /**
+   * CompiledTraceFilter 與 DefaultTraceFilter 的判斷時間
+   */
+  @Test
+  void benchmarkCompiledTraceFilter() {
+    TraceFilter original = new DefaultTraceFilter(FILTER_CLASS_PREFIXES, FILTER_METHOD_NAMES);
+    CompiledTraceFilter compiled = CompiledTraceFilter.compile(FILTER_CLASS_PREFIXES, FILTER_METHOD_NAMES);
+    List<String> methodFqns = filterSampleMethodFqns();
+
+    for (TraceFilter filter : Arrays.asList(original, compiled)) {
+      for (int i = 0; i < 20; i++) {
+        methodFqns.forEach(methodFqn -> filter.shouldExclude(methodFqn, null));
+      }
+
+      int iterations = 200;
+      long excluded = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        for (String methodFqn : methodFqns) {
+          if (filter.shouldExclude(methodFqn, null)) {
+            excluded++;
+          }
+        }
+      }
+      long avgNanos = (System.nanoTime() - start) / ((long) iterations * methodFqns.size());
+      logger.info("{}: 平均每次判斷 {} ns，排除 {} 次", filter.getClass().getSimpleName(), avgNanos, excluded);
+      Assertions.assertTrue(excluded > 0);
+    }
+  }
+
+  /**
+   * 過濾器測試用的方法 FQN：涵蓋排除的前綴、相近但不排除的包與排除的方法名稱
+   */
+  static List<String> filterSampleMethodFqns() {
+    String[] packages = { "java.util", "org.springframework.web", "com.example.service", "com.example.util",
+        "com.example.logging", "com.example.repository", "pagecode.cac" };
+    String[] methods = { "run", "toString", "findById", "hashCode", "save", "getLevel1" };
+    List<String> methodFqns = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      methodFqns.add(packages[i % packages.length] + ".Class" + (i % 37) + "." + methods[i % methods.length]
+          + "(java.lang.String)");
+    }
+    return methodFqns;
+  }
+
+  /**
+   * 每條呼叫邊的 FQN 解析：比較舊的字串切割與 MethodRef 每條邊配置的位元組數。
+   * 需要 com.sun.management.ThreadMXBean 的執行緒配置計數，其他 JVM 上略過
+   */
+  @Test
+  void benchmarkMethodRefAllocation() {
+    Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+    ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported()
+        && threadBean.isThreadAllocatedMemoryEnabled());
+
+    List<String[]> edges = methodRefSampleEdges();
+    edges.forEach(edge -> MethodRef.of(edge[0], edge[1]));
+    long threadId = Thread.currentThread().getId();
+    int iterations = 20;
+
+    long legacyLength = 0;
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      for (String[] edge : edges) {
+        String methodFqn = AstClassUtil.getMethodFqn(edge[0], edge[1]);
+        String classFqn = AstClassUtil.getClassFqnFromMethodFqn(methodFqn).replaceAll("<.*>", "");
+        String methodName = AstClassUtil.getMethodSignature(methodFqn).split("\\(")[0];
+        legacyLength += classFqn.length() + methodName.length();
+      }
+    }
+    long legacyBytes = (threadBean.getThreadAllocatedBytes(threadId) - before) / ((long) iterations * edges.size());
+
+    long refLength = 0;
+    before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      for (String[] edge : edges) {
+        MethodRef method = MethodRef.of(edge[0], edge[1]);
+        refLength += method.getErasedClassFqn().length() + method.getMethodName().length();
+      }
+    }
+    long refBytes = (threadBean.getThreadAllocatedBytes(threadId) - before) / ((long) iterations * edges.size());
+
+    logger.info("每條邊配置：字串切割 {} bytes，MethodRef {} bytes", legacyBytes, refBytes);
+    Assertions.assertEquals(legacyLength, refLength);
+  }
+
+  /**
+   * MethodRef 測試用的呼叫邊（類別、方法名稱），類別帶泛型參數
+   */
+  static List<String[]> methodRefSampleEdges() {
+    List<String[]> edges = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      edges.add(new String[] { "com.example.bench.Service" + (i % 200) + "<java.lang.String>",
+          "method" + (i % 13) });
+    }
+    return edges;
+  }
+
+  /**
+   * 不排除任何呼叫、不隱藏細節的配置，渲染所有合成的節點
+   */
+  static SequenceOutputConfig unfilteredConfig() {
+    return SequenceOutputConfig.builder()
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .filter(new TraceFilter() {
+          @Override
+          public boolean shouldExclude(String classFqn, String methodName, AstIndex astIndex) {
+            return false;
+          }
+
+          @Override
+          public boolean shouldExclude(String methodFqn, AstIndex astIndex) {
+            return false;
+          }
+        })
+        .build();
+  }
+}
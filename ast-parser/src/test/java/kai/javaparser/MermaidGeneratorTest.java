@@ -5,19 +5,56 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.ast.model.ControlFlowFragment;
+import kai.javaparser.ast.model.DiagramCacheStats;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.NoteNode;
+import kai.javaparser.ast.model.TraceResult;
 import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.AstClassUtil;
+import kai.javaparser.diagram.DiagramCache;
+import kai.javaparser.diagram.DiagramFolder;
+import kai.javaparser.diagram.DiagramFormat;
 import kai.javaparser.diagram.DiagramService;
+import kai.javaparser.diagram.JsonCallTreeRenderer;
+import kai.javaparser.diagram.MethodRef;
+import kai.javaparser.diagram.MermaidRenderer;
+import kai.javaparser.diagram.PlantUmlRenderer;
 import kai.javaparser.diagram.TraceFilter;
+import kai.javaparser.diagram.dependency.DependencyGranularity;
+import kai.javaparser.diagram.dependency.DependencyGraph;
+import kai.javaparser.diagram.dependency.DependencyGraphFormat;
+import kai.javaparser.diagram.dependency.DependencyGraphService;
+import kai.javaparser.diagram.dependency.DependencyKind;
+import kai.javaparser.diagram.diff.CallTreeDiffer;
+import kai.javaparser.diagram.diff.DiffResult;
+import kai.javaparser.diagram.filter.CompiledTraceFilter;
 import kai.javaparser.diagram.filter.DefaultTraceFilter;
+import kai.javaparser.diagram.idx.AnnotationIndex;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.diagram.page.CallTreePageService;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
 public class MermaidGeneratorTest extends BaseTest {
@@ -25,6 +62,18 @@ public class MermaidGeneratorTest extends BaseTest {
   @Autowired
   private DiagramService diagramService;
 
+  @Autowired
+  private DiagramCache diagramCache;
+
+  @Autowired
+  private CallTreePageService callTreePageService;
+
+  @Autowired
+  private AstIndex astIndex;
+
+  @Autowired
+  private DependencyGraphService dependencyGraphService;
+
   /**
    * 依照指定的Method，生成對應的Sequence Diagram
    * 
@@ -94,4 +143,494 @@ public class MermaidGeneratorTest extends BaseTest {
     Assertions.assertTrue(output.contains("com_example_case2_LoginUser"));
   }
 
-}
\ No newline at end of file
+  /**
+   * 平行模式（門檻設為 1，強制 fork）的輸出必須與循序模式完全相同
+   */
+  @Test
+  void testParallelTraceMatchesSequential() {
+    String methodSignature = "com.example.case2.LoginUser.getLevel1()";
+    Set<String> basePackages = new HashSet<>(Arrays.asList("com.example"));
+    TraceFilter filter = new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>());
+
+    SequenceOutputConfig sequentialConfig = SequenceOutputConfig.builder()
+        .depth(4)
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .basePackages(basePackages)
+        .filter(filter)
+        .build();
+
+    SequenceOutputConfig parallelConfig = SequenceOutputConfig.builder()
+        .depth(4)
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .basePackages(basePackages)
+        .filter(filter)
+        .parallel(true)
+        .parallelThreshold(1)
+        .build();
+
+    String sequential = diagramService.generateDiagram(methodSignature, sequentialConfig);
+    String parallel = diagramService.generateDiagram(methodSignature, parallelConfig);
+
+    Assertions.assertEquals(sequential, parallel);
+  }
+
+  /**
+   * 串流模式只有 participant 的位置不同（第一次出現時宣告），其餘內容必須與一般模式相同
+   */
+  @Test
+  void testStreamingDiagramMatchesMaterialized() {
+    String methodSignature = "com.example.case2.LoginUser.getLevel1()";
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .depth(4)
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .basePackages(new HashSet<>(Arrays.asList("com.example")))
+        .filter(new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>()))
+        .build();
+
+    String materialized = diagramService.generateDiagram(methodSignature, config);
+    StringBuilder streamed = new StringBuilder();
+    diagramService.streamDiagram(methodSignature, config, streamed);
+
+    Assertions.assertEquals(participantLines(materialized), participantLines(streamed.toString()));
+    Assertions.assertEquals(otherLines(materialized), otherLines(streamed.toString()));
+  }
+
+  @Test
+  void testWrittenDiagramMatchesGenerated() {
+    String methodSignature = "com.example.case2.LoginUser.getLevel1()";
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .depth(4)
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .basePackages(new HashSet<>(Arrays.asList("com.example")))
+        .filter(new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>()))
+        .build();
+
+    String generated = diagramService.generateDiagram(methodSignature, config);
+    StringBuilder written = new StringBuilder();
+    diagramService.writeDiagram(methodSignature, config, written);
+
+    // 宣告事先收集後寫在開頭，輸出需與組出整份字串完全相同
+    Assertions.assertEquals(generated, written.toString());
+  }
+
+  /**
+   * 同一次追蹤以三種格式渲染：Mermaid 與單獨生成相同，PlantUML 片段成對，JSON 的節點數與 id 一致
+   */
+  @Test
+  void testAllFormatsShareOneTrace() throws IOException {
+    String methodSignature = "com.example.case2.LoginUser.getLevel1()";
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .depth(4)
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .basePackages(new HashSet<>(Arrays.asList("com.example")))
+        .filter(new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>()))
+        .build();
+
+    Map<DiagramFormat, String> diagrams = diagramService.generateDiagrams(methodSignature, config,
+        EnumSet.allOf(DiagramFormat.class));
+
+    Assertions.assertEquals(diagramService.generateDiagram(methodSignature, config),
+        diagrams.get(DiagramFormat.MERMAID));
+    assertPlantUmlBalanced(diagrams.get(DiagramFormat.PLANTUML));
+
+    JsonNode tree = new ObjectMapper().readTree(diagrams.get(DiagramFormat.JSON));
+    Assertions.assertEquals(JsonCallTreeRenderer.SCHEMA, tree.get("schema").asText());
+    Assertions.assertEquals(JsonCallTreeRenderer.SCHEMA_VERSION, tree.get("version").asInt());
+    Assertions.assertEquals(tree.get("nodeCount").asInt(), assertPreOrder(tree.get("root"), 0));
+  }
+
+  /**
+   * 快取：相同的進入點與配置第二次取用時命中快取，內容與 ETag 不變，且與未快取的渲染結果相同
+   */
+  @Test
+  void testRenderedDiagramCacheHit() {
+    String methodSignature = "com.example.case2.LoginUser.getLevel1()";
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .depth(4)
+        .basePackages(new HashSet<>(Arrays.asList("com.example")))
+        .filter(new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>()))
+        .build();
+    diagramCache.clear();
+
+    DiagramCache.RenderedDiagram first = diagramService.generateCachedDiagram(methodSignature, config,
+        DiagramFormat.MERMAID);
+    long hits = diagramCache.getHitCount();
+    DiagramCache.RenderedDiagram second = diagramService.generateCachedDiagram(methodSignature, config,
+        DiagramFormat.MERMAID);
+
+    Assertions.assertEquals(hits + 1, diagramCache.getHitCount());
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals(DiagramCache.etagOf(first.getContent()), second.getEtag());
+    Assertions.assertEquals(diagramService.generateDiagram(methodSignature, config), second.getContent());
+
+    // 放得進快取的圖表不會改為直接寫出
+    diagramCache.clear();
+    DiagramCache.RenderedDiagram written = diagramService.writeCachedDiagram(methodSignature, config,
+        DiagramFormat.MERMAID, () -> {
+          throw new AssertionError("圖表沒有超過快取上限");
+        });
+    Assertions.assertNotNull(written);
+    Assertions.assertEquals(first.getEtag(), written.getEtag());
+    Assertions.assertSame(written, diagramService.generateCachedDiagram(methodSignature, config,
+        DiagramFormat.MERMAID));
+  }
+
+  /**
+   * 各格式都能渲染數千個節點的呼叫樹，不需要索引，呼叫樹以程式產生；渲染時間見 DiagramBenchmarkTest
+   */
+  @Test
+  void testRenderersOnLargeTrace() {
+    TraceResult traceResult = new TraceResult("com.example.bench.Service0.run()",
+        syntheticNodes("com.example.bench.Service0", 4, 8));
+    SequenceOutputConfig config = DiagramBenchmarkTest.unfilteredConfig();
+
+    int nodeCount = new JsonCallTreeRenderer(config, null).buildTree(traceResult).getNodeCount();
+    Assertions.assertTrue(nodeCount > 5000, "呼叫樹節點數: " + nodeCount);
+
+    for (DiagramFormat format : DiagramFormat.values()) {
+      StringBuilder out = new StringBuilder();
+      format.createRenderer(config, null).render(traceResult, out);
+      Assertions.assertTrue(out.length() > 0, format.getDisplayName());
+    }
+
+    assertPlantUmlBalanced(new PlantUmlRenderer(config, null).render(traceResult));
+  }
+
+  /**
+   * 編譯後的過濾器與 DefaultTraceFilter 的判斷結果相同；判斷時間見 DiagramBenchmarkTest
+   */
+  @Test
+  void testCompiledTraceFilterMatchesDefault() {
+    TraceFilter original = new DefaultTraceFilter(DiagramBenchmarkTest.FILTER_CLASS_PREFIXES,
+        DiagramBenchmarkTest.FILTER_METHOD_NAMES);
+    CompiledTraceFilter compiled = CompiledTraceFilter.compile(DiagramBenchmarkTest.FILTER_CLASS_PREFIXES,
+        DiagramBenchmarkTest.FILTER_METHOD_NAMES);
+
+    List<String> methodFqns = DiagramBenchmarkTest.filterSampleMethodFqns();
+    CompiledTraceFilter.Stats before = compiled.getStats();
+    long excluded = 0;
+    for (String methodFqn : methodFqns) {
+      boolean expected = original.shouldExclude(methodFqn, null);
+      Assertions.assertEquals(expected, compiled.shouldExclude(methodFqn, null), methodFqn);
+      excluded += expected ? 1 : 0;
+    }
+
+    CompiledTraceFilter.Stats stats = compiled.getStats().since(before);
+    Assertions.assertEquals(methodFqns.size(), stats.getChecks());
+    Assertions.assertEquals(excluded, stats.getClassHits() + stats.getMethodHits());
+  }
+
+  /**
+   * 萬用字元與正規表示式規則；含 * 的類別規則是萬用字元，不是 DefaultTraceFilter 的字面前綴
+   */
+  @Test
+  void testCompiledTraceFilterPatterns() {
+    CompiledTraceFilter patterns = CompiledTraceFilter.compile(Set.of("com.example.*Dto", "regex:.*\\$\\d+"),
+        Set.of("get*", "regex:lambda\\$.*"));
+    Assertions.assertTrue(patterns.shouldExclude("com.example.user.UserDto", "build", null));
+    Assertions.assertTrue(patterns.shouldExclude("com.example.Outer$1", "run", null));
+    Assertions.assertTrue(patterns.shouldExclude("com.example.Service", "getName", null));
+    Assertions.assertTrue(patterns.shouldExclude("com.example.Service.lambda$run$0()", null));
+    Assertions.assertFalse(patterns.shouldExclude("com.example.UserDtoMapper", "map", null));
+    Assertions.assertFalse(patterns.shouldExclude("com.example.Service.setName(java.lang.String)", null));
+
+    TraceFilter literal = new DefaultTraceFilter(Set.of("com.example.*Dto"), Set.of());
+    Assertions.assertFalse(literal.shouldExclude("com.example.user.UserDto", "build", null));
+  }
+
+  /**
+   * 每條呼叫邊的 FQN 解析：舊的字串切割與 MethodRef 的結果相同；配置的位元組數見 DiagramBenchmarkTest
+   */
+  @Test
+  void testMethodRefMatchesAstClassUtil() {
+    for (String[] edge : DiagramBenchmarkTest.methodRefSampleEdges()) {
+      String methodFqn = AstClassUtil.getMethodFqn(edge[0], edge[1]);
+      MethodRef method = MethodRef.of(edge[0], edge[1]);
+      Assertions.assertEquals(methodFqn, method.getFqn());
+      Assertions.assertEquals(AstClassUtil.getClassFqnFromMethodFqn(methodFqn).replaceAll("<.*>", ""),
+          method.getErasedClassFqn());
+      Assertions.assertEquals(AstClassUtil.getMethodSignature(methodFqn).split("\\(")[0], method.getMethodName());
+    }
+  }
+
+  /**
+   * 折疊：連續重複的呼叫與呼叫序列只保留一次，超過分支上限的呼叫改為註解，原始呼叫樹不變
+   */
+  @Test
+  void testFoldingBoundsRepeatedAndWideTraces() {
+    String caller = "com.example.bench.Service0";
+    List<DiagramNode> nodes = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      nodes.add(call(caller, "com.example.bench.Dao", "findById"));
+    }
+    for (int i = 0; i < 10; i++) {
+      nodes.add(call(caller, "com.example.bench.Dao", "lock"));
+      nodes.add(call(caller, "com.example.bench.Dao", "update"));
+    }
+    for (int i = 0; i < 20; i++) {
+      InteractionModel wide = call(caller, "com.example.bench.Service" + i, "run");
+      wide.setInternalCalls(syntheticNodes("com.example.bench.Service" + i, 1, 2));
+      nodes.add(wide);
+    }
+    TraceResult traceResult = new TraceResult(caller + ".main()", nodes);
+
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .hideDetailsInChainExpression(false)
+        .foldRepeatedCalls(true)
+        .maxFanOut(8)
+        .build();
+    TraceResult folded = new DiagramFolder(config, null).fold(traceResult);
+
+    List<DiagramNode> foldedNodes = folded.getSequenceNodes();
+    Assertions.assertEquals(9, foldedNodes.size());
+    Assertions.assertEquals(50, ((InteractionModel) foldedNodes.get(0)).getRepeatCount());
+    Assertions.assertEquals(10, ((InteractionModel) foldedNodes.get(1)).getRepeatCount());
+    Assertions.assertEquals(10, ((InteractionModel) foldedNodes.get(2)).getRepeatCount());
+    // 20 個 run 只保留前 5 個，其餘 15 個各有 2 個內部呼叫
+    Assertions.assertEquals("…45 more calls", ((NoteNode) foldedNodes.get(8)).getText());
+    Assertions.assertEquals(110, nodes.size());
+    Assertions.assertNull(((InteractionModel) nodes.get(0)).getRepeatCount());
+
+    String diagram = new MermaidRenderer(config).render(folded);
+    Assertions.assertTrue(diagram.contains("x50 findById()"), diagram);
+    Assertions.assertTrue(diagram.contains("…45 more calls"), diagram);
+  }
+
+  /**
+   * 版本比較：相同的呼叫樹沒有差異；新增、移除與參數變更的呼叫分別標示，原始呼叫樹不變，各格式的輸出仍然成對
+   */
+  @Test
+  void testDiagramDiffHighlightsChanges() {
+    String caller = "com.example.bench.Service0";
+    TraceResult base = new TraceResult(caller + ".run()", syntheticNodes(caller, 3, 6));
+    List<DiagramNode> headNodes = syntheticNodes(caller, 3, 6);
+    TraceResult head = new TraceResult(caller + ".run()", headNodes);
+    Assertions.assertFalse(new CallTreeDiffer().diff(base, head).hasChanges());
+
+    ((InteractionModel) headNodes.get(0)).setArguments(List.of("request.getId()", "other"));
+    ((InteractionModel) headNodes.get(1)).getInternalCalls()
+        .add(0, call("com.example.bench.Service3_1", "com.example.bench.Audit", "log"));
+    headNodes.remove(headNodes.size() - 1);
+
+    DiffResult result = new CallTreeDiffer().diff(base, head);
+    Assertions.assertEquals(1, result.getAdded(), result.toString());
+    Assertions.assertEquals(1, result.getRemoved(), result.toString());
+    Assertions.assertEquals(1, result.getChanged(), result.toString());
+    Assertions.assertNull(((InteractionModel) headNodes.get(0)).getDiffStatus());
+
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .hideDetailsInConditionals(false)
+        .hideDetailsInChainExpression(false)
+        .build();
+    String mermaid = new MermaidRenderer(config).render(result.getMerged());
+    Assertions.assertTrue(mermaid.contains("rect rgb(200, 255, 200)"), mermaid);
+    Assertions.assertTrue(mermaid.contains("rect rgb(255, 210, 210)"), mermaid);
+    Assertions.assertTrue(mermaid.contains("rect rgb(255, 245, 190)"), mermaid);
+
+    String plantUml = new PlantUmlRenderer(config, null).render(result.getMerged());
+    Assertions.assertTrue(plantUml.contains("group added"), plantUml);
+    assertPlantUmlBalanced(plantUml);
+
+    String json = new JsonCallTreeRenderer(config, null).render(result.getMerged());
+    Assertions.assertTrue(json.contains("\"diff\":\"removed\""), json);
+
+    // 數千個節點、只有一處變更的呼叫樹
+    TraceResult largeBase = new TraceResult(caller + ".run()", syntheticNodes(caller, 4, 8));
+    List<DiagramNode> largeHeadNodes = syntheticNodes(caller, 4, 8);
+    ((InteractionModel) largeHeadNodes.get(0)).getInternalCalls().remove(0);
+    TraceResult largeHead = new TraceResult(caller + ".run()", largeHeadNodes);
+    DiffResult largeResult = new CallTreeDiffer().diff(largeBase, largeHead);
+    Assertions.assertEquals(1, largeResult.getRemoved());
+    Assertions.assertEquals(0, largeResult.getAdded() + largeResult.getChanged());
+  }
+
+  /**
+   * 分頁瀏覽：只回傳第一層，收合的呼叫帶有 expand 代號，展開後取得下一層；關閉後代號失效
+   */
+  @Test
+  void testCallTreePageExpand() throws IOException {
+    SequenceOutputConfig config = SequenceOutputConfig.builder()
+        .depth(4)
+        .basePackages(new HashSet<>(Arrays.asList("com.example")))
+        .filter(new DefaultTraceFilter(new HashSet<>(Arrays.asList("java.lang")), new HashSet<>()))
+        .build();
+
+    CallTreePageService.Page page = callTreePageService.open("com.example.case2.LoginUser.getLevel1()", config, 1);
+    JsonNode tree = new ObjectMapper().readTree(page.getTree());
+    Assertions.assertEquals(tree.get("nodeCount").asInt(), assertPreOrder(tree.get("root"), 0));
+
+    Matcher handle = Pattern.compile("\"expand\":(\\d+)").matcher(page.getTree());
+    Assertions.assertTrue(handle.find(), page.getTree());
+    int expandHandle = Integer.parseInt(handle.group(1));
+
+    CallTreePageService.Page expanded = callTreePageService.expand(page.getSessionId(), expandHandle, 1);
+    Assertions.assertNotNull(expanded);
+    Assertions.assertEquals(page.getSessionId(), expanded.getSessionId());
+    JsonNode subtree = new ObjectMapper().readTree(expanded.getTree());
+    Assertions.assertTrue(subtree.get("nodeCount").asInt() > 0, expanded.getTree());
+
+    callTreePageService.close(page.getSessionId());
+    Assertions.assertNull(callTreePageService.expand(page.getSessionId(), expandHandle, 1));
+  }
+
+  /**
+   * 預先整理的註解文字與逐次掃描方法分組的結果相同
+   */
+  @Test
+  void testAnnotationIndexMatchesMethodGroups() {
+    AnnotationIndex annotationIndex = astIndex.getAnnotationIndex();
+    for (String classFqn : astIndex.getAllClassFqns()) {
+      FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+      if (astData == null || astData.getSequenceDiagramData() == null) {
+        Assertions.assertNull(annotationIndex.getClassNote(classFqn));
+        continue;
+      }
+      String classNote = AnnotationIndex.formatAnnotations(astData.getSequenceDiagramData().getClassAnnotations());
+      Assertions.assertEquals(classNote.isEmpty() ? null : classNote, annotationIndex.getClassNote(classFqn));
+      for (MethodGroup group : astData.getSequenceDiagramData().getMethodGroups()) {
+        MethodGroup first = astData.getSequenceDiagramData().findMethodGroup(group.getMethodName());
+        String methodNote = AnnotationIndex.formatAnnotations(first.getAnnotations());
+        Assertions.assertEquals(methodNote.isEmpty() ? null : methodNote,
+            annotationIndex.getMethodNote(classFqn, group.getMethodName()), classFqn + "." + group.getMethodName());
+      }
+    }
+    Assertions.assertNull(annotationIndex.getMethodNote("com.example.NoSuchClass", "run"));
+
+    // 查詢表的統計與快取統計一併提供
+    DiagramCacheStats stats = diagramService.getCacheStats();
+    Assertions.assertEquals(annotationIndex.getClassCount(), stats.getAnnotationClasses());
+    Assertions.assertTrue(stats.getAnnotationClasses() > 0);
+    Assertions.assertEquals(0, stats.getAnnotationFailures());
+  }
+
+  /**
+   * 依賴圖：合併到包之後找出跨包的循環，權重加總；整個測試專案的包依賴圖可以渲染
+   */
+  @Test
+  void testDependencyGraphCycles() {
+    DependencyGraph classGraph = DependencyGraph.builder()
+        .addNode("p.a.A", 1).addNode("p.a.B", 1).addNode("p.b.C", 1).addNode("p.c.D", 1)
+        .addEdge("p.a.A", "p.b.C", DependencyKind.IMPORT, 1)
+        .addEdge("p.b.C", "p.c.D", DependencyKind.CALL, 3)
+        .addEdge("p.c.D", "p.a.B", DependencyKind.CALL, 2)
+        .addEdge("p.c.D", "p.a.B", DependencyKind.IMPORT, 1)
+        .build();
+    Assertions.assertTrue(classGraph.getCycles().isEmpty());
+
+    DependencyGraph packageGraph = classGraph.aggregate(classFqn -> classFqn.substring(0, classFqn.lastIndexOf('.')));
+    Assertions.assertEquals(Arrays.asList(Arrays.asList("p.a", "p.b", "p.c")), packageGraph.getCycles());
+    Assertions.assertEquals(2, packageGraph.getNodeSize(0));
+    DependencyGraph.Edge back = packageGraph.getEdges().get(2);
+    Assertions.assertEquals("p.c -> p.a (3)", back.toString());
+    Assertions.assertTrue(packageGraph.isCyclic(back));
+
+    DependencyGraph callsOnly = packageGraph.subgraph(node -> true, EnumSet.of(DependencyKind.CALL));
+    Assertions.assertEquals(2, callsOnly.getEdges().size());
+    Assertions.assertTrue(callsOnly.getCycles().isEmpty());
+
+    DependencyGraph graph = dependencyGraphService.buildGraph(DependencyGranularity.PACKAGE,
+        new HashSet<>(Arrays.asList("com.example")), null);
+    Assertions.assertTrue(graph.getNodes().contains("com.example.case2"), graph.getNodes().toString());
+    String mermaid = dependencyGraphService.render(graph, DependencyGraphFormat.MERMAID, 1);
+    Assertions.assertTrue(mermaid.startsWith("flowchart LR"), mermaid);
+    String dot = dependencyGraphService.render(graph, DependencyGraphFormat.DOT, 1);
+    Assertions.assertTrue(dot.startsWith("digraph dependencies {") && dot.endsWith("}\n"), dot);
+  }
+
+  private static InteractionModel call(String caller, String callee, String methodName) {
+    InteractionModel call = new InteractionModel();
+    call.setCaller(caller);
+    call.setCallee(callee);
+    call.setMethodName(methodName);
+    return call;
+  }
+
+  /**
+   * 每層 fanOut 個呼叫，每第四個呼叫包在 if / else 片段中
+   */
+  static List<DiagramNode> syntheticNodes(String caller, int depth, int fanOut) {
+    List<DiagramNode> nodes = new ArrayList<>();
+    if (depth == 0) {
+      return nodes;
+    }
+    for (int i = 0; i < fanOut; i++) {
+      String callee = "com.example.bench.Service" + depth + "_" + i;
+      InteractionModel call = new InteractionModel();
+      call.setCaller(caller);
+      call.setCallee(callee);
+      call.setMethodName("step" + i);
+      call.setArguments(new ArrayList<>(Arrays.asList("request.getId()", "value" + i)));
+      call.setInternalCalls(syntheticNodes(callee, depth - 1, fanOut));
+
+      if (i % 4 == 3) {
+        ControlFlowFragment fragment = new ControlFlowFragment();
+        fragment.setType(ControlFlowFragment.ControlFlowType.ALTERNATIVE);
+        fragment.setCondition("value" + i + " != null");
+        fragment.addContentInteraction(call);
+        ControlFlowFragment nested = new ControlFlowFragment();
+        nested.setType(ControlFlowFragment.ControlFlowType.OPTIONAL);
+        ControlFlowFragment elseFragment = new ControlFlowFragment();
+        elseFragment.setType(ControlFlowFragment.ControlFlowType.ALTERNATIVE);
+        fragment.addAlternative(nested);
+        fragment.addAlternative(elseFragment);
+        nodes.add(fragment);
+      } else {
+        nodes.add(call);
+      }
+    }
+    return nodes;
+  }
+
+  static void assertPlantUmlBalanced(String diagram) {
+    List<String> lines = Arrays.stream(diagram.split("\n")).map(String::trim).collect(Collectors.toList());
+    Assertions.assertEquals("@startuml", lines.get(0));
+    Assertions.assertEquals("@enduml", lines.get(lines.size() - 1));
+
+    int open = 0;
+    for (String line : lines) {
+      if (line.startsWith("alt") || line.startsWith("opt") || line.startsWith("loop")
+          || line.startsWith("group")) {
+        open++;
+      } else if (line.equals("end")) {
+        open--;
+        Assertions.assertTrue(open >= 0, "多餘的 end");
+      } else if (line.startsWith("else")) {
+        Assertions.assertTrue(open > 0, "else 不在 alt 之中");
+      }
+    }
+    Assertions.assertEquals(0, open);
+  }
+
+  /**
+   * 檢查 id 為前序順序、size 為後代數量，返回下一個 id
+   */
+  private static int assertPreOrder(JsonNode node, int expectedId) {
+    Assertions.assertEquals(expectedId, node.get("id").asInt());
+    int nextId = expectedId + 1;
+    if (node.has("children")) {
+      for (JsonNode child : node.get("children")) {
+        nextId = assertPreOrder(child, nextId);
+      }
+    }
+    Assertions.assertEquals(nextId - expectedId - 1, node.path("size").asInt(0));
+    return nextId;
+  }
+
+  private static Set<String> participantLines(String diagram) {
+    return Arrays.stream(diagram.split("\n"))
+        .filter(line -> line.startsWith("participant ") || line.startsWith("actor "))
+        .collect(Collectors.toSet());
+  }
+
+  private static List<String> otherLines(String diagram) {
+    return Arrays.stream(diagram.split("\n"))
+        .filter(line -> !line.startsWith("participant ") && !line.startsWith("actor "))
+        .collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,85 @@
+package kai.javaparser.ast.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import kai.javaparser.BaseTest;
+import kai.javaparser.diagram.DiagramCache;
+import kai.javaparser.repository.FileSystemAstRepository;
+
+/**
+ * GET /api/ast/generate-diagram 的 ETag 重新驗證：If-None-Match 相符時回應 304，
+ * 涉及的類別重新解析後快取失效並重新追蹤，內容相同時 ETag 不變
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class DiagramEtagControllerTest extends BaseTest {
+    private static final String ENTRY_POINT = "com.example.case2.LoginUser.getLevel1()";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DiagramCache diagramCache;
+
+    @Autowired
+    private FileSystemAstRepository repository;
+
+    @Test
+    void testIfNoneMatchReturnsNotModified() throws Exception {
+        diagramCache.clear();
+        MvcResult first = mockMvc.perform(diagramRequest())
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        long hits = diagramCache.getHitCount();
+        MvcResult second = mockMvc.perform(diagramRequest().header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andReturn();
+        assertEquals("", second.getResponse().getContentAsString());
+        assertEquals(hits + 1, diagramCache.getHitCount());
+
+        mockMvc.perform(diagramRequest().header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void testReparseInvalidatesCachedDiagram() throws Exception {
+        diagramCache.clear();
+        String etag = mockMvc.perform(diagramRequest())
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // 重新儲存進入點類別的 AST，等同重新解析
+        repository.save(repository.findByFqn("com.example.case2.LoginUser"));
+
+        long misses = diagramCache.getMissCount();
+        mockMvc.perform(diagramRequest().header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        assertEquals(misses + 1, diagramCache.getMissCount());
+    }
+
+    private static MockHttpServletRequestBuilder diagramRequest() {
+        return get("/api/ast/generate-diagram")
+                .param("entryPointMethodFqn", ENTRY_POINT)
+                .param("basePackages", "com.example")
+                .param("depth", "3");
+    }
+}
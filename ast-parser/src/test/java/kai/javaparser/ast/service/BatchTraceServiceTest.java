@@ -0,0 +1,62 @@
+package kai.javaparser.ast.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import kai.javaparser.BaseTest;
+import kai.javaparser.ast.model.BatchTraceItem;
+import kai.javaparser.ast.model.BatchTraceRequest;
+import kai.javaparser.ast.model.BatchTraceSummary;
+import kai.javaparser.diagram.DiagramService;
+import kai.javaparser.diagram.SequenceOutputConfig;
+
+/**
+ * 批次追蹤測試：共用子樹記憶的結果必須與逐一追蹤相同
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class BatchTraceServiceTest extends BaseTest {
+
+    @Autowired
+    private BatchTraceService batchTraceService;
+
+    @Autowired
+    private DiagramService diagramService;
+
+    @Test
+    void testBatchTraceMatchesSingleTrace() {
+        BatchTraceRequest request = new BatchTraceRequest();
+        request.setSelectorPackages(Set.of("com.example.case2"));
+        request.setBasePackages(Set.of("com.example"));
+        request.setDepth(4);
+        request.setParallelism(2);
+
+        List<String> entryPoints = batchTraceService.resolveEntryPoints(request);
+        assertTrue(entryPoints.contains("com.example.case2.LoginUser.getLevel1()"));
+
+        List<BatchTraceItem> items = new ArrayList<>();
+        BatchTraceSummary summary = batchTraceService.traceAll(request, items::add);
+
+        assertEquals(entryPoints.size(), summary.getTotalEntryPoints());
+        assertEquals(entryPoints.size(), items.size());
+        assertEquals(0, summary.getFailed());
+
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .basePackages(Set.of("com.example"))
+                .depth(4)
+                .build();
+        for (BatchTraceItem item : items) {
+            assertTrue(item.isSuccess());
+            assertFalse(item.getOutput().isEmpty());
+            assertEquals(diagramService.generateDiagram(item.getEntryPointMethodFqn(), config), item.getOutput());
+        }
+    }
+}
@@ -21,8 +21,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import kai.javaparser.BaseTest;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.SourceRange;
 import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionRequest;
 import kai.javaparser.ast.service.CodeExtractorService.CodeExtractionResult;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.service.SourceCodeWeaver;
+import kai.javaparser.service.SourceProvider;
 
 /**
  * 案例 #3 測試：能經由 Java Method 取出對應的程式碼，供AI Prompt使用
@@ -35,6 +40,15 @@ public class CodeExtractorServiceTest extends BaseTest {
     @Autowired
     private CodeExtractorService codeExtractorService;
 
+    @Autowired
+    private SourceCodeWeaver sourceCodeWeaver;
+
+    @Autowired
+    private SourceProvider sourceProvider;
+
+    @Autowired
+    private AstIndex astIndex;
+
     private Path astDirPath;
     private Path outputDir;
 
@@ -191,4 +205,207 @@ public class CodeExtractorServiceTest extends BaseTest {
         assertTrue(result.getMergedSourceCode().length() < 500,
                 "程式碼長度應該很少，實際長度: " + result.getMergedSourceCode().length());
     }
+
+    /**
+     * 測試預算模式：預算充足時不省略，預算緊時改為簽名或省略並回報
+     */
+    @Test
+    void testExtractCodeWithTokenBudget() {
+        String entryPointMethodFqn = "com.example.case2.LoginUser.getLevel1(com.example.case2.Company)";
+        Set<String> basePackages = new HashSet<>(Arrays.asList("com.example"));
+
+        CodeExtractionResult unlimited = codeExtractorService.extractCode(CodeExtractionRequest.builder()
+                .entryPointMethodFqn(entryPointMethodFqn)
+                .basePackages(basePackages)
+                .maxDepth(10)
+                .includeImports(true)
+                .includeComments(false)
+                .maxTokens(1_000_000)
+                .build());
+        assertNotNull(unlimited.getElidedMembers());
+        assertTrue(unlimited.getElidedMembers().isEmpty());
+        assertTrue(unlimited.getStubbedMembers().isEmpty());
+        assertTrue(unlimited.getTotalClasses() > 0);
+
+        int budget = unlimited.getEstimatedTokens() / 2;
+        CodeExtractionResult limited = codeExtractorService.extractCode(CodeExtractionRequest.builder()
+                .entryPointMethodFqn(entryPointMethodFqn)
+                .basePackages(basePackages)
+                .maxDepth(10)
+                .includeImports(true)
+                .includeComments(false)
+                .maxTokens(budget)
+                .build());
+
+        logger.info("預算 {} tokens，實際估算 {} tokens，簽名: {}，省略: {}", budget, limited.getEstimatedTokens(),
+                limited.getStubbedMembers(), limited.getElidedMembers());
+        assertTrue(limited.getEstimatedTokens() <= budget,
+                "輸出超出預算: " + limited.getEstimatedTokens() + " > " + budget);
+        assertTrue(limited.getEstimatedTokens() < unlimited.getEstimatedTokens());
+        assertFalse(limited.getStubbedMembers().isEmpty() && limited.getElidedMembers().isEmpty());
+    }
+
+    /**
+     * 測試相同請求的第二次提取直接由快取返回
+     */
+    @Test
+    void testExtractCodeUsesResultCache() {
+        CodeExtractionRequest request = CodeExtractionRequest.builder()
+                .entryPointMethodFqn("com.example.case2.LoginUser.getLevel1()")
+                .basePackages(new HashSet<>(Arrays.asList("com.example")))
+                .maxDepth(3)
+                .includeImports(false)
+                .includeComments(false)
+                .build();
+
+        // 第一次提取時可能才建立索引，提取期間版本變動的結果不會放入快取
+        codeExtractorService.extractCode(request);
+        CodeExtractionResult first = codeExtractorService.extractCode(request);
+        long hitsBefore = codeExtractorService.getCacheStats().getHits();
+        CodeExtractionResult second = codeExtractorService.extractCode(request);
+
+        assertEquals(first.getMergedSourceCode(), second.getMergedSourceCode());
+        assertEquals(hitsBefore + 1, codeExtractorService.getCacheStats().getHits());
+
+        // 快取返回複本，呼叫端修改結果不影響之後的命中
+        int involvedClasses = second.getInvolvedClasses().size();
+        second.getInvolvedClasses().clear();
+        CodeExtractionResult third = codeExtractorService.extractCode(request);
+        assertEquals(involvedClasses, third.getInvolvedClasses().size());
+    }
+
+    /**
+     * 測試串流提取：類別段落與一般提取相同，統計在寫入時累計
+     */
+    @Test
+    void testStreamExtractionMatchesMergedOutput() {
+        CodeExtractionRequest request = CodeExtractionRequest.builder()
+                .entryPointMethodFqn("com.example.case2.LoginUser.getLevel1()")
+                .basePackages(new HashSet<>(Arrays.asList("com.example")))
+                .maxDepth(4)
+                .includeImports(true)
+                .includeComments(true)
+                .build();
+
+        CodeExtractionResult merged = codeExtractorService.extractCode(request);
+        StringBuilder out = new StringBuilder();
+        CodeExtractionResult streamed = codeExtractorService.streamExtraction(request, out);
+
+        assertEquals(merged.getInvolvedClasses(), streamed.getInvolvedClasses());
+        assertEquals(merged.getTotalClasses(), streamed.getTotalClasses());
+        String mergedSections = merged.getMergedSourceCode()
+                .substring(merged.getMergedSourceCode().indexOf("\n## ", merged.getMergedSourceCode().indexOf("## 提取資訊") + 1));
+        assertTrue(out.toString().contains(mergedSections));
+        assertTrue(out.toString().contains("- **總類別數**: " + streamed.getTotalClasses()));
+    }
+
+    /**
+     * 測試依型別引用補充呼叫鏈以外的類別：回傳型別與欄位型別 Company 不在呼叫鏈上，但會被補上
+     */
+    @Test
+    void testExtractCodeWithTypeClosure() {
+        CodeExtractionRequest.CodeExtractionRequestBuilder builder = CodeExtractionRequest.builder()
+                .entryPointMethodFqn("com.example.case2.LoginUser.getCompany()")
+                .basePackages(new HashSet<>(Arrays.asList("com.example")))
+                .maxDepth(1)
+                .includeImports(false)
+                .includeComments(false);
+
+        CodeExtractionResult traced = codeExtractorService.extractCode(builder.build());
+        CodeExtractionResult closure = codeExtractorService.extractCode(builder.typeClosureDepth(1).build());
+        CodeExtractionResult limited = codeExtractorService.extractCode(builder.maxClosureClasses(1).build());
+
+        assertFalse(traced.getInvolvedClasses().contains("com.example.case2.Company"));
+        assertTrue(closure.getInvolvedClasses().contains("com.example.case2.Company"));
+        assertTrue(closure.getInvolvedClasses().containsAll(traced.getInvolvedClasses()));
+        assertEquals(traced.getTotalClasses() + 1, limited.getTotalClasses());
+    }
+
+    /**
+     * 測試只用 AST 中保存的成員原始碼編織，結果與從原始檔切割相同
+     */
+    @Test
+    void testStoredMemberSourceMatchesSourceSlicing() throws Exception {
+        astIndex.loadOrBuild();
+        String classFqn = "com.example.case2.LoginUser";
+        FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+        assertNotNull(astData);
+        assertTrue(astData.getSequenceDiagramData().hasCompressedSource());
+        assertTrue(sourceProvider.matchesParsedSource(astData));
+
+        SourceCodeWeaver.WeavingRules rules = new SourceCodeWeaver.WeavingRules() {
+            @Override
+            public boolean includeImports() {
+                return true;
+            }
+
+            @Override
+            public boolean includeComments() {
+                return false;
+            }
+
+            @Override
+            public boolean extractOnlyUsedMethods() {
+                return true;
+            }
+
+            @Override
+            public boolean includeConstructors() {
+                return true;
+            }
+
+            @Override
+            public Set<String> getUsedMethodNames() {
+                return Set.of("getLevel1");
+            }
+
+            @Override
+            public Set<String> getStubMethodNames() {
+                return Set.of("getCompany");
+            }
+
+            @Override
+            public String getClassFqn() {
+                return classFqn;
+            }
+        };
+
+        SourceCodeWeaver.WeavingResult stored = sourceCodeWeaver.weaveStoredMembers(astData, rules);
+        SourceCodeWeaver.WeavingResult sliced = sourceCodeWeaver.weave(sourceProvider.getSourceCode(classFqn),
+                astData, rules);
+
+        assertNotNull(stored);
+        assertTrue(stored.isSuccess());
+        assertEquals(sliced.getWovenSourceCode(), stored.getWovenSourceCode());
+    }
+
+    /**
+     * 測試不保留註解時依註解範圍移除：行尾與行內註解也會移除，程式碼行保持不變
+     */
+    @Test
+    void testExtractCodeWithoutCommentsUsesCommentRanges() throws Exception {
+        astIndex.loadOrBuild();
+        String classFqn = "com.example.case2.LoginUser";
+        FileAstData astData = astIndex.getAstDataByClassFqn(classFqn);
+        assertNotNull(astData);
+        assertTrue(astData.getSequenceDiagramData().hasCommentRanges());
+        assertFalse(astData.getSequenceDiagramData().getCommentRanges().isEmpty());
+
+        CodeExtractionRequest request = CodeExtractionRequest.builder()
+                .entryPointMethodFqn("com.example.case2.LoginUser.getLevel1(com.example.case2.Company)")
+                .astDir(astDirPath.toAbsolutePath().toString())
+                .basePackages(new HashSet<>(Arrays.asList("com.example")))
+                .maxDepth(1)
+                .includeImports(true)
+                .includeComments(false)
+                .build();
+        CodeExtractionResult result = codeExtractorService.extractCode(request);
+
+        String sourceCode = sourceProvider.getSourceCode(classFqn);
+        for (SourceRange comment : astData.getSequenceDiagramData().getCommentRanges()) {
+            String commentText = sourceCode.substring(comment.getStartPosition(), comment.getEndPosition());
+            assertFalse(result.getMergedSourceCode().contains(commentText), "註解未移除: " + commentText);
+        }
+        assertTrue(result.getMergedSourceCode().contains("public class LoginUser"));
+    }
 }
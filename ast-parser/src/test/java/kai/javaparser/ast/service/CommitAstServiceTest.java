@@ -0,0 +1,183 @@
+package kai.javaparser.ast.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.repository.FileSystemAstRepository;
+import kai.javaparser.service.FileSystemSourceProvider;
+import kai.javaparser.service.GitSourceProvider;
+import kai.javaparser.service.RoutingSourceProvider;
+import kai.javaparser.service.SourceTextCache;
+
+/**
+ * 依 commit 解析 AST：以暫存的 git 儲存庫建立兩個 commit，
+ * Service.java 內容不變但呼叫的 Helper.lookup() 回傳型別改變，blob 快取不能沿用舊的解析結果。
+ * 使用獨立的 repository 與索引，不影響其他測試共用的 AST
+ */
+public class CommitAstServiceTest {
+    private static final String SERVICE = "src/main/java/demo/Service.java";
+    private static final String HELPER = "src/main/java/demo/Helper.java";
+    private static final String UNRELATED = "src/main/java/demo/other/Unrelated.java";
+
+    @TempDir
+    Path tempDir;
+
+    private Path repoDir;
+    private Path astDir;
+    private FileSystemAstRepository repository;
+    private RoutingSourceProvider routingSourceProvider;
+    private CommitAstService commitAstService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repoDir = Files.createDirectories(tempDir.resolve("repo"));
+        astDir = tempDir.resolve("ast");
+
+        ObjectMapper mapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        repository = new FileSystemAstRepository(mapper);
+        AstIndex astIndex = new AstIndex(repository);
+        routingSourceProvider = new RoutingSourceProvider(
+                new FileSystemSourceProvider(astIndex, new SourceTextCache()), repository);
+        AppConfig appConfig = new AppConfig();
+        appConfig.setAstDir(astDir.toString());
+        commitAstService = new CommitAstService(repository, astIndex, routingSourceProvider, mapper, appConfig);
+
+        git("init", "-q");
+        write(SERVICE, "package demo;\n\npublic class Service {\n"
+                + "    public Object run() {\n"
+                + "        return new Helper().lookup();\n"
+                + "    }\n}\n");
+        write(HELPER, "package demo;\n\npublic class Helper {\n"
+                + "    public String lookup() {\n"
+                + "        return \"value\";\n"
+                + "    }\n}\n");
+        write(UNRELATED, "package demo.other;\n\npublic class Unrelated {\n"
+                + "    public int size() {\n"
+                + "        return 0;\n"
+                + "    }\n}\n");
+        commit("first");
+
+        write(HELPER, "package demo;\n\npublic class Helper {\n"
+                + "    public Integer lookup() {\n"
+                + "        return 1;\n"
+                + "    }\n}\n");
+        commit("second");
+    }
+
+    @AfterEach
+    void tearDown() {
+        commitAstService.shutdown();
+    }
+
+    @Test
+    void testUnchangedFileIsReparsedWhenDependencyChanges() throws IOException {
+        String first = commitAstService.parseCommit(repoDir.toString(), "HEAD~1", null, JavaCore.VERSION_17);
+        assertTrue(first.contains("Reused 0 files, parsed 3/3 files"), first);
+        assertEquals("java.lang.String", lookupReturnType());
+
+        // Service.java 的 blob 相同，但依賴的 Helper.java 變了，需要重新解析；Unrelated.java 直接沿用
+        String second = commitAstService.parseCommit(repoDir.toString(), "HEAD", null, JavaCore.VERSION_17);
+        assertTrue(second.contains("Reused 1 files, parsed 2/2 files"), second);
+        assertEquals("java.lang.Integer", lookupReturnType());
+        assertTrue(routingSourceProvider.current() instanceof GitSourceProvider);
+
+        // 已解析的 commit 直接載入
+        String again = commitAstService.parseCommit(repoDir.toString(), "HEAD~1", null, JavaCore.VERSION_17);
+        assertTrue(again.contains("already parsed"), again);
+        assertEquals("java.lang.String", lookupReturnType());
+    }
+
+    @Test
+    void testBlobCacheReusedWhenDependenciesUnchanged() throws IOException {
+        commitAstService.parseCommit(repoDir.toString(), "HEAD", null, JavaCore.VERSION_17);
+        deleteRecursively(astDir.resolve("commits"));
+
+        // 同一個 commit 的所有檔案與依賴都沒有變動，全部沿用
+        String reparsed = commitAstService.parseCommit(repoDir.toString(), "HEAD", null, JavaCore.VERSION_17);
+        assertTrue(reparsed.contains("Reused 3 files, parsed 0/0 files"), reparsed);
+        assertEquals("java.lang.Integer", lookupReturnType());
+
+        // 解析環境不同時不沿用
+        deleteRecursively(astDir.resolve("commits"));
+        String otherLevel = commitAstService.parseCommit(repoDir.toString(), "HEAD", null, JavaCore.VERSION_11);
+        assertTrue(otherLevel.contains("Reused 0 files, parsed 3/3 files"), otherLevel);
+    }
+
+    private String lookupReturnType() {
+        FileAstData astData = repository.findByFqn("demo.Service");
+        assertNotNull(astData);
+        for (MethodGroup methodGroup : astData.getSequenceDiagramData().getMethodGroups()) {
+            if (methodGroup.getInteractions() == null) {
+                continue;
+            }
+            for (InteractionModel interaction : methodGroup.getInteractions()) {
+                if ("lookup".equals(interaction.getMethodName())) {
+                    return interaction.getReturnValue();
+                }
+            }
+        }
+        throw new AssertionError("找不到 lookup 呼叫");
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = repoDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private void commit(String message) throws IOException {
+        git("add", "-A");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+    }
+
+    private void git(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(repoDir.toFile()).redirectErrorStream(true).start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor(), output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
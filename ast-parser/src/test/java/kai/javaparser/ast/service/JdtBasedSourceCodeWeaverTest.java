@@ -0,0 +1,204 @@
+package kai.javaparser.ast.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import kai.javaparser.ast.java2ast.JavaToAstFile;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.service.SourceCodeWeaver.WeavingResult;
+import kai.javaparser.service.SourceCodeWeaver.WeavingRules;
+
+/**
+ * 依字元範圍編織列舉、record 與含巢狀類別的類別
+ */
+public class JdtBasedSourceCodeWeaverTest {
+
+    @TempDir
+    Path sourceRoot;
+
+    private final JdtBasedSourceCodeWeaver weaver = new JdtBasedSourceCodeWeaver(null);
+
+    @Test
+    void testWeaveEnumKeepsConstants() throws IOException {
+        String source = "package demo;\n"
+                + "\n"
+                + "public enum Color implements java.io.Serializable {\n"
+                + "    RED(1),\n"
+                + "    GREEN(2), // 行尾註解\n"
+                + "    ;\n"
+                + "\n"
+                + "    private final int code;\n"
+                + "\n"
+                + "    Color(int code) {\n"
+                + "        this.code = code;\n"
+                + "    }\n"
+                + "\n"
+                + "    public int code() {\n"
+                + "        return code;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String unused() {\n"
+                + "        return name();\n"
+                + "    }\n"
+                + "}\n";
+        FileAstData astData = parse("Color", source);
+        assertEquals("demo.Color", astData.getSequenceDiagramData().getClassFqn());
+        assertEquals(List.of("java.io.Serializable"),
+                astData.getSequenceDiagramData().getImplementsInterfaceFqns());
+
+        String woven = weave(source, astData, "demo.Color", Set.of("code"));
+
+        assertTrue(woven.contains("public enum Color implements java.io.Serializable {"));
+        assertTrue(woven.contains("RED(1),"));
+        assertTrue(woven.contains("GREEN(2),"));
+        assertTrue(woven.contains("    ;"));
+        assertTrue(woven.contains("private final int code;"));
+        assertTrue(woven.contains("Color(int code) {"));
+        assertTrue(woven.contains("public int code() {"));
+        assertFalse(woven.contains("unused"));
+    }
+
+    @Test
+    void testWeaveRecordKeepsComponents() throws IOException {
+        String source = "package demo;\n"
+                + "\n"
+                + "public record Point(int x,\n"
+                + "        int y) {\n"
+                + "    static final Point ORIGIN = new Point(0, 0);\n"
+                + "\n"
+                + "    public Point {\n"
+                + "        if (x < 0) {\n"
+                + "            throw new IllegalArgumentException();\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    public int sum() {\n"
+                + "        return x + y;\n"
+                + "    }\n"
+                + "\n"
+                + "    public int unused() {\n"
+                + "        return x;\n"
+                + "    }\n"
+                + "}\n";
+        FileAstData astData = parse("Point", source);
+        assertEquals("demo.Point", astData.getSequenceDiagramData().getClassFqn());
+
+        String woven = weave(source, astData, "demo.Point", Set.of("sum"));
+
+        assertTrue(woven.contains("public record Point(int x,\n        int y) {"));
+        assertTrue(woven.contains("static final Point ORIGIN"));
+        assertTrue(woven.contains("public Point {"));
+        assertTrue(woven.contains("public int sum() {"));
+        assertFalse(woven.contains("unused"));
+    }
+
+    @Test
+    void testWeaveNestedClassOutputOnce() throws IOException {
+        String source = "package demo;\n"
+                + "\n"
+                + "public class Outer {\n"
+                + "    private int total;\n"
+                + "\n"
+                + "    public int run() {\n"
+                + "        return new Inner().helper() + total;\n"
+                + "    }\n"
+                + "\n"
+                + "    static class Inner {\n"
+                + "        int helper() {\n"
+                + "            return 1;\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    public void unused() {\n"
+                + "    }\n"
+                + "}\n";
+        FileAstData astData = parse("Outer", source);
+
+        String woven = weave(source, astData, "demo.Outer", Set.of("run", "helper"));
+
+        assertEquals(1, occurrences(woven, "static class Inner {"));
+        assertEquals(1, occurrences(woven, "int helper() {"));
+        assertTrue(woven.indexOf("int helper() {") > woven.indexOf("static class Inner {"));
+        assertTrue(woven.contains("public int run() {"));
+        assertFalse(woven.contains("unused"));
+    }
+
+    private FileAstData parse(String className, String source) throws IOException {
+        Path file = sourceRoot.resolve("demo").resolve(className + ".java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        FileAstData astData = new JavaToAstFile(true).parseJavaFile(file,
+                new String[] { sourceRoot.toString() }, new String[0], JavaCore.VERSION_17);
+        assertNotNull(astData);
+        assertTrue(astData.getSequenceDiagramData().hasSourceRanges());
+        return astData;
+    }
+
+    /**
+     * 依原始碼切割編織，並確認以保存的成員原始碼編織的結果相同
+     */
+    private String weave(String source, FileAstData astData, String classFqn, Set<String> usedMethodNames) {
+        WeavingRules rules = rules(classFqn, usedMethodNames);
+        WeavingResult sliced = weaver.weave(source, astData, rules);
+        assertTrue(sliced.isSuccess(), sliced.getErrorMessage());
+
+        WeavingResult stored = weaver.weaveStoredMembers(astData, rules);
+        assertNotNull(stored);
+        assertEquals(sliced.getWovenSourceCode(), stored.getWovenSourceCode());
+        return sliced.getWovenSourceCode();
+    }
+
+    private static int occurrences(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + part.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static WeavingRules rules(String classFqn, Set<String> usedMethodNames) {
+        return new WeavingRules() {
+            @Override
+            public boolean includeImports() {
+                return true;
+            }
+
+            @Override
+            public boolean includeComments() {
+                return true;
+            }
+
+            @Override
+            public boolean extractOnlyUsedMethods() {
+                return true;
+            }
+
+            @Override
+            public boolean includeConstructors() {
+                return true;
+            }
+
+            @Override
+            public Set<String> getUsedMethodNames() {
+                return usedMethodNames;
+            }
+
+            @Override
+            public String getClassFqn() {
+                return classFqn;
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package kai.javaparser.ast.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import kai.javaparser.BaseTest;
+import kai.javaparser.ast.model.ReverseTraceResult;
+import kai.javaparser.ast.model.ReverseTraceResult.CallerNode;
+
+/**
+ * 反向追蹤測試：找出呼叫指定方法的所有上層方法。
+ * com.example.reverse 為菱形呼叫圖：Facade.run 經由 OrderService.place（再經 find 與 findCached）
+ * 與 ReportService.build（共用 find）到達 Repository.load
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class ReverseTraceServiceTest extends BaseTest {
+    private static final String REVERSE = "com.example.reverse.";
+    private static final String TARGET = REVERSE + "Repository.load(String)";
+
+    @Autowired
+    private ReverseTraceService reverseTraceService;
+
+    @Test
+    void testTraceCallers() {
+        ReverseTraceResult result = reverseTraceService.traceCallers(
+                "com.example.case2.LoginUser.getLevel3()", 5, Set.of("com.example"));
+
+        assertNotNull(result);
+        assertEquals("com.example.case2.LoginUser.getLevel3", result.getTargetMethod());
+
+        Map<String, CallerNode> callers = result.getCallers().stream()
+                .collect(Collectors.toMap(CallerNode::getMethodKey, Function.identity()));
+
+        CallerNode level2 = callers.get("com.example.case2.LoginUser.getLevel2");
+        assertNotNull(level2);
+        assertEquals(1, level2.getLevel());
+        assertTrue(level2.getCallees().contains("com.example.case2.LoginUser.getLevel3"));
+
+        CallerNode level1 = callers.get("com.example.case2.LoginUser.getLevel1");
+        assertNotNull(level1);
+        assertEquals(2, level1.getLevel());
+        assertEquals(1, level1.getPathCount());
+    }
+
+    @Test
+    void testDiamondPathCounts() {
+        ReverseTraceResult result = reverseTraceService.traceCallers(TARGET, 5, Set.of("com.example.reverse"));
+        Map<String, CallerNode> callers = byMethodKey(result);
+
+        // 共用的 find 只出現一次
+        assertEquals(5, result.getCallers().size());
+        assertCaller(callers, "Lookup.find", 1, 1);
+        assertCaller(callers, "Lookup.findCached", 1, 1);
+        assertCaller(callers, "OrderService.place", 2, 2);
+        assertCaller(callers, "ReportService.build", 2, 1);
+        assertCaller(callers, "Facade.run", 3, 3);
+        assertEquals(List.of(REVERSE + "Lookup.find", REVERSE + "Lookup.findCached"),
+                callers.get(REVERSE + "OrderService.place").getCallees());
+
+        // 只有最上層的 Facade.run 是入口點，未達層數上限時不標示截斷
+        assertEquals(List.of(REVERSE + "Facade.run"), result.getEntryPoints());
+        assertEquals(3, result.getTotalPaths());
+        for (CallerNode node : result.getCallers()) {
+            assertEquals(node.getMethodKey().equals(REVERSE + "Facade.run"), node.isEntryPoint(), node.getMethodKey());
+            assertFalse(node.isTruncated(), node.getMethodKey());
+        }
+    }
+
+    @Test
+    void testMaxLevelsTruncates() {
+        ReverseTraceResult result = reverseTraceService.traceCallers(TARGET, 2, Set.of("com.example.reverse"));
+        Map<String, CallerNode> callers = byMethodKey(result);
+
+        // 第 3 層的 Facade.run 不列入，第 2 層還有呼叫者的方法標示截斷
+        assertEquals(4, result.getCallers().size());
+        assertFalse(callers.containsKey(REVERSE + "Facade.run"));
+        assertTrue(callers.get(REVERSE + "OrderService.place").isTruncated());
+        assertTrue(callers.get(REVERSE + "ReportService.build").isTruncated());
+        assertFalse(callers.get(REVERSE + "Lookup.find").isTruncated());
+        assertFalse(callers.get(REVERSE + "Lookup.findCached").isTruncated());
+
+        // 截斷的方法不是入口點
+        assertTrue(result.getEntryPoints().isEmpty());
+        assertEquals(0, result.getTotalPaths());
+        assertTrue(result.getCallers().stream().noneMatch(CallerNode::isEntryPoint));
+    }
+
+    private static Map<String, CallerNode> byMethodKey(ReverseTraceResult result) {
+        return result.getCallers().stream()
+                .collect(Collectors.toMap(CallerNode::getMethodKey, Function.identity()));
+    }
+
+    private static void assertCaller(Map<String, CallerNode> callers, String method, int level, long pathCount) {
+        CallerNode node = callers.get(REVERSE + method);
+        assertNotNull(node, method);
+        assertEquals(level, node.getLevel(), method);
+        assertEquals(pathCount, node.getPathCount(), method);
+    }
+}
@@ -0,0 +1,192 @@
+package kai.javaparser.ast.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.BaseTest;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy;
+import kai.javaparser.diagram.dispatch.DefaultDispatchStrategy.Mode;
+import kai.javaparser.diagram.page.CallTreePageService;
+
+/**
+ * 多型分派測試：CheckoutService 透過 PaymentGateway（兩個實作）與 ReceiptPrinter（一個實作）呼叫，
+ * 依各分派模式檢查展開了哪些實作
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class SequenceTraceServiceTest extends BaseTest {
+    private static final String ENTRY_POINT = "com.example.dispatch.CheckoutService.checkout(int)";
+    private static final String GATEWAY = "com.example.dispatch.PaymentGateway";
+    private static final String PRINTER = "com.example.dispatch.ReceiptPrinter";
+
+    @Autowired
+    private SequenceTraceService sequenceTraceService;
+
+    @Autowired
+    private CallTreePageService callTreePageService;
+
+    @Test
+    void testDispatchNone() {
+        TraceResult result = trace(new DefaultDispatchStrategy(Mode.NONE));
+
+        assertEquals(List.of(), implementations(result, GATEWAY));
+        assertEquals(List.of(), implementations(result, PRINTER));
+    }
+
+    @Test
+    void testDispatchSingleImplementation() {
+        TraceResult result = trace(new DefaultDispatchStrategy(Mode.SINGLE_IMPLEMENTATION));
+
+        // 兩個實作時不展開，唯一實作時展開
+        assertEquals(List.of(), implementations(result, GATEWAY));
+        assertEquals(List.of("com.example.dispatch.PdfReceiptPrinter"), implementations(result, PRINTER));
+    }
+
+    @Test
+    void testDispatchAllImplementations() {
+        TraceResult result = trace(new DefaultDispatchStrategy(Mode.ALL_IMPLEMENTATIONS));
+
+        assertEquals(List.of("com.example.dispatch.CardGateway", "com.example.dispatch.TransferGateway"),
+                implementations(result, GATEWAY));
+        assertEquals(List.of("com.example.dispatch.PdfReceiptPrinter"), implementations(result, PRINTER));
+
+        // 實作的內容也被追蹤
+        InteractionModel card = dispatchCall(result, GATEWAY, "com.example.dispatch.CardGateway");
+        assertTrue(children(card).stream()
+                .anyMatch(node -> node instanceof InteractionModel
+                        && "com.example.dispatch.AuditLog".equals(((InteractionModel) node).getCallee())));
+    }
+
+    @Test
+    void testDispatchAllImplementationsWithPackagePrefix() {
+        TraceResult result = trace(new DefaultDispatchStrategy(Mode.ALL_IMPLEMENTATIONS,
+                Set.of("com.example.dispatch.Card", "com.example.dispatch.Pdf")));
+
+        assertEquals(List.of("com.example.dispatch.CardGateway"), implementations(result, GATEWAY));
+        assertEquals(List.of("com.example.dispatch.PdfReceiptPrinter"), implementations(result, PRINTER));
+    }
+
+    /**
+     * 分頁瀏覽逐層展開實作呼叫，得到的呼叫數與完整追蹤相同；實作呼叫不佔深度，深度剛好用完時也不會少一層。
+     * 同一個收合呼叫重複展開時沿用相同的代號
+     */
+    @Test
+    void testPagedDispatchMatchesFullTrace() throws IOException {
+        for (int depth = 2; depth <= 4; depth++) {
+            SequenceOutputConfig config = config(new DefaultDispatchStrategy(Mode.ALL_IMPLEMENTATIONS), depth);
+            int fullCalls = countCalls(sequenceTraceService.trace(ENTRY_POINT, config).getSequenceNodes());
+
+            CallTreePageService.Page page = callTreePageService.open(ENTRY_POINT, config, 1);
+            ObjectMapper mapper = new ObjectMapper();
+            Deque<Integer> handles = new ArrayDeque<>();
+            int pagedCalls = countCalls(mapper.readTree(page.getTree()).get("root"), handles) - 1;
+            while (!handles.isEmpty()) {
+                int handle = handles.pop();
+                CallTreePageService.Page expanded = callTreePageService.expand(page.getSessionId(), handle, 1);
+                assertNotNull(expanded);
+                assertEquals(expanded.getTree(),
+                        callTreePageService.expand(page.getSessionId(), handle, 1).getTree());
+                pagedCalls += countCalls(mapper.readTree(expanded.getTree()).get("root"), handles) - 1;
+            }
+            callTreePageService.close(page.getSessionId());
+
+            assertEquals(fullCalls, pagedCalls, "depth " + depth);
+        }
+    }
+
+    private TraceResult trace(DefaultDispatchStrategy dispatchStrategy) {
+        return sequenceTraceService.trace(ENTRY_POINT, config(dispatchStrategy, 4));
+    }
+
+    private static SequenceOutputConfig config(DefaultDispatchStrategy dispatchStrategy, int depth) {
+        return SequenceOutputConfig.builder()
+                .depth(depth)
+                .basePackages(Set.of("com.example"))
+                .dispatchStrategy(dispatchStrategy)
+                .build();
+    }
+
+    /**
+     * 呼叫樹中的呼叫數（含實作呼叫）
+     */
+    private static int countCalls(List<DiagramNode> nodes) {
+        int count = 0;
+        for (DiagramNode node : nodes) {
+            if (node instanceof InteractionModel) {
+                count += 1 + countCalls(children((InteractionModel) node));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 分頁 JSON 中以 node 為根的呼叫數（含 node），並收集收合呼叫的代號
+     */
+    private static int countCalls(JsonNode node, Deque<Integer> handles) {
+        if (node.has("expand")) {
+            handles.add(node.get("expand").asInt());
+        }
+        int count = "call".equals(node.get("type").asText()) ? 1 : 0;
+        if (node.has("children")) {
+            for (JsonNode child : node.get("children")) {
+                count += countCalls(child, handles);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 呼叫宣告型別後展開的實作類別，依出現順序
+     */
+    private static List<String> implementations(TraceResult result, String declaredType) {
+        List<String> implementations = new ArrayList<>();
+        for (DiagramNode node : children(interfaceCall(result, declaredType))) {
+            InteractionModel dispatchCall = (InteractionModel) node;
+            assertEquals(declaredType, dispatchCall.getCaller());
+            implementations.add(dispatchCall.getCallee());
+        }
+        return implementations;
+    }
+
+    private static InteractionModel dispatchCall(TraceResult result, String declaredType, String implementation) {
+        for (DiagramNode node : children(interfaceCall(result, declaredType))) {
+            if (implementation.equals(((InteractionModel) node).getCallee())) {
+                return (InteractionModel) node;
+            }
+        }
+        throw new AssertionError("找不到實作 " + implementation);
+    }
+
+    private static List<DiagramNode> children(InteractionModel interaction) {
+        return interaction.getInternalCalls() != null ? interaction.getInternalCalls() : List.of();
+    }
+
+    private static InteractionModel interfaceCall(TraceResult result, String declaredType) {
+        InteractionModel found = null;
+        for (DiagramNode node : result.getSequenceNodes()) {
+            if (node instanceof InteractionModel && declaredType.equals(((InteractionModel) node).getCallee())) {
+                found = (InteractionModel) node;
+            }
+        }
+        assertNotNull(found, "找不到對 " + declaredType + " 的呼叫");
+        return found;
+    }
+}
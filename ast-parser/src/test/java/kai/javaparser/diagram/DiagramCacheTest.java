@@ -0,0 +1,126 @@
+package kai.javaparser.diagram;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.ast.java2ast.JavaToAstFile;
+import kai.javaparser.ast.model.FileAstData;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.repository.FileSystemAstRepository;
+
+/**
+ * 圖表快取的失效判斷：涉及的類別、其父型別與（啟用分派時）任何類別重新解析後不再命中
+ */
+public class DiagramCacheTest {
+    private static final String KEY = "demo.Child.run()|MERMAID";
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceRoot;
+    private FileSystemAstRepository repository;
+    private DiagramCache diagramCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceRoot = Files.createDirectories(tempDir.resolve("src"));
+        ObjectMapper mapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        repository = new FileSystemAstRepository(mapper);
+        repository.initialize(tempDir.resolve("ast"));
+        diagramCache = new DiagramCache(new AstIndex(repository), new AppConfig());
+
+        parse("Base", "package demo;\n\npublic class Base implements Runnable {\n"
+                + "    public void run() {\n"
+                + "    }\n}\n");
+        parse("Child", "package demo;\n\npublic class Child extends Base {\n"
+                + "    public void start() {\n"
+                + "        run();\n"
+                + "    }\n}\n");
+        parse("Unrelated", "package demo;\n\npublic class Unrelated {\n}\n");
+    }
+
+    @Test
+    void testHitUntilInvolvedClassReparsed() throws IOException {
+        DiagramCache.RenderedDiagram diagram = put(false);
+        assertSame(diagram, diagramCache.get(KEY));
+
+        // 與呼叫樹無關的類別重新解析不影響快取
+        parse("Unrelated", "package demo;\n\npublic class Unrelated {\n    int size;\n}\n");
+        assertSame(diagram, diagramCache.get(KEY));
+
+        parse("Child", "package demo;\n\npublic class Child extends Base {\n"
+                + "    public void start() {\n"
+                + "    }\n}\n");
+        assertNull(diagramCache.get(KEY));
+    }
+
+    @Test
+    void testSupertypeReparseInvalidates() throws IOException {
+        put(false);
+        assertNotNull(diagramCache.get(KEY));
+
+        // 呼叫樹只含 Child，但繼承的 run() 來自 Base
+        parse("Base", "package demo;\n\npublic class Base implements Runnable {\n"
+                + "    public void run() {\n"
+                + "        System.gc();\n"
+                + "    }\n}\n");
+        assertNull(diagramCache.get(KEY));
+    }
+
+    @Test
+    void testDispatchEnabledInvalidatesOnAnyReparse() throws IOException {
+        put(true);
+        assertNotNull(diagramCache.get(KEY));
+
+        // 任何類別都可能改為實作呼叫樹中的介面
+        parse("Unrelated", "package demo;\n\npublic class Unrelated implements Runnable {\n"
+                + "    public void run() {\n"
+                + "    }\n}\n");
+        assertNull(diagramCache.get(KEY));
+    }
+
+    @Test
+    void testReinitializeInvalidates() {
+        put(false);
+        assertNotNull(diagramCache.get(KEY));
+
+        repository.initialize(tempDir.resolve("other-ast"));
+        assertNull(diagramCache.get(KEY));
+    }
+
+    private DiagramCache.RenderedDiagram put(boolean dispatchEnabled) {
+        DiagramCache.RenderedDiagram diagram = new DiagramCache.RenderedDiagram("sequenceDiagram\n");
+        diagramCache.put(KEY, diagram, Set.of("demo.Child"), dispatchEnabled);
+        return diagram;
+    }
+
+    private void parse(String className, String source) throws IOException {
+        Path file = sourceRoot.resolve("demo").resolve(className + ".java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        FileAstData astData = new JavaToAstFile(false).parseJavaFile(file,
+                new String[] { sourceRoot.toString() }, new String[0], JavaCore.VERSION_17);
+        assertNotNull(astData);
+        repository.save(astData);
+    }
+}
@@ -0,0 +1,103 @@
+package kai.javaparser.diagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import kai.javaparser.BaseTest;
+import kai.javaparser.ast.model.DiagramNode;
+import kai.javaparser.ast.model.InteractionModel;
+import kai.javaparser.ast.model.MethodGroup;
+import kai.javaparser.ast.model.NoteNode;
+import kai.javaparser.ast.model.SequenceDiagramData;
+import kai.javaparser.ast.model.TraceResult;
+import kai.javaparser.ast.service.SequenceTraceService;
+import kai.javaparser.diagram.idx.AstIndex;
+
+/**
+ * private 輔助方法折疊：InvoiceService.issue() 呼叫 private 的 total() → withTax() 鏈，
+ * 以及同時有 public 與 private 多載的 format()
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class DiagramFolderTest extends BaseTest {
+    private static final String SERVICE = "com.example.fold.InvoiceService";
+    private static final String AUDIT_TRAIL = "com.example.fold.AuditTrail";
+
+    @Autowired
+    private SequenceTraceService sequenceTraceService;
+
+    @Autowired
+    private AstIndex astIndex;
+
+    @Test
+    void testPrivateMethodRecorded() {
+        SequenceDiagramData data = astIndex.getAstDataByClassFqn(SERVICE).getSequenceDiagramData();
+
+        assertFalse(data.findMethodGroup("issue").isPrivateMethod());
+        assertTrue(data.findMethodGroup("total").isPrivateMethod());
+        assertTrue(data.findMethodGroup("withTax").isPrivateMethod());
+
+        List<Boolean> formatPrivate = new ArrayList<>();
+        for (MethodGroup methodGroup : data.findMethodGroups("format")) {
+            formatPrivate.add(methodGroup.isPrivateMethod());
+        }
+        formatPrivate.sort(null);
+        assertEquals(List.of(false, true), formatPrivate);
+    }
+
+    @Test
+    void testFoldPrivateHelperChain() {
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .depth(4)
+                .basePackages(Set.of("com.example"))
+                .foldPrivateHelpers(true)
+                .build();
+        TraceResult traceResult = sequenceTraceService.trace(SERVICE + ".issue(int)", config);
+        List<DiagramNode> nodes = new DiagramFolder(config, astIndex).fold(traceResult).getSequenceNodes();
+
+        // total() → withTax() 折疊為一個註解，鏈中對 AuditTrail 的呼叫上移到 issue()
+        NoteNode note = null;
+        List<String> hoisted = new ArrayList<>();
+        List<String> calls = new ArrayList<>();
+        for (DiagramNode node : nodes) {
+            if (node instanceof NoteNode) {
+                note = (NoteNode) node;
+            } else if (node instanceof InteractionModel) {
+                InteractionModel interaction = (InteractionModel) node;
+                calls.add(interaction.getMethodName());
+                if (AUDIT_TRAIL.equals(interaction.getCallee())) {
+                    hoisted.add(interaction.getMethodName());
+                }
+            }
+        }
+        assertEquals("private total → withTax", note != null ? note.getText() : null, nodes.toString());
+        assertEquals(List.of("record", "record"), hoisted);
+
+        // format 有 public 多載，無法確定呼叫的是哪一個，不折疊
+        assertTrue(calls.contains("format"), calls.toString());
+        assertFalse(calls.contains("total"), calls.toString());
+        assertFalse(calls.contains("withTax"), calls.toString());
+    }
+
+    @Test
+    void testFoldDisabledKeepsHelpers() {
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .depth(4)
+                .basePackages(Set.of("com.example"))
+                .build();
+        TraceResult traceResult = sequenceTraceService.trace(SERVICE + ".issue(int)", config);
+        List<DiagramNode> nodes = new DiagramFolder(config, astIndex).fold(traceResult).getSequenceNodes();
+
+        assertTrue(nodes.stream().noneMatch(node -> node instanceof NoteNode), nodes.toString());
+        assertTrue(nodes.stream().anyMatch(node -> node instanceof InteractionModel
+                && "total".equals(((InteractionModel) node).getMethodName())), nodes.toString());
+    }
+}
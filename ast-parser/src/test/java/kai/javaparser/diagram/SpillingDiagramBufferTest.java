@@ -0,0 +1,44 @@
+package kai.javaparser.diagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 有上限的圖表緩衝區：上限以內留在記憶體中，超過時先寫出已緩衝的內容再直接寫出
+ */
+public class SpillingDiagramBufferTest {
+
+    @Test
+    void testWithinLimitStaysBuffered() throws IOException {
+        SpillingDiagramBuffer buffer = new SpillingDiagramBuffer(8, () -> {
+            throw new AssertionError("沒有超過上限");
+        });
+        buffer.append("sequence").append("", 0, 0);
+
+        assertFalse(buffer.isSpilled());
+        assertEquals("sequence", buffer.toString());
+    }
+
+    @Test
+    void testOverLimitWritesThrough() throws IOException {
+        StringBuilder out = new StringBuilder();
+        AtomicInteger opened = new AtomicInteger();
+        SpillingDiagramBuffer buffer = new SpillingDiagramBuffer(8, () -> {
+            opened.incrementAndGet();
+            return out;
+        });
+        buffer.append("sequence").append('D').append("iagram\n", 0, 6).append('\n');
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(1, opened.get());
+        assertEquals("sequenceDiagram\n", out.toString());
+        assertThrows(IllegalStateException.class, buffer::toString);
+    }
+}
@@ -0,0 +1,161 @@
+package kai.javaparser.diagram.diff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kai.javaparser.ast.service.CommitAstService;
+import kai.javaparser.configuration.AppConfig;
+import kai.javaparser.diagram.DiagramFormat;
+import kai.javaparser.diagram.SequenceOutputConfig;
+import kai.javaparser.diagram.idx.AstIndex;
+import kai.javaparser.repository.FileSystemAstRepository;
+import kai.javaparser.service.FileSystemSourceProvider;
+import kai.javaparser.service.RoutingSourceProvider;
+import kai.javaparser.service.SourceTextCache;
+
+/**
+ * 版本比較：兩個 commit 各自載入獨立的 AST 索引追蹤，目前使用中的 AST 與原始碼來源不受影響
+ */
+public class DiagramDiffServiceTest {
+    private static final String SERVICE = "src/main/java/demo/Service.java";
+    private static final String HELPER = "src/main/java/demo/Helper.java";
+
+    @TempDir
+    Path tempDir;
+
+    private Path repoDir;
+    private FileSystemAstRepository repository;
+    private RoutingSourceProvider routingSourceProvider;
+    private FileSystemSourceProvider fileSystemSourceProvider;
+    private CommitAstService commitAstService;
+    private DiagramDiffService diagramDiffService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repoDir = Files.createDirectories(tempDir.resolve("repo"));
+
+        ObjectMapper mapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        repository = new FileSystemAstRepository(mapper);
+        AstIndex astIndex = new AstIndex(repository);
+        fileSystemSourceProvider = new FileSystemSourceProvider(astIndex, new SourceTextCache());
+        routingSourceProvider = new RoutingSourceProvider(fileSystemSourceProvider, repository);
+        AppConfig appConfig = new AppConfig();
+        appConfig.setAstDir(tempDir.resolve("ast").toString());
+        commitAstService = new CommitAstService(repository, astIndex, routingSourceProvider, mapper, appConfig);
+        diagramDiffService = new DiagramDiffService(commitAstService);
+
+        git("init", "-q");
+        write(HELPER, "package demo;\n\npublic class Helper {\n"
+                + "    public int load() {\n"
+                + "        return 1;\n"
+                + "    }\n\n"
+                + "    public int fetch() {\n"
+                + "        return 2;\n"
+                + "    }\n}\n");
+        write(SERVICE, "package demo;\n\npublic class Service {\n"
+                + "    public int run() {\n"
+                + "        return new Helper().load();\n"
+                + "    }\n}\n");
+        commit("first");
+
+        write(SERVICE, "package demo;\n\npublic class Service {\n"
+                + "    public int run() {\n"
+                + "        return new Helper().fetch();\n"
+                + "    }\n}\n");
+        commit("second");
+    }
+
+    @AfterEach
+    void tearDown() {
+        commitAstService.shutdown();
+    }
+
+    @Test
+    void testDiffTracesEachRevisionWithoutSwitchingCurrentAst() throws IOException {
+        long version = repository.getVersion();
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .depth(3)
+                .basePackages(Set.of("demo"))
+                .build();
+
+        DiagramDiffService.DiffDiagram diagram = diagramDiffService.generateDiffDiagram(repoDir.toString(),
+                "HEAD~1", null, "HEAD", null, JavaCore.VERSION_17, "demo.Service.run()", config,
+                DiagramFormat.JSON);
+
+        DiffResult diffResult = diagram.getDiffResult();
+        assertEquals(1, diffResult.getRemoved(), diffResult.toString());
+        assertEquals(1, diffResult.getAdded(), diffResult.toString());
+        assertTrue(diagram.getContent().contains("\"diff\":\"removed\""), diagram.getContent());
+        assertTrue(diagram.getContent().contains("\"diff\":\"added\""), diagram.getContent());
+        assertTrue(diagram.getContent().contains("load"), diagram.getContent());
+        assertTrue(diagram.getContent().contains("fetch"), diagram.getContent());
+
+        // 目前使用中的 AST 與原始碼來源沒有切換
+        assertEquals(version, repository.getVersion());
+        assertSame(fileSystemSourceProvider, routingSourceProvider.current());
+    }
+
+    @Test
+    void testSameRevisionHasNoChanges() throws IOException {
+        SequenceOutputConfig config = SequenceOutputConfig.builder()
+                .depth(3)
+                .basePackages(Set.of("demo"))
+                .build();
+
+        DiagramDiffService.DiffDiagram diagram = diagramDiffService.generateDiffDiagram(repoDir.toString(),
+                "HEAD", null, "HEAD", null, JavaCore.VERSION_17, "demo.Service.run()", config,
+                DiagramFormat.MERMAID);
+
+        assertFalse(diagram.getDiffResult().hasChanges(), diagram.getDiffResult().toString());
+        assertTrue(diagram.getContent().contains("fetch"), diagram.getContent());
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = repoDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private void commit(String message) throws IOException {
+        git("add", "-A");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+    }
+
+    private void git(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(repoDir.toFile()).redirectErrorStream(true).start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor(), output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package kai.javaparser.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SourceTextCache 的單元測試：一般讀取與記憶體映射讀取的解碼結果一致
+ */
+public class SourceTextCacheTest {
+
+    private static final String SOURCE = "package demo;\n\n// 中文註解\npublic class Demo {\n}\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadAndMappedReadDecodeTheSame() throws IOException {
+        Path file = tempDir.resolve("Demo.java");
+        Files.writeString(file, SOURCE);
+
+        SourceTextCache readCache = new SourceTextCache(SourceTextCache.DEFAULT_MAX_CHARS, Long.MAX_VALUE);
+        SourceTextCache mappedCache = new SourceTextCache(SourceTextCache.DEFAULT_MAX_CHARS, 0);
+
+        assertEquals(SOURCE, readCache.read(file));
+        assertEquals(SOURCE, mappedCache.read(file));
+    }
+
+    @Test
+    void testMalformedUtf8FailsOnBothPaths() throws IOException {
+        Path file = tempDir.resolve("Broken.java");
+        byte[] valid = SOURCE.getBytes(StandardCharsets.UTF_8);
+        byte[] broken = new byte[valid.length + 2];
+        System.arraycopy(valid, 0, broken, 0, valid.length);
+        // 0xC3 之後應接續位元組，0x28 不是
+        broken[valid.length] = (byte) 0xC3;
+        broken[valid.length + 1] = (byte) 0x28;
+        Files.write(file, broken);
+
+        SourceTextCache readCache = new SourceTextCache(SourceTextCache.DEFAULT_MAX_CHARS, Long.MAX_VALUE);
+        SourceTextCache mappedCache = new SourceTextCache(SourceTextCache.DEFAULT_MAX_CHARS, 0);
+
+        assertThrows(IOException.class, () -> readCache.read(file));
+        assertThrows(IOException.class, () -> mappedCache.read(file));
+        assertEquals(0, readCache.size());
+        assertEquals(0, mappedCache.size());
+    }
+
+    @Test
+    void testCachedUntilFileChanges() throws IOException {
+        Path file = tempDir.resolve("Demo.java");
+        Files.writeString(file, SOURCE);
+        SourceTextCache cache = new SourceTextCache();
+
+        cache.read(file);
+        cache.read(file);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        String changed = SOURCE + "// changed\n";
+        Files.writeString(file, changed);
+        assertEquals(changed, cache.read(file));
+        assertEquals(2, cache.getMissCount());
+    }
+}
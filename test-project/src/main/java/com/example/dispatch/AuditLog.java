@@ -0,0 +1,13 @@
+package com.example.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** 稽核紀錄 */
+public class AuditLog {
+    private final List<String> entries = new ArrayList<>();
+
+    public void record(String channel, int amount) {
+        entries.add(channel + ":" + amount);
+    }
+}
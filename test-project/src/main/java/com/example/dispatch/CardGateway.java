@@ -0,0 +1,11 @@
+package com.example.dispatch;
+
+/** 信用卡付款 */
+public class CardGateway implements PaymentGateway {
+    private final AuditLog auditLog = new AuditLog();
+
+    @Override
+    public void charge(int amount) {
+        auditLog.record("card", amount);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.dispatch;
+
+/** 結帳流程：透過介面呼叫付款與收據列印 */
+public class CheckoutService {
+    private final PaymentGateway gateway;
+    private final ReceiptPrinter printer;
+
+    public CheckoutService(PaymentGateway gateway, ReceiptPrinter printer) {
+        this.gateway = gateway;
+        this.printer = printer;
+    }
+
+    public void checkout(int amount) {
+        gateway.charge(amount);
+        printer.print(amount);
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.dispatch;
+
+/** 付款通道，有兩個實作 */
+public interface PaymentGateway {
+    void charge(int amount);
+}
@@ -0,0 +1,11 @@
+package com.example.dispatch;
+
+/** PDF 收據 */
+public class PdfReceiptPrinter implements ReceiptPrinter {
+    private final AuditLog auditLog = new AuditLog();
+
+    @Override
+    public void print(int amount) {
+        auditLog.record("receipt", amount);
+    }
+}
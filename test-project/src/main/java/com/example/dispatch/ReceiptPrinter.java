@@ -0,0 +1,6 @@
+package com.example.dispatch;
+
+/** 收據列印，只有一個實作 */
+public interface ReceiptPrinter {
+    void print(int amount);
+}
@@ -0,0 +1,11 @@
+package com.example.dispatch;
+
+/** 轉帳付款 */
+public class TransferGateway implements PaymentGateway {
+    private final AuditLog auditLog = new AuditLog();
+
+    @Override
+    public void charge(int amount) {
+        auditLog.record("transfer", amount);
+    }
+}
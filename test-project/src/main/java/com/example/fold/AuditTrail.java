@@ -0,0 +1,13 @@
+package com.example.fold;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** 計算過程的紀錄 */
+public class AuditTrail {
+    private final List<String> steps = new ArrayList<>();
+
+    public void record(String step) {
+        steps.add(step);
+    }
+}
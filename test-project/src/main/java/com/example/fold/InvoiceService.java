@@ -0,0 +1,29 @@
+package com.example.fold;
+
+/** 開立發票：金額經由 private 輔助方法鏈計算，format 同時有 public 與 private 多載 */
+public class InvoiceService {
+    private final AuditTrail auditTrail = new AuditTrail();
+
+    public String issue(int amount) {
+        int total = total(amount);
+        return format(total);
+    }
+
+    public String format(String text) {
+        return "[" + text + "]";
+    }
+
+    private int total(int amount) {
+        auditTrail.record("total");
+        return withTax(amount);
+    }
+
+    private int withTax(int amount) {
+        auditTrail.record("tax");
+        return amount + amount / 10;
+    }
+
+    private String format(int total) {
+        return format(String.valueOf(total));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.reverse;
+
+/** 入口點：同時呼叫 OrderService 與 ReportService */
+public class Facade {
+    private final OrderService orderService = new OrderService();
+    private final ReportService reportService = new ReportService();
+
+    public String run(String id) {
+        return orderService.place(id) + reportService.build(id);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.reverse;
+
+/** 兩個方法都直接呼叫 Repository.load */
+public class Lookup {
+    private final Repository repository = new Repository();
+
+    public String find(String id) {
+        return repository.load(id);
+    }
+
+    public String findCached(String id) {
+        return repository.load(id.trim());
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.reverse;
+
+/** 經由 find 與 findCached 兩條路徑到達 Repository.load */
+public class OrderService {
+    private final Lookup lookup = new Lookup();
+
+    public String place(String id) {
+        String first = lookup.find(id);
+        String second = lookup.findCached(id);
+        return first + second;
+    }
+}
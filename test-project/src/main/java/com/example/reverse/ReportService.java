@@ -0,0 +1,10 @@
+package com.example.reverse;
+
+/** 與 OrderService 共用 find 這一段路徑 */
+public class ReportService {
+    private final Lookup lookup = new Lookup();
+
+    public String build(String id) {
+        return lookup.find(id);
+    }
+}
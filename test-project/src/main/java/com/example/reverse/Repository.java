@@ -0,0 +1,8 @@
+package com.example.reverse;
+
+/** 反向追蹤的目標方法 */
+public class Repository {
+    public String load(String id) {
+        return "row-" + id;
+    }
+}